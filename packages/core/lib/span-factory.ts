@@ -23,7 +23,7 @@ export type SpanFactoryConstructor<C extends Configuration> = new (
 export class SpanFactory<C extends Configuration> {
   private processor: Processor
   readonly sampler: ReadonlySampler
-  private readonly idGenerator: IdGenerator
+  protected readonly idGenerator: IdGenerator
   private readonly spanAttributesSource: SpanAttributesSource<C>
   protected readonly clock: Clock
   private readonly spanContextStorage: SpanContextStorage
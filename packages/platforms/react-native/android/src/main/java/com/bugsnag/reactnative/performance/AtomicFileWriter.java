@@ -0,0 +1,132 @@
+package com.bugsnag.reactnative.performance;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * Writes files by writing to a temporary file in the same directory, syncing it to disk and then
+ * renaming it over the target. A process being killed mid-write therefore leaves either the old
+ * file or the new file in place, but never a truncated one.
+ *
+ * A temporary file that is still present long after it was written must have been left behind by
+ * an interrupted write; these are removed the next time the directory is listed and counted as
+ * corrupt files.
+ */
+final class AtomicFileWriter {
+  private static final String TEMP_FILE_PREFIX = ".";
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * Temp files older than this cannot belong to a write that is still in progress
+   */
+  private static final long STALE_TEMP_FILE_AGE_MS = TimeUnit.MINUTES.toMillis(1);
+
+  private final AtomicLong writeFailureCount = new AtomicLong();
+  private final AtomicLong corruptFileCount = new AtomicLong();
+
+  private final AtomicLong gzipWriteCount = new AtomicLong();
+  private final AtomicLong gzipUncompressedBytes = new AtomicLong();
+  private final AtomicLong gzipStoredBytes = new AtomicLong();
+
+  void write(String path, String data, String encoding) throws IOException {
+    byte[] bytes;
+    try {
+      bytes = encode(data, encoding);
+    } catch (IOException | RuntimeException e) {
+      writeFailureCount.incrementAndGet();
+      throw e;
+    }
+
+    write(path, bytes);
+  }
+
+  void write(String path, byte[] bytes) throws IOException {
+    File target = new File(path).getAbsoluteFile();
+    File temp;
+
+    try {
+      temp = File.createTempFile(TEMP_FILE_PREFIX + target.getName() + ".", TEMP_FILE_SUFFIX, target.getParentFile());
+    } catch (IOException e) {
+      writeFailureCount.incrementAndGet();
+      throw e;
+    }
+
+    boolean isWritten = false;
+    try {
+      FileContents.writeAndSync(temp, bytes);
+
+      if (!temp.renameTo(target)) {
+        throw new IOException("Failed to move temporary file into place: " + path);
+      }
+
+      isWritten = true;
+    } catch (IOException | RuntimeException e) {
+      writeFailureCount.incrementAndGet();
+      throw e;
+    } finally {
+      if (!isWritten) {
+        temp.delete();
+      }
+    }
+  }
+
+  /**
+   * Returns true if {@code file} is a temporary file created by {@link #write}, in which case it
+   * should be hidden from directory listings. Stale temporary files are deleted.
+   */
+  boolean isTempFile(File file) {
+    String name = file.getName();
+    if (!name.startsWith(TEMP_FILE_PREFIX) || !name.endsWith(TEMP_FILE_SUFFIX)) {
+      return false;
+    }
+
+    long lastModified = file.lastModified();
+    if (lastModified > 0 && System.currentTimeMillis() - lastModified > STALE_TEMP_FILE_AGE_MS) {
+      if (file.delete()) {
+        corruptFileCount.incrementAndGet();
+      }
+    }
+
+    return true;
+  }
+
+  void putMetrics(WritableMap metrics) {
+    metrics.putDouble("fileWriteFailureCount", (double) writeFailureCount.get());
+    metrics.putDouble("corruptFileCount", (double) corruptFileCount.get());
+
+    long uncompressedBytes = gzipUncompressedBytes.get();
+    long storedBytes = gzipStoredBytes.get();
+    metrics.putDouble("gzipWriteCount", (double) gzipWriteCount.get());
+    metrics.putDouble("gzipUncompressedBytes", (double) uncompressedBytes);
+    metrics.putDouble("gzipStoredBytes", (double) storedBytes);
+    metrics.putDouble("gzipCompressionRatio", uncompressedBytes > 0 ? (double) storedBytes / uncompressedBytes : 0.0);
+  }
+
+  /**
+   * Gzip compress {@code data} as UTF-8, recording the compression statistics
+   */
+  byte[] gzip(String data) throws IOException {
+    byte[] uncompressed = data.getBytes(UTF_8);
+    byte[] compressed = FileContents.gzip(uncompressed);
+
+    gzipWriteCount.incrementAndGet();
+    gzipUncompressedBytes.addAndGet(uncompressed.length);
+    gzipStoredBytes.addAndGet(compressed.length);
+    return compressed;
+  }
+
+  private byte[] encode(String data, String encoding) throws IOException {
+    if (FileContents.ENCODING_GZIP.equals(encoding)) {
+      return gzip(data);
+    }
+
+    return FileContents.encode(data, encoding);
+  }
+}
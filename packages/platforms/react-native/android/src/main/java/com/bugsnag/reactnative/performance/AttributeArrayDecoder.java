@@ -0,0 +1,188 @@
+package com.bugsnag.reactnative.performance;
+
+import com.facebook.react.bridge.ReadableArray;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decodes JS arrays into attribute values, choosing the narrowest representation that can hold
+ * every element:
+ * <ul>
+ *   <li>all integers: {@code long[]}</li>
+ *   <li>all numbers: {@code double[]}</li>
+ *   <li>all strings: {@code String[]}</li>
+ *   <li>anything else (booleans or a mix of types): a {@code List} of boxed values</li>
+ * </ul>
+ * Elements that cannot be attribute values (nulls, objects and nested arrays) are skipped.
+ */
+final class AttributeArrayDecoder {
+  private static final long[] EMPTY_ARRAY = new long[0];
+
+  private static final int KIND_EMPTY = 0;
+  private static final int KIND_LONG = 1;
+  private static final int KIND_DOUBLE = 2;
+  private static final int KIND_STRING = 3;
+  private static final int KIND_OBJECT = 4;
+
+  private final int capacity;
+  private int kind = KIND_EMPTY;
+  private int count = 0;
+
+  // only the array for the current kind is allocated
+  private long[] longs;
+  private double[] doubles;
+  private String[] strings;
+  private Object[] objects;
+
+  private AttributeArrayDecoder(int capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * Decode the first {@code size} elements of {@code array}
+   */
+  static Object decode(ReadableArray array, int size) {
+    AttributeArrayDecoder decoder = new AttributeArrayDecoder(size);
+    for (int i = 0; i < size; i++) {
+      switch (array.getType(i)) {
+        case Number:
+          decoder.addNumber(array.getDouble(i));
+          break;
+        case String:
+          decoder.addString(array.getString(i));
+          break;
+        case Boolean:
+          decoder.addObject(array.getBoolean(i));
+          break;
+        default:
+          break;
+      }
+    }
+
+    return decoder.build();
+  }
+
+  /**
+   * Decode the first {@code size} elements of an array that has already been copied out of the
+   * bridge (with {@link ReadableArray#toArrayList()})
+   */
+  static Object decode(List<?> array, int size) {
+    AttributeArrayDecoder decoder = new AttributeArrayDecoder(size);
+    for (int i = 0; i < size; i++) {
+      Object value = array.get(i);
+      if (value instanceof Number) {
+        decoder.addNumber(((Number) value).doubleValue());
+      } else if (value instanceof String) {
+        decoder.addString((String) value);
+      } else if (value instanceof Boolean) {
+        decoder.addObject(value);
+      }
+    }
+
+    return decoder.build();
+  }
+
+  private static boolean isInteger(double value) {
+    return value % 1 == 0;
+  }
+
+  private void addNumber(double value) {
+    boolean isInteger = isInteger(value);
+
+    if (kind == KIND_EMPTY) {
+      if (isInteger) {
+        kind = KIND_LONG;
+        longs = new long[capacity];
+      } else {
+        kind = KIND_DOUBLE;
+        doubles = new double[capacity];
+      }
+    } else if (kind == KIND_LONG && !isInteger) {
+      // an array with any fractional number is stored as doubles, including the integers so far
+      doubles = new double[capacity];
+      for (int i = 0; i < count; i++) {
+        doubles[i] = longs[i];
+      }
+      longs = null;
+      kind = KIND_DOUBLE;
+    } else if (kind == KIND_STRING) {
+      toObjects();
+    }
+
+    switch (kind) {
+      case KIND_LONG:
+        longs[count++] = (long) value;
+        break;
+      case KIND_DOUBLE:
+        doubles[count++] = value;
+        break;
+      default:
+        objects[count++] = isInteger ? (Object) (long) value : (Object) value;
+        break;
+    }
+  }
+
+  private void addString(String value) {
+    if (kind == KIND_EMPTY) {
+      kind = KIND_STRING;
+      strings = new String[capacity];
+    } else if (kind != KIND_STRING && kind != KIND_OBJECT) {
+      toObjects();
+    }
+
+    if (kind == KIND_STRING) {
+      strings[count++] = value;
+    } else {
+      objects[count++] = value;
+    }
+  }
+
+  private void addObject(Object value) {
+    if (kind != KIND_OBJECT) {
+      toObjects();
+    }
+
+    objects[count++] = value;
+  }
+
+  private void toObjects() {
+    objects = new Object[capacity];
+    for (int i = 0; i < count; i++) {
+      switch (kind) {
+        case KIND_LONG:
+          objects[i] = longs[i];
+          break;
+        case KIND_DOUBLE:
+          objects[i] = isInteger(doubles[i]) ? (Object) (long) doubles[i] : (Object) doubles[i];
+          break;
+        case KIND_STRING:
+          objects[i] = strings[i];
+          break;
+        default:
+          break;
+      }
+    }
+
+    longs = null;
+    doubles = null;
+    strings = null;
+    kind = KIND_OBJECT;
+  }
+
+  private Object build() {
+    // skipped elements leave the arrays longer than the number of elements decoded
+    switch (kind) {
+      case KIND_LONG:
+        return count == capacity ? longs : Arrays.copyOf(longs, count);
+      case KIND_DOUBLE:
+        return count == capacity ? doubles : Arrays.copyOf(doubles, count);
+      case KIND_STRING:
+        return count == capacity ? strings : Arrays.copyOf(strings, count);
+      case KIND_OBJECT:
+        return Arrays.asList(count == capacity ? objects : Arrays.copyOf(objects, count));
+      default:
+        return EMPTY_ARRAY;
+    }
+  }
+}
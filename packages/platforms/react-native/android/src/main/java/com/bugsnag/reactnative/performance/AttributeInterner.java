@@ -0,0 +1,73 @@
+package com.bugsnag.reactnative.performance;
+
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded intern tables for attribute keys and short attribute values. Every span bridged from JS
+ * carries new copies of the same handful of key strings (and low cardinality values such as span
+ * categories), so interning them means queued spans share a single copy of each.
+ *
+ * Each table is direct mapped: a string can only occupy the slot chosen by its hash, and a miss
+ * replaces whatever was in that slot. The tables therefore never grow, and need no locking, as a
+ * lost race just causes a later miss.
+ */
+public final class AttributeInterner {
+  // table sizes must be powers of two
+  private static final int KEY_TABLE_SIZE = 512;
+  private static final int VALUE_TABLE_SIZE = 256;
+
+  /**
+   * Longer values are unlikely to be repeated (URLs, messages, etc.) and are not interned
+   */
+  private static final int MAX_VALUE_LENGTH = 32;
+
+  private static final AttributeInterner KEYS = new AttributeInterner(KEY_TABLE_SIZE);
+  private static final AttributeInterner VALUES = new AttributeInterner(VALUE_TABLE_SIZE);
+
+  private final String[] table;
+  private final int mask;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+
+  private AttributeInterner(int size) {
+    table = new String[size];
+    mask = size - 1;
+  }
+
+  public static String internKey(String key) {
+    return KEYS.intern(key);
+  }
+
+  public static String internValue(String value) {
+    if (value.length() > MAX_VALUE_LENGTH) {
+      return value;
+    }
+
+    return VALUES.intern(value);
+  }
+
+  static void putMetrics(WritableMap metrics) {
+    metrics.putDouble("attributeKeyInternHitCount", (double) KEYS.hitCount.get());
+    metrics.putDouble("attributeKeyInternMissCount", (double) KEYS.missCount.get());
+    metrics.putDouble("attributeValueInternHitCount", (double) VALUES.hitCount.get());
+    metrics.putDouble("attributeValueInternMissCount", (double) VALUES.missCount.get());
+  }
+
+  private String intern(String value) {
+    int hash = value.hashCode();
+    int index = (hash ^ (hash >>> 16)) & mask;
+
+    String existing = table[index];
+    if (existing != null && existing.equals(value)) {
+      hitCount.incrementAndGet();
+      return existing;
+    }
+
+    table[index] = value;
+    missCount.incrementAndGet();
+    return value;
+  }
+}
@@ -0,0 +1,81 @@
+package com.bugsnag.reactnative.performance;
+
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The attribute limits from the native SDK configuration. These are applied while attributes are
+ * converted from JS values, so attributes over the count limit are never read and oversized
+ * strings and arrays are cut down before they are stored on a span.
+ *
+ * Until the native configuration is known (when JS attaches to the native SDK) no limits apply.
+ */
+public final class AttributeLimits {
+  private static final AttributeLimits UNLIMITED =
+    new AttributeLimits(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+  private static volatile AttributeLimits current = UNLIMITED;
+
+  private static final AtomicLong droppedAttributeCount = new AtomicLong();
+  private static final AtomicLong truncatedStringCount = new AtomicLong();
+  private static final AtomicLong truncatedArrayCount = new AtomicLong();
+
+  public final int countLimit;
+  public final int stringValueLimit;
+  public final int arrayLengthLimit;
+
+  private AttributeLimits(int countLimit, int stringValueLimit, int arrayLengthLimit) {
+    this.countLimit = Math.max(countLimit, 0);
+    this.stringValueLimit = Math.max(stringValueLimit, 0);
+    this.arrayLengthLimit = Math.max(arrayLengthLimit, 0);
+  }
+
+  public static AttributeLimits get() {
+    return current;
+  }
+
+  static void set(int countLimit, int stringValueLimit, int arrayLengthLimit) {
+    current = new AttributeLimits(countLimit, stringValueLimit, arrayLengthLimit);
+  }
+
+  /**
+   * Truncate {@code value} to the string value limit, marking it the same way as the JS SDK does
+   */
+  public String truncateString(String value) {
+    int length = value.length();
+    if (length <= stringValueLimit) {
+      return value;
+    }
+
+    truncatedStringCount.incrementAndGet();
+    return value.substring(0, stringValueLimit) + " *** " + (length - stringValueLimit) + " CHARS TRUNCATED";
+  }
+
+  /**
+   * Returns the number of elements to keep from an array of {@code length} elements
+   */
+  public int arrayLength(int length) {
+    if (length <= arrayLengthLimit) {
+      return length;
+    }
+
+    truncatedArrayCount.incrementAndGet();
+    return arrayLengthLimit;
+  }
+
+  /**
+   * Record that {@code count} attributes were not set because the count limit was reached
+   */
+  public void recordDroppedAttributes(int count) {
+    if (count > 0) {
+      droppedAttributeCount.addAndGet(count);
+    }
+  }
+
+  static void putMetrics(WritableMap metrics) {
+    metrics.putDouble("droppedAttributeCount", (double) droppedAttributeCount.get());
+    metrics.putDouble("truncatedAttributeStringCount", (double) truncatedStringCount.get());
+    metrics.putDouble("truncatedAttributeArrayCount", (double) truncatedArrayCount.get());
+  }
+}
@@ -0,0 +1,30 @@
+package com.bugsnag.reactnative.performance;
+
+import android.os.Process;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates named daemon threads that run at background priority, so that work moved off the JS and
+ * native modules threads doesn't compete with the UI.
+ */
+final class BackgroundThreadFactory implements ThreadFactory {
+  private final String name;
+
+  BackgroundThreadFactory(String name) {
+    this.name = name;
+  }
+
+  @Override
+  public Thread newThread(final Runnable runnable) {
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        runnable.run();
+      }
+    }, name);
+    thread.setDaemon(true);
+    return thread;
+  }
+}
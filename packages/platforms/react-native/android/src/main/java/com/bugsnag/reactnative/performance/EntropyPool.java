@@ -0,0 +1,111 @@
+package com.bugsnag.reactnative.performance;
+
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableMap;
+
+import java.security.SecureRandom;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Generates the hex encoded entropy pools used by the JS ID generator. Pools are generated on a
+ * background executor, and the next pool is always computed ahead of time so that a request can
+ * usually be answered without touching {@link SecureRandom} at all.
+ */
+final class EntropyPool {
+  private static final int POOL_SIZE = 1024;
+
+  private final SecureRandom random;
+  private final Executor executor;
+
+  private final AtomicReference<String> nextPool = new AtomicReference<>();
+
+  private final AtomicLong refreshCount = new AtomicLong();
+  private final AtomicLong precomputedCount = new AtomicLong();
+  private final AtomicLong totalRefreshNanos = new AtomicLong();
+  private final AtomicLong maxRefreshNanos = new AtomicLong();
+  private final AtomicLong lastRefreshNanos = new AtomicLong();
+
+  private final Runnable precomputeTask = new Runnable() {
+    @Override
+    public void run() {
+      if (nextPool.get() == null) {
+        nextPool.compareAndSet(null, generatePool());
+      }
+    }
+  };
+
+  EntropyPool(SecureRandom random, Executor executor) {
+    this.random = random;
+    this.executor = executor;
+  }
+
+  /**
+   * Return a pool on the calling thread, using the precomputed pool if one is ready.
+   */
+  String take() {
+    String pool = nextPool.getAndSet(null);
+    if (pool != null) {
+      precomputedCount.incrementAndGet();
+    } else {
+      pool = generatePool();
+    }
+
+    executor.execute(precomputeTask);
+    return pool;
+  }
+
+  /**
+   * Resolve {@code promise} with a pool from the background executor, leaving the calling thread
+   * free for other native module calls.
+   */
+  void takeAsync(final Promise promise) {
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          promise.resolve(take());
+        } catch (Exception e) {
+          promise.reject(e);
+        }
+      }
+    });
+  }
+
+  void putMetrics(WritableMap metrics) {
+    long count = refreshCount.get();
+    metrics.putDouble("entropyRefreshCount", (double) count);
+    metrics.putDouble("entropyPrecomputedCount", (double) precomputedCount.get());
+    metrics.putDouble("entropyRefreshLastMs", nanosToMillis(lastRefreshNanos.get()));
+    metrics.putDouble("entropyRefreshMaxMs", nanosToMillis(maxRefreshNanos.get()));
+    metrics.putDouble("entropyRefreshMeanMs", count > 0 ? nanosToMillis(totalRefreshNanos.get()) / count : 0.0);
+  }
+
+  private String generatePool() {
+    long startTime = System.nanoTime();
+
+    byte[] bytes = new byte[POOL_SIZE];
+    random.nextBytes(bytes);
+
+    String pool = HexEncoding.toHexString(bytes);
+
+    recordRefresh(System.nanoTime() - startTime);
+    return pool;
+  }
+
+  private void recordRefresh(long durationNanos) {
+    refreshCount.incrementAndGet();
+    totalRefreshNanos.addAndGet(durationNanos);
+    lastRefreshNanos.set(durationNanos);
+
+    long max;
+    do {
+      max = maxRefreshNanos.get();
+    } while (durationNanos > max && !maxRefreshNanos.compareAndSet(max, durationNanos));
+  }
+
+  private static double nanosToMillis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+}
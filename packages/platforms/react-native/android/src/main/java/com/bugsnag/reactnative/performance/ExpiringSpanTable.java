@@ -0,0 +1,112 @@
+package com.bugsnag.reactnative.performance;
+
+import android.annotation.SuppressLint;
+
+import androidx.annotation.Nullable;
+
+import com.bugsnag.android.performance.internal.SpanImpl;
+
+import java.util.List;
+
+/**
+ * A bucketed expiry structure for open native spans. Spans are registered in the newest of a ring
+ * of {@link OpenSpanTable} generations, and every {@link #rotationIntervalMs} the oldest
+ * generation is emptied and becomes the newest.
+ *
+ * A span is only emptied from its generation after {@code GENERATION_COUNT} rotations, and
+ * {@code GENERATION_COUNT - 1} whole rotation intervals cover {@code maxAge}, so anything still in
+ * the oldest generation has been open for at least {@code maxAge} (and at most one rotation
+ * interval longer) and is considered abandoned.
+ *
+ * Expiring a span therefore costs O(1) amortized: spans that are ended normally are removed from
+ * their generation as usual, and expiry never has to scan the spans that are still young.
+ */
+@SuppressLint("RestrictedApi")
+final class ExpiringSpanTable {
+  static final int GENERATION_COUNT = 6;
+
+  @SuppressWarnings("unchecked")
+  private final OpenSpanTable<SpanImpl>[] generations = new OpenSpanTable[GENERATION_COUNT];
+
+  /**
+   * The index of the generation that new spans are added to
+   */
+  private volatile int newest = 0;
+
+  /**
+   * How often {@link #expireOldestGeneration} must be called so that spans are expired once they
+   * have been open for {@code maxAgeMs}. The generation being filled when a rotation happens may
+   * only have just been started, so the older generations alone must cover {@code maxAgeMs}.
+   */
+  static long rotationIntervalMs(long maxAgeMs) {
+    return Math.max(maxAgeMs / (GENERATION_COUNT - 1), 1);
+  }
+
+  ExpiringSpanTable() {
+    for (int i = 0; i < GENERATION_COUNT; i++) {
+      generations[i] = new OpenSpanTable<>();
+    }
+  }
+
+  void put(SpanImpl span) {
+    generations[newest].put(span);
+  }
+
+  @Nullable
+  SpanImpl remove(long spanId, long traceIdHi, long traceIdLo) {
+    int generation = newest;
+    for (int i = 0; i < GENERATION_COUNT; i++) {
+      SpanImpl span = generations[generation].remove(spanId, traceIdHi, traceIdLo);
+      if (span != null) {
+        return span;
+      }
+      generation = previous(generation);
+    }
+
+    return null;
+  }
+
+  @Nullable
+  SpanImpl get(String spanId, String traceId) {
+    int generation = newest;
+    for (int i = 0; i < GENERATION_COUNT; i++) {
+      SpanImpl span = generations[generation].get(spanId, traceId);
+      if (span != null) {
+        return span;
+      }
+      generation = previous(generation);
+    }
+
+    return null;
+  }
+
+  @Nullable
+  SpanImpl remove(String spanId, String traceId) {
+    int generation = newest;
+    for (int i = 0; i < GENERATION_COUNT; i++) {
+      SpanImpl span = generations[generation].remove(spanId, traceId);
+      if (span != null) {
+        return span;
+      }
+      generation = previous(generation);
+    }
+
+    return null;
+  }
+
+  /**
+   * Empty the oldest generation and make it the newest. This should be called every
+   * {@link #rotationIntervalMs}, and only ever from a single thread.
+   * @return the spans that were still open in the oldest generation
+   */
+  List<SpanImpl> expireOldestGeneration() {
+    int oldest = (newest + 1) % GENERATION_COUNT;
+    List<SpanImpl> expired = generations[oldest].removeAll();
+    newest = oldest;
+    return expired;
+  }
+
+  private static int previous(int generation) {
+    return (generation + GENERATION_COUNT - 1) % GENERATION_COUNT;
+  }
+}
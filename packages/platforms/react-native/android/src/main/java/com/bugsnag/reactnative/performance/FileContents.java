@@ -0,0 +1,145 @@
+package com.bugsnag.reactnative.performance;
+
+import android.util.Base64;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Byte oriented file reads and writes using NIO channels. Files are read into a single exactly
+ * sized byte array and decoded in one step, rather than streamed through a {@code Reader} into a
+ * growing {@code StringBuilder}. The "base64" encoding transfers the raw bytes without any charset
+ * decoding at all.
+ *
+ * The "gzip" encoding stores UTF-8 text gzip compressed on disk, so that it can be delivered as-is
+ * with {@code Content-Encoding: gzip}. Reading a file that isn't compressed with the "gzip" encoding
+ * returns its contents as UTF-8, so files written before compression was enabled remain readable.
+ */
+final class FileContents {
+  static final String ENCODING_BASE64 = "base64";
+  static final String ENCODING_GZIP = "gzip";
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final int GZIP_MAGIC_0 = 0x1f;
+  private static final int GZIP_MAGIC_1 = 0x8b;
+
+  private FileContents() {}
+
+  static boolean isEncodingSupported(String encoding) {
+    if (ENCODING_BASE64.equals(encoding) || ENCODING_GZIP.equals(encoding)) {
+      return true;
+    }
+
+    try {
+      return Charset.isSupported(encoding);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  static String read(File file, String encoding) throws IOException {
+    return decode(readBytes(file), encoding);
+  }
+
+  /**
+   * Write {@code bytes} to {@code file} and sync it to disk before returning.
+   */
+  static void writeAndSync(File file, byte[] bytes) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+    try (FileChannel channel = new FileOutputStream(file).getChannel()) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    }
+  }
+
+  static byte[] readBytes(File file) throws IOException {
+    try (FileChannel channel = new FileInputStream(file).getChannel()) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("File too large to read: " + file);
+      }
+
+      ByteBuffer buffer = ByteBuffer.allocate((int) size);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) < 0) {
+          // the file was truncated while we were reading it
+          break;
+        }
+      }
+
+      if (buffer.hasRemaining()) {
+        byte[] bytes = new byte[buffer.position()];
+        System.arraycopy(buffer.array(), 0, bytes, 0, bytes.length);
+        return bytes;
+      }
+
+      return buffer.array();
+    }
+  }
+
+  static String decode(byte[] bytes, String encoding) throws IOException {
+    if (ENCODING_BASE64.equals(encoding)) {
+      return Base64.encodeToString(bytes, Base64.NO_WRAP);
+    }
+
+    if (ENCODING_GZIP.equals(encoding)) {
+      return new String(isGzipped(bytes) ? gunzip(bytes) : bytes, UTF_8);
+    }
+
+    return new String(bytes, Charset.forName(encoding));
+  }
+
+  /**
+   * Encode {@code data} as base64 or a charset. The "gzip" encoding is compressed by
+   * {@link AtomicFileWriter#gzip}, which also records the compression metrics.
+   */
+  static byte[] encode(String data, String encoding) {
+    if (ENCODING_BASE64.equals(encoding)) {
+      return Base64.decode(data, Base64.DEFAULT);
+    }
+
+    return data.getBytes(Charset.forName(encoding));
+  }
+
+  static byte[] gzip(byte[] bytes) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 32);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(bytes);
+    }
+
+    return out.toByteArray();
+  }
+
+  static byte[] gunzip(byte[] bytes) throws IOException {
+    // JSON payloads typically compress by at least 4x, so start with a buffer that is large enough
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+    try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = gzip.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    }
+
+    return out.toByteArray();
+  }
+
+  static boolean isGzipped(byte[] bytes) {
+    return bytes.length >= 2
+      && (bytes[0] & 0xff) == GZIP_MAGIC_0
+      && (bytes[1] & 0xff) == GZIP_MAGIC_1;
+  }
+}
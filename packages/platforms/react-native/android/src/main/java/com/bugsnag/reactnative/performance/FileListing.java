@@ -0,0 +1,125 @@
+package com.bugsnag.reactnative.performance;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Lists a directory along with the metadata of each entry in a single pass, sorted in the same
+ * order as the JS retry queue expects: newest to oldest by the timestamp encoded in the filename
+ * (e.g. {@code retry-1700000000000-abc.json}), with names that have no valid timestamp last.
+ */
+final class FileListing {
+  private static final String RETRY_FILE_PREFIX = "retry-";
+  private static final String RETRY_FILE_SUFFIX = ".json";
+
+  static final long INVALID_TIMESTAMP = -1L;
+
+  private FileListing() {}
+
+  static WritableArray list(String path, AtomicFileWriter fileWriter) {
+    WritableArray result = Arguments.createArray();
+
+    File[] files = new File(path).listFiles();
+    if (files == null) {
+      // the directory doesn't exist (or isn't a directory)
+      return result;
+    }
+
+    List<Entry> entries = new ArrayList<>(files.length);
+    for (File file : files) {
+      if (!fileWriter.isTempFile(file)) {
+        entries.add(new Entry(file));
+      }
+    }
+
+    Collections.sort(entries, NEWEST_FIRST);
+
+    for (Entry entry : entries) {
+      WritableMap map = Arguments.createMap();
+      map.putString("name", entry.name);
+      map.putDouble("size", (double) entry.file.length());
+      map.putDouble("mtime", (double) entry.file.lastModified());
+      map.putBoolean("isDir", entry.file.isDirectory());
+      result.pushMap(map);
+    }
+
+    return result;
+  }
+
+  /**
+   * Parse the timestamp from a retry queue filename, matching {@code timestamp-from-filename.ts}
+   * @return the timestamp or {@link #INVALID_TIMESTAMP} if the name doesn't contain a valid one
+   */
+  static long timestampFromFilename(String name) {
+    if (!name.startsWith(RETRY_FILE_PREFIX) || !name.endsWith(RETRY_FILE_SUFFIX)) {
+      return INVALID_TIMESTAMP;
+    }
+
+    int start = RETRY_FILE_PREFIX.length();
+    int end = start;
+    int suffixStart = name.length() - RETRY_FILE_SUFFIX.length();
+    while (end < suffixStart && isAsciiDigit(name.charAt(end))) {
+      end++;
+    }
+
+    // there must be at least one digit, then a '-' followed by at least one character
+    if (end == start || end + 1 >= suffixStart || name.charAt(end) != '-') {
+      return INVALID_TIMESTAMP;
+    }
+
+    try {
+      long timestamp = Long.parseLong(name.substring(start, end));
+      // a timestamp of 0 is treated as invalid by the JS sorter
+      return timestamp > 0 ? timestamp : INVALID_TIMESTAMP;
+    } catch (NumberFormatException e) {
+      return INVALID_TIMESTAMP;
+    }
+  }
+
+  private static boolean isAsciiDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /**
+   * Compare two retry queue filenames (and their parsed timestamps) in newest to oldest order
+   */
+  static int compareNewestFirst(long aTimestamp, String aName, long bTimestamp, String bName) {
+    boolean aValid = aTimestamp != INVALID_TIMESTAMP;
+    boolean bValid = bTimestamp != INVALID_TIMESTAMP;
+    if (aValid != bValid) {
+      return aValid ? -1 : 1;
+    }
+
+    if (aTimestamp != bTimestamp) {
+      return aTimestamp > bTimestamp ? -1 : 1;
+    }
+
+    return aName.compareTo(bName);
+  }
+
+  private static final Comparator<Entry> NEWEST_FIRST = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry a, Entry b) {
+      return compareNewestFirst(a.timestamp, a.name, b.timestamp, b.name);
+    }
+  };
+
+  private static final class Entry {
+    final File file;
+    final String name;
+    final long timestamp;
+
+    Entry(File file) {
+      this.file = file;
+      this.name = file.getName();
+      this.timestamp = timestampFromFilename(name);
+    }
+  }
+}
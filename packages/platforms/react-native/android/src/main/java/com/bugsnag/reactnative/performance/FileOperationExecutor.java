@@ -0,0 +1,97 @@
+package com.bugsnag.reactnative.performance;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the file system bridge methods on a single dedicated I/O thread with a bounded queue, so
+ * that a slow write never holds up the native modules thread (and every other native module call
+ * queued behind it). The latency of each operation, including the time spent queued, is recorded
+ * in a per-operation {@link LatencyHistogram}.
+ *
+ * When the queue is full the operation's promise is rejected with an {@code EBUSY} error, which JS
+ * handles like any other failed file operation. Operations are never run on the calling thread, as
+ * that would let them overtake the operations already queued.
+ */
+final class FileOperationExecutor {
+  interface FileOperation {
+    void run(Promise promise) throws Exception;
+  }
+
+  static final int DEFAULT_QUEUE_DEPTH = 64;
+
+  private static final String THREAD_NAME = "Bugsnag RN File I/O";
+  private static final String ERROR_BUSY = "EBUSY";
+
+  private final ThreadPoolExecutor executor;
+
+  private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+  private final AtomicLong rejectedCount = new AtomicLong();
+
+  FileOperationExecutor(int queueDepth) {
+    this.executor = new ThreadPoolExecutor(
+      1,
+      1,
+      0L,
+      TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<Runnable>(Math.max(queueDepth, 1)),
+      new BackgroundThreadFactory(THREAD_NAME),
+      new ThreadPoolExecutor.AbortPolicy()
+    );
+  }
+
+  void execute(final String name, final Promise promise, final FileOperation operation) {
+    final long queuedAt = System.nanoTime();
+    Runnable task = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          operation.run(promise);
+        } catch (Exception e) {
+          promise.reject(e);
+        } finally {
+          getHistogram(name).record(System.nanoTime() - queuedAt);
+        }
+      }
+    };
+
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      rejectedCount.incrementAndGet();
+      promise.reject(ERROR_BUSY, "Too many pending file operations", e);
+    }
+  }
+
+  void putMetrics(WritableMap metrics) {
+    WritableMap latencyMetrics = Arguments.createMap();
+    for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+      latencyMetrics.putMap(entry.getKey(), entry.getValue().toWritableMap());
+    }
+
+    metrics.putMap("fileOperationLatency", latencyMetrics);
+    metrics.putDouble("fileOperationRejectedCount", (double) rejectedCount.get());
+  }
+
+  private LatencyHistogram getHistogram(String name) {
+    LatencyHistogram histogram = latencies.get(name);
+    if (histogram == null) {
+      LatencyHistogram newHistogram = new LatencyHistogram();
+      histogram = latencies.putIfAbsent(name, newHistogram);
+      if (histogram == null) {
+        histogram = newHistogram;
+      }
+    }
+
+    return histogram;
+  }
+}
@@ -0,0 +1,67 @@
+package com.bugsnag.reactnative.performance;
+
+/**
+ * Allocation-free parsing of the hex encoded span and trace IDs passed from JS, and the lowercase
+ * hex encoding shared by the native module.
+ */
+final class HexEncoding {
+  static final int SPAN_ID_LENGTH = 16;
+  static final int TRACE_ID_LENGTH = 32;
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private HexEncoding() {}
+
+  /**
+   * Write {@code value} as 16 lowercase hex characters into {@code out} starting at {@code offset}.
+   */
+  static void writeHexLong(char[] out, int offset, long value) {
+    for (int i = SPAN_ID_LENGTH - 1; i >= 0; i--) {
+      out[offset + i] = HEX_DIGITS[(int) (value & 0xf)];
+      value >>>= 4;
+    }
+  }
+
+  /**
+   * Encode {@code bytes} as lowercase hex, two characters per byte.
+   */
+  static String toHexString(byte[] bytes) {
+    char[] hex = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      int byteValue = bytes[i] & 0xff;
+      hex[i * 2] = HEX_DIGITS[byteValue >>> 4];
+      hex[i * 2 + 1] = HEX_DIGITS[byteValue & 0xf];
+    }
+
+    return new String(hex);
+  }
+
+  /**
+   * Parse {@code hex[start..end)} as an unsigned 64 bit hex number.
+   * @throws NumberFormatException if the range is longer than 16 characters or contains a non-hex character
+   */
+  static long parseUnsignedHexLong(String hex, int start, int end) {
+    if (end - start > SPAN_ID_LENGTH || end <= start) {
+      throw new NumberFormatException("invalid hex length: " + (end - start));
+    }
+
+    long result = 0L;
+    for (int i = start; i < end; i++) {
+      int digit = Character.digit(hex.charAt(i), 16);
+      if (digit < 0) {
+        throw new NumberFormatException("invalid hex character at " + i);
+      }
+      result = (result << 4) | digit;
+    }
+
+    return result;
+  }
+
+  static boolean isValidSpanId(String spanId) {
+    return spanId != null && spanId.length() == SPAN_ID_LENGTH;
+  }
+
+  static boolean isValidTraceId(String traceId) {
+    return traceId != null && traceId.length() == TRACE_ID_LENGTH;
+  }
+}
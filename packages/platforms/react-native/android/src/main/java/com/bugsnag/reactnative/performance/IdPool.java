@@ -0,0 +1,132 @@
+package com.bugsnag.reactnative.performance;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+
+import java.security.SecureRandom;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A ring buffer of random 64 bit values used to generate span and trace IDs in bulk. The buffer is
+ * topped up on a background executor whenever it drops below half full, so that handing IDs to JS
+ * rarely has to wait for {@link SecureRandom}.
+ */
+final class IdPool {
+  private static final int CAPACITY = 4096;
+  private static final int REFILL_THRESHOLD = CAPACITY / 2;
+
+  private final SecureRandom random;
+  private final Executor refillExecutor;
+  private final AtomicBoolean isRefillScheduled = new AtomicBoolean();
+
+  private final long[] buffer = new long[CAPACITY];
+  private int readIndex = 0;
+  private int available = 0;
+
+  private final Runnable refillTask = new Runnable() {
+    @Override
+    public void run() {
+      try {
+        refill();
+      } finally {
+        isRefillScheduled.set(false);
+      }
+    }
+  };
+
+  IdPool(SecureRandom random, Executor refillExecutor) {
+    this.random = random;
+    this.refillExecutor = refillExecutor;
+
+    isRefillScheduled.set(true);
+    refillExecutor.execute(refillTask);
+  }
+
+  /**
+   * Generate {@code count} hex encoded IDs of the given bit length (64 or 128).
+   */
+  WritableArray generateIds(int count, int bits) {
+    int longsPerId = bits / 64;
+    WritableArray ids = Arguments.createArray();
+    if (count <= 0 || longsPerId < 1 || longsPerId > 2) {
+      return ids;
+    }
+
+    char[] hex = new char[longsPerId * HexEncoding.SPAN_ID_LENGTH];
+    for (int i = 0; i < count; i++) {
+      for (int j = 0; j < longsPerId; j++) {
+        HexEncoding.writeHexLong(hex, j * HexEncoding.SPAN_ID_LENGTH, nextNonZeroLong());
+      }
+      ids.pushString(new String(hex));
+    }
+
+    scheduleRefillIfRequired();
+    return ids;
+  }
+
+  private long nextNonZeroLong() {
+    long value;
+    do {
+      value = nextLong();
+    } while (value == 0L);
+
+    return value;
+  }
+
+  private synchronized long nextLong() {
+    if (available == 0) {
+      // the background refill hasn't kept up, so fill the buffer on this thread
+      refillLocked();
+    }
+
+    long value = buffer[readIndex];
+    readIndex = (readIndex + 1) % CAPACITY;
+    available--;
+    return value;
+  }
+
+  private void scheduleRefillIfRequired() {
+    boolean isLow;
+    synchronized (this) {
+      isLow = available < REFILL_THRESHOLD;
+    }
+
+    if (isLow && isRefillScheduled.compareAndSet(false, true)) {
+      refillExecutor.execute(refillTask);
+    }
+  }
+
+  private void refill() {
+    // generate outside of the lock so that readers aren't blocked on SecureRandom
+    int required;
+    synchronized (this) {
+      required = CAPACITY - available;
+    }
+
+    long[] values = new long[required];
+    for (int i = 0; i < required; i++) {
+      values[i] = random.nextLong();
+    }
+
+    synchronized (this) {
+      int writeIndex = (readIndex + available) % CAPACITY;
+      int count = Math.min(required, CAPACITY - available);
+      for (int i = 0; i < count; i++) {
+        buffer[writeIndex] = values[i];
+        writeIndex = (writeIndex + 1) % CAPACITY;
+      }
+      available += count;
+    }
+  }
+
+  private void refillLocked() {
+    int writeIndex = (readIndex + available) % CAPACITY;
+    int required = CAPACITY - available;
+    for (int i = 0; i < required; i++) {
+      buffer[writeIndex] = random.nextLong();
+      writeIndex = (writeIndex + 1) % CAPACITY;
+    }
+    available = CAPACITY;
+  }
+}
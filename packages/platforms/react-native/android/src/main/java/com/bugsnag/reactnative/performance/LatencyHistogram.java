@@ -0,0 +1,50 @@
+package com.bugsnag.reactnative.performance;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free latency histogram with power-of-two millisecond buckets: bucket 0 counts durations
+ * under 1ms, bucket {@code n} counts durations in {@code [2^(n-1), 2^n)} ms and the last bucket
+ * counts everything from {@code 2^(BUCKET_COUNT - 2)} ms upwards.
+ */
+final class LatencyHistogram {
+  static final int BUCKET_COUNT = 12;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong totalNanos = new AtomicLong();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  void record(long durationNanos) {
+    long durationMs = durationNanos / 1_000_000L;
+    int bucket = durationMs == 0 ? 0 : 64 - Long.numberOfLeadingZeros(durationMs);
+    buckets.incrementAndGet(Math.min(bucket, BUCKET_COUNT - 1));
+    totalNanos.addAndGet(durationNanos);
+
+    long max;
+    do {
+      max = maxNanos.get();
+    } while (durationNanos > max && !maxNanos.compareAndSet(max, durationNanos));
+  }
+
+  WritableMap toWritableMap() {
+    WritableArray bucketCounts = Arguments.createArray();
+    long count = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      long bucketCount = buckets.get(i);
+      bucketCounts.pushDouble((double) bucketCount);
+      count += bucketCount;
+    }
+
+    WritableMap map = Arguments.createMap();
+    map.putDouble("count", (double) count);
+    map.putDouble("meanMs", count > 0 ? totalNanos.get() / 1_000_000.0 / count : 0.0);
+    map.putDouble("maxMs", maxNanos.get() / 1_000_000.0);
+    map.putArray("buckets", bucketCounts);
+    return map;
+  }
+}
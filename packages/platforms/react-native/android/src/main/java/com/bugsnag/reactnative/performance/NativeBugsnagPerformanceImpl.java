@@ -1,34 +1,40 @@
 package com.bugsnag.reactnative.performance;
 
 import android.annotation.SuppressLint;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
 import android.os.Build;
+import android.os.Bundle;
 import android.os.Handler;
-import android.os.Looper;
-import android.os.SystemClock;
+import android.os.HandlerThread;
+import android.os.Process;
 
 import androidx.annotation.Nullable;
 
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 
 import java.io.File;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.security.SecureRandom;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.bugsnag.android.performance.SpanOptions;
 import com.bugsnag.android.performance.internal.BugsnagClock;
@@ -37,40 +43,136 @@ import com.bugsnag.android.performance.internal.SpanFactory;
 import com.bugsnag.android.performance.internal.SpanImpl;
 import com.bugsnag.android.performance.internal.BugsnagPerformanceImpl;
 import com.bugsnag.android.performance.internal.processing.ImmutableConfig;
+import com.bugsnag.reactnative.performance.FileOperationExecutor.FileOperation;
 
 @SuppressLint("RestrictedApi")
 class NativeBugsnagPerformanceImpl {
 
   static final String MODULE_NAME = "BugsnagReactNativePerformance";
 
+  /**
+   * AndroidManifest meta-data key to override how long (in milliseconds) a span started from JS
+   * can stay open before it is considered abandoned and discarded
+   */
+  private static final String MAX_OPEN_SPAN_AGE_META_DATA = "com.bugsnag.reactnative.performance.MAX_OPEN_SPAN_AGE_MS";
+
+  private static final long DEFAULT_MAX_OPEN_SPAN_AGE_MS = TimeUnit.HOURS.toMillis(1);
+
+  /**
+   * AndroidManifest meta-data key to override how many file operations can be queued on the
+   * file I/O thread before new operations are rejected
+   */
+  private static final String FILE_IO_QUEUE_DEPTH_META_DATA = "com.bugsnag.reactnative.performance.FILE_IO_QUEUE_DEPTH";
+
+  /**
+   * AndroidManifest meta-data key for the probability rules used to sample spans started from JS
+   * before they are created, see {@link NativeSpanSampler}
+   */
+  private static final String SPAN_SAMPLING_RULES_META_DATA = "com.bugsnag.reactnative.performance.SPAN_SAMPLING_RULES";
+
+  private static final String CLEANUP_THREAD_NAME = "Bugsnag RN Span Cleanup";
+
+  private static final String ENTROPY_THREAD_NAME = "Bugsnag RN Entropy";
+
+  private static final String DELIVERY_THREAD_NAME = "Bugsnag RN Delivery";
+
+  private static final String PERSISTENCE_THREAD_NAME = "Bugsnag RN Persistence";
+
+  private static final String ERROR_INVALID_PAYLOAD_FILE = "EFORMAT";
+
+  // batched span operation keys
+  private static final String OPERATION_TYPE = "type";
+  private static final String OPERATION_SPAN_ID = "spanId";
+  private static final String OPERATION_TRACE_ID = "traceId";
+  private static final String OPERATION_IDS = "ids";
+  private static final String OPERATION_END_TIME = "endTime";
+  private static final String OPERATION_ATTRIBUTES = "attributes";
+  private static final String OPERATION_COLUMNAR_ATTRIBUTES = "columnarAttributes";
+
+  // batched span operation types
+  private static final String OPERATION_END = "end";
+  private static final String OPERATION_DISCARD = "discard";
+
   private final ReactApplicationContext reactContext;
 
   private final SecureRandom random = new SecureRandom();
 
+  @Nullable
+  private Executor entropyExecutor;
+
+  @Nullable
+  private EntropyPool entropyPool;
+
+  @Nullable
+  private IdPool idPool;
+
   private boolean isNativePerformanceAvailable = false;
 
   private boolean isCleanupTaskScheduled = false;
 
   /**
-   * A map of open native spans, keyed by the span ID and trace ID,
+   * A table of open native spans, keyed by the span ID and trace ID,
    * so that they can be retrieved and closed/discarded from JS.
+   * Spans that are left open for longer than {@link #maxOpenSpanAgeMs} are discarded.
    */
-  private final ConcurrentHashMap<String, SpanImpl> openSpans = new ConcurrentHashMap<>();
+  private final ExpiringSpanTable openSpans = new ExpiringSpanTable();
+
+  /**
+   * The native default attributes of each open span, weakly keyed so that the entries of spans
+   * which are discarded or abandoned don't need to be removed
+   */
+  private final Map<SpanImpl, NativeDefaultAttributes> nativeDefaultAttributes =
+    Collections.synchronizedMap(new WeakHashMap<SpanImpl, NativeDefaultAttributes>());
+
+  private final long maxOpenSpanAgeMs;
+
+  private final AtomicLong abandonedSpanCount = new AtomicLong();
 
-  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final NativeSpanSampler spanSampler;
+
+  private final AtomicFileWriter fileWriter = new AtomicFileWriter();
+
+  private final FileOperationExecutor fileExecutor;
+
+  /**
+   * Payload deliveries are network bound, so they get their own thread rather than holding up
+   * file operations
+   */
+  private final Executor deliveryExecutor = Executors.newSingleThreadExecutor(
+    new BackgroundThreadFactory(DELIVERY_THREAD_NAME)
+  );
+
+  private final LatencyHistogram deliveryLatency = new LatencyHistogram();
+
+  @Nullable
+  private ScheduledExecutorService persistenceExecutor;
+
+  // retry queue indexes by absolute directory path
+  private final Map<String, RetryQueueIndex> retryQueueIndexes = new ConcurrentHashMap<>();
+
+  // persisted value stores by file path, guarded by 'this'
+  private final Map<String, PersistedValueStore> persistedValueStores = new HashMap<>();
+
+  @Nullable
+  private Handler cleanupHandler;
 
   private final Runnable spanCleanupTask = new Runnable() {
     @Override
     public void run() {
-      discardLongRunningSpans();
-      // Reschedule the task to run again after one hour
-      mainHandler.postDelayed(this, TimeUnit.HOURS.toMillis(1));
+      discardAbandonedSpans();
+      // Reschedule the task to run again when the next generation of spans is due to expire
+      cleanupHandler.postDelayed(this, ExpiringSpanTable.rotationIntervalMs(maxOpenSpanAgeMs));
     }
   };
 
   public NativeBugsnagPerformanceImpl(ReactApplicationContext reactContext) {
     this.reactContext = reactContext;
 
+    Bundle metaData = readMetaData(reactContext);
+    this.maxOpenSpanAgeMs = readMaxOpenSpanAge(metaData);
+    this.fileExecutor = createFileOperationExecutor(metaData);
+    this.spanSampler = NativeSpanSampler.fromRules(metaData != null ? metaData.getString(SPAN_SAMPLING_RULES_META_DATA) : null);
+
     try {
       BugsnagPerformanceImpl.INSTANCE.getInstrumentedAppState().getConfig$internal();
       isNativePerformanceAvailable = true;
@@ -111,22 +213,43 @@ class NativeBugsnagPerformanceImpl {
   }
 
   String requestEntropy() {
-    byte[] bytes = new byte[1024];
-    random.nextBytes(bytes);
-
-    StringBuilder hex = new StringBuilder(bytes.length * 2);
-    for(byte b : bytes) {
-        int byteValue = ((int)b & 0xff);
-        if(byteValue < 16) {
-            hex.append('0');
-        }
-        hex.append(Integer.toHexString(byteValue));
-    }
-    return hex.toString();
+    return getEntropyPool().take();
   }
 
   void requestEntropyAsync(Promise promise) {
-    promise.resolve(requestEntropy());
+    getEntropyPool().takeAsync(promise);
+  }
+
+  WritableArray generateIds(double count, double bits) {
+    return getIdPool().generateIds((int) count, (int) bits);
+  }
+
+  private synchronized IdPool getIdPool() {
+    if (idPool == null) {
+      idPool = new IdPool(random, getEntropyExecutor());
+    }
+
+    return idPool;
+  }
+
+  private synchronized EntropyPool getEntropyPool() {
+    if (entropyPool == null) {
+      entropyPool = new EntropyPool(random, getEntropyExecutor());
+    }
+
+    return entropyPool;
+  }
+
+  /**
+   * A single low priority thread shared by everything that draws on {@link SecureRandom}, so that
+   * seeding and generating random values never block the native modules thread.
+   */
+  private synchronized Executor getEntropyExecutor() {
+    if (entropyExecutor == null) {
+      entropyExecutor = Executors.newSingleThreadExecutor(new BackgroundThreadFactory(ENTROPY_THREAD_NAME));
+    }
+
+    return entropyExecutor;
   }
 
   boolean isNativePerformanceAvailable() {
@@ -145,10 +268,21 @@ class NativeBugsnagPerformanceImpl {
     }
 
     if (!isCleanupTaskScheduled) {
-      mainHandler.postDelayed(spanCleanupTask, TimeUnit.HOURS.toMillis(1));
+      HandlerThread cleanupThread = new HandlerThread(CLEANUP_THREAD_NAME, Process.THREAD_PRIORITY_BACKGROUND);
+      cleanupThread.start();
+      cleanupHandler = new Handler(cleanupThread.getLooper());
+      cleanupHandler.postDelayed(spanCleanupTask, ExpiringSpanTable.rotationIntervalMs(maxOpenSpanAgeMs));
       isCleanupTaskScheduled = true;
     }
 
+    AttributeLimits.set(
+      nativeConfig.getAttributeCountLimit(),
+      nativeConfig.getAttributeStringValueLimit(),
+      nativeConfig.getAttributeArrayLengthLimit()
+    );
+
+    spanSampler.setProbability(nativeConfig.getSamplingProbability());
+
     WritableMap result = Arguments.createMap();
     result.putString("apiKey", nativeConfig.getApiKey());
     result.putString("endpoint", nativeConfig.getEndpoint());
@@ -190,28 +324,50 @@ class NativeBugsnagPerformanceImpl {
       return null;
     }
 
+    // older JS layers don't understand unrecorded spans, so they are only sampled when asked to be
+    Double ruleProbability = null;
+    if (options.hasKey("sample") && options.getBoolean("sample")) {
+      String category = options.hasKey("category") ? options.getString("category") : null;
+      ruleProbability = spanSampler.getRuleProbability(name, category);
+
+      if (!spanSampler.shouldRecord(ruleProbability, getParentTraceId(options))) {
+        WritableMap unrecordedSpan = Arguments.createMap();
+        unrecordedSpan.putString("name", name);
+        unrecordedSpan.putBoolean("isRecorded", false);
+        return unrecordedSpan;
+      }
+    }
+
     SpanOptions spanOptions = readableMapToSpanOptions(options);
     SpanFactory spanFactory = BugsnagPerformanceImpl.INSTANCE.getSpanFactory();
     SpanImpl nativeSpan = spanFactory.createCustomSpan(name, spanOptions);
 
-    // all span attributes are set from JS, with the exception of the bugsnag.sampling.p attribute
-    // this needs to be preserved as it may not be re-populated when the span is processed
-    Iterator<Map.Entry<String, Object>> entries = nativeSpan.getAttributes().getEntries().iterator();
-    while (entries.hasNext()) {
-      Map.Entry<String, Object> entry = entries.next();
-      if (!entry.getKey().equals("bugsnag.sampling.p")) {
-        entries.remove();
-      }
+    // all span attributes are set from JS, so the native defaults are removed when the span ends
+    nativeDefaultAttributes.put(nativeSpan, NativeDefaultAttributes.capture(nativeSpan.getAttributes()));
+
+    // spans sampled by a rule are scaled by the rule probability rather than the configured one
+    if (ruleProbability != null) {
+      nativeSpan.getAttributes().set("bugsnag.sampling.p", ruleProbability.doubleValue());
     }
 
-    String spanKey = EncodingUtils.toHexString(nativeSpan.getSpanId()) + EncodingUtils.toHexString(nativeSpan.getTraceId());
-    openSpans.put(spanKey, nativeSpan);
+    openSpans.put(nativeSpan);
 
-    return nativeSpanToJsSpan(nativeSpan);
+    boolean usePackedIds = options.hasKey("packedIds") && options.getBoolean("packedIds");
+    return nativeSpanToJsSpan(nativeSpan, usePackedIds);
+  }
+
+  @Nullable
+  private static String getParentTraceId(ReadableMap options) {
+    ReadableMap parentContext;
+    if (options.hasKey("parentContext") && (parentContext = options.getMap("parentContext")) != null) {
+      return parentContext.getString("traceId");
+    }
+
+    return null;
   }
 
   void markNativeSpanEndTime(String spanId, String traceId, double endTime) {
-    SpanImpl nativeSpan = openSpans.get(spanId + traceId);
+    SpanImpl nativeSpan = openSpans.get(spanId, traceId);
     if (nativeSpan != null) {
       long nativeEndTime = BugsnagClock.INSTANCE.unixNanoTimeToElapsedRealtime((long)endTime);
       nativeSpan.markEndTime$internal(nativeEndTime);
@@ -219,29 +375,119 @@ class NativeBugsnagPerformanceImpl {
   }
 
   void endNativeSpan(String spanId, String traceId, double endTime, ReadableMap jsAttributes, Promise promise) {
-    SpanImpl nativeSpan = openSpans.remove(spanId + traceId);
-    if (nativeSpan == null) {
-      promise.resolve(null);
-      return;
+    endSpan(spanId, traceId, endTime, jsAttributes);
+    promise.resolve(null);
+  }
+
+  void discardNativeSpan(String spanId, String traceId, Promise promise) {
+    discardSpan(spanId, traceId);
+    promise.resolve(null);
+  }
+
+  /**
+   * Apply a batch of span operations queued by the JS span factory, so that
+   * ending and discarding many spans costs a single bridge call.
+   * Operations are applied in the order they were queued.
+   */
+  void applyNativeSpanOperations(ReadableArray operations, Promise promise) {
+    int size = operations.size();
+    for (int i = 0; i < size; i++) {
+      ReadableMap operation = operations.getMap(i);
+      if (operation == null || !operation.hasKey(OPERATION_TYPE)) {
+        continue;
+      }
+
+      String type = operation.getString(OPERATION_TYPE);
+      if (OPERATION_END.equals(type)) {
+        SpanImpl nativeSpan = removeOpenSpan(operation);
+        if (nativeSpan != null) {
+          if (operation.hasKey(OPERATION_COLUMNAR_ATTRIBUTES)) {
+            ReadableMap columns = operation.getMap(OPERATION_COLUMNAR_ATTRIBUTES);
+            if (columns != null) {
+              removeNativeDefaultAttributes(nativeSpan);
+              ReactNativeSpanAttributes.setAttributesFromColumns(nativeSpan.getAttributes(), columns);
+            }
+            endSpan(nativeSpan, operation.getDouble(OPERATION_END_TIME), null);
+          } else {
+            ReadableMap attributes = operation.hasKey(OPERATION_ATTRIBUTES) ? operation.getMap(OPERATION_ATTRIBUTES) : null;
+            endSpan(nativeSpan, operation.getDouble(OPERATION_END_TIME), attributes);
+          }
+        }
+      } else if (OPERATION_DISCARD.equals(type)) {
+        SpanImpl nativeSpan = removeOpenSpan(operation);
+        if (nativeSpan != null) {
+          nativeSpan.discard();
+        }
+      }
+    }
+
+    promise.resolve(null);
+  }
+
+  boolean isAttributeEncodingSupported(String encoding) {
+    return ReactNativeSpanAttributes.COLUMNAR_ENCODING.equals(encoding);
+  }
+
+  /**
+   * Remove the open span targeted by a batched operation, using its packed IDs if it has them
+   * or falling back to the hex encoded IDs otherwise.
+   */
+  @Nullable
+  private SpanImpl removeOpenSpan(ReadableMap operation) {
+    if (operation.hasKey(OPERATION_IDS)) {
+      ReadableArray ids = operation.getArray(OPERATION_IDS);
+      if (ids == null || ids.size() < PackedSpanIds.LENGTH) {
+        return null;
+      }
+
+      long spanId = PackedSpanIds.readLong(ids, PackedSpanIds.SPAN_ID_INDEX);
+      long traceIdHi = PackedSpanIds.readLong(ids, PackedSpanIds.TRACE_ID_HI_INDEX);
+      long traceIdLo = PackedSpanIds.readLong(ids, PackedSpanIds.TRACE_ID_LO_INDEX);
+      return openSpans.remove(spanId, traceIdHi, traceIdLo);
+    }
+
+    if (!operation.hasKey(OPERATION_SPAN_ID) || !operation.hasKey(OPERATION_TRACE_ID)) {
+      return null;
+    }
+
+    String spanId = operation.getString(OPERATION_SPAN_ID);
+    String traceId = operation.getString(OPERATION_TRACE_ID);
+    return openSpans.remove(spanId, traceId);
+  }
+
+  private void endSpan(String spanId, String traceId, double endTime, @Nullable ReadableMap jsAttributes) {
+    SpanImpl nativeSpan = openSpans.remove(spanId, traceId);
+    if (nativeSpan != null) {
+      endSpan(nativeSpan, endTime, jsAttributes);
+    }
+  }
+
+  private void endSpan(SpanImpl nativeSpan, double endTime, @Nullable ReadableMap jsAttributes) {
+    removeNativeDefaultAttributes(nativeSpan);
+    if (jsAttributes != null) {
+      ReactNativeSpanAttributes.setAttributesFromReadableMap(nativeSpan.getAttributes(), jsAttributes);
     }
 
-    ReactNativeSpanAttributes.setAttributesFromReadableMap(nativeSpan.getAttributes(), jsAttributes);
     long nativeEndTime = BugsnagClock.INSTANCE.unixNanoTimeToElapsedRealtime((long)endTime);
     if (nativeEndTime > nativeSpan.getEndTime$internal()) {
       nativeSpan.markEndTime$internal(nativeEndTime);
     }
 
     nativeSpan.sendForProcessing$internal();
-    promise.resolve(null);
   }
 
-  void discardNativeSpan(String spanId, String traceId, Promise promise) {
-    SpanImpl nativeSpan = openSpans.remove(spanId + traceId);
+  private void removeNativeDefaultAttributes(SpanImpl nativeSpan) {
+    NativeDefaultAttributes defaults = nativeDefaultAttributes.remove(nativeSpan);
+    if (defaults != null) {
+      defaults.removeFrom(nativeSpan.getAttributes());
+    }
+  }
+
+  private void discardSpan(String spanId, String traceId) {
+    SpanImpl nativeSpan = openSpans.remove(spanId, traceId);
     if (nativeSpan != null) {
       nativeSpan.discard();
     }
-
-    promise.resolve(null);
   }
 
   void endNativeAppStart(double endTime, Promise promise) {
@@ -253,15 +499,21 @@ class NativeBugsnagPerformanceImpl {
     promise.resolve(null);
   }
 
-  private WritableMap nativeSpanToJsSpan(SpanImpl nativeSpan) {
+  private WritableMap nativeSpanToJsSpan(SpanImpl nativeSpan, boolean usePackedIds) {
     WritableMap span = Arguments.createMap();
     span.putString("name", nativeSpan.getName());
-    span.putString("id", EncodingUtils.toHexString(nativeSpan.getSpanId()));
-    span.putString("traceId", EncodingUtils.toHexString(nativeSpan.getTraceId()));
 
     long unixNanoStartTime = BugsnagClock.INSTANCE.elapsedNanosToUnixTime(nativeSpan.getStartTime$internal());
     span.putDouble("startTime", (double)unixNanoStartTime);
 
+    if (usePackedIds) {
+      span.putArray("ids", PackedSpanIds.pack(nativeSpan));
+      return span;
+    }
+
+    span.putString("id", EncodingUtils.toHexString(nativeSpan.getSpanId()));
+    span.putString("traceId", EncodingUtils.toHexString(nativeSpan.getTraceId()));
+
     long parentSpanId = nativeSpan.getParentSpanId();
     if (parentSpanId != 0L) {
       span.putString("parentSpanId", EncodingUtils.toHexString(parentSpanId));
@@ -295,17 +547,96 @@ class NativeBugsnagPerformanceImpl {
     return spanOptions;
   }
 
-  private void discardLongRunningSpans() {
-    long oneHourAgo = SystemClock.elapsedRealtimeNanos() - TimeUnit.HOURS.toNanos(1);
-    Iterator<Map.Entry<String, SpanImpl>> entries = openSpans.entrySet().iterator();
-    while (entries.hasNext()) {
-      Map.Entry<String, SpanImpl> entry = entries.next();
-      SpanImpl span = entry.getValue();
-      if (span.getStartTime$internal() < oneHourAgo) {
-        entries.remove();
-        span.discard();
+  private void discardAbandonedSpans() {
+    List<SpanImpl> abandonedSpans = openSpans.expireOldestGeneration();
+    for (SpanImpl span : abandonedSpans) {
+      span.discard();
+    }
+
+    abandonedSpanCount.addAndGet(abandonedSpans.size());
+  }
+
+  WritableMap getNativeMetrics() {
+    WritableMap metrics = Arguments.createMap();
+    metrics.putDouble("abandonedSpanCount", (double) abandonedSpanCount.get());
+    fileWriter.putMetrics(metrics);
+    fileExecutor.putMetrics(metrics);
+    AttributeLimits.putMetrics(metrics);
+    AttributeInterner.putMetrics(metrics);
+    spanSampler.putMetrics(metrics);
+    metrics.putMap("payloadDeliveryLatency", deliveryLatency.toWritableMap());
+
+    EntropyPool entropyPool;
+    long persistedValueWriteCount = 0;
+    long persistedValueFlushCount = 0;
+    synchronized (this) {
+      entropyPool = this.entropyPool;
+
+      for (PersistedValueStore store : persistedValueStores.values()) {
+        persistedValueWriteCount += store.getWriteCount();
+        persistedValueFlushCount += store.getFlushCount();
+      }
+    }
+
+    long retryQueueCount = 0;
+    long retryQueueBytes = 0;
+    long retryQueueEvictedCount = 0;
+    long retryQueueEvictedBytes = 0;
+    for (RetryQueueIndex index : retryQueueIndexes.values()) {
+      retryQueueCount += index.getCount();
+      retryQueueBytes += index.getTotalBytes();
+      retryQueueEvictedCount += index.getEvictedCount();
+      retryQueueEvictedBytes += index.getEvictedBytes();
+    }
+
+    metrics.putDouble("retryQueueCount", (double) retryQueueCount);
+    metrics.putDouble("retryQueueBytes", (double) retryQueueBytes);
+    metrics.putDouble("retryQueueEvictedCount", (double) retryQueueEvictedCount);
+    metrics.putDouble("retryQueueEvictedBytes", (double) retryQueueEvictedBytes);
+    metrics.putDouble("persistedValueWriteCount", (double) persistedValueWriteCount);
+    metrics.putDouble("persistedValueFlushCount", (double) persistedValueFlushCount);
+
+    if (entropyPool != null) {
+      entropyPool.putMetrics(metrics);
+    }
+    return metrics;
+  }
+
+  @Nullable
+  private static Bundle readMetaData(ReactApplicationContext reactContext) {
+    try {
+      ApplicationInfo appInfo = reactContext.getPackageManager()
+        .getApplicationInfo(reactContext.getPackageName(), PackageManager.GET_META_DATA);
+
+      return appInfo.metaData;
+    } catch (Exception e) {
+      // ignore, use the defaults
+      return null;
+    }
+  }
+
+  private static long readMaxOpenSpanAge(@Nullable Bundle metaData) {
+    if (metaData != null) {
+      long maxAgeMs = metaData.getInt(MAX_OPEN_SPAN_AGE_META_DATA, 0);
+      if (maxAgeMs > 0) {
+        return maxAgeMs;
       }
     }
+
+    return DEFAULT_MAX_OPEN_SPAN_AGE_MS;
+  }
+
+  private static FileOperationExecutor createFileOperationExecutor(@Nullable Bundle metaData) {
+    int queueDepth = FileOperationExecutor.DEFAULT_QUEUE_DEPTH;
+
+    if (metaData != null) {
+      int configuredDepth = metaData.getInt(FILE_IO_QUEUE_DEPTH_META_DATA, 0);
+      if (configuredDepth > 0) {
+        queueDepth = configuredDepth;
+      }
+    }
+
+    return new FileOperationExecutor(queueDepth);
   }
 
   WritableMap getNativeConstants() {
@@ -316,98 +647,227 @@ class NativeBugsnagPerformanceImpl {
     return map;
   }
 
-  void exists(String path, Promise promise) {
-    try {
-      boolean result = new File(path).exists();
-      promise.resolve(result);
-    } catch(Exception e) {
-      promise.reject(e);
-    }
+  void exists(final String path, Promise promise) {
+    fileExecutor.execute("exists", promise, new FileOperation() {
+      @Override
+      public void run(Promise promise) {
+        promise.resolve(new File(path).exists());
+      }
+    });
   }
 
-  void isDir(String path, Promise promise) {
-    try {
-      boolean result = new File(path).isDirectory();
-      promise.resolve(result);
-    } catch(Exception e) {
-      promise.reject(e);
-    }
+  void isDir(final String path, Promise promise) {
+    fileExecutor.execute("isDir", promise, new FileOperation() {
+      @Override
+      public void run(Promise promise) {
+        promise.resolve(new File(path).isDirectory());
+      }
+    });
   }
 
-  void ls(String path, Promise promise) {
-    try {
-      String[] files = new File(path).list();
-      WritableArray resultArray = Arguments.createArray();
-      for (String file : files) {
-        resultArray.pushString(file);
+  void ls(final String path, Promise promise) {
+    fileExecutor.execute("ls", promise, new FileOperation() {
+      @Override
+      public void run(Promise promise) {
+        File[] files = new File(path).listFiles();
+        WritableArray resultArray = Arguments.createArray();
+        for (File file : files) {
+          // hide any in-progress (or abandoned) atomic writes
+          if (!fileWriter.isTempFile(file)) {
+            resultArray.pushString(file.getName());
+          }
+        }
+
+        promise.resolve(resultArray);
       }
+    });
+  }
 
-      promise.resolve(resultArray);
-    } catch(Exception e) {
-      promise.reject(e);
-    }
+  void listFiles(final String path, Promise promise) {
+    fileExecutor.execute("listFiles", promise, new FileOperation() {
+      @Override
+      public void run(Promise promise) {
+        promise.resolve(FileListing.list(path, fileWriter));
+      }
+    });
   }
 
-  void mkdir(String path, Promise promise) {
-    try {
-      File file = new File(path);
-      if (file.exists()) {
-        promise.reject("EEXIST", new Exception("Already exists."));
-        return;
+  void mkdir(final String path, Promise promise) {
+    fileExecutor.execute("mkdir", promise, new FileOperation() {
+      @Override
+      public void run(Promise promise) {
+        File file = new File(path);
+        if (file.exists()) {
+          promise.reject("EEXIST", new Exception("Already exists."));
+          return;
+        }
+
+        boolean result = file.mkdirs();
+        if (result) {
+          promise.resolve(path);
+        } else {
+          promise.reject("EPERM", new Exception("Failed to create directory"));
+        }
       }
+    });
+  }
 
-      boolean result = file.mkdirs();
-      if (result) {
-        promise.resolve(path);
-      } else {
-        promise.reject("EPERM", new Exception("Failed to create directory"));
+  void readFile(final String path, final String encoding, Promise promise) {
+    fileExecutor.execute(operationName("readFile", encoding), promise, new FileOperation() {
+      @Override
+      public void run(Promise promise) throws Exception {
+        promise.resolve(FileContents.read(new File(path), encoding));
       }
-    } catch(Exception e) {
-      promise.reject(e);
-    }
-  }
-
-  void readFile(String path, String encoding, Promise promise) {
-    File file = new File(path);
-    StringBuilder fileContent = new StringBuilder((int) file.length());
-    try(
-      FileInputStream fin = new FileInputStream(file);
-      InputStreamReader isr = new InputStreamReader(fin, encoding);
-    ) {
-      char[] buffer = new char[4096];
-      int charsRead = 0;
-      while ((charsRead = isr.read(buffer)) != -1) {
-        fileContent.append(buffer, 0, charsRead);
+    });
+  }
+
+  void unlink(final String path, Promise promise) {
+    fileExecutor.execute("unlink", promise, new FileOperation() {
+      @Override
+      public void run(Promise promise) {
+        File file = new File(path);
+        boolean result = file.delete();
+        if (result) {
+          onFileRemoved(file);
+          promise.resolve(null);
+        } else {
+          promise.reject(new Exception("Failed to delete file/directory"));
+        }
       }
-      promise.resolve(fileContent.toString());
-    } catch (Exception e) {
-      promise.reject(e);
+    });
+  }
+
+  void writeFile(final String path, final String data, final String encoding, Promise promise) {
+    fileExecutor.execute(operationName("writeFile", encoding), promise, new FileOperation() {
+      @Override
+      public void run(Promise promise) throws Exception {
+        fileWriter.write(path, data, encoding);
+        onFileWritten(new File(path));
+        promise.resolve(null);
+      }
+    });
+  }
+
+  void openRetryQueue(final String path, final double maxBytes, final double maxCount, Promise promise) {
+    fileExecutor.execute("openRetryQueue", promise, new FileOperation() {
+      @Override
+      public void run(Promise promise) {
+        File directory = new File(path).getAbsoluteFile();
+        RetryQueueIndex index = new RetryQueueIndex(directory, (long) maxBytes, (int) maxCount, fileWriter);
+        retryQueueIndexes.put(directory.getPath(), index);
+
+        WritableMap result = Arguments.createMap();
+        result.putDouble("count", (double) index.getCount());
+        result.putDouble("totalBytes", (double) index.getTotalBytes());
+        promise.resolve(result);
+      }
+    });
+  }
+
+  void nextRetryQueueFile(String path, @Nullable String previous, Promise promise) {
+    RetryQueueIndex index = retryQueueIndexes.get(new File(path).getAbsolutePath());
+    if (index == null) {
+      promise.reject("ENOENT", new Exception("Retry queue has not been opened: " + path));
+      return;
     }
+
+    promise.resolve(index.next(previous));
   }
 
-  void unlink(String path, Promise promise) {
-    try {
-      boolean result = new File(path).delete();
-      if (result) {
+  private void onFileWritten(File file) {
+    RetryQueueIndex index = retryQueueIndexes.get(file.getAbsoluteFile().getParent());
+    if (index != null) {
+      index.fileWritten(file.getName(), file.length());
+    }
+  }
+
+  private void onFileRemoved(File file) {
+    RetryQueueIndex index = retryQueueIndexes.get(file.getAbsoluteFile().getParent());
+    if (index != null) {
+      index.fileRemoved(file.getName());
+    }
+  }
+
+  boolean isFileEncodingSupported(String encoding) {
+    return FileContents.isEncodingSupported(encoding);
+  }
+
+  /**
+   * Compressed reads & writes are tracked separately so that their latency can be compared with
+   * uncompressed ones
+   */
+  private static String operationName(String operation, String encoding) {
+    return FileContents.ENCODING_GZIP.equals(encoding) ? operation + "Gzip" : operation;
+  }
+
+  void writePayloadFile(final String path, final ReadableMap headers, final String body, Promise promise) {
+    fileExecutor.execute("writePayloadFile", promise, new FileOperation() {
+      @Override
+      public void run(Promise promise) throws Exception {
+        fileWriter.write(path, PayloadFile.encode(toStringMap(headers), fileWriter.gzip(body)));
+        onFileWritten(new File(path));
         promise.resolve(null);
-      } else {
-        promise.reject(new Exception("Failed to delete file/directory"));
       }
-    } catch(Exception e) {
-      promise.reject(e);
+    });
+  }
+
+  void deliverPayloadFile(final String path, final String endpoint, final ReadableMap headers, final Promise promise) {
+    final Map<String, String> extraHeaders = toStringMap(headers);
+    deliveryExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        long startTime = System.nanoTime();
+        try {
+          promise.resolve(PayloadFile.deliver(new File(path), endpoint, extraHeaders));
+        } catch (PayloadFile.InvalidPayloadFileException e) {
+          promise.reject(ERROR_INVALID_PAYLOAD_FILE, e);
+        } catch (Exception e) {
+          promise.reject(e);
+        } finally {
+          deliveryLatency.record(System.nanoTime() - startTime);
+        }
+      }
+    });
+  }
+
+  WritableMap getPersistedValues(String path) {
+    return getPersistedValueStore(path).getValues();
+  }
+
+  void setPersistedValue(String path, String key, String value, final Promise promise) {
+    getPersistedValueStore(path).setValue(key, value, new PersistedValueStore.WriteCallback() {
+      @Override
+      public void onWriteComplete(boolean isWritten) {
+        promise.resolve(isWritten);
+      }
+    });
+  }
+
+  private synchronized PersistedValueStore getPersistedValueStore(String path) {
+    PersistedValueStore store = persistedValueStores.get(path);
+    if (store == null) {
+      if (persistenceExecutor == null) {
+        persistenceExecutor = Executors.newSingleThreadScheduledExecutor(
+          new BackgroundThreadFactory(PERSISTENCE_THREAD_NAME)
+        );
+      }
+
+      store = new PersistedValueStore(new File(path), fileWriter, persistenceExecutor);
+      persistedValueStores.put(path, store);
     }
+
+    return store;
   }
 
-  void writeFile(String path, String data, String encoding, Promise promise) {
-    try(
-      FileOutputStream fout = new FileOutputStream(path);
-      Writer w = new OutputStreamWriter(fout, encoding);
-    ) {
-      w.write(data);
-      promise.resolve(null);
-    } catch (Exception e) {
-      promise.reject(e);
+  private static Map<String, String> toStringMap(ReadableMap map) {
+    Map<String, String> result = new LinkedHashMap<>();
+    for (Map.Entry<String, Object> entry : map.toHashMap().entrySet()) {
+      if (entry.getValue() != null) {
+        result.put(entry.getKey(), String.valueOf(entry.getValue()));
+      }
     }
+
+    return result;
   }
 
   @Nullable
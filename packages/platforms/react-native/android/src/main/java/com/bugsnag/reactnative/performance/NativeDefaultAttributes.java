@@ -0,0 +1,65 @@
+package com.bugsnag.reactnative.performance;
+
+import com.bugsnag.android.performance.internal.Attributes;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The default attributes the native SDK gave a span that mirrors a JS span. All of a mirrored
+ * span's attributes are set from JS, so the defaults are removed when the span ends rather than
+ * while JS is blocked starting it, and spans that are discarded never pay for removing them.
+ *
+ * Only the captured keys are removed, and only while they still hold the captured value, so that
+ * attributes set natively while the span was open (for example by the span access plugin) are kept.
+ * The bugsnag.sampling.p attribute is never removed, as it may not be re-populated when the span
+ * is processed.
+ */
+final class NativeDefaultAttributes {
+  private static final String SAMPLING_PROBABILITY = "bugsnag.sampling.p";
+
+  // alternating keys and values, which is cheaper to capture than a map
+  private final Object[] keysAndValues;
+
+  private NativeDefaultAttributes(Object[] keysAndValues) {
+    this.keysAndValues = keysAndValues;
+  }
+
+  static NativeDefaultAttributes capture(Attributes attributes) {
+    Collection<Map.Entry<String, Object>> entries = attributes.getEntries();
+    Object[] keysAndValues = new Object[entries.size() * 2];
+    int index = 0;
+    for (Map.Entry<String, Object> entry : entries) {
+      if (index == keysAndValues.length) {
+        break;
+      }
+
+      keysAndValues[index++] = entry.getKey();
+      keysAndValues[index++] = entry.getValue();
+    }
+
+    return new NativeDefaultAttributes(keysAndValues);
+  }
+
+  void removeFrom(Attributes attributes) {
+    Iterator<Map.Entry<String, Object>> entries = attributes.getEntries().iterator();
+    while (entries.hasNext()) {
+      Map.Entry<String, Object> entry = entries.next();
+      if (!entry.getKey().equals(SAMPLING_PROBABILITY) && isDefault(entry.getKey(), entry.getValue())) {
+        entries.remove();
+      }
+    }
+  }
+
+  private boolean isDefault(String key, Object value) {
+    for (int i = 0; i < keysAndValues.length; i += 2) {
+      if (key.equals(keysAndValues[i])) {
+        // a new value means the attribute was set after the span started
+        return value == keysAndValues[i + 1];
+      }
+    }
+
+    return false;
+  }
+}
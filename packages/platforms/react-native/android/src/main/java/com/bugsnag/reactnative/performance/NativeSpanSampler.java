@@ -0,0 +1,173 @@
+package com.bugsnag.reactnative.performance;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether a span started from JS should be recorded at all, before any native span is
+ * created for it. Spans that are not recorded never reach the native SDK, so they cost nothing
+ * beyond the decision itself.
+ *
+ * The probability for a span comes from the first rule that matches its name, then its category,
+ * and is capped by the sampling probability from the native configuration. Rules are read from
+ * AndroidManifest meta-data as {@code ;} separated entries, for example:
+ * {@code name:LoadFeed=0.1;category:custom=0.5}
+ *
+ * When the span has a parent the decision is based on its trace ID, in the same way as the JS SDK
+ * samples spans, so that every span in a trace gets the same decision. Root spans don't have a
+ * trace ID until the native span is created, so they are only sampled here if a rule matches them.
+ * The native SDK still samples them at the configured probability, so they are sampled here at the
+ * ratio that leaves their combined probability the same as the rule's.
+ *
+ * A span sampled by a rule should have its {@code bugsnag.sampling.p} attribute set to the rule
+ * probability, so that it is scaled correctly once it has been received.
+ */
+final class NativeSpanSampler {
+  static final String DEFAULT_CATEGORY = "custom";
+
+  private static final String RULE_SEPARATOR = ";";
+  private static final String NAME_RULE_PREFIX = "name:";
+  private static final String CATEGORY_RULE_PREFIX = "category:";
+
+  private static final long MAX_SAMPLING_VALUE = 0xffffffffL;
+
+  private final Map<String, Double> nameRules;
+  private final Map<String, Double> categoryRules;
+
+  private final Random random;
+
+  private volatile double probability = 1.0;
+
+  private final AtomicLong unsampledSpanCount = new AtomicLong();
+
+  private NativeSpanSampler(Map<String, Double> nameRules, Map<String, Double> categoryRules, Random random) {
+    this.nameRules = nameRules;
+    this.categoryRules = categoryRules;
+    this.random = random;
+  }
+
+  /**
+   * Parse the sampling rules, ignoring any entries that are not valid
+   */
+  static NativeSpanSampler fromRules(@Nullable String rules) {
+    return fromRules(rules, new Random());
+  }
+
+  static NativeSpanSampler fromRules(@Nullable String rules, Random random) {
+    Map<String, Double> nameRules = new HashMap<>();
+    Map<String, Double> categoryRules = new HashMap<>();
+
+    if (rules != null) {
+      for (String rule : rules.split(RULE_SEPARATOR)) {
+        // span names may contain '=' so the probability follows the last one
+        int separator = rule.lastIndexOf('=');
+        if (separator < 0) {
+          continue;
+        }
+
+        String key = rule.substring(0, separator).trim();
+        Double ruleProbability = parseProbability(rule.substring(separator + 1).trim());
+        if (ruleProbability == null) {
+          continue;
+        }
+
+        if (key.startsWith(NAME_RULE_PREFIX)) {
+          nameRules.put(key.substring(NAME_RULE_PREFIX.length()), ruleProbability);
+        } else if (key.startsWith(CATEGORY_RULE_PREFIX)) {
+          categoryRules.put(key.substring(CATEGORY_RULE_PREFIX.length()), ruleProbability);
+        }
+      }
+    }
+
+    return new NativeSpanSampler(nameRules, categoryRules, random);
+  }
+
+  @Nullable
+  private static Double parseProbability(String value) {
+    try {
+      double parsed = Double.parseDouble(value);
+      if (parsed >= 0.0 && parsed <= 1.0) {
+        return parsed;
+      }
+    } catch (NumberFormatException e) {
+      // ignore the rule
+    }
+
+    return null;
+  }
+
+  /**
+   * Set the sampling probability from the native configuration, {@code null} leaves sampling to
+   * the native SDK
+   */
+  void setProbability(@Nullable Double probability) {
+    this.probability = probability != null ? probability : 1.0;
+  }
+
+  /**
+   * Returns the probability of the first rule that matches a span, capped by the configured
+   * sampling probability, or {@code null} if no rule matches
+   *
+   * @param category the category of the span, or {@code null} for custom spans
+   */
+  @Nullable
+  Double getRuleProbability(String name, @Nullable String category) {
+    Double ruleProbability = nameRules.get(name);
+    if (ruleProbability == null) {
+      ruleProbability = categoryRules.get(category != null ? category : DEFAULT_CATEGORY);
+    }
+
+    return ruleProbability != null ? Math.min(ruleProbability, probability) : null;
+  }
+
+  /**
+   * Returns true if a span should be recorded
+   *
+   * @param ruleProbability the probability from {@link #getRuleProbability}, or {@code null} if no
+   *                        rule matches the span
+   * @param traceId         the hex encoded trace ID of the span's parent, or {@code null} for root
+   *                        spans
+   */
+  boolean shouldRecord(@Nullable Double ruleProbability, @Nullable String traceId) {
+    long samplingValue;
+    double spanProbability;
+    if (traceId != null && HexEncoding.isValidTraceId(traceId)) {
+      samplingValue = traceIdToSamplingValue(traceId);
+      spanProbability = ruleProbability != null ? ruleProbability : probability;
+    } else if (ruleProbability != null) {
+      // the native SDK samples the span again at the configured probability
+      samplingValue = random.nextInt() & MAX_SAMPLING_VALUE;
+      spanProbability = probability > 0.0 ? ruleProbability / probability : 0.0;
+    } else {
+      return true;
+    }
+
+    if (samplingValue <= (long) Math.floor(spanProbability * MAX_SAMPLING_VALUE)) {
+      return true;
+    }
+
+    unsampledSpanCount.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * The same sampling value that the JS SDK derives from a trace ID: each 32 bit segment of the
+   * trace ID XOR'd together
+   */
+  static long traceIdToSamplingValue(String traceId) {
+    long high = HexEncoding.parseUnsignedHexLong(traceId, 0, HexEncoding.SPAN_ID_LENGTH);
+    long low = HexEncoding.parseUnsignedHexLong(traceId, HexEncoding.SPAN_ID_LENGTH, HexEncoding.TRACE_ID_LENGTH);
+    long folded = high ^ low;
+    return ((folded >>> 32) ^ folded) & MAX_SAMPLING_VALUE;
+  }
+
+  void putMetrics(WritableMap metrics) {
+    metrics.putDouble("unsampledSpanCount", (double) unsampledSpanCount.get());
+  }
+}
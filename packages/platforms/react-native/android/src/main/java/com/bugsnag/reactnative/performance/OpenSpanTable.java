@@ -0,0 +1,242 @@
+package com.bugsnag.reactnative.performance;
+
+import android.annotation.SuppressLint;
+
+import androidx.annotation.Nullable;
+
+import com.bugsnag.android.performance.Span;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * An open-addressing (linear probing) table of open native spans keyed directly on the 64 bit
+ * span ID and the two 64 bit halves of the trace ID. Unlike a {@code Map<String, SpanImpl>} no
+ * key objects are allocated to store or look up a span.
+ *
+ * Spans are started and ended from the JS thread, but are also expired from a background thread
+ * (see {@link ExpiringSpanTable}), so all access is guarded by the table's monitor. The critical
+ * sections are a handful of array reads so contention is negligible.
+ *
+ * This is public so that the native spans plugin can index spans with the same table.
+ */
+@SuppressLint("RestrictedApi")
+public final class OpenSpanTable<S extends Span> {
+  private static final int INITIAL_CAPACITY = 64;
+
+  /**
+   * Each slot stores its key as three consecutive longs: spanId, traceIdHi, traceIdLo
+   */
+  private static final int KEY_STRIDE = 3;
+
+  private long[] keys;
+  private Object[] values;
+  private int size;
+
+  public OpenSpanTable() {
+    keys = new long[INITIAL_CAPACITY * KEY_STRIDE];
+    values = new Object[INITIAL_CAPACITY];
+  }
+
+  public void put(S span) {
+    UUID traceId = span.getTraceId();
+    put(span.getSpanId(), traceId.getMostSignificantBits(), traceId.getLeastSignificantBits(), span);
+  }
+
+  synchronized void put(long spanId, long traceIdHi, long traceIdLo, S span) {
+    if ((size + 1) * 2 > values.length) {
+      resize(values.length * 2);
+    }
+
+    int slot = findSlot(spanId, traceIdHi, traceIdLo);
+    if (values[slot] == null) {
+      size++;
+    }
+
+    setSlot(slot, spanId, traceIdHi, traceIdLo, span);
+  }
+
+  @Nullable
+  synchronized S get(long spanId, long traceIdHi, long traceIdLo) {
+    return valueAt(findSlot(spanId, traceIdHi, traceIdLo));
+  }
+
+  @Nullable
+  public synchronized S remove(long spanId, long traceIdHi, long traceIdLo) {
+    int slot = findSlot(spanId, traceIdHi, traceIdLo);
+    S span = valueAt(slot);
+    if (span != null) {
+      deleteSlot(slot);
+    }
+
+    return span;
+  }
+
+  /**
+   * Remove {@code span}, if it is still the span stored under its IDs.
+   * @return true if the span was removed
+   */
+  public synchronized boolean remove(S span) {
+    UUID traceId = span.getTraceId();
+    int slot = findSlot(span.getSpanId(), traceId.getMostSignificantBits(), traceId.getLeastSignificantBits());
+    if (values[slot] != span) {
+      return false;
+    }
+
+    deleteSlot(slot);
+    return true;
+  }
+
+  /**
+   * Look up a span using the hex encoded IDs passed from JS, without allocating any key objects.
+   */
+  @Nullable
+  public S get(String spanId, String traceId) {
+    if (!HexEncoding.isValidSpanId(spanId) || !HexEncoding.isValidTraceId(traceId)) {
+      return null;
+    }
+
+    try {
+      return get(
+        HexEncoding.parseUnsignedHexLong(spanId, 0, HexEncoding.SPAN_ID_LENGTH),
+        HexEncoding.parseUnsignedHexLong(traceId, 0, HexEncoding.SPAN_ID_LENGTH),
+        HexEncoding.parseUnsignedHexLong(traceId, HexEncoding.SPAN_ID_LENGTH, HexEncoding.TRACE_ID_LENGTH)
+      );
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Remove a span using the hex encoded IDs passed from JS, without allocating any key objects.
+   */
+  @Nullable
+  S remove(String spanId, String traceId) {
+    if (!HexEncoding.isValidSpanId(spanId) || !HexEncoding.isValidTraceId(traceId)) {
+      return null;
+    }
+
+    try {
+      return remove(
+        HexEncoding.parseUnsignedHexLong(spanId, 0, HexEncoding.SPAN_ID_LENGTH),
+        HexEncoding.parseUnsignedHexLong(traceId, 0, HexEncoding.SPAN_ID_LENGTH),
+        HexEncoding.parseUnsignedHexLong(traceId, HexEncoding.SPAN_ID_LENGTH, HexEncoding.TRACE_ID_LENGTH)
+      );
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Remove all of the spans in this table.
+   * @return the removed spans
+   */
+  synchronized List<S> removeAll() {
+    List<S> removed = new ArrayList<>(size);
+    for (int i = 0; i < values.length; i++) {
+      S span = valueAt(i);
+      if (span != null) {
+        removed.add(span);
+      }
+    }
+
+    // start again from the initial capacity so a burst of spans doesn't keep the table large
+    keys = new long[INITIAL_CAPACITY * KEY_STRIDE];
+    values = new Object[INITIAL_CAPACITY];
+    size = 0;
+    return removed;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  @SuppressWarnings("unchecked")
+  private S valueAt(int slot) {
+    return (S) values[slot];
+  }
+
+  private int findSlot(long spanId, long traceIdHi, long traceIdLo) {
+    int mask = values.length - 1;
+    int slot = hash(spanId, traceIdHi, traceIdLo) & mask;
+    while (values[slot] != null && !keyEquals(slot, spanId, traceIdHi, traceIdLo)) {
+      slot = (slot + 1) & mask;
+    }
+
+    return slot;
+  }
+
+  private boolean keyEquals(int slot, long spanId, long traceIdHi, long traceIdLo) {
+    int keyIndex = slot * KEY_STRIDE;
+    return keys[keyIndex] == spanId
+      && keys[keyIndex + 1] == traceIdHi
+      && keys[keyIndex + 2] == traceIdLo;
+  }
+
+  private void setSlot(int slot, long spanId, long traceIdHi, long traceIdLo, Object span) {
+    int keyIndex = slot * KEY_STRIDE;
+    keys[keyIndex] = spanId;
+    keys[keyIndex + 1] = traceIdHi;
+    keys[keyIndex + 2] = traceIdLo;
+    values[slot] = span;
+  }
+
+  /**
+   * Backward-shift deletion: move any following entries in the same probe sequence back into the
+   * freed slot so that lookups never need tombstones.
+   */
+  private void deleteSlot(int slot) {
+    int mask = values.length - 1;
+    int hole = slot;
+    int next = (hole + 1) & mask;
+
+    while (values[next] != null) {
+      int keyIndex = next * KEY_STRIDE;
+      int home = hash(keys[keyIndex], keys[keyIndex + 1], keys[keyIndex + 2]) & mask;
+
+      // the entry at 'next' can move into the hole unless its home slot lies cyclically in (hole, next]
+      boolean homeInRange = hole <= next
+        ? (home > hole && home <= next)
+        : (home > hole || home <= next);
+
+      if (!homeInRange) {
+        setSlot(hole, keys[keyIndex], keys[keyIndex + 1], keys[keyIndex + 2], values[next]);
+        hole = next;
+      }
+
+      next = (next + 1) & mask;
+    }
+
+    values[hole] = null;
+    size--;
+  }
+
+  private void resize(int newCapacity) {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+
+    keys = new long[newCapacity * KEY_STRIDE];
+    values = new Object[newCapacity];
+
+    for (int i = 0; i < oldValues.length; i++) {
+      Object span = oldValues[i];
+      if (span != null) {
+        int keyIndex = i * KEY_STRIDE;
+        long spanId = oldKeys[keyIndex];
+        long traceIdHi = oldKeys[keyIndex + 1];
+        long traceIdLo = oldKeys[keyIndex + 2];
+        setSlot(findSlot(spanId, traceIdHi, traceIdLo), spanId, traceIdHi, traceIdLo, span);
+      }
+    }
+  }
+
+  private static int hash(long spanId, long traceIdHi, long traceIdLo) {
+    // span and trace IDs are random, but mix them anyway so that poorly generated IDs still spread
+    long h = spanId * 0x9E3779B97F4A7C15L;
+    h ^= traceIdHi + 0x7F4A7C159E3779B9L + (h << 6) + (h >>> 2);
+    h ^= traceIdLo + 0x9E3779B97F4A7C15L + (h << 6) + (h >>> 2);
+    h ^= (h >>> 33);
+    return (int) (h ^ (h >>> 32));
+  }
+}
@@ -0,0 +1,60 @@
+package com.bugsnag.reactnative.performance;
+
+import android.annotation.SuppressLint;
+
+import com.bugsnag.android.performance.internal.SpanImpl;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.WritableArray;
+
+import java.util.UUID;
+
+/**
+ * Packs span and trace IDs into arrays of unsigned 32 bit numbers so they can cross the bridge
+ * without being hex encoded and decoded. JS numbers are doubles, so each 64 bit ID is split into
+ * two 32 bit halves (high word first) which are always exactly representable:
+ *
+ * [spanIdHi, spanIdLo, traceId0, traceId1, traceId2, traceId3, (parentSpanIdHi, parentSpanIdLo)]
+ */
+@SuppressLint("RestrictedApi")
+final class PackedSpanIds {
+  static final int SPAN_ID_INDEX = 0;
+  static final int TRACE_ID_HI_INDEX = 2;
+  static final int TRACE_ID_LO_INDEX = 4;
+  static final int PARENT_SPAN_ID_INDEX = 6;
+
+  /**
+   * The minimum number of values in a packed ID array: a span ID and a trace ID
+   */
+  static final int LENGTH = 6;
+
+  private static final long LOW_WORD_MASK = 0xffffffffL;
+
+  private PackedSpanIds() {}
+
+  static WritableArray pack(SpanImpl span) {
+    WritableArray ids = Arguments.createArray();
+    UUID traceId = span.getTraceId();
+    pushLong(ids, span.getSpanId());
+    pushLong(ids, traceId.getMostSignificantBits());
+    pushLong(ids, traceId.getLeastSignificantBits());
+
+    long parentSpanId = span.getParentSpanId();
+    if (parentSpanId != 0L) {
+      pushLong(ids, parentSpanId);
+    }
+
+    return ids;
+  }
+
+  static long readLong(ReadableArray ids, int index) {
+    long hi = (long) ids.getDouble(index);
+    long lo = (long) ids.getDouble(index + 1);
+    return (hi << 32) | (lo & LOW_WORD_MASK);
+  }
+
+  private static void pushLong(WritableArray ids, long value) {
+    ids.pushDouble((double) (value >>> 32));
+    ids.pushDouble((double) (value & LOW_WORD_MASK));
+  }
+}
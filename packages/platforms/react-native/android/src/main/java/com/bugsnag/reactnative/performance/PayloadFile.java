@@ -0,0 +1,210 @@
+package com.bugsnag.reactnative.performance;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A retry queue payload stored so that it can be delivered straight from disk without passing
+ * through JS. The file is laid out like an HTTP message:
+ * <pre>
+ * bugsnag-payload-v1
+ * Header-Name: value
+ * ...
+ * (blank line)
+ * gzip compressed JSON body
+ * </pre>
+ * The body is streamed to the endpoint as-is with {@code Content-Encoding: gzip}.
+ */
+final class PayloadFile {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final String MAGIC = "bugsnag-payload-v1";
+  private static final String HEADER_SEPARATOR = ": ";
+
+  // the longest header line we expect to read, anything longer means this isn't a payload file
+  private static final int MAX_LINE_LENGTH = 4096;
+
+  private static final int CONNECT_TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(30);
+  private static final int READ_TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(30);
+
+  /**
+   * The status code reported to JS when the request could not be made at all
+   */
+  static final int STATUS_NETWORK_ERROR = 0;
+
+  static final class InvalidPayloadFileException extends IOException {
+    InvalidPayloadFileException(String message) {
+      super(message);
+    }
+  }
+
+  private PayloadFile() {}
+
+  static byte[] encode(Map<String, String> headers, byte[] compressedBody) throws IOException {
+    StringBuilder head = new StringBuilder(MAGIC).append('\n');
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      String name = header.getKey();
+      String value = header.getValue();
+      if (!isValidHeaderPart(name) || name.indexOf(':') >= 0 || !isValidHeaderPart(value)) {
+        throw new IOException("Invalid header: " + name);
+      }
+
+      head.append(name).append(HEADER_SEPARATOR).append(value).append('\n');
+    }
+    head.append('\n');
+
+    byte[] headBytes = head.toString().getBytes(UTF_8);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(headBytes.length + compressedBody.length);
+    out.write(headBytes);
+    out.write(compressedBody);
+    return out.toByteArray();
+  }
+
+  /**
+   * POST the payload in {@code file} to {@code endpoint}, with {@code extraHeaders} added to the
+   * headers stored in the file.
+   *
+   * The connection is left open (the response is fully read and closed, but the connection is not
+   * disconnected) so that {@link HttpURLConnection} can return it to its keep-alive pool for the
+   * next delivery.
+   *
+   * @return the response status code, or {@link #STATUS_NETWORK_ERROR} if no response was received
+   * @throws InvalidPayloadFileException if {@code file} isn't a payload file
+   */
+  static int deliver(File file, String endpoint, Map<String, String> extraHeaders) throws IOException {
+    try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+      Map<String, String> headers = new LinkedHashMap<>();
+      long bodyOffset = readHead(in, headers);
+      long bodyLength = file.length() - bodyOffset;
+      if (bodyLength <= 0 || bodyLength > Integer.MAX_VALUE) {
+        throw new InvalidPayloadFileException("Invalid payload body length: " + bodyLength);
+      }
+
+      headers.putAll(extraHeaders);
+      return post(endpoint, headers, in, (int) bodyLength);
+    }
+  }
+
+  private static int post(String endpoint, Map<String, String> headers, InputStream body, int bodyLength) {
+    HttpURLConnection connection;
+    int status;
+    try {
+      connection = (HttpURLConnection) new URL(endpoint).openConnection();
+      connection.setRequestMethod("POST");
+      connection.setDoOutput(true);
+      connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+      connection.setReadTimeout(READ_TIMEOUT_MS);
+      connection.setFixedLengthStreamingMode(bodyLength);
+
+      for (Map.Entry<String, String> header : headers.entrySet()) {
+        connection.setRequestProperty(header.getKey(), header.getValue());
+      }
+      connection.setRequestProperty("Content-Encoding", "gzip");
+
+      try (OutputStream out = connection.getOutputStream()) {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = body.read(buffer)) != -1) {
+          out.write(buffer, 0, read);
+        }
+      }
+
+      status = connection.getResponseCode();
+    } catch (IOException e) {
+      return STATUS_NETWORK_ERROR;
+    }
+
+    try {
+      drain(status >= 400 ? connection.getErrorStream() : connection.getInputStream());
+    } catch (IOException e) {
+      // the server has already responded, so a failure to read the rest of the response must not
+      // be reported as a network error (which would cause an accepted payload to be sent again)
+    }
+
+    return status;
+  }
+
+  /**
+   * Read the magic line and headers, returning the number of bytes consumed
+   */
+  private static long readHead(InputStream in, Map<String, String> headers) throws IOException {
+    StringBuilder line = new StringBuilder();
+    long offset = readLine(in, line);
+    if (!MAGIC.contentEquals(line)) {
+      throw new InvalidPayloadFileException("Not a payload file");
+    }
+
+    while (true) {
+      line.setLength(0);
+      offset += readLine(in, line);
+      if (line.length() == 0) {
+        return offset;
+      }
+
+      int separator = line.indexOf(HEADER_SEPARATOR);
+      if (separator <= 0) {
+        throw new InvalidPayloadFileException("Invalid header line");
+      }
+
+      headers.put(line.substring(0, separator), line.substring(separator + HEADER_SEPARATOR.length()));
+    }
+  }
+
+  /**
+   * Read a single '\n' terminated line of ASCII text into {@code line}, returning the number of
+   * bytes read (including the terminator)
+   */
+  private static int readLine(InputStream in, StringBuilder line) throws IOException {
+    int count = 0;
+    int b;
+    while ((b = in.read()) != '\n') {
+      if (b == -1 || b > 0x7f || ++count > MAX_LINE_LENGTH) {
+        throw new InvalidPayloadFileException("Invalid payload file header");
+      }
+      line.append((char) b);
+    }
+
+    return count + 1;
+  }
+
+  private static boolean isValidHeaderPart(String value) {
+    if (value == null || value.isEmpty()) {
+      return false;
+    }
+
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x20 || c > 0x7e) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static void drain(InputStream in) throws IOException {
+    if (in == null) {
+      return;
+    }
+
+    try {
+      byte[] buffer = new byte[1024];
+      while (in.read(buffer) != -1) {
+        // discard the response body so that the connection can be reused
+      }
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,210 @@
+package com.bugsnag.reactnative.performance;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-memory key-value store backed by a single JSON object file. Values are JSON encoded strings
+ * so that JS can store any JSON value without the store having to understand it.
+ *
+ * The file is read once, the first time the store is used, after which reads are served from
+ * memory. Writes update memory immediately and schedule a single deferred flush, so any number of
+ * writes made in quick succession are written to disk together. The first write of a key (such as
+ * a newly generated device ID) is flushed straight away instead, so that it isn't lost if the
+ * process dies before the deferred flush runs. Flushes always run on the executor, so the caller
+ * is never blocked by a write and is told the result once the value has been flushed.
+ *
+ * The file has the same layout as the one written by the JS persistence, so either can read the
+ * other's file.
+ */
+final class PersistedValueStore {
+  interface WriteCallback {
+    void onWriteComplete(boolean isWritten);
+  }
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  static final long FLUSH_DELAY_MS = 500L;
+
+  private final File file;
+  private final AtomicFileWriter fileWriter;
+  private final ScheduledExecutorService executor;
+
+  // guarded by 'this'
+  private final Map<String, String> values = new LinkedHashMap<>();
+  private boolean isLoaded = false;
+  private boolean isFlushScheduled = false;
+  private boolean lastFlushFailed = false;
+  private long writeCount = 0;
+  private long flushCount = 0;
+  private List<WriteCallback> pendingCallbacks = new ArrayList<>();
+
+  private final Runnable flushTask = new Runnable() {
+    @Override
+    public void run() {
+      flush();
+    }
+  };
+
+  PersistedValueStore(File file, AtomicFileWriter fileWriter, ScheduledExecutorService executor) {
+    this.file = file;
+    this.fileWriter = fileWriter;
+    this.executor = executor;
+  }
+
+  synchronized WritableMap getValues() {
+    load();
+
+    WritableMap result = Arguments.createMap();
+    for (Map.Entry<String, String> entry : values.entrySet()) {
+      result.putString(entry.getKey(), entry.getValue());
+    }
+
+    return result;
+  }
+
+  /**
+   * Set {@code key} to the JSON encoded {@code json}. The value is available from {@link #getValues}
+   * immediately, and {@code callback} is called with false if it isn't valid JSON or once the flush
+   * that includes it has completed.
+   *
+   * A new key, or any key after a flush has failed, is flushed straight away. Other writes wait for
+   * the deferred flush.
+   */
+  void setValue(String key, String json, WriteCallback callback) {
+    if (!isValidJson(json)) {
+      callback.onWriteComplete(false);
+      return;
+    }
+
+    synchronized (this) {
+      load();
+
+      boolean isNewKey = !values.containsKey(key);
+      values.put(key, json);
+      writeCount++;
+      pendingCallbacks.add(callback);
+
+      if (isNewKey || lastFlushFailed) {
+        executor.execute(flushTask);
+      } else if (!isFlushScheduled) {
+        isFlushScheduled = true;
+        executor.schedule(flushTask, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  synchronized long getWriteCount() {
+    return writeCount;
+  }
+
+  synchronized long getFlushCount() {
+    return flushCount;
+  }
+
+  private void flush() {
+    String contents;
+    List<WriteCallback> callbacks;
+    synchronized (this) {
+      isFlushScheduled = false;
+      contents = encode(values);
+
+      // the callbacks taken here are for values included in this flush
+      callbacks = pendingCallbacks;
+      pendingCallbacks = new ArrayList<>();
+    }
+
+    boolean isWritten = write(contents);
+    for (WriteCallback callback : callbacks) {
+      callback.onWriteComplete(isWritten);
+    }
+  }
+
+  private boolean write(String contents) {
+    try {
+      File directory = file.getParentFile();
+      if (directory != null && !directory.isDirectory()) {
+        directory.mkdirs();
+      }
+
+      fileWriter.write(file.getPath(), contents.getBytes(UTF_8));
+
+      synchronized (this) {
+        flushCount++;
+        lastFlushFailed = false;
+      }
+      return true;
+    } catch (IOException e) {
+      // the values remain in memory and will be written by the next flush
+      synchronized (this) {
+        lastFlushFailed = true;
+      }
+      return false;
+    }
+  }
+
+  private void load() {
+    if (isLoaded) {
+      return;
+    }
+
+    isLoaded = true;
+
+    if (!file.exists()) {
+      return;
+    }
+
+    try {
+      JSONObject json = new JSONObject(new String(FileContents.readBytes(file), UTF_8));
+      Iterator<String> keys = json.keys();
+      while (keys.hasNext()) {
+        String key = keys.next();
+        values.put(key, toJson(json.get(key)));
+      }
+    } catch (IOException | JSONException e) {
+      // a missing or corrupt file is treated as empty, and replaced by the next flush
+    }
+  }
+
+  private static boolean isValidJson(String json) {
+    try {
+      JSONTokener tokener = new JSONTokener(json);
+      tokener.nextValue();
+      return !tokener.more();
+    } catch (JSONException e) {
+      return false;
+    }
+  }
+
+  private static String toJson(Object value) {
+    return value instanceof String ? JSONObject.quote((String) value) : String.valueOf(value);
+  }
+
+  private static String encode(Map<String, String> values) {
+    StringBuilder json = new StringBuilder("{");
+    for (Map.Entry<String, String> entry : values.entrySet()) {
+      if (json.length() > 1) {
+        json.append(',');
+      }
+
+      json.append(JSONObject.quote(entry.getKey())).append(':').append(entry.getValue());
+    }
+
+    return json.append('}').toString();
+  }
+}
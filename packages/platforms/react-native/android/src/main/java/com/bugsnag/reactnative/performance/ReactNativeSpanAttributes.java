@@ -7,33 +7,194 @@ import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.ReadableMapKeySetIterator;
 
+import java.util.List;
+
+/**
+ * Converts span attributes from JS values, applying the {@link AttributeLimits} as they are
+ * converted: attributes beyond the count limit are not read, strings are truncated and arrays are
+ * only read up to the array length limit. Arrays are decoded by {@link AttributeArrayDecoder}.
+ *
+ * Keys and short string values are interned by {@link AttributeInterner}.
+ */
 @SuppressLint("RestrictedApi")
 public class ReactNativeSpanAttributes {
 
   private static final long[] EMPTY_ARRAY = new long[0];
 
+  /**
+   * The attribute encoding that {@link #setAttributesFromColumns} decodes
+   */
+  static final String COLUMNAR_ENCODING = "columnar";
+
+  private static final String COLUMN_KEYS = "keys";
+  private static final String COLUMN_TYPES = "types";
+  private static final String COLUMN_VALUES = "values";
+
+  // these must match the type tags in columnar-attributes.ts
+  private static final int TYPE_STRING = 0;
+  private static final int TYPE_BOOLEAN = 1;
+  private static final int TYPE_INTEGER = 2;
+  private static final int TYPE_DOUBLE = 3;
+  private static final int TYPE_STRING_ARRAY = 4;
+  private static final int TYPE_INTEGER_ARRAY = 5;
+  private static final int TYPE_DOUBLE_ARRAY = 6;
+  private static final int TYPE_ARRAY = 7;
+
   private ReactNativeSpanAttributes() {}
 
   public static void setAttributesFromReadableMap(Attributes attributes, ReadableMap jsAttributes) {
+    AttributeLimits limits = AttributeLimits.get();
+    int setCount = 0;
+    int droppedCount = 0;
+
     ReadableMapKeySetIterator iterator = jsAttributes.keySetIterator();
     while (iterator.hasNextKey()) {
       String key = iterator.nextKey();
-      switch (jsAttributes.getType(key)) {
-        case String:
-          setAttribute(attributes, key, jsAttributes.getString(key));
-          break;
-        case Boolean:
-          setAttribute(attributes, key, jsAttributes.getBoolean(key));
-          break;
-        case Number:
-          setAttribute(attributes, key, jsAttributes.getDouble(key));
-          break;
-        case Array:
-          setAttribute(attributes, key, jsAttributes.getArray(key));
-          break;
+      if (setCount >= limits.countLimit) {
+        // only the keys are read once the limit is reached, so that dropped attributes are counted
+        droppedCount++;
+        continue;
+      }
+
+      if (setAttribute(attributes, AttributeInterner.internKey(key), jsAttributes, limits)) {
+        setCount++;
+      }
+    }
+
+    limits.recordDroppedAttributes(droppedCount);
+  }
+
+  /**
+   * Set attributes encoded as parallel arrays of keys, type tags and values. Each column is
+   * copied out of the bridge in a single call and then decoded in one pass, rather than the
+   * type and value of every attribute being looked up individually.
+   */
+  public static void setAttributesFromColumns(Attributes attributes, ReadableMap columns) {
+    ReadableArray keyColumn = columns.hasKey(COLUMN_KEYS) ? columns.getArray(COLUMN_KEYS) : null;
+    ReadableArray typeColumn = columns.hasKey(COLUMN_TYPES) ? columns.getArray(COLUMN_TYPES) : null;
+    ReadableArray valueColumn = columns.hasKey(COLUMN_VALUES) ? columns.getArray(COLUMN_VALUES) : null;
+    if (keyColumn == null || typeColumn == null || valueColumn == null) {
+      return;
+    }
+
+    List<Object> keys = keyColumn.toArrayList();
+    List<Object> types = typeColumn.toArrayList();
+    List<Object> values = valueColumn.toArrayList();
+
+    AttributeLimits limits = AttributeLimits.get();
+    int setCount = 0;
+
+    int count = Math.min(keys.size(), Math.min(types.size(), values.size()));
+    for (int i = 0; i < count; i++) {
+      if (setCount >= limits.countLimit) {
+        limits.recordDroppedAttributes(count - i);
+        break;
+      }
+
+      Object key = keys.get(i);
+      Object type = types.get(i);
+      Object value = values.get(i);
+      if (key instanceof String
+        && type instanceof Number
+        && value != null
+        && setColumnarAttribute(attributes, AttributeInterner.internKey((String) key), ((Number) type).intValue(), value, limits)) {
+        setCount++;
+      }
+    }
+  }
+
+  private static boolean setColumnarAttribute(
+    Attributes attributes,
+    String name,
+    int type,
+    Object value,
+    AttributeLimits limits
+  ) {
+    try {
+      switch (type) {
+        case TYPE_STRING:
+          attributes.set(name, AttributeInterner.internValue(limits.truncateString((String) value)));
+          return true;
+        case TYPE_BOOLEAN:
+          attributes.set(name, (boolean) (Boolean) value);
+          return true;
+        case TYPE_INTEGER:
+          attributes.set(name, ((Number) value).longValue());
+          return true;
+        case TYPE_DOUBLE:
+          attributes.set(name, ((Number) value).doubleValue());
+          return true;
+        case TYPE_STRING_ARRAY:
+          attributes.set(name, toStringArray((List<?>) value, limits));
+          return true;
+        case TYPE_INTEGER_ARRAY:
+          attributes.set(name, toLongArray((List<?>) value, limits));
+          return true;
+        case TYPE_DOUBLE_ARRAY:
+          attributes.set(name, toDoubleArray((List<?>) value, limits));
+          return true;
+        case TYPE_ARRAY:
+          List<?> array = (List<?>) value;
+          return setArrayAttribute(attributes, name, AttributeArrayDecoder.decode(array, limits.arrayLength(array.size())));
         default:
-          break;
+          return false;
       }
+    } catch (ClassCastException e) {
+      // the value doesn't match its type tag, so it is skipped
+      return false;
+    }
+  }
+
+  private static String[] toStringArray(List<?> values, AttributeLimits limits) {
+    int size = limits.arrayLength(values.size());
+    String[] stringArray = new String[size];
+    for (int i = 0; i < size; i++) {
+      stringArray[i] = (String) values.get(i);
+    }
+    return stringArray;
+  }
+
+  private static long[] toLongArray(List<?> values, AttributeLimits limits) {
+    int size = limits.arrayLength(values.size());
+    if (size == 0) {
+      return EMPTY_ARRAY;
+    }
+
+    long[] longValues = new long[size];
+    for (int i = 0; i < size; i++) {
+      longValues[i] = ((Number) values.get(i)).longValue();
+    }
+    return longValues;
+  }
+
+  private static double[] toDoubleArray(List<?> values, AttributeLimits limits) {
+    int size = limits.arrayLength(values.size());
+    double[] doubleValues = new double[size];
+    for (int i = 0; i < size; i++) {
+      doubleValues[i] = ((Number) values.get(i)).doubleValue();
+    }
+    return doubleValues;
+  }
+
+  /**
+   * Set the attribute {@code key} from {@code jsAttributes}, returning false if its value has a
+   * type that can't be stored as an attribute
+   */
+  private static boolean setAttribute(Attributes attributes, String key, ReadableMap jsAttributes, AttributeLimits limits) {
+    switch (jsAttributes.getType(key)) {
+      case String:
+        setAttribute(attributes, key, AttributeInterner.internValue(limits.truncateString(jsAttributes.getString(key))));
+        return true;
+      case Boolean:
+        setAttribute(attributes, key, jsAttributes.getBoolean(key));
+        return true;
+      case Number:
+        setAttribute(attributes, key, jsAttributes.getDouble(key));
+        return true;
+      case Array:
+        return setAttribute(attributes, key, jsAttributes.getArray(key), limits);
+      default:
+        return false;
     }
   }
 
@@ -53,48 +214,36 @@ public class ReactNativeSpanAttributes {
     }
   }
 
-  private static void setAttribute(Attributes attributes, String name, ReadableArray value) {
-    if (value == null) return;
+  private static boolean setAttribute(Attributes attributes, String name, ReadableArray value, AttributeLimits limits) {
+    if (value == null) return false;
 
-    int size = value.size();
-    if (size == 0) {
-      attributes.set(name, EMPTY_ARRAY);
-      return;
-    }
-
-    // we assume that array values are all of the same type
-    switch (value.getType(0)) {
-      case String:
-        setStringArrayAttribute(attributes, name, value);
-        break;
-      case Number:
-        setNumberArrayAttribute(attributes, name, value);
-        break;
-      default:
-        break;
-    }
+    return setArrayAttribute(attributes, name, AttributeArrayDecoder.decode(value, limits.arrayLength(value.size())));
   }
 
-  public static Object transformArray(ReadableArray value) {
-    int size = value.size();
-    if (size == 0) {
-      return EMPTY_ARRAY;
+  private static boolean setArrayAttribute(Attributes attributes, String name, Object array) {
+    if (array instanceof long[]) {
+      attributes.set(name, (long[]) array);
+    } else if (array instanceof double[]) {
+      attributes.set(name, (double[]) array);
+    } else if (array instanceof String[]) {
+      attributes.set(name, (String[]) array);
+    } else if (array instanceof List) {
+      attributes.set(name, (List<?>) array);
+    } else {
+      return false;
     }
 
-    // we assume that array values are all of the same type
-    switch (value.getType(0)) {
-      case String:
-        return getStringArray(value);
-      case Number:
-        long[] ints = getLongArray(value);
-        if (ints == null) {
-          return getDoubleArray(value);
-        } else {
-          return ints;
-        }
-    }
+    return true;
+  }
 
-    return EMPTY_ARRAY;
+  /**
+   * Convert a JS array to a {@code long[]}, {@code double[]}, {@code String[]} or (for boolean and
+   * mixed type arrays) a {@code List}, reading no more elements than the array length limit allows
+   *
+   * @see AttributeArrayDecoder
+   */
+  public static Object transformArray(ReadableArray value) {
+    return AttributeArrayDecoder.decode(value, AttributeLimits.get().arrayLength(value.size()));
   }
 
   /**
@@ -132,19 +281,4 @@ public class ReactNativeSpanAttributes {
     }
     return stringArray;
   }
-
-  private static void setStringArrayAttribute(Attributes attributes, String name, ReadableArray jsStringArray) {
-    attributes.set(name, getStringArray(jsStringArray));
-  }
-
-  private static void setNumberArrayAttribute(Attributes attributes, String name, ReadableArray jsNumberArray) {
-    long[] longValues = getLongArray(jsNumberArray);
-
-    if (longValues != null) {
-      attributes.set(name, longValues);
-      return;
-    }
-
-    attributes.set(name, getDoubleArray(jsNumberArray));
-  }
 }
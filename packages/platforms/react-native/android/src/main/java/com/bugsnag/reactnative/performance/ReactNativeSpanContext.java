@@ -6,17 +6,14 @@ import java.util.UUID;
 import java.util.concurrent.Callable;
 
 class ReactNativeSpanContext implements SpanContext {
-  private static final int HEX_RADIX = 16;
-  private static final int TRACE_ID_MIDPOINT = 16;
-
   private final long nativeSpanId;
   private final UUID nativeTraceId;
   
   ReactNativeSpanContext(String spanId, String traceId) {
-    nativeSpanId = Long.parseUnsignedLong(spanId, HEX_RADIX);
+    nativeSpanId = HexEncoding.parseUnsignedHexLong(spanId, 0, spanId.length());
     nativeTraceId = new UUID(
-      Long.parseUnsignedLong(traceId.substring(0, TRACE_ID_MIDPOINT), HEX_RADIX),
-      Long.parseUnsignedLong(traceId.substring(TRACE_ID_MIDPOINT), HEX_RADIX)
+      HexEncoding.parseUnsignedHexLong(traceId, 0, HexEncoding.SPAN_ID_LENGTH),
+      HexEncoding.parseUnsignedHexLong(traceId, HexEncoding.SPAN_ID_LENGTH, traceId.length())
     );
   }
 
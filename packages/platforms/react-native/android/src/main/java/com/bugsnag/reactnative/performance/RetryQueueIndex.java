@@ -0,0 +1,137 @@
+package com.bugsnag.reactnative.performance;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * An in-memory index of the files in a retry queue directory, so that the queue can be flushed and
+ * bounded without listing the directory. The directory is scanned once when the index is created,
+ * after which the index is kept up to date as files are written and removed through the native
+ * module.
+ *
+ * The queue is limited to a total number of bytes and files; when a write takes it over either
+ * limit the oldest files are deleted until it is back under both.
+ */
+final class RetryQueueIndex {
+  private final File directory;
+  private final long maxBytes;
+  private final int maxCount;
+
+  // ordered oldest to newest, i.e. the reverse of the order the queue is flushed in
+  private final TreeSet<Entry> entries = new TreeSet<>(OLDEST_FIRST);
+  private final Map<String, Entry> entriesByName = new HashMap<>();
+
+  private long totalBytes = 0;
+  private long evictedCount = 0;
+  private long evictedBytes = 0;
+
+  RetryQueueIndex(File directory, long maxBytes, int maxCount, AtomicFileWriter fileWriter) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    this.maxCount = maxCount;
+
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.isFile() && !fileWriter.isTempFile(file)) {
+          add(file.getName(), file.length());
+        }
+      }
+    }
+
+    evict();
+  }
+
+  synchronized void fileWritten(String name, long size) {
+    remove(name);
+    add(name, size);
+    evict();
+  }
+
+  synchronized void fileRemoved(String name) {
+    remove(name);
+  }
+
+  /**
+   * Returns the next file to flush after {@code previous}, or the first file to flush if
+   * {@code previous} is null. Files are flushed newest to oldest, matching the order used by
+   * {@link FileListing}.
+   */
+  @Nullable
+  synchronized String next(@Nullable String previous) {
+    Entry entry = previous == null
+      ? (entries.isEmpty() ? null : entries.last())
+      : entries.lower(new Entry(previous, 0L));
+
+    return entry != null ? entry.name : null;
+  }
+
+  synchronized int getCount() {
+    return entries.size();
+  }
+
+  synchronized long getTotalBytes() {
+    return totalBytes;
+  }
+
+  synchronized long getEvictedCount() {
+    return evictedCount;
+  }
+
+  synchronized long getEvictedBytes() {
+    return evictedBytes;
+  }
+
+  private void add(String name, long size) {
+    Entry entry = new Entry(name, size);
+    entries.add(entry);
+    entriesByName.put(name, entry);
+    totalBytes += size;
+  }
+
+  private void remove(String name) {
+    Entry entry = entriesByName.remove(name);
+    if (entry != null) {
+      entries.remove(entry);
+      totalBytes -= entry.size;
+    }
+  }
+
+  private void evict() {
+    while (!entries.isEmpty() && (totalBytes > maxBytes || entries.size() > maxCount)) {
+      Entry oldest = entries.pollFirst();
+      entriesByName.remove(oldest.name);
+      totalBytes -= oldest.size;
+
+      File file = new File(directory, oldest.name);
+      if (file.delete() || !file.exists()) {
+        evictedCount++;
+        evictedBytes += oldest.size;
+      }
+    }
+  }
+
+  private static final Comparator<Entry> OLDEST_FIRST = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry a, Entry b) {
+      return FileListing.compareNewestFirst(b.timestamp, b.name, a.timestamp, a.name);
+    }
+  };
+
+  private static final class Entry {
+    final String name;
+    final long timestamp;
+    final long size;
+
+    Entry(String name, long size) {
+      this.name = name;
+      this.timestamp = FileListing.timestampFromFilename(name);
+      this.size = size;
+    }
+  }
+}
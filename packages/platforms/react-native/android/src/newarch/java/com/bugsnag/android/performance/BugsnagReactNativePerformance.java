@@ -1,10 +1,13 @@
 package com.bugsnag.reactnative.performance;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import com.bugsnag.reactnative.performance.NativeBugsnagPerformanceSpec;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 
 public class BugsnagReactNativePerformance extends NativeBugsnagPerformanceSpec {
@@ -36,6 +39,11 @@ public class BugsnagReactNativePerformance extends NativeBugsnagPerformanceSpec
     impl.requestEntropyAsync(promise);
   }
 
+  @Override
+  public WritableArray generateIds(double count, double bits) {
+    return impl.generateIds(count, bits);
+  }
+
   @Override
   public WritableMap getNativeConstants() {
     return impl.getNativeConstants();
@@ -56,6 +64,11 @@ public class BugsnagReactNativePerformance extends NativeBugsnagPerformanceSpec
     impl.ls(path, promise);
   }
 
+  @Override
+  public void listFiles(String path, Promise promise) {
+    impl.listFiles(path, promise);
+  }
+
   @Override
   public void mkdir(String path, Promise promise) {
     impl.mkdir(path, promise);
@@ -76,6 +89,41 @@ public class BugsnagReactNativePerformance extends NativeBugsnagPerformanceSpec
     impl.writeFile(path, data, encoding, promise);
   }
 
+  @Override
+  public boolean isFileEncodingSupported(String encoding) {
+    return impl.isFileEncodingSupported(encoding);
+  }
+
+  @Override
+  public void writePayloadFile(String path, ReadableMap headers, String body, Promise promise) {
+    impl.writePayloadFile(path, headers, body, promise);
+  }
+
+  @Override
+  public void deliverPayloadFile(String path, String endpoint, ReadableMap headers, Promise promise) {
+    impl.deliverPayloadFile(path, endpoint, headers, promise);
+  }
+
+  @Override
+  public void openRetryQueue(String path, double maxBytes, double maxCount, Promise promise) {
+    impl.openRetryQueue(path, maxBytes, maxCount, promise);
+  }
+
+  @Override
+  public void nextRetryQueueFile(String path, @Nullable String previous, Promise promise) {
+    impl.nextRetryQueueFile(path, previous, promise);
+  }
+
+  @Override
+  public WritableMap getPersistedValues(String path) {
+    return impl.getPersistedValues(path);
+  }
+
+  @Override
+  public void setPersistedValue(String path, String key, String value, Promise promise) {
+    impl.setPersistedValue(path, key, value, promise);
+  }
+
   @Override
   public boolean isNativePerformanceAvailable() {
     return impl.isNativePerformanceAvailable();
@@ -106,6 +154,21 @@ public class BugsnagReactNativePerformance extends NativeBugsnagPerformanceSpec
     impl.discardNativeSpan(spanId, traceId, promise);
   }
 
+  @Override
+  public void applyNativeSpanOperations(ReadableArray operations, Promise promise) {
+    impl.applyNativeSpanOperations(operations, promise);
+  }
+
+  @Override
+  public boolean isAttributeEncodingSupported(String encoding) {
+    return impl.isAttributeEncodingSupported(encoding);
+  }
+
+  @Override
+  public WritableMap getNativeMetrics() {
+    return impl.getNativeMetrics();
+  }
+
   @Override
   public void endNativeAppStart(double endTime, Promise promise) {
     impl.endNativeAppStart(endTime, promise);
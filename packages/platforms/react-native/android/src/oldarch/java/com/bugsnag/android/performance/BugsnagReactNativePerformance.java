@@ -1,10 +1,14 @@
 package com.bugsnag.reactnative.performance;
 
+import androidx.annotation.Nullable;
+
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 
 import java.util.Map;
@@ -38,6 +42,11 @@ public class BugsnagReactNativePerformance extends ReactContextBaseJavaModule {
     impl.requestEntropyAsync(promise);
   }
 
+  @ReactMethod(isBlockingSynchronousMethod = true)
+  public WritableArray generateIds(double count, double bits) {
+    return impl.generateIds(count, bits);
+  }
+
   @ReactMethod(isBlockingSynchronousMethod = true)
   public WritableMap getNativeConstants() {
     return impl.getNativeConstants();
@@ -58,6 +67,11 @@ public class BugsnagReactNativePerformance extends ReactContextBaseJavaModule {
     impl.ls(path, promise);
   }
 
+  @ReactMethod
+  public void listFiles(String path, Promise promise) {
+    impl.listFiles(path, promise);
+  }
+
   @ReactMethod
   public void mkdir(String path, Promise promise) {
     impl.mkdir(path, promise);
@@ -78,6 +92,41 @@ public class BugsnagReactNativePerformance extends ReactContextBaseJavaModule {
     impl.writeFile(path, data, encoding, promise);
   }
 
+  @ReactMethod(isBlockingSynchronousMethod = true)
+  public boolean isFileEncodingSupported(String encoding) {
+    return impl.isFileEncodingSupported(encoding);
+  }
+
+  @ReactMethod
+  public void writePayloadFile(String path, ReadableMap headers, String body, Promise promise) {
+    impl.writePayloadFile(path, headers, body, promise);
+  }
+
+  @ReactMethod
+  public void deliverPayloadFile(String path, String endpoint, ReadableMap headers, Promise promise) {
+    impl.deliverPayloadFile(path, endpoint, headers, promise);
+  }
+
+  @ReactMethod
+  public void openRetryQueue(String path, double maxBytes, double maxCount, Promise promise) {
+    impl.openRetryQueue(path, maxBytes, maxCount, promise);
+  }
+
+  @ReactMethod
+  public void nextRetryQueueFile(String path, @Nullable String previous, Promise promise) {
+    impl.nextRetryQueueFile(path, previous, promise);
+  }
+
+  @ReactMethod(isBlockingSynchronousMethod = true)
+  public WritableMap getPersistedValues(String path) {
+    return impl.getPersistedValues(path);
+  }
+
+  @ReactMethod
+  public void setPersistedValue(String path, String key, String value, Promise promise) {
+    impl.setPersistedValue(path, key, value, promise);
+  }
+
   @ReactMethod(isBlockingSynchronousMethod = true)
   public boolean isNativePerformanceAvailable() {
     return impl.isNativePerformanceAvailable();
@@ -108,6 +157,21 @@ public class BugsnagReactNativePerformance extends ReactContextBaseJavaModule {
     impl.discardNativeSpan(spanId, traceId, promise);
   }
 
+  @ReactMethod
+  public void applyNativeSpanOperations(ReadableArray operations, Promise promise) {
+    impl.applyNativeSpanOperations(operations, promise);
+  }
+
+  @ReactMethod(isBlockingSynchronousMethod = true)
+  public boolean isAttributeEncodingSupported(String encoding) {
+    return impl.isAttributeEncodingSupported(encoding);
+  }
+
+  @ReactMethod(isBlockingSynchronousMethod = true)
+  public WritableMap getNativeMetrics() {
+    return impl.getNativeMetrics();
+  }
+
   @ReactMethod
   public void endNativeAppStart(double endTime, Promise promise) {
     impl.endNativeAppStart(endTime, promise);
@@ -0,0 +1,104 @@
+package com.bugsnag.reactnative.performance;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class AtomicFileWriterTest {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final AtomicFileWriter writer = new AtomicFileWriter();
+
+  @Test
+  public void writesTheFileWithoutLeavingATempFile() throws IOException {
+    File dir = temporaryFolder.newFolder();
+    File target = new File(dir, "payload.json");
+
+    writer.write(target.getPath(), "{\"a\":1}", "utf-8");
+
+    assertEquals("{\"a\":1}", FileContents.read(target, "utf-8"));
+    assertEquals(Collections.singletonList("payload.json"), Arrays.asList(dir.list()));
+  }
+
+  @Test
+  public void replacesAnExistingFile() throws IOException {
+    File dir = temporaryFolder.newFolder();
+    File target = new File(dir, "payload.json");
+
+    writer.write(target.getPath(), "first".getBytes(UTF_8));
+    writer.write(target.getPath(), "second".getBytes(UTF_8));
+
+    assertArrayEquals("second".getBytes(UTF_8), FileContents.readBytes(target));
+    assertEquals(Collections.singletonList("payload.json"), Arrays.asList(dir.list()));
+  }
+
+  @Test
+  public void writesGzipEncodedFiles() throws IOException {
+    File target = new File(temporaryFolder.newFolder(), "payload.json");
+
+    writer.write(target.getPath(), "{\"a\":1}", FileContents.ENCODING_GZIP);
+
+    assertEquals("{\"a\":1}", FileContents.read(target, FileContents.ENCODING_GZIP));
+  }
+
+  @Test
+  public void failedRenameRemovesTheTempFile() throws IOException {
+    File dir = temporaryFolder.newFolder();
+
+    // a file can't be renamed over a directory that isn't empty
+    File target = new File(dir, "payload.json");
+    assertTrue(target.mkdir());
+    assertTrue(new File(target, "child").createNewFile());
+
+    try {
+      writer.write(target.getPath(), "{}".getBytes(UTF_8));
+      fail("expected the write to fail");
+    } catch (IOException e) {
+      // expected
+    }
+
+    assertEquals(Collections.singletonList("payload.json"), Arrays.asList(dir.list()));
+    assertTrue(target.isDirectory());
+  }
+
+  @Test
+  public void recognisesTempFiles() throws IOException {
+    File dir = temporaryFolder.newFolder();
+
+    assertTrue(writer.isTempFile(new File(dir, ".payload.json.123.tmp")));
+    assertFalse(writer.isTempFile(new File(dir, "payload.json")));
+    assertFalse(writer.isTempFile(new File(dir, "payload.tmp")));
+  }
+
+  @Test
+  public void staleTempFilesAreDeleted() throws IOException {
+    File dir = temporaryFolder.newFolder();
+    File stale = new File(dir, ".payload.json.1.tmp");
+    File recent = new File(dir, ".payload.json.2.tmp");
+    assertTrue(stale.createNewFile());
+    assertTrue(recent.createNewFile());
+    assertTrue(stale.setLastModified(System.currentTimeMillis() - 5 * 60 * 1000));
+
+    assertTrue(writer.isTempFile(stale));
+    assertTrue(writer.isTempFile(recent));
+
+    // a recent temp file may belong to a write that is still in progress
+    assertFalse(stale.exists());
+    assertTrue(recent.exists());
+  }
+}
@@ -0,0 +1,108 @@
+package com.bugsnag.reactnative.performance;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times {@link AttributeArrayDecoder} against the two-pass conversion it replaced, which read a
+ * number array as longs and then read it again as doubles when it found a fractional number. The
+ * arrays are plain lists, so the bridge reads are not part of the measurement.
+ *
+ * The benchmark is skipped unless the {@code benchmark} project property is set:
+ * {@code ./gradlew :bugsnag_react-native-performance:testDebugUnitTest -Pbenchmark}
+ */
+public class AttributeArrayDecoderBenchmarkTest {
+  private static final int ARRAY_LENGTH = 32;
+  private static final int WARMUP_ROUNDS = 50_000;
+  private static final int MEASURED_ROUNDS = 500_000;
+
+  // keeps the decoded arrays from being optimised away
+  private static int sink;
+
+  @Before
+  public void onlyWhenBenchmarking() {
+    assumeTrue(Boolean.getBoolean("bugsnag.benchmark"));
+  }
+
+  @Test
+  public void integerArrays() {
+    List<Object> array = new ArrayList<>();
+    for (int i = 0; i < ARRAY_LENGTH; i++) {
+      array.add((double) i);
+    }
+
+    assertArrayEquals((long[]) twoPassDecode(array), (long[]) AttributeArrayDecoder.decode(array, ARRAY_LENGTH));
+    report("integer", array);
+  }
+
+  @Test
+  public void arraysEndingInAFraction() {
+    // the worst case for the two-pass conversion, which reads every element twice
+    List<Object> array = new ArrayList<>();
+    for (int i = 0; i < ARRAY_LENGTH - 1; i++) {
+      array.add((double) i);
+    }
+    array.add(0.5);
+
+    assertArrayEquals((double[]) twoPassDecode(array), (double[]) AttributeArrayDecoder.decode(array, ARRAY_LENGTH), 0.0);
+    report("fractional", array);
+  }
+
+  private static void report(String description, List<Object> array) {
+    for (int round = 0; round < WARMUP_ROUNDS; round++) {
+      sink += decodeLength(AttributeArrayDecoder.decode(array, ARRAY_LENGTH));
+      sink += decodeLength(twoPassDecode(array));
+    }
+
+    long start = System.nanoTime();
+    for (int round = 0; round < MEASURED_ROUNDS; round++) {
+      sink += decodeLength(AttributeArrayDecoder.decode(array, ARRAY_LENGTH));
+    }
+    long decoderNanos = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    for (int round = 0; round < MEASURED_ROUNDS; round++) {
+      sink += decodeLength(twoPassDecode(array));
+    }
+    long twoPassNanos = System.nanoTime() - start;
+
+    System.out.printf(
+      "%d element %s arrays: %.1f ns per array (two-pass conversion: %.1f ns)%n",
+      ARRAY_LENGTH,
+      description,
+      (double) decoderNanos / MEASURED_ROUNDS,
+      (double) twoPassNanos / MEASURED_ROUNDS
+    );
+  }
+
+  private static int decodeLength(Object decoded) {
+    return decoded instanceof long[] ? ((long[]) decoded).length : ((double[]) decoded).length;
+  }
+
+  /**
+   * The number array conversion used before {@link AttributeArrayDecoder}
+   */
+  private static Object twoPassDecode(List<Object> array) {
+    int size = array.size();
+    long[] longValues = new long[size];
+    for (int i = 0; i < size; i++) {
+      double value = ((Number) array.get(i)).doubleValue();
+      if (value % 1 != 0) {
+        double[] doubleValues = new double[size];
+        for (int j = 0; j < size; j++) {
+          doubleValues[j] = ((Number) array.get(j)).doubleValue();
+        }
+        return doubleValues;
+      }
+      longValues[i] = (long) value;
+    }
+
+    return longValues;
+  }
+}
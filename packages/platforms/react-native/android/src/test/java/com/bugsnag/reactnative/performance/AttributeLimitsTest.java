@@ -0,0 +1,74 @@
+package com.bugsnag.reactnative.performance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class AttributeLimitsTest {
+  @After
+  public void removeLimits() {
+    AttributeLimits.set(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+  }
+
+  @Test
+  public void truncatesStringsLikeTheJsSdk() {
+    // the same string and limit as the JS SDK's attribute truncation test
+    AttributeLimits.set(5, 20, 5);
+
+    assertEquals(
+      "aaaaaaaaaaaaaaaaaaaa *** 236 CHARS TRUNCATED",
+      AttributeLimits.get().truncateString(repeat('a', 256))
+    );
+  }
+
+  @Test
+  public void stringsWithinTheLimitAreUnchanged() {
+    AttributeLimits.set(5, 20, 5);
+    String value = repeat('a', 20);
+
+    assertSame(value, AttributeLimits.get().truncateString(value));
+  }
+
+  @Test
+  public void stringsAreTruncatedByUtf16CodeUnits() {
+    // JS slices strings by UTF-16 code units, so a surrogate pair can be split
+    AttributeLimits.set(5, 2, 5);
+
+    assertEquals("a\uD83D *** 2 CHARS TRUNCATED", AttributeLimits.get().truncateString("a\uD83D\uDE00b"));
+  }
+
+  @Test
+  public void zeroLimitTruncatesTheWholeString() {
+    AttributeLimits.set(5, 0, 5);
+
+    assertEquals(" *** 3 CHARS TRUNCATED", AttributeLimits.get().truncateString("abc"));
+  }
+
+  @Test
+  public void arraysAreCutToTheLengthLimit() {
+    AttributeLimits.set(5, 20, 3);
+
+    assertEquals(2, AttributeLimits.get().arrayLength(2));
+    assertEquals(3, AttributeLimits.get().arrayLength(3));
+    assertEquals(3, AttributeLimits.get().arrayLength(10));
+  }
+
+  @Test
+  public void negativeLimitsAreTreatedAsZero() {
+    AttributeLimits.set(-1, -1, -1);
+
+    assertEquals(0, AttributeLimits.get().countLimit);
+    assertEquals(0, AttributeLimits.get().stringValueLimit);
+    assertEquals(0, AttributeLimits.get().arrayLengthLimit);
+  }
+
+  private static String repeat(char c, int count) {
+    StringBuilder builder = new StringBuilder(count);
+    for (int i = 0; i < count; i++) {
+      builder.append(c);
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,87 @@
+package com.bugsnag.reactnative.performance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.bugsnag.android.performance.internal.SpanImpl;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+public class ExpiringSpanTableTest {
+  private static final long MAX_AGE_MS = 60 * 60 * 1000;
+
+  private static final UUID TRACE_ID = new UUID(0x0102030405060708L, 0x090a0b0c0d0e0f10L);
+  private static final String TRACE_ID_HEX = "0102030405060708090a0b0c0d0e0f10";
+
+  @Test
+  public void spanYoungerThanMaxAgeSurvivesFullRotationCycle() {
+    ExpiringSpanTable table = new ExpiringSpanTable();
+    long interval = ExpiringSpanTable.rotationIntervalMs(MAX_AGE_MS);
+
+    // the worst case: the span is added just before the first rotation
+    SpanImpl span = span(0x1234L);
+    table.put(span);
+
+    long age = 0;
+    while (age < MAX_AGE_MS) {
+      assertTrue(table.expireOldestGeneration().isEmpty());
+      assertSame(span, table.get("0000000000001234", TRACE_ID_HEX));
+      age += interval;
+    }
+
+    // the next rotation happens once the span has been open for maxAge
+    assertEquals(MAX_AGE_MS, age);
+    List<SpanImpl> expired = table.expireOldestGeneration();
+    assertEquals(1, expired.size());
+    assertSame(span, expired.get(0));
+  }
+
+  @Test
+  public void spanIsExpiredWithinOneIntervalOfMaxAge() {
+    ExpiringSpanTable table = new ExpiringSpanTable();
+    long interval = ExpiringSpanTable.rotationIntervalMs(MAX_AGE_MS);
+
+    // the best case: the span is added just after a rotation
+    assertTrue(table.expireOldestGeneration().isEmpty());
+    SpanImpl span = span(0x5678L);
+    table.put(span);
+
+    long age = 0;
+    List<SpanImpl> expired;
+    do {
+      age += interval;
+      expired = table.expireOldestGeneration();
+    } while (expired.isEmpty());
+
+    assertSame(span, expired.get(0));
+    assertTrue(age >= MAX_AGE_MS);
+    assertTrue(age <= MAX_AGE_MS + interval);
+  }
+
+  @Test
+  public void removedSpansAreNotExpired() {
+    ExpiringSpanTable table = new ExpiringSpanTable();
+    SpanImpl span = span(0x9abcL);
+    table.put(span);
+
+    assertNotNull(table.remove("0000000000009abc", TRACE_ID_HEX));
+
+    for (int i = 0; i < ExpiringSpanTable.GENERATION_COUNT; i++) {
+      assertTrue(table.expireOldestGeneration().isEmpty());
+    }
+  }
+
+  private static SpanImpl span(long spanId) {
+    SpanImpl span = mock(SpanImpl.class);
+    when(span.getSpanId()).thenReturn(spanId);
+    when(span.getTraceId()).thenReturn(TRACE_ID);
+    return span;
+  }
+}
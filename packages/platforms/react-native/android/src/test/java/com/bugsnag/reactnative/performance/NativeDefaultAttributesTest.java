@@ -0,0 +1,50 @@
+package com.bugsnag.reactnative.performance;
+
+import static org.junit.Assert.assertEquals;
+
+import com.bugsnag.android.performance.internal.Attributes;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+public class NativeDefaultAttributesTest {
+  @Test
+  public void removesCapturedDefaultsExceptSamplingProbability() {
+    Attributes attributes = new Attributes();
+    attributes.set("bugsnag.sampling.p", 0.5);
+    attributes.set("device.id", "native-device-id");
+    attributes.set("bugsnag.span.category", "custom");
+
+    NativeDefaultAttributes defaults = NativeDefaultAttributes.capture(attributes);
+    defaults.removeFrom(attributes);
+
+    assertEquals("{bugsnag.sampling.p=0.5}", toSortedString(attributes));
+  }
+
+  @Test
+  public void keepsAttributesSetAfterTheSpanStarted() {
+    Attributes attributes = new Attributes();
+    attributes.set("device.id", "native-device-id");
+    attributes.set("bugsnag.span.category", "custom");
+
+    NativeDefaultAttributes defaults = NativeDefaultAttributes.capture(attributes);
+
+    // a new attribute, and a default overwritten while the span was open
+    attributes.set("plugin.attribute", "from native");
+    attributes.set("bugsnag.span.category", "updated");
+
+    defaults.removeFrom(attributes);
+
+    assertEquals("{bugsnag.span.category=updated, plugin.attribute=from native}", toSortedString(attributes));
+  }
+
+  private static String toSortedString(Attributes attributes) {
+    Map<String, Object> sorted = new TreeMap<>();
+    for (Map.Entry<String, Object> entry : attributes.getEntries()) {
+      sorted.put(entry.getKey(), entry.getValue());
+    }
+    return sorted.toString();
+  }
+}
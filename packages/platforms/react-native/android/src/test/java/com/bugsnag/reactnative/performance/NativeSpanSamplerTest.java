@@ -0,0 +1,134 @@
+package com.bugsnag.reactnative.performance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class NativeSpanSamplerTest {
+  // the trace IDs and sampling values from the JS SDK's traceIdToSamplingRate tests
+  private static final String LOW_TRACE_ID = "881f27313ad4fc0727c2a9f59caaa1eb";
+  private static final long LOW_SAMPLING_VALUE = 161731368L;
+  private static final String HIGH_TRACE_ID = "7ed94fdcdcba6979315860e06968ad3b";
+  private static final long HIGH_SAMPLING_VALUE = 4199803774L;
+
+  @Test
+  public void parsesNameAndCategoryRules() {
+    NativeSpanSampler sampler = NativeSpanSampler.fromRules("name:LoadFeed=0.1; category:network=0.5");
+
+    assertEquals(0.1, sampler.getRuleProbability("LoadFeed", null), 0.0);
+    assertEquals(0.5, sampler.getRuleProbability("[HTTP/GET]", "network"), 0.0);
+    assertNull(sampler.getRuleProbability("Other", null));
+  }
+
+  @Test
+  public void spanNamesCanContainEquals() {
+    NativeSpanSampler sampler = NativeSpanSampler.fromRules("name:a=b=0.25");
+
+    assertEquals(0.25, sampler.getRuleProbability("a=b", null), 0.0);
+    assertNull(sampler.getRuleProbability("a", null));
+  }
+
+  @Test
+  public void invalidRulesAreIgnored() {
+    NativeSpanSampler sampler = NativeSpanSampler.fromRules("name:NoProbability;name:TooHigh=1.5;name:NotANumber=x;other:Foo=0.5");
+
+    assertNull(sampler.getRuleProbability("NoProbability", null));
+    assertNull(sampler.getRuleProbability("TooHigh", null));
+    assertNull(sampler.getRuleProbability("NotANumber", null));
+    assertNull(sampler.getRuleProbability("Foo", "other"));
+  }
+
+  @Test
+  public void nameRulesTakePrecedenceOverCategoryRules() {
+    NativeSpanSampler sampler = NativeSpanSampler.fromRules("category:custom=0.5;name:LoadFeed=0.1");
+
+    assertEquals(0.1, sampler.getRuleProbability("LoadFeed", null), 0.0);
+    assertEquals(0.5, sampler.getRuleProbability("Other", null), 0.0);
+    assertNull(sampler.getRuleProbability("Other", "network"));
+  }
+
+  @Test
+  public void ruleProbabilityIsCappedByConfiguredProbability() {
+    NativeSpanSampler sampler = NativeSpanSampler.fromRules("name:LoadFeed=0.8;name:Rare=0.1");
+    sampler.setProbability(0.5);
+
+    assertEquals(0.5, sampler.getRuleProbability("LoadFeed", null), 0.0);
+    assertEquals(0.1, sampler.getRuleProbability("Rare", null), 0.0);
+  }
+
+  @Test
+  public void traceIdSamplingValueMatchesJsSampler() {
+    assertEquals(0L, NativeSpanSampler.traceIdToSamplingValue("0123456789abcdef0123456789abcdef"));
+    assertEquals(640042052L, NativeSpanSampler.traceIdToSamplingValue("a0b1c2d3e4f5a0b1c2d3e4f5a0b1c2d3"));
+    assertEquals(LOW_SAMPLING_VALUE, NativeSpanSampler.traceIdToSamplingValue(LOW_TRACE_ID));
+    assertEquals(HIGH_SAMPLING_VALUE, NativeSpanSampler.traceIdToSamplingValue(HIGH_TRACE_ID));
+  }
+
+  @Test
+  public void childSpansAreSampledByTheirTraceId() {
+    NativeSpanSampler sampler = NativeSpanSampler.fromRules(null);
+    sampler.setProbability(0.5);
+
+    assertTrue(sampler.shouldRecord(null, LOW_TRACE_ID));
+    assertFalse(sampler.shouldRecord(null, HIGH_TRACE_ID));
+  }
+
+  @Test
+  public void childSpansUseTheRuleProbability() {
+    NativeSpanSampler sampler = NativeSpanSampler.fromRules("name:LoadFeed=0.01");
+
+    Double ruleProbability = sampler.getRuleProbability("LoadFeed", null);
+    assertFalse(sampler.shouldRecord(ruleProbability, LOW_TRACE_ID));
+    assertTrue(sampler.shouldRecord(null, LOW_TRACE_ID));
+  }
+
+  @Test
+  public void rootSpansWithoutRuleAreLeftToNativeSdk() {
+    NativeSpanSampler sampler = NativeSpanSampler.fromRules(null, new FixedRandom(0xffffffff));
+    sampler.setProbability(0.0);
+
+    assertTrue(sampler.shouldRecord(null, null));
+  }
+
+  @Test
+  public void rootSpansAreSampledAtRuleRatioOfConfiguredProbability() {
+    // the native SDK samples the span again at 0.5, so the rule is applied at 0.25 / 0.5
+    double probability = 0.5;
+    double rule = 0.25;
+    long threshold = (long) Math.floor(rule / probability * 0xffffffffL);
+
+    NativeSpanSampler kept = NativeSpanSampler.fromRules("name:LoadFeed=" + rule, new FixedRandom((int) threshold));
+    kept.setProbability(probability);
+    assertTrue(kept.shouldRecord(kept.getRuleProbability("LoadFeed", null), null));
+
+    NativeSpanSampler dropped = NativeSpanSampler.fromRules("name:LoadFeed=" + rule, new FixedRandom((int) (threshold + 1)));
+    dropped.setProbability(probability);
+    assertFalse(dropped.shouldRecord(dropped.getRuleProbability("LoadFeed", null), null));
+  }
+
+  @Test
+  public void rootSpansAreNotRecordedWhenConfiguredProbabilityIsZero() {
+    NativeSpanSampler sampler = NativeSpanSampler.fromRules("name:LoadFeed=1", new FixedRandom(1));
+    sampler.setProbability(0.0);
+
+    assertFalse(sampler.shouldRecord(sampler.getRuleProbability("LoadFeed", null), null));
+  }
+
+  private static final class FixedRandom extends Random {
+    private final int value;
+
+    FixedRandom(int value) {
+      this.value = value;
+    }
+
+    @Override
+    public int nextInt() {
+      return value;
+    }
+  }
+}
@@ -0,0 +1,197 @@
+package com.bugsnag.reactnative.performance;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+public class PayloadFileTest {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private HttpServer server;
+  private String endpoint;
+
+  private final AtomicReference<Map<String, String>> receivedHeaders = new AtomicReference<>();
+  private final AtomicReference<byte[]> receivedBody = new AtomicReference<>();
+  private volatile int responseStatus = 200;
+
+  @Before
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/traces", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String name : exchange.getRequestHeaders().keySet()) {
+          headers.put(name.toLowerCase(), exchange.getRequestHeaders().getFirst(name));
+        }
+        receivedHeaders.set(headers);
+        receivedBody.set(readAll(exchange.getRequestBody()));
+
+        byte[] response = "{}".getBytes(UTF_8);
+        exchange.sendResponseHeaders(responseStatus, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(response);
+        }
+      }
+    });
+    server.start();
+
+    endpoint = "http://127.0.0.1:" + server.getAddress().getPort() + "/traces";
+  }
+
+  @After
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  @Test
+  public void deliversStoredHeadersAndCompressedBody() throws IOException {
+    byte[] body = gzip("{\"resourceSpans\":[]}");
+    Map<String, String> headers = new LinkedHashMap<>();
+    headers.put("Bugsnag-Api-Key", "0123456789abcdef0123456789abcdef");
+    headers.put("Content-Type", "application/json");
+    File file = writePayloadFile(headers, body);
+
+    int status = PayloadFile.deliver(file, endpoint, Collections.singletonMap("Bugsnag-Sent-At", "2024-01-01T00:00:00.000Z"));
+
+    assertEquals(200, status);
+    assertEquals("0123456789abcdef0123456789abcdef", receivedHeaders.get().get("bugsnag-api-key"));
+    assertEquals("application/json", receivedHeaders.get().get("content-type"));
+    assertEquals("2024-01-01T00:00:00.000Z", receivedHeaders.get().get("bugsnag-sent-at"));
+    assertEquals("gzip", receivedHeaders.get().get("content-encoding"));
+    assertArrayEquals(body, receivedBody.get());
+  }
+
+  @Test
+  public void returnsClientErrorStatus() throws IOException {
+    responseStatus = 400;
+    File file = writePayloadFile(Collections.singletonMap("Content-Type", "application/json"), gzip("{}"));
+
+    assertEquals(400, PayloadFile.deliver(file, endpoint, Collections.<String, String>emptyMap()));
+  }
+
+  @Test
+  public void returnsNetworkErrorWhenNoResponseIsReceived() throws IOException {
+    File file = writePayloadFile(Collections.singletonMap("Content-Type", "application/json"), gzip("{}"));
+    server.stop(0);
+
+    assertEquals(
+      PayloadFile.STATUS_NETWORK_ERROR,
+      PayloadFile.deliver(file, endpoint, Collections.<String, String>emptyMap())
+    );
+  }
+
+  @Test
+  public void keepsStatusWhenResponseBodyCannotBeRead() throws Exception {
+    File file = writePayloadFile(Collections.singletonMap("Content-Type", "application/json"), gzip("{}"));
+
+    // a server that accepts the payload but sends a response body that can't be read
+    try (final ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      Thread serverThread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try (Socket client = socket.accept()) {
+            readRequest(client.getInputStream());
+            OutputStream out = client.getOutputStream();
+            out.write("HTTP/1.1 202 Accepted\r\nTransfer-Encoding: chunked\r\n\r\nnot a chunk size\r\n".getBytes(UTF_8));
+            out.flush();
+          } catch (IOException e) {
+            // the test will fail on the status
+          }
+        }
+      });
+      serverThread.start();
+
+      int status = PayloadFile.deliver(
+        file,
+        "http://127.0.0.1:" + socket.getLocalPort() + "/traces",
+        Collections.<String, String>emptyMap()
+      );
+
+      serverThread.join();
+      assertEquals(202, status);
+    }
+  }
+
+  private File writePayloadFile(Map<String, String> headers, byte[] body) throws IOException {
+    File file = temporaryFolder.newFile();
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(PayloadFile.encode(headers, body));
+    }
+    return file;
+  }
+
+  private static byte[] gzip(String json) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(json.getBytes(UTF_8));
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Read the request head and its Content-Length body from a raw socket
+   */
+  private static void readRequest(InputStream in) throws IOException {
+    StringBuilder head = new StringBuilder();
+    while (!head.toString().endsWith("\r\n\r\n")) {
+      int b = in.read();
+      if (b == -1) {
+        return;
+      }
+      head.append((char) b);
+    }
+
+    int contentLength = 0;
+    for (String line : head.toString().split("\r\n")) {
+      if (line.toLowerCase().startsWith("content-length:")) {
+        contentLength = Integer.parseInt(line.substring("content-length:".length()).trim());
+      }
+    }
+
+    for (int i = 0; i < contentLength; i++) {
+      if (in.read() == -1) {
+        return;
+      }
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package com.bugsnag.reactnative.performance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class PersistedValueStoreTest {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ScheduledExecutorService executor;
+
+  @Before
+  public void createExecutor() {
+    executor = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @After
+  public void shutdownExecutor() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void firstWriteOfKeyIsFlushedImmediately() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "persisted-state.json");
+    PersistedValueStore store = new PersistedValueStore(file, new AtomicFileWriter(), executor);
+
+    assertTrue(setValue(store, "device-id", "\"cuidcuidcuidcuidcuidcuidcuidcuid\""));
+
+    assertEquals("{\"device-id\":\"cuidcuidcuidcuidcuidcuidcuidcuid\"}", read(file));
+    assertEquals(1, store.getFlushCount());
+  }
+
+  @Test
+  public void writesDoNotWaitForTheFlush() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "persisted-state.json");
+    PersistedValueStore store = new PersistedValueStore(file, new AtomicFileWriter(), executor);
+
+    // hold up the executor, so that the flush can't run yet
+    final CountDownLatch executorBlocked = new CountDownLatch(1);
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          executorBlocked.await();
+        } catch (InterruptedException e) {
+          // the test will fail on the file contents
+        }
+      }
+    });
+
+    WriteResult result = new WriteResult();
+    store.setValue("device-id", "\"cuidcuidcuidcuidcuidcuidcuidcuid\"", result);
+
+    assertFalse(result.isComplete());
+    assertFalse(file.exists());
+
+    executorBlocked.countDown();
+    assertTrue(result.get());
+    assertEquals("{\"device-id\":\"cuidcuidcuidcuidcuidcuidcuidcuid\"}", read(file));
+  }
+
+  @Test
+  public void laterWritesOfKeyAreDeferred() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "persisted-state.json");
+    PersistedValueStore store = new PersistedValueStore(file, new AtomicFileWriter(), executor);
+
+    assertTrue(setValue(store, "sampling-probability", "{\"value\":1,\"time\":1}"));
+
+    WriteResult second = new WriteResult();
+    WriteResult third = new WriteResult();
+    store.setValue("sampling-probability", "{\"value\":0.5,\"time\":2}", second);
+    store.setValue("sampling-probability", "{\"value\":0.25,\"time\":3}", third);
+
+    assertFalse(second.isComplete());
+    assertEquals("{\"sampling-probability\":{\"value\":1,\"time\":1}}", read(file));
+
+    // both writes are resolved by the same deferred flush
+    assertTrue(second.get());
+    assertTrue(third.get());
+
+    assertEquals("{\"sampling-probability\":{\"value\":0.25,\"time\":3}}", read(file));
+    assertEquals(3, store.getWriteCount());
+    assertEquals(2, store.getFlushCount());
+  }
+
+  @Test
+  public void resolvesFalseWhenValueCannotBeWritten() throws Exception {
+    // the parent "directory" is a file, so the store can't be written
+    File file = new File(temporaryFolder.newFile(), "persisted-state.json");
+    PersistedValueStore store = new PersistedValueStore(file, new AtomicFileWriter(), executor);
+
+    assertFalse(setValue(store, "device-id", "\"cuidcuidcuidcuidcuidcuidcuidcuid\""));
+
+    // after a failed flush, writes to existing keys are not deferred either
+    long start = System.nanoTime();
+    assertFalse(setValue(store, "device-id", "\"cuidcuidcuidcuidcuidcuidcuidcuid\""));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < PersistedValueStore.FLUSH_DELAY_MS);
+    assertEquals(0, store.getFlushCount());
+  }
+
+  @Test
+  public void rejectsInvalidJson() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "persisted-state.json");
+    PersistedValueStore store = new PersistedValueStore(file, new AtomicFileWriter(), executor);
+
+    assertFalse(setValue(store, "device-id", "{ \"value\": "));
+    assertFalse(file.exists());
+  }
+
+  private static boolean setValue(PersistedValueStore store, String key, String json) throws InterruptedException {
+    WriteResult result = new WriteResult();
+    store.setValue(key, json, result);
+    return result.get();
+  }
+
+  private static final class WriteResult implements PersistedValueStore.WriteCallback {
+    private final CountDownLatch complete = new CountDownLatch(1);
+    private volatile boolean isWritten;
+
+    @Override
+    public void onWriteComplete(boolean isWritten) {
+      this.isWritten = isWritten;
+      complete.countDown();
+    }
+
+    boolean isComplete() {
+      return complete.getCount() == 0;
+    }
+
+    boolean get() throws InterruptedException {
+      assertTrue("the write was not completed", complete.await(5, TimeUnit.SECONDS));
+      return isWritten;
+    }
+  }
+
+  private static String read(File file) throws IOException {
+    return new String(FileContents.readBytes(file), UTF_8);
+  }
+}
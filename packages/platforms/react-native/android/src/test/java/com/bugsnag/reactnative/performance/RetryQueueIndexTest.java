@@ -0,0 +1,150 @@
+package com.bugsnag.reactnative.performance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class RetryQueueIndexTest {
+  private static final String OLDEST = "retry-100-a.json";
+  private static final String MIDDLE = "retry-200-b.json";
+  private static final String NEWEST = "retry-300-c.json";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void scansTheDirectoryWhenCreated() throws IOException {
+    File dir = temporaryFolder.newFolder();
+    writeFile(dir, OLDEST, 10);
+    writeFile(dir, NEWEST, 20);
+    writeFile(dir, "." + MIDDLE + ".123.tmp", 30);
+
+    RetryQueueIndex index = new RetryQueueIndex(dir, 1000L, 10, new AtomicFileWriter());
+
+    assertEquals(2, index.getCount());
+    assertEquals(30L, index.getTotalBytes());
+  }
+
+  @Test
+  public void nextReturnsFilesNewestFirst() throws IOException {
+    RetryQueueIndex index = new RetryQueueIndex(temporaryFolder.newFolder(), 1000L, 10, new AtomicFileWriter());
+    index.fileWritten(MIDDLE, 1L);
+    index.fileWritten(OLDEST, 1L);
+    index.fileWritten(NEWEST, 1L);
+
+    assertEquals(NEWEST, index.next(null));
+    assertEquals(MIDDLE, index.next(NEWEST));
+    assertEquals(OLDEST, index.next(MIDDLE));
+    assertNull(index.next(OLDEST));
+  }
+
+  @Test
+  public void nextContinuesAfterThePreviousFileIsRemoved() throws IOException {
+    RetryQueueIndex index = new RetryQueueIndex(temporaryFolder.newFolder(), 1000L, 10, new AtomicFileWriter());
+    index.fileWritten(OLDEST, 1L);
+    index.fileWritten(MIDDLE, 1L);
+    index.fileWritten(NEWEST, 1L);
+
+    // a file is removed once it has been delivered, before the next file is requested
+    index.fileRemoved(NEWEST);
+    assertEquals(MIDDLE, index.next(NEWEST));
+    assertEquals(2, index.getCount());
+  }
+
+  @Test
+  public void nextReturnsNullWhenEmpty() throws IOException {
+    RetryQueueIndex index = new RetryQueueIndex(temporaryFolder.newFolder(), 1000L, 10, new AtomicFileWriter());
+
+    assertNull(index.next(null));
+  }
+
+  @Test
+  public void evictsTheOldestFilesOverTheCountLimit() throws IOException {
+    File dir = temporaryFolder.newFolder();
+    RetryQueueIndex index = new RetryQueueIndex(dir, 1000L, 2, new AtomicFileWriter());
+
+    index.fileWritten(OLDEST, writeFile(dir, OLDEST, 10));
+    index.fileWritten(MIDDLE, writeFile(dir, MIDDLE, 10));
+    index.fileWritten(NEWEST, writeFile(dir, NEWEST, 10));
+
+    assertEquals(2, index.getCount());
+    assertEquals(1L, index.getEvictedCount());
+    assertEquals(10L, index.getEvictedBytes());
+    assertFalse(new File(dir, OLDEST).exists());
+    assertTrue(new File(dir, MIDDLE).exists());
+    assertEquals(MIDDLE, index.next(NEWEST));
+    assertNull(index.next(MIDDLE));
+  }
+
+  @Test
+  public void evictsTheOldestFilesOverTheByteLimit() throws IOException {
+    File dir = temporaryFolder.newFolder();
+    RetryQueueIndex index = new RetryQueueIndex(dir, 25L, 10, new AtomicFileWriter());
+
+    index.fileWritten(OLDEST, writeFile(dir, OLDEST, 10));
+    index.fileWritten(MIDDLE, writeFile(dir, MIDDLE, 10));
+    index.fileWritten(NEWEST, writeFile(dir, NEWEST, 10));
+
+    assertEquals(2, index.getCount());
+    assertEquals(20L, index.getTotalBytes());
+    assertEquals(1L, index.getEvictedCount());
+    assertFalse(new File(dir, OLDEST).exists());
+  }
+
+  @Test
+  public void aFileOverTheByteLimitIsEvictedItself() throws IOException {
+    File dir = temporaryFolder.newFolder();
+    RetryQueueIndex index = new RetryQueueIndex(dir, 25L, 10, new AtomicFileWriter());
+
+    index.fileWritten(OLDEST, writeFile(dir, OLDEST, 10));
+    index.fileWritten(NEWEST, writeFile(dir, NEWEST, 30));
+
+    assertEquals(0, index.getCount());
+    assertEquals(0L, index.getTotalBytes());
+    assertEquals(2L, index.getEvictedCount());
+    assertEquals(40L, index.getEvictedBytes());
+  }
+
+  @Test
+  public void rewritingAFileReplacesItsSize() throws IOException {
+    RetryQueueIndex index = new RetryQueueIndex(temporaryFolder.newFolder(), 1000L, 10, new AtomicFileWriter());
+
+    index.fileWritten(OLDEST, 10L);
+    index.fileWritten(OLDEST, 15L);
+
+    assertEquals(1, index.getCount());
+    assertEquals(15L, index.getTotalBytes());
+  }
+
+  @Test
+  public void evictsWhenTheScannedDirectoryIsOverTheLimits() throws IOException {
+    File dir = temporaryFolder.newFolder();
+    writeFile(dir, OLDEST, 10);
+    writeFile(dir, MIDDLE, 10);
+    writeFile(dir, NEWEST, 10);
+
+    RetryQueueIndex index = new RetryQueueIndex(dir, 1000L, 1, new AtomicFileWriter());
+
+    assertEquals(1, index.getCount());
+    assertEquals(NEWEST, index.next(null));
+    assertEquals(2L, index.getEvictedCount());
+    assertFalse(new File(dir, OLDEST).exists());
+    assertFalse(new File(dir, MIDDLE).exists());
+  }
+
+  private static long writeFile(File dir, String name, int size) throws IOException {
+    try (FileOutputStream output = new FileOutputStream(new File(dir, name))) {
+      output.write(new byte[size]);
+    }
+    return size;
+  }
+}
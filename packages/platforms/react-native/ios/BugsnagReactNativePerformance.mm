@@ -1,7 +1,14 @@
 #import "BugsnagReactNativePerformance.h"
 #import "BugsnagReactNativePerformanceCrossTalkAPIClient.h"
+#import "NativeSpanSampler.h"
 #import "ReactNativeSpanAttributes.h"
 #import <sys/sysctl.h>
+#import <atomic>
+#import <map>
+#import <mutex>
+#import <set>
+#import <string>
+#import <zlib.h>
 
 #ifdef RCT_NEW_ARCH_ENABLED
 #import "BugsnagReactNativePerformanceSpec.h"
@@ -26,12 +33,65 @@ NSMutableDictionary *openSpans;
 
 NSTimer *longRunningSpansTimer;
 
+/**
+* The native default attributes of each open span. All of a span's attributes are set from JS, so
+* the defaults are removed when the span ends rather than while JS is blocked starting it. The spans
+* are weakly held so that the entries of discarded spans don't need to be removed.
+*/
+static NSMapTable<BugsnagPerformanceSpan *, NSDictionary *> *nativeDefaultAttributes = [NSMapTable weakToStrongObjectsMapTable];
+
+/**
+* Remove the native default attributes captured when the span started, unless they have been set
+* since (for example by the span access plugin)
+*/
+static void removeNativeDefaultAttributes(BugsnagPerformanceSpan *nativeSpan) noexcept {
+    NSDictionary *defaults;
+    @synchronized (nativeDefaultAttributes) {
+        defaults = [nativeDefaultAttributes objectForKey:nativeSpan];
+        [nativeDefaultAttributes removeObjectForKey:nativeSpan];
+    }
+
+    [defaults enumerateKeysAndObjectsUsingBlock:^(NSString *key, id value, BOOL *) {
+        if (nativeSpan.attributes[key] == value) {
+            [nativeSpan.attributes removeObjectForKey:key];
+        }
+    }];
+}
+
+/**
+* Decides which spans started from JS are recorded, before a native span is created for them
+*/
+static NativeSpanSampler *spanSampler;
+
+/**
+* The number of spans discarded because they were left open for longer than an hour
+*/
+static NSUInteger abandonedSpanCount = 0;
+
+/**
+* The number of failed file writes
+*/
+static std::atomic<NSUInteger> fileWriteFailureCount{0};
+
+/**
+* Compression statistics for files written with the "gzip" encoding
+*/
+static std::atomic<NSUInteger> gzipWriteCount{0};
+static std::atomic<NSUInteger> gzipUncompressedBytes{0};
+static std::atomic<NSUInteger> gzipStoredBytes{0};
+
 RCT_EXPORT_MODULE()
 
 - (instancetype)init
 {
     if (self = [super init]) {
         openSpans = [NSMutableDictionary new];
+
+        static dispatch_once_t onceToken;
+        dispatch_once(&onceToken, ^{
+            NSString *rules = NSBundle.mainBundle.infoDictionary[@"BugsnagReactNativePerformanceSpanSamplingRules"];
+            spanSampler = [[NativeSpanSampler alloc] initWithRules:[rules isKindOfClass:[NSString class]] ? rules : nil];
+        });
     }
     return self;
 }
@@ -120,15 +180,119 @@ RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(getDeviceInfo) {
     return info;
 }
 
-RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(requestEntropy) {
+/**
+* A low priority serial queue used to generate entropy pools off the JS and native modules threads.
+* The next pool is always generated ahead of time so that requests can usually be answered immediately.
+*/
+static dispatch_queue_t entropyQueue() noexcept {
+    static dispatch_queue_t queue;
+    static dispatch_once_t onceToken;
+    dispatch_once(&onceToken, ^{
+        dispatch_queue_attr_t attr = dispatch_queue_attr_make_with_qos_class(DISPATCH_QUEUE_SERIAL, QOS_CLASS_UTILITY, 0);
+        queue = dispatch_queue_create("com.bugsnag.reactnative.performance.entropy", attr);
+    });
+    return queue;
+}
+
+static NSString *precomputedEntropyPool = nil;
+static NSUInteger entropyRefreshCount = 0;
+static NSUInteger entropyPrecomputedCount = 0;
+static NSTimeInterval entropyRefreshTotalTime = 0;
+static NSTimeInterval entropyRefreshMaxTime = 0;
+static NSTimeInterval entropyRefreshLastTime = 0;
+
+static NSString *generateEntropyPool() noexcept {
+    NSTimeInterval startTime = NSProcessInfo.processInfo.systemUptime;
     NSString *hexStr = getRandomBytes();
+    NSTimeInterval duration = NSProcessInfo.processInfo.systemUptime - startTime;
+
+    @synchronized ([BugsnagReactNativePerformance class]) {
+        entropyRefreshCount++;
+        entropyRefreshTotalTime += duration;
+        entropyRefreshLastTime = duration;
+        entropyRefreshMaxTime = MAX(entropyRefreshMaxTime, duration);
+    }
+
     return hexStr;
 }
 
+static NSString *takeEntropyPool() noexcept {
+    NSString *hexStr = nil;
+    @synchronized ([BugsnagReactNativePerformance class]) {
+        hexStr = precomputedEntropyPool;
+        precomputedEntropyPool = nil;
+        if (hexStr != nil) {
+            entropyPrecomputedCount++;
+        }
+    }
+
+    if (hexStr == nil) {
+        hexStr = generateEntropyPool();
+    }
+
+    dispatch_async(entropyQueue(), ^{
+        @synchronized ([BugsnagReactNativePerformance class]) {
+            if (precomputedEntropyPool != nil) {
+                return;
+            }
+        }
+
+        NSString *nextPool = generateEntropyPool();
+        @synchronized ([BugsnagReactNativePerformance class]) {
+            if (precomputedEntropyPool == nil) {
+                precomputedEntropyPool = nextPool;
+            }
+        }
+    });
+
+    return hexStr;
+}
+
+RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(requestEntropy) {
+    return takeEntropyPool();
+}
+
 RCT_EXPORT_METHOD(requestEntropyAsync:(RCTPromiseResolveBlock)resolve
                    reject:(RCTPromiseRejectBlock)reject) {
-    NSString *hexStr = getRandomBytes();
-    resolve(hexStr);
+    dispatch_async(entropyQueue(), ^{
+        resolve(takeEntropyPool());
+    });
+}
+
+RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(generateIds:(double)count
+                                       bits:(double)bits) {
+    NSUInteger idCount = (NSUInteger)count;
+    NSUInteger idLength = (NSUInteger)bits / 8;
+    NSMutableArray<NSString *> *ids = [NSMutableArray arrayWithCapacity:idCount];
+    if (idCount == 0 || (idLength != 8 && idLength != 16)) {
+        return ids;
+    }
+
+    static const char hexDigits[] = "0123456789abcdef";
+    NSMutableData *bytes = [NSMutableData dataWithLength:idCount * idLength];
+    if (SecRandomCopyBytes(kSecRandomDefault, bytes.length, bytes.mutableBytes) != errSecSuccess) {
+        return ids;
+    }
+
+    const UInt8 *randomBytes = (const UInt8 *)bytes.bytes;
+    char hex[33];
+    for (NSUInteger i = 0; i < idCount; i++) {
+        const UInt8 *idBytes = randomBytes + (i * idLength);
+        BOOL isZero = YES;
+        for (NSUInteger j = 0; j < idLength; j++) {
+            hex[j * 2] = hexDigits[idBytes[j] >> 4];
+            hex[j * 2 + 1] = hexDigits[idBytes[j] & 0xf];
+            isZero = isZero && idBytes[j] == 0;
+        }
+
+        // all zero IDs are invalid, so skip them (JS will request another batch)
+        if (!isZero) {
+            hex[idLength * 2] = '\0';
+            [ids addObject:[NSString stringWithUTF8String:hex]];
+        }
+    }
+
+    return ids;
 }
 
 RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(getNativeConstants) {
@@ -172,6 +336,214 @@ RCT_EXPORT_METHOD(ls:(NSString *)path
     }
 }
 
+/**
+* Parse the timestamp from a retry queue filename (retry-<timestamp>-<id>.json), matching timestamp-from-filename.ts
+* Returns 0 if the filename doesn't contain a valid timestamp
+*/
+static uint64_t timestampFromFilename(NSString *name) noexcept {
+    static NSRegularExpression *regex;
+    static dispatch_once_t onceToken;
+    dispatch_once(&onceToken, ^{
+        regex = [NSRegularExpression regularExpressionWithPattern:@"^retry-([0-9]+)-.+\\.json$" options:0 error:nil];
+    });
+
+    NSTextCheckingResult *match = [regex firstMatchInString:name options:0 range:NSMakeRange(0, name.length)];
+    if (match == nil) {
+        return 0;
+    }
+
+    return strtoull([[name substringWithRange:[match rangeAtIndex:1]] UTF8String], NULL, 10);
+}
+
+RCT_EXPORT_METHOD(listFiles:(NSString *)path
+          resolve:(RCTPromiseResolveBlock)resolve
+           reject:(RCTPromiseRejectBlock)reject) {
+    NSArray<NSURLResourceKey> *keys = @[NSURLFileSizeKey, NSURLContentModificationDateKey, NSURLIsDirectoryKey];
+    NSArray<NSURL *> *urls = [NSFileManager.defaultManager contentsOfDirectoryAtURL:[NSURL fileURLWithPath:path]
+                                                         includingPropertiesForKeys:keys
+                                                                            options:0
+                                                                              error:nil];
+    if (urls == nil) {
+        // the directory doesn't exist
+        resolve(@[]);
+        return;
+    }
+
+    NSMutableArray<NSDictionary *> *entries = [NSMutableArray arrayWithCapacity:urls.count];
+    for (NSURL *url in urls) {
+        NSDictionary<NSURLResourceKey, id> *values = [url resourceValuesForKeys:keys error:nil];
+        NSString *name = url.lastPathComponent;
+        NSDate *mtime = values[NSURLContentModificationDateKey];
+        [entries addObject:@{
+            @"name": name,
+            @"size": values[NSURLFileSizeKey] ?: @0,
+            @"mtime": @(mtime != nil ? mtime.timeIntervalSince1970 * 1000 : 0),
+            @"isDir": values[NSURLIsDirectoryKey] ?: @NO,
+            @"timestamp": @(timestampFromFilename(name)),
+        }];
+    }
+
+    // newest -> oldest by filename timestamp, with invalid filenames at the end
+    [entries sortUsingComparator:^NSComparisonResult(NSDictionary *a, NSDictionary *b) {
+        uint64_t aTimestamp = [a[@"timestamp"] unsignedLongLongValue];
+        uint64_t bTimestamp = [b[@"timestamp"] unsignedLongLongValue];
+        if (aTimestamp != bTimestamp) {
+            return aTimestamp > bTimestamp ? NSOrderedAscending : NSOrderedDescending;
+        }
+        return [a[@"name"] compare:b[@"name"] options:NSLiteralSearch];
+    }];
+
+    NSMutableArray<NSDictionary *> *result = [NSMutableArray arrayWithCapacity:entries.count];
+    for (NSDictionary *entry in entries) {
+        NSMutableDictionary *file = [entry mutableCopy];
+        [file removeObjectForKey:@"timestamp"];
+        [result addObject:file];
+    }
+
+    resolve(result);
+}
+
+/**
+* An in-memory index of the files in a retry queue directory, so that the queue can be flushed and
+* bounded without listing the directory. The directory is scanned once when the queue is opened,
+* after which the index is kept up to date as files are written and removed through this module.
+*
+* The queue is limited to a total number of bytes and files; when a write takes it over either limit
+* the oldest files are deleted until it is back under both.
+*/
+struct RetryQueueEntry {
+    uint64_t timestamp; // 0 if the filename has no valid timestamp
+    NSString *name;
+    uint64_t size;
+};
+
+// orders entries oldest to newest, i.e. the reverse of the order the queue is flushed in
+struct RetryQueueEntryOldestFirst {
+    bool operator()(const RetryQueueEntry &a, const RetryQueueEntry &b) const {
+        // filenames without a timestamp are flushed last, so are treated as the oldest
+        if ((a.timestamp == 0) != (b.timestamp == 0)) {
+            return a.timestamp == 0;
+        }
+        if (a.timestamp != b.timestamp) {
+            return a.timestamp < b.timestamp;
+        }
+        return [a.name compare:b.name] == NSOrderedDescending;
+    }
+};
+
+struct RetryQueueIndex {
+    NSString *directory;
+    uint64_t maxBytes;
+    NSUInteger maxCount;
+    std::set<RetryQueueEntry, RetryQueueEntryOldestFirst> entries;
+    uint64_t totalBytes = 0;
+    NSUInteger evictedCount = 0;
+    uint64_t evictedBytes = 0;
+};
+
+static std::mutex retryQueueIndexesMutex;
+static std::map<std::string, RetryQueueIndex> retryQueueIndexes;
+
+static RetryQueueEntry retryQueueEntry(NSString *name, uint64_t size) noexcept {
+    return RetryQueueEntry{timestampFromFilename(name), name, size};
+}
+
+static void retryQueueRemove(RetryQueueIndex &index, NSString *name) noexcept {
+    auto it = index.entries.find(retryQueueEntry(name, 0));
+    if (it != index.entries.end()) {
+        index.totalBytes -= it->size;
+        index.entries.erase(it);
+    }
+}
+
+static void retryQueueAdd(RetryQueueIndex &index, NSString *name, uint64_t size) noexcept {
+    retryQueueRemove(index, name);
+    index.entries.insert(retryQueueEntry(name, size));
+    index.totalBytes += size;
+
+    while (!index.entries.empty() && (index.totalBytes > index.maxBytes || index.entries.size() > index.maxCount)) {
+        auto oldest = index.entries.begin();
+        NSString *path = [index.directory stringByAppendingPathComponent:oldest->name];
+        if ([NSFileManager.defaultManager removeItemAtPath:path error:nil]
+            || ![NSFileManager.defaultManager fileExistsAtPath:path]) {
+            index.evictedCount++;
+            index.evictedBytes += oldest->size;
+        }
+
+        index.totalBytes -= oldest->size;
+        index.entries.erase(oldest);
+    }
+}
+
+static void retryQueueFileWritten(NSString *path) noexcept {
+    std::lock_guard<std::mutex> lock(retryQueueIndexesMutex);
+    auto it = retryQueueIndexes.find(path.stringByStandardizingPath.stringByDeletingLastPathComponent.UTF8String);
+    if (it != retryQueueIndexes.end()) {
+        NSDictionary *attributes = [NSFileManager.defaultManager attributesOfItemAtPath:path error:nil];
+        retryQueueAdd(it->second, path.lastPathComponent, [attributes[NSFileSize] unsignedLongLongValue]);
+    }
+}
+
+static void retryQueueFileRemoved(NSString *path) noexcept {
+    std::lock_guard<std::mutex> lock(retryQueueIndexesMutex);
+    auto it = retryQueueIndexes.find(path.stringByStandardizingPath.stringByDeletingLastPathComponent.UTF8String);
+    if (it != retryQueueIndexes.end()) {
+        retryQueueRemove(it->second, path.lastPathComponent);
+    }
+}
+
+RCT_EXPORT_METHOD(openRetryQueue:(NSString *)path
+                        maxBytes:(double)maxBytes
+                        maxCount:(double)maxCount
+                         resolve:(RCTPromiseResolveBlock)resolve
+                          reject:(RCTPromiseRejectBlock)reject) {
+    RetryQueueIndex index;
+    index.directory = path.stringByStandardizingPath;
+    index.maxBytes = (uint64_t)maxBytes;
+    index.maxCount = (NSUInteger)maxCount;
+
+    NSArray<NSURLResourceKey> *keys = @[NSURLFileSizeKey, NSURLIsDirectoryKey];
+    NSArray<NSURL *> *urls = [NSFileManager.defaultManager contentsOfDirectoryAtURL:[NSURL fileURLWithPath:index.directory]
+                                                         includingPropertiesForKeys:keys
+                                                                            options:NSDirectoryEnumerationSkipsHiddenFiles
+                                                                              error:nil];
+    for (NSURL *url in urls) {
+        NSDictionary<NSURLResourceKey, id> *values = [url resourceValuesForKeys:keys error:nil];
+        if (![values[NSURLIsDirectoryKey] boolValue]) {
+            retryQueueAdd(index, url.lastPathComponent, [values[NSURLFileSizeKey] unsignedLongLongValue]);
+        }
+    }
+
+    NSDictionary *result = @{
+        @"count": @(index.entries.size()),
+        @"totalBytes": @(index.totalBytes),
+    };
+
+    {
+        std::lock_guard<std::mutex> lock(retryQueueIndexesMutex);
+        retryQueueIndexes[index.directory.UTF8String] = index;
+    }
+
+    resolve(result);
+}
+
+RCT_EXPORT_METHOD(nextRetryQueueFile:(NSString *)path
+                            previous:(NSString *)previous
+                             resolve:(RCTPromiseResolveBlock)resolve
+                              reject:(RCTPromiseRejectBlock)reject) {
+    std::lock_guard<std::mutex> lock(retryQueueIndexesMutex);
+    auto it = retryQueueIndexes.find(path.stringByStandardizingPath.UTF8String);
+    if (it == retryQueueIndexes.end()) {
+        reject(@"ENOENT", @"Retry queue has not been opened", nil);
+        return;
+    }
+
+    // files are flushed newest to oldest, so the next file is the one before 'previous'
+    auto &entries = it->second.entries;
+    auto next = previous != nil ? entries.lower_bound(retryQueueEntry(previous, 0)) : entries.end();
+    resolve(next != entries.begin() ? (--next)->name : nil);
+}
+
 RCT_EXPORT_METHOD(mkdir:(NSString *)path
       resolve:(RCTPromiseResolveBlock)resolve
        reject:(RCTPromiseRejectBlock)reject) {
@@ -184,6 +556,70 @@ RCT_EXPORT_METHOD(mkdir:(NSString *)path
     }
 }
 
+static BOOL isGzipped(NSData *data) noexcept {
+    const UInt8 *bytes = (const UInt8 *)data.bytes;
+    return data.length >= 2 && bytes[0] == 0x1f && bytes[1] == 0x8b;
+}
+
+static NSData *gzipData(NSData *data) noexcept {
+    z_stream stream = {};
+    // 15 window bits + 16 to write a gzip (rather than zlib) header
+    if (deflateInit2(&stream, Z_DEFAULT_COMPRESSION, Z_DEFLATED, 15 + 16, 8, Z_DEFAULT_STRATEGY) != Z_OK) {
+        return nil;
+    }
+
+    NSMutableData *compressed = [NSMutableData dataWithLength:deflateBound(&stream, data.length)];
+    stream.next_in = (Bytef *)data.bytes;
+    stream.avail_in = (uInt)data.length;
+    stream.next_out = (Bytef *)compressed.mutableBytes;
+    stream.avail_out = (uInt)compressed.length;
+
+    int status = deflate(&stream, Z_FINISH);
+    deflateEnd(&stream);
+    if (status != Z_STREAM_END) {
+        return nil;
+    }
+
+    compressed.length = stream.total_out;
+    return compressed;
+}
+
+static NSData *gunzipData(NSData *data) noexcept {
+    z_stream stream = {};
+    // 15 window bits + 32 to detect a gzip or zlib header automatically
+    if (inflateInit2(&stream, 15 + 32) != Z_OK) {
+        return nil;
+    }
+
+    NSMutableData *decompressed = [NSMutableData dataWithLength:data.length * 4];
+    stream.next_in = (Bytef *)data.bytes;
+    stream.avail_in = (uInt)data.length;
+
+    // inflate returns Z_OK while it is making progress, Z_STREAM_END when it is done and
+    // Z_BUF_ERROR if it can't make progress (we always provide output space, so the input is truncated)
+    int status;
+    do {
+        if (stream.total_out >= decompressed.length) {
+            decompressed.length += data.length * 2;
+        }
+        stream.next_out = (Bytef *)decompressed.mutableBytes + stream.total_out;
+        stream.avail_out = (uInt)(decompressed.length - stream.total_out);
+        status = inflate(&stream, Z_NO_FLUSH);
+    } while (status == Z_OK);
+    inflateEnd(&stream);
+
+    if (status != Z_STREAM_END) {
+        return nil;
+    }
+
+    decompressed.length = stream.total_out;
+    return decompressed;
+}
+
+RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(isFileEncodingSupported:(NSString *)encoding) {
+    return @([encoding isEqualToString:@"utf8"] || [encoding isEqualToString:@"base64"] || [encoding isEqualToString:@"gzip"]);
+}
+
 RCT_EXPORT_METHOD(readFile:(NSString *)path
         encoding:(NSString *)encoding
          resolve:(RCTPromiseResolveBlock)resolve
@@ -203,6 +639,16 @@ RCT_EXPORT_METHOD(readFile:(NSString *)path
         } else {
             reject(@"ERR", @"Failed to read file, invalid base64", nil);
         }
+    } else if ([encoding isEqualToString:@"gzip"]) {
+        NSData *fileData = [[NSData alloc] initWithContentsOfFile:path];
+        // files that aren't compressed are read as plain UTF-8
+        NSData *contents = fileData != nil && isGzipped(fileData) ? gunzipData(fileData) : fileData;
+        NSString *fileString = contents != nil ? [[NSString alloc] initWithData:contents encoding:NSUTF8StringEncoding] : nil;
+        if (fileString != nil) {
+            resolve(fileString);
+        } else {
+            reject(@"EIO", @"Failed to read file", nil);
+        }
     }
 }
 
@@ -214,6 +660,7 @@ RCT_EXPORT_METHOD(unlink:(NSString *)path
     if (error != nil) {
         reject(@"EIO", @"Failed to remove file", error);
     } else if (result) {
+        retryQueueFileRemoved(path);
         resolve(nil);
     } else {
         reject(@"ENOENT", @"Failed to delete file/directory", nil);
@@ -225,23 +672,342 @@ RCT_EXPORT_METHOD(writeFile:(NSString *)path
          encoding:(NSString *)encoding
           resolve:(RCTPromiseResolveBlock)resolve
            reject:(RCTPromiseRejectBlock)reject) {
+    // files are written atomically (to a temporary file that is then moved into place)
+    // so that a process being killed mid-write can never leave a truncated file behind
     if ([encoding isEqualToString:@"utf8"]) {
         NSError *error;
-        [data writeToFile:path atomically:NO encoding:NSUTF8StringEncoding error:&error];
+        [data writeToFile:path atomically:YES encoding:NSUTF8StringEncoding error:&error];
         if (error != nil) {
+            fileWriteFailureCount++;
             reject(@"EIO", @"Failed to write file", error);
         } else {
+            retryQueueFileWritten(path);
             resolve(nil);
         }
     } else if ([encoding isEqualToString:@"base64"]) {
         NSURL *fileURL = [NSURL fileURLWithPath:path];
         NSData *nsData = [[NSData alloc] initWithBase64EncodedString:data options:NSDataBase64DecodingIgnoreUnknownCharacters];
         if (nsData != nil) {
-            [nsData writeToURL:fileURL atomically:NO];
-            resolve(nil);
+            if ([nsData writeToURL:fileURL atomically:YES]) {
+                retryQueueFileWritten(path);
+                resolve(nil);
+            } else {
+                fileWriteFailureCount++;
+                reject(@"EIO", @"Failed to write file", nil);
+            }
         } else {
             reject(@"ERR", @"Failed to write to '\(path)', invalid base64.", nil);
         }
+    } else if ([encoding isEqualToString:@"gzip"]) {
+        NSData *uncompressed = [data dataUsingEncoding:NSUTF8StringEncoding];
+        NSData *compressed = gzipData(uncompressed);
+        if (compressed != nil && [compressed writeToFile:path atomically:YES]) {
+            gzipWriteCount++;
+            gzipUncompressedBytes += uncompressed.length;
+            gzipStoredBytes += compressed.length;
+            retryQueueFileWritten(path);
+            resolve(nil);
+        } else {
+            fileWriteFailureCount++;
+            reject(@"EIO", @"Failed to write file", nil);
+        }
+    }
+}
+
+// Payload files hold the request headers and gzip compressed body of a retry queue payload so
+// that it can be delivered straight from disk without passing through JS:
+//   bugsnag-payload-v1\n
+//   Header-Name: value\n
+//   \n
+//   <gzip compressed body>
+static NSString * const payloadFileMagic = @"bugsnag-payload-v1";
+static const NSUInteger payloadFileMaxHeadLength = 64 * 1024;
+
+static NSData *encodePayloadFile(NSDictionary *headers, NSData *compressedBody) noexcept {
+    NSMutableString *head = [NSMutableString stringWithFormat:@"%@\n", payloadFileMagic];
+    NSCharacterSet *invalidCharacters = [NSCharacterSet characterSetWithCharactersInString:@"\r\n"];
+    for (NSString *name in headers) {
+        id value = headers[name];
+        if (![value isKindOfClass:[NSString class]]
+            || name.length == 0
+            || [name containsString:@":"]
+            || [name rangeOfCharacterFromSet:invalidCharacters].location != NSNotFound
+            || [value rangeOfCharacterFromSet:invalidCharacters].location != NSNotFound) {
+            return nil;
+        }
+        [head appendFormat:@"%@: %@\n", name, value];
+    }
+    [head appendString:@"\n"];
+
+    NSMutableData *data = [[head dataUsingEncoding:NSUTF8StringEncoding] mutableCopy];
+    [data appendData:compressedBody];
+    return data;
+}
+
+// Parses the head of a payload file into headers, returning the offset of the body or NSNotFound
+static NSUInteger decodePayloadFileHead(NSData *data, NSMutableDictionary *headers) noexcept {
+    NSData *newline = [NSData dataWithBytes:"\n\n" length:2];
+    NSRange searchRange = NSMakeRange(0, MIN(data.length, payloadFileMaxHeadLength));
+    NSRange end = [data rangeOfData:newline options:0 range:searchRange];
+    if (end.location == NSNotFound) {
+        return NSNotFound;
+    }
+
+    NSString *head = [[NSString alloc] initWithData:[data subdataWithRange:NSMakeRange(0, end.location)]
+                                           encoding:NSASCIIStringEncoding];
+    NSArray<NSString *> *lines = [head componentsSeparatedByString:@"\n"];
+    if (lines.count == 0 || ![lines[0] isEqualToString:payloadFileMagic]) {
+        return NSNotFound;
+    }
+
+    for (NSUInteger i = 1; i < lines.count; i++) {
+        NSRange separator = [lines[i] rangeOfString:@": "];
+        if (separator.location == NSNotFound || separator.location == 0) {
+            return NSNotFound;
+        }
+        headers[[lines[i] substringToIndex:separator.location]] = [lines[i] substringFromIndex:NSMaxRange(separator)];
+    }
+
+    return NSMaxRange(end);
+}
+
+// a single session so that connections to the endpoint are kept alive between deliveries
+static NSURLSession *payloadDeliverySession() noexcept {
+    static NSURLSession *session;
+    static dispatch_once_t onceToken;
+    dispatch_once(&onceToken, ^{
+        NSURLSessionConfiguration *configuration = [NSURLSessionConfiguration ephemeralSessionConfiguration];
+        configuration.HTTPMaximumConnectionsPerHost = 1;
+        session = [NSURLSession sessionWithConfiguration:configuration];
+    });
+    return session;
+}
+
+RCT_EXPORT_METHOD(writePayloadFile:(NSString *)path
+                           headers:(NSDictionary *)headers
+                              body:(NSString *)body
+                           resolve:(RCTPromiseResolveBlock)resolve
+                            reject:(RCTPromiseRejectBlock)reject) {
+    NSData *uncompressed = [body dataUsingEncoding:NSUTF8StringEncoding];
+    NSData *compressed = gzipData(uncompressed);
+    if (compressed == nil) {
+        fileWriteFailureCount++;
+        reject(@"EIO", @"Failed to compress payload", nil);
+        return;
+    }
+
+    NSData *payloadFile = encodePayloadFile(headers, compressed);
+    if (payloadFile == nil) {
+        reject(@"ERR", @"Invalid payload headers", nil);
+        return;
+    }
+
+    if ([payloadFile writeToFile:path atomically:YES]) {
+        gzipWriteCount++;
+        gzipUncompressedBytes += uncompressed.length;
+        gzipStoredBytes += compressed.length;
+        retryQueueFileWritten(path);
+        resolve(nil);
+    } else {
+        fileWriteFailureCount++;
+        reject(@"EIO", @"Failed to write file", nil);
+    }
+}
+
+RCT_EXPORT_METHOD(deliverPayloadFile:(NSString *)path
+                            endpoint:(NSString *)endpoint
+                             headers:(NSDictionary *)headers
+                             resolve:(RCTPromiseResolveBlock)resolve
+                              reject:(RCTPromiseRejectBlock)reject) {
+    // the file is memory mapped, so the body is paged in from disk as it is sent rather than
+    // being read into memory up front
+    NSError *error;
+    NSData *data = [NSData dataWithContentsOfFile:path options:NSDataReadingMappedIfSafe error:&error];
+    if (data == nil) {
+        reject(@"ENOENT", @"Failed to read payload file", error);
+        return;
+    }
+
+    NSMutableDictionary *requestHeaders = [NSMutableDictionary dictionary];
+    NSUInteger bodyOffset = decodePayloadFileHead(data, requestHeaders);
+    if (bodyOffset == NSNotFound || bodyOffset >= data.length) {
+        reject(@"EFORMAT", @"Not a payload file", nil);
+        return;
+    }
+
+    NSURL *url = [NSURL URLWithString:endpoint];
+    if (url == nil) {
+        reject(@"ERR", @"Invalid endpoint", nil);
+        return;
+    }
+
+    [requestHeaders addEntriesFromDictionary:headers];
+    NSMutableURLRequest *request = [NSMutableURLRequest requestWithURL:url];
+    request.HTTPMethod = @"POST";
+    for (NSString *name in requestHeaders) {
+        [request setValue:[requestHeaders[name] description] forHTTPHeaderField:name];
+    }
+    [request setValue:@"gzip" forHTTPHeaderField:@"Content-Encoding"];
+
+    NSData *body = [data subdataWithRange:NSMakeRange(bodyOffset, data.length - bodyOffset)];
+    NSURLSessionUploadTask *task = [payloadDeliverySession() uploadTaskWithRequest:request
+                                                                          fromData:body
+                                                                 completionHandler:^(NSData *, NSURLResponse *response, NSError *) {
+        // a status of 0 tells JS that the request could not be made at all
+        NSInteger status = [response isKindOfClass:[NSHTTPURLResponse class]]
+            ? ((NSHTTPURLResponse *)response).statusCode
+            : 0;
+        resolve(@(status));
+    }];
+    [task resume];
+}
+
+/**
+* Persisted values are held in memory and written to a JSON object file with the same layout as the
+* file written by the JS persistence. The file is read once, after which reads are served from memory,
+* and writes made in quick succession are coalesced into a single deferred flush.
+*/
+static const int64_t persistedValueFlushDelay = 500 * NSEC_PER_MSEC;
+
+static NSMutableDictionary<NSString *, NSMutableDictionary<NSString *, NSString *> *> *persistedValues = [NSMutableDictionary new];
+static NSMutableSet<NSString *> *persistedValueFlushesScheduled = [NSMutableSet new];
+static NSUInteger persistedValueWriteCount = 0;
+static NSUInteger persistedValueFlushCount = 0;
+static NSMutableSet<NSString *> *persistedValueFlushesFailed = [NSMutableSet new];
+static NSMutableDictionary<NSString *, NSMutableArray<RCTPromiseResolveBlock> *> *persistedValueCallbacks = [NSMutableDictionary new];
+
+static dispatch_queue_t persistenceQueue() noexcept {
+    static dispatch_queue_t queue;
+    static dispatch_once_t onceToken;
+    dispatch_once(&onceToken, ^{
+        dispatch_queue_attr_t attr = dispatch_queue_attr_make_with_qos_class(DISPATCH_QUEUE_SERIAL, QOS_CLASS_UTILITY, 0);
+        queue = dispatch_queue_create("com.bugsnag.reactnative.performance.persistence", attr);
+    });
+    return queue;
+}
+
+// encodes any JSON value, including strings & numbers which NSJSONSerialization only accepts
+// at the top level from iOS 13
+static NSString *encodeJSONValue(id value) noexcept {
+    NSData *data = [NSJSONSerialization dataWithJSONObject:@[value] options:0 error:nil];
+    NSString *array = data != nil ? [[NSString alloc] initWithData:data encoding:NSUTF8StringEncoding] : nil;
+    return array.length > 2 ? [array substringWithRange:NSMakeRange(1, array.length - 2)] : nil;
+}
+
+static BOOL isValidJSON(NSString *json) noexcept {
+    NSData *data = [json dataUsingEncoding:NSUTF8StringEncoding];
+    return data != nil && [NSJSONSerialization JSONObjectWithData:data options:NSJSONReadingAllowFragments error:nil] != nil;
+}
+
+// must be called while synchronized on persistedValues
+static NSMutableDictionary<NSString *, NSString *> *loadPersistedValues(NSString *path) noexcept {
+    NSMutableDictionary<NSString *, NSString *> *values = persistedValues[path];
+    if (values != nil) {
+        return values;
+    }
+
+    values = [NSMutableDictionary new];
+    persistedValues[path] = values;
+
+    NSData *data = [NSData dataWithContentsOfFile:path];
+    id json = data != nil ? [NSJSONSerialization JSONObjectWithData:data options:0 error:nil] : nil;
+    if ([json isKindOfClass:[NSDictionary class]]) {
+        for (NSString *key in json) {
+            NSString *value = encodeJSONValue(json[key]);
+            if (value != nil) {
+                values[key] = value;
+            }
+        }
+    }
+
+    return values;
+}
+
+// must be called while synchronized on persistedValues
+static void addPendingPersistedValueCallback(NSString *path, RCTPromiseResolveBlock resolve) noexcept {
+    NSMutableArray<RCTPromiseResolveBlock> *callbacks = persistedValueCallbacks[path];
+    if (callbacks == nil) {
+        callbacks = [NSMutableArray new];
+        persistedValueCallbacks[path] = callbacks;
+    }
+    [callbacks addObject:resolve];
+}
+
+static void flushPersistedValues(NSString *path) noexcept {
+    NSMutableString *contents = [NSMutableString stringWithString:@"{"];
+    NSArray<RCTPromiseResolveBlock> *callbacks;
+    @synchronized (persistedValues) {
+        [persistedValueFlushesScheduled removeObject:path];
+        // the callbacks taken here are for values included in this flush
+        callbacks = persistedValueCallbacks[path];
+        [persistedValueCallbacks removeObjectForKey:path];
+        [persistedValues[path] enumerateKeysAndObjectsUsingBlock:^(NSString *key, NSString *value, BOOL *) {
+            if (contents.length > 1) {
+                [contents appendString:@","];
+            }
+            [contents appendFormat:@"%@:%@", encodeJSONValue(key), value];
+        }];
+    }
+    [contents appendString:@"}"];
+
+    [[NSFileManager defaultManager] createDirectoryAtPath:[path stringByDeletingLastPathComponent]
+                              withIntermediateDirectories:YES
+                                               attributes:nil
+                                                    error:nil];
+
+    BOOL written = [contents writeToFile:path atomically:YES encoding:NSUTF8StringEncoding error:nil];
+    @synchronized (persistedValues) {
+        if (written) {
+            persistedValueFlushCount++;
+            [persistedValueFlushesFailed removeObject:path];
+        } else {
+            fileWriteFailureCount++;
+            [persistedValueFlushesFailed addObject:path];
+        }
+    }
+
+    for (RCTPromiseResolveBlock resolve in callbacks) {
+        resolve(@(written));
+    }
+}
+
+RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(getPersistedValues:(NSString *)path) {
+    @synchronized (persistedValues) {
+        return [loadPersistedValues(path) copy];
+    }
+}
+
+// Resolves once the flush that includes the value has completed. A new key, or any key after a
+// flush has failed, is flushed straight away so that a newly generated device ID isn't lost if
+// the app is killed. Flushes always run on the persistence queue, so the JS thread is never
+// blocked by a write and an older snapshot can't overwrite a newer one.
+RCT_EXPORT_METHOD(setPersistedValue:(NSString *)path
+                                key:(NSString *)key
+                              value:(NSString *)value
+                            resolve:(RCTPromiseResolveBlock)resolve
+                             reject:(RCTPromiseRejectBlock)reject) {
+    if (!isValidJSON(value)) {
+        resolve(@NO);
+        return;
+    }
+
+    @synchronized (persistedValues) {
+        NSMutableDictionary<NSString *, NSString *> *values = loadPersistedValues(path);
+        BOOL isNewKey = values[key] == nil;
+        values[key] = value;
+        persistedValueWriteCount++;
+        addPendingPersistedValueCallback(path, resolve);
+
+        if (isNewKey || [persistedValueFlushesFailed containsObject:path]) {
+            dispatch_async(persistenceQueue(), ^{
+                flushPersistedValues(path);
+            });
+        } else if (![persistedValueFlushesScheduled containsObject:path]) {
+            [persistedValueFlushesScheduled addObject:path];
+            dispatch_after(dispatch_time(DISPATCH_TIME_NOW, persistedValueFlushDelay), persistenceQueue(), ^{
+                flushPersistedValues(path);
+            });
+        }
     }
 }
 
@@ -267,6 +1033,12 @@ RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(attachToNativeSDK) {
                                                                repeats:YES];
     }
 
+    [ReactNativeSpanAttributes setAttributeCountLimit:nativeConfig.attributeCountLimit
+                                     stringValueLimit:nativeConfig.attributeStringValueLimit
+                                     arrayLengthLimit:nativeConfig.attributeArrayLengthLimit];
+
+    [spanSampler setProbability:nativeConfig.samplingProbability];
+
     NSMutableDictionary *config = [NSMutableDictionary new];
     config[@"apiKey"] = nativeConfig.apiKey;
     config[@"endpoint"] = [nativeConfig.endpoint absoluteString];
@@ -302,6 +1074,17 @@ RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(attachToNativeSDK) {
 RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(startNativeSpan:(NSString *)name
                 options:(NSDictionary *)options) {
 
+    // older JS layers don't understand unrecorded spans, so they are only sampled when asked to be
+    NSDictionary *parentContext = options[@"parentContext"];
+    NSNumber *ruleProbability = nil;
+    if ([options[@"sample"] boolValue]) {
+        ruleProbability = [spanSampler ruleProbabilityForSpanWithName:name category:options[@"category"]];
+        NSString *parentTraceId = parentContext != nil ? parentContext[@"traceId"] : nil;
+        if (![spanSampler shouldRecordSpanWithRuleProbability:ruleProbability traceId:parentTraceId]) {
+            return @{ @"name": name, @"isRecorded": @NO };
+        }
+    }
+
     // native spans are always first class and should never become the current context
     BugsnagPerformanceSpanOptions *spanOptions = [BugsnagReactNativePerformanceCrossTalkAPIClient.sharedInstance newSpanOptions];
     spanOptions.firstClass = BSGFirstClassYes;
@@ -313,7 +1096,6 @@ RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(startNativeSpan:(NSString *)name
     NSNumber *startTime = options[@"startTime"];
     spanOptions.startTime = [NSDate dateWithTimeIntervalSince1970:([startTime doubleValue] / NSEC_PER_SEC)];
     
-    NSDictionary *parentContext = options[@"parentContext"];
     if (parentContext != nil) {
         NSString *parentSpanId = parentContext[@"id"];
         NSString *parentTraceId = parentContext[@"traceId"];
@@ -326,7 +1108,15 @@ RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(startNativeSpan:(NSString *)name
     }
     
     BugsnagPerformanceSpan *nativeSpan = [BugsnagReactNativePerformanceCrossTalkAPIClient.sharedInstance startSpan:name options:spanOptions];
-    [nativeSpan.attributes removeAllObjects];
+    @synchronized (nativeDefaultAttributes) {
+        [nativeDefaultAttributes setObject:[nativeSpan.attributes copy] forKey:nativeSpan];
+    }
+
+    // spans sampled by a rule are scaled by the rule probability rather than the configured one,
+    // the bugsnag.sampling.p attribute is set from this when the span ends
+    if (ruleProbability != nil) {
+        nativeSpan.samplingProbability = ruleProbability.doubleValue;
+    }
     
     NSString *spanId = [NSString stringWithFormat:@"%016llx", nativeSpan.spanId];
     NSString *traceId = [NSString stringWithFormat:@"%016llx%016llx", nativeSpan.traceIdHi, nativeSpan.traceIdLo];
@@ -347,12 +1137,7 @@ RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(startNativeSpan:(NSString *)name
     return span;
 }
 
-RCT_EXPORT_METHOD(endNativeSpan:(NSString *)spanId
-                traceId:(NSString *)traceId
-                endTime:(double)endTime
-                attributes:(NSDictionary *)attributes
-                resolve:(RCTPromiseResolveBlock)resolve
-                reject:(RCTPromiseRejectBlock)reject) {
+static void endSpan(NSString *spanId, NSString *traceId, double endTime, NSDictionary *attributes, NSDictionary *columnarAttributes) {
     NSString *spanKey = [spanId stringByAppendingString:traceId];
 
     BugsnagPerformanceSpan *nativeSpan;
@@ -364,8 +1149,14 @@ RCT_EXPORT_METHOD(endNativeSpan:(NSString *)spanId
     }
 
     if (nativeSpan != nil) {
-        // Set native span attributes from JS values
-        [ReactNativeSpanAttributes setNativeAttributes:nativeSpan.attributes fromJSAttributes:attributes];
+        // Replace the native default attributes with the JS values
+        removeNativeDefaultAttributes(nativeSpan);
+
+        if (columnarAttributes != nil) {
+            [ReactNativeSpanAttributes setNativeAttributes:nativeSpan.attributes fromColumnarJSAttributes:columnarAttributes];
+        } else if (attributes != nil) {
+            [ReactNativeSpanAttributes setNativeAttributes:nativeSpan.attributes fromJSAttributes:attributes];
+        }
 
         // We need to reinstate the bugsnag.sampling.p attribute here as it might not be re-populated on span end
         nativeSpan.attributes[@"bugsnag.sampling.p"] = @(nativeSpan.samplingProbability);
@@ -378,7 +1169,26 @@ RCT_EXPORT_METHOD(endNativeSpan:(NSString *)spanId
         
         [nativeSpan sendForProcessing];
     }
+}
 
+static void discardSpan(NSString *spanId, NSString *traceId) {
+    NSString *spanKey = [spanId stringByAppendingString:traceId];
+    @synchronized (openSpans) {
+        BugsnagPerformanceSpan *nativeSpan = openSpans[spanKey];    
+        if (nativeSpan != nil) {
+            [openSpans removeObjectForKey:spanKey];
+            [nativeSpan abortUnconditionally];
+        }
+    }
+}
+
+RCT_EXPORT_METHOD(endNativeSpan:(NSString *)spanId
+                traceId:(NSString *)traceId
+                endTime:(double)endTime
+                attributes:(NSDictionary *)attributes
+                resolve:(RCTPromiseResolveBlock)resolve
+                reject:(RCTPromiseRejectBlock)reject) {
+    endSpan(spanId, traceId, endTime, attributes, nil);
     resolve(nil);
 }
 
@@ -398,18 +1208,40 @@ RCT_EXPORT_METHOD(discardNativeSpan:(NSString *)spanId
                 traceId:(NSString *)traceId
                 resolve:(RCTPromiseResolveBlock)resolve
                 reject:(RCTPromiseRejectBlock)reject) {
-    NSString *spanKey = [spanId stringByAppendingString:traceId];
-    @synchronized (openSpans) {
-        BugsnagPerformanceSpan *nativeSpan = openSpans[spanKey];    
-        if (nativeSpan != nil) {
-            [openSpans removeObjectForKey:spanKey];
-            [nativeSpan abortUnconditionally];
+    discardSpan(spanId, traceId);
+    resolve(nil);
+}
+
+/**
+ * Apply a batch of span operations queued by the JS span factory, so that ending,
+ * discarding many spans costs a single bridge call.
+ */
+RCT_EXPORT_METHOD(applyNativeSpanOperations:(NSArray *)operations
+                resolve:(RCTPromiseResolveBlock)resolve
+                reject:(RCTPromiseRejectBlock)reject) {
+    for (NSDictionary *operation in operations) {
+        NSString *type = operation[@"type"];
+        NSString *spanId = operation[@"spanId"];
+        NSString *traceId = operation[@"traceId"];
+        if (spanId == nil || traceId == nil) {
+            continue;
+        }
+
+        if ([type isEqualToString:@"end"]) {
+            NSNumber *endTime = operation[@"endTime"];
+            endSpan(spanId, traceId, [endTime doubleValue], operation[@"attributes"], operation[@"columnarAttributes"]);
+        } else if ([type isEqualToString:@"discard"]) {
+            discardSpan(spanId, traceId);
         }
     }
 
     resolve(nil);
 }
 
+RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(isAttributeEncodingSupported:(NSString *)encoding) {
+    return @([encoding isEqualToString:@"columnar"]);
+}
+
 RCT_EXPORT_METHOD(endNativeAppStart:(double)endTime
                 resolve:(RCTPromiseResolveBlock)resolve
                 reject:(RCTPromiseRejectBlock)reject) {
@@ -434,7 +1266,51 @@ RCT_EXPORT_METHOD(endNativeAppStart:(double)endTime
         }
         
         [openSpans removeObjectsForKeys:keysToRemove];
+        abandonedSpanCount += keysToRemove.count;
+    }
+}
+
+RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(getNativeMetrics) {
+    NSMutableDictionary *metrics = [NSMutableDictionary new];
+    @synchronized (openSpans) {
+        metrics[@"abandonedSpanCount"] = @(abandonedSpanCount);
+    }
+    metrics[@"fileWriteFailureCount"] = @(fileWriteFailureCount.load());
+    NSUInteger uncompressedBytes = gzipUncompressedBytes.load();
+    NSUInteger storedBytes = gzipStoredBytes.load();
+    metrics[@"gzipWriteCount"] = @(gzipWriteCount.load());
+    metrics[@"gzipUncompressedBytes"] = @(uncompressedBytes);
+    metrics[@"gzipStoredBytes"] = @(storedBytes);
+    metrics[@"gzipCompressionRatio"] = @(uncompressedBytes > 0 ? (double)storedBytes / uncompressedBytes : 0);
+    [ReactNativeSpanAttributes addMetrics:metrics];
+    [spanSampler addMetrics:metrics];
+    @synchronized ([BugsnagReactNativePerformance class]) {
+        metrics[@"entropyRefreshCount"] = @(entropyRefreshCount);
+        metrics[@"entropyPrecomputedCount"] = @(entropyPrecomputedCount);
+        metrics[@"entropyRefreshLastMs"] = @(entropyRefreshLastTime * 1000);
+        metrics[@"entropyRefreshMaxMs"] = @(entropyRefreshMaxTime * 1000);
+        metrics[@"entropyRefreshMeanMs"] = @(entropyRefreshCount > 0 ? entropyRefreshTotalTime * 1000 / entropyRefreshCount : 0);
+    }
+    {
+        std::lock_guard<std::mutex> lock(retryQueueIndexesMutex);
+        NSUInteger count = 0, evictedCount = 0;
+        uint64_t totalBytes = 0, evictedBytes = 0;
+        for (const auto &entry : retryQueueIndexes) {
+            count += entry.second.entries.size();
+            totalBytes += entry.second.totalBytes;
+            evictedCount += entry.second.evictedCount;
+            evictedBytes += entry.second.evictedBytes;
+        }
+        metrics[@"retryQueueCount"] = @(count);
+        metrics[@"retryQueueBytes"] = @(totalBytes);
+        metrics[@"retryQueueEvictedCount"] = @(evictedCount);
+        metrics[@"retryQueueEvictedBytes"] = @(evictedBytes);
+    }
+    @synchronized (persistedValues) {
+        metrics[@"persistedValueWriteCount"] = @(persistedValueWriteCount);
+        metrics[@"persistedValueFlushCount"] = @(persistedValueFlushCount);
     }
+    return metrics;
 }
 
 #ifdef RCT_NEW_ARCH_ENABLED
@@ -0,0 +1,48 @@
+#import <Foundation/Foundation.h>
+
+NS_ASSUME_NONNULL_BEGIN
+
+/**
+ * Decides whether a span started from JS should be recorded at all, before any native span is
+ * created for it.
+ *
+ * The probability for a span comes from the first rule that matches its name, then its category,
+ * and is capped by the sampling probability from the native configuration. Rules are read from the
+ * "BugsnagReactNativePerformanceSpanSamplingRules" Info.plist key as ";" separated entries, for
+ * example: "name:LoadFeed=0.1;category:custom=0.5"
+ *
+ * When the span has a parent the decision is based on its trace ID, in the same way as the JS SDK
+ * samples spans, so that every span in a trace gets the same decision. Root spans are only sampled
+ * here if a rule matches them. The native SDK still samples them at the configured probability, so
+ * they are sampled here at the ratio that leaves their combined probability the same as the rule's.
+ *
+ * A span sampled by a rule should have its "bugsnag.sampling.p" attribute set to the rule
+ * probability, so that it is scaled correctly once it has been received.
+ */
+@interface NativeSpanSampler : NSObject
+
+- (instancetype)initWithRules:(nullable NSString *)rules;
+
+/**
+ * Set the sampling probability from the native configuration, nil leaves sampling to the native SDK
+ */
+- (void)setProbability:(nullable NSNumber *)probability;
+
+/**
+ * Returns the probability of the first rule that matches a span, capped by the configured sampling
+ * probability, or nil if no rule matches. The category is nil for custom spans.
+ */
+- (nullable NSNumber *)ruleProbabilityForSpanWithName:(NSString *)name category:(nullable NSString *)category;
+
+/**
+ * Returns YES if a span should be recorded. The rule probability is nil if no rule matches the span
+ * and the trace ID is the hex encoded trace ID of the span's parent, or nil for root spans.
+ */
+- (BOOL)shouldRecordSpanWithRuleProbability:(nullable NSNumber *)ruleProbability
+                                    traceId:(nullable NSString *)traceId;
+
+- (void)addMetrics:(NSMutableDictionary *)metrics;
+
+@end
+
+NS_ASSUME_NONNULL_END
@@ -0,0 +1,117 @@
+#import "NativeSpanSampler.h"
+#import <atomic>
+#import <cmath>
+
+static NSString * const defaultCategory = @"custom";
+static NSString * const ruleSeparator = @";";
+static NSString * const nameRulePrefix = @"name:";
+static NSString * const categoryRulePrefix = @"category:";
+
+static const uint64_t maxSamplingValue = 0xffffffffULL;
+static const NSUInteger traceIdLength = 32;
+
+static NSNumber *parseProbability(NSString *value) noexcept {
+    NSScanner *scanner = [NSScanner scannerWithString:value];
+    double probability;
+    if ([scanner scanDouble:&probability] && scanner.isAtEnd && probability >= 0.0 && probability <= 1.0) {
+        return @(probability);
+    }
+    return nil;
+}
+
+/**
+ * The same sampling value that the JS SDK derives from a trace ID: each 32 bit segment of the
+ * trace ID XOR'd together
+ */
+static uint64_t traceIdToSamplingValue(NSString *traceId) noexcept {
+    uint64_t value = 0;
+    for (NSUInteger i = 0; i < traceIdLength; i += 8) {
+        unsigned int segment = 0;
+        [[NSScanner scannerWithString:[traceId substringWithRange:NSMakeRange(i, 8)]] scanHexInt:&segment];
+        value ^= segment;
+    }
+    return value;
+}
+
+@implementation NativeSpanSampler {
+    NSDictionary<NSString *, NSNumber *> *_nameRules;
+    NSDictionary<NSString *, NSNumber *> *_categoryRules;
+    std::atomic<double> _probability;
+    std::atomic<NSUInteger> _unsampledSpanCount;
+}
+
+- (instancetype)initWithRules:(NSString *)rules {
+    if (self = [super init]) {
+        NSMutableDictionary *nameRules = [NSMutableDictionary new];
+        NSMutableDictionary *categoryRules = [NSMutableDictionary new];
+
+        for (NSString *rule in [rules componentsSeparatedByString:ruleSeparator]) {
+            // span names may contain '=' so the probability follows the last one
+            NSRange separator = [rule rangeOfString:@"=" options:NSBackwardsSearch];
+            if (separator.location == NSNotFound) {
+                continue;
+            }
+
+            NSCharacterSet *whitespace = NSCharacterSet.whitespaceCharacterSet;
+            NSString *key = [[rule substringToIndex:separator.location] stringByTrimmingCharactersInSet:whitespace];
+            NSNumber *probability = parseProbability([[rule substringFromIndex:NSMaxRange(separator)] stringByTrimmingCharactersInSet:whitespace]);
+            if (probability == nil) {
+                continue;
+            }
+
+            if ([key hasPrefix:nameRulePrefix]) {
+                nameRules[[key substringFromIndex:nameRulePrefix.length]] = probability;
+            } else if ([key hasPrefix:categoryRulePrefix]) {
+                categoryRules[[key substringFromIndex:categoryRulePrefix.length]] = probability;
+            }
+        }
+
+        _nameRules = nameRules;
+        _categoryRules = categoryRules;
+        _probability = 1.0;
+        _unsampledSpanCount = 0;
+    }
+    return self;
+}
+
+- (void)setProbability:(NSNumber *)probability {
+    _probability = probability != nil ? probability.doubleValue : 1.0;
+}
+
+- (NSNumber *)ruleProbabilityForSpanWithName:(NSString *)name category:(NSString *)category {
+    NSNumber *ruleProbability = _nameRules[name];
+    if (ruleProbability == nil) {
+        ruleProbability = _categoryRules[category != nil ? category : defaultCategory];
+    }
+
+    return ruleProbability != nil ? @(MIN(ruleProbability.doubleValue, _probability.load())) : nil;
+}
+
+- (BOOL)shouldRecordSpanWithRuleProbability:(NSNumber *)ruleProbability traceId:(NSString *)traceId {
+    uint64_t samplingValue;
+    double spanProbability;
+    if (traceId.length == traceIdLength) {
+        samplingValue = traceIdToSamplingValue(traceId);
+        spanProbability = ruleProbability != nil ? ruleProbability.doubleValue : _probability.load();
+    } else if (ruleProbability != nil) {
+        // the native SDK samples the span again at the configured probability
+        double probability = _probability.load();
+        samplingValue = arc4random();
+        spanProbability = probability > 0.0 ? ruleProbability.doubleValue / probability : 0.0;
+    } else {
+        return YES;
+    }
+
+    if (samplingValue <= (uint64_t)floor(spanProbability * maxSamplingValue)) {
+        return YES;
+    }
+
+    _unsampledSpanCount++;
+    return NO;
+}
+
+- (void)addMetrics:(NSMutableDictionary *)metrics {
+    metrics[@"unsampledSpanCount"] = @(_unsampledSpanCount.load());
+}
+
+@end
@@ -4,8 +4,26 @@ NS_ASSUME_NONNULL_BEGIN
 
 @interface ReactNativeSpanAttributes : NSObject
 
+/**
+ * Set the limits applied while converting attributes from JS values: attributes beyond the count
+ * limit are dropped, and strings and arrays are truncated
+ */
++ (void)setAttributeCountLimit:(NSUInteger)countLimit
+              stringValueLimit:(NSUInteger)stringValueLimit
+              arrayLengthLimit:(NSUInteger)arrayLengthLimit;
+
+/**
+ * Add the counts of dropped attributes, truncated values and interned strings to the native metrics
+ */
++ (void)addMetrics:(NSMutableDictionary *)metrics;
+
 + (void)setNativeAttributes:(NSMutableDictionary *)attributes fromJSAttributes:(NSDictionary *)jsAttributes;
 
+/**
+ * Set attributes encoded as parallel arrays of keys, type tags and values (see columnar-attributes.ts)
+ */
++ (void)setNativeAttributes:(NSMutableDictionary *)attributes fromColumnarJSAttributes:(NSDictionary *)columns;
+
 @end
 
 NS_ASSUME_NONNULL_END
@@ -1,20 +1,238 @@
 #import "ReactNativeSpanAttributes.h"
 
+#import <atomic>
+
+// these must match the type tags in columnar-attributes.ts
+typedef NS_ENUM(NSInteger, ColumnarAttributeType) {
+    ColumnarAttributeTypeString = 0,
+    ColumnarAttributeTypeBoolean = 1,
+    ColumnarAttributeTypeInteger = 2,
+    ColumnarAttributeTypeDouble = 3,
+    ColumnarAttributeTypeStringArray = 4,
+    ColumnarAttributeTypeIntegerArray = 5,
+    ColumnarAttributeTypeDoubleArray = 6,
+    ColumnarAttributeTypeArray = 7,
+};
+
+// the attribute limits from the native configuration; no limits apply until they are known
+static std::atomic<NSUInteger> attributeCountLimit(NSUIntegerMax);
+static std::atomic<NSUInteger> attributeStringValueLimit(NSUIntegerMax);
+static std::atomic<NSUInteger> attributeArrayLengthLimit(NSUIntegerMax);
+
+static std::atomic<NSUInteger> droppedAttributeCount(0);
+static std::atomic<NSUInteger> truncatedStringCount(0);
+static std::atomic<NSUInteger> truncatedArrayCount(0);
+
+// bounded intern tables for attribute keys and short attribute values, so that spans bridged from
+// JS share a single copy of the key strings (and low cardinality values) they all carry
+static const NSUInteger kKeyInternTableSize = 512;
+static const NSUInteger kValueInternTableSize = 256;
+static const NSUInteger kMaxInternedValueLength = 32;
+
+static NSCache<NSString *, NSString *> *keyInternTable;
+static NSCache<NSString *, NSString *> *valueInternTable;
+
+static std::atomic<NSUInteger> keyInternHitCount(0);
+static std::atomic<NSUInteger> keyInternMissCount(0);
+static std::atomic<NSUInteger> valueInternHitCount(0);
+static std::atomic<NSUInteger> valueInternMissCount(0);
+
+static NSString *intern(NSCache<NSString *, NSString *> *table, NSString *value,
+                        std::atomic<NSUInteger> &hitCount, std::atomic<NSUInteger> &missCount) {
+    NSString *existing = [table objectForKey:value];
+    if (existing != nil) {
+        hitCount++;
+        return existing;
+    }
+
+    missCount++;
+    [table setObject:value forKey:value];
+    return value;
+}
+
 @implementation ReactNativeSpanAttributes
 
++ (void)initialize {
+    if (self == [ReactNativeSpanAttributes class]) {
+        keyInternTable = [NSCache new];
+        keyInternTable.countLimit = kKeyInternTableSize;
+        valueInternTable = [NSCache new];
+        valueInternTable.countLimit = kValueInternTableSize;
+    }
+}
+
++ (NSString *)internKey:(NSString *)key {
+    return intern(keyInternTable, key, keyInternHitCount, keyInternMissCount);
+}
+
++ (NSString *)internValue:(NSString *)value {
+    if (value.length > kMaxInternedValueLength) {
+        return value;
+    }
+
+    return intern(valueInternTable, value, valueInternHitCount, valueInternMissCount);
+}
+
++ (void)setAttributeCountLimit:(NSUInteger)countLimit
+              stringValueLimit:(NSUInteger)stringValueLimit
+              arrayLengthLimit:(NSUInteger)arrayLengthLimit {
+    attributeCountLimit = countLimit;
+    attributeStringValueLimit = stringValueLimit;
+    attributeArrayLengthLimit = arrayLengthLimit;
+}
+
++ (void)addMetrics:(NSMutableDictionary *)metrics {
+    metrics[@"droppedAttributeCount"] = @(droppedAttributeCount.load());
+    metrics[@"truncatedAttributeStringCount"] = @(truncatedStringCount.load());
+    metrics[@"truncatedAttributeArrayCount"] = @(truncatedArrayCount.load());
+    metrics[@"attributeKeyInternHitCount"] = @(keyInternHitCount.load());
+    metrics[@"attributeKeyInternMissCount"] = @(keyInternMissCount.load());
+    metrics[@"attributeValueInternHitCount"] = @(valueInternHitCount.load());
+    metrics[@"attributeValueInternMissCount"] = @(valueInternMissCount.load());
+}
+
 + (void)setNativeAttributes:(NSMutableDictionary *)attributes fromJSAttributes:(NSDictionary *)jsAttributes {
+    NSUInteger countLimit = attributeCountLimit.load();
+    NSUInteger setCount = 0;
     for (NSString *key in jsAttributes) {
+        if (setCount >= countLimit) {
+            droppedAttributeCount += jsAttributes.count - setCount;
+            return;
+        }
+
         id value = jsAttributes[key];
+        NSString *internedKey = [self internKey:key];
         if ([value isKindOfClass:[NSNumber class]]) {
-            [self setNSNumberAttribute:attributes key:key value:value];
+            [self setNSNumberAttribute:attributes key:internedKey value:value];
         } else if ([value isKindOfClass:[NSArray class]]) {
-            [self setArrayAttribute:attributes key:key value:value];
+            attributes[internedKey] = [self decodeArray:value];
+        } else if ([value isKindOfClass:[NSString class]]) {
+            attributes[internedKey] = [self internValue:[self truncateString:value]];
         } else {
-            attributes[key] = value;
+            attributes[internedKey] = value;
         }
+        setCount++;
     }
 }
 
++ (void)setNativeAttributes:(NSMutableDictionary *)attributes fromColumnarJSAttributes:(NSDictionary *)columns {
+    NSArray *keys = columns[@"keys"];
+    NSArray *types = columns[@"types"];
+    NSArray *values = columns[@"values"];
+    if (![keys isKindOfClass:[NSArray class]] || ![types isKindOfClass:[NSArray class]] || ![values isKindOfClass:[NSArray class]]) {
+        return;
+    }
+
+    NSUInteger countLimit = attributeCountLimit.load();
+    NSUInteger setCount = 0;
+    NSUInteger count = MIN(keys.count, MIN(types.count, values.count));
+    for (NSUInteger i = 0; i < count; i++) {
+        if (setCount >= countLimit) {
+            droppedAttributeCount += count - i;
+            return;
+        }
+
+        NSString *key = keys[i];
+        NSNumber *type = types[i];
+        id value = values[i];
+        if (![key isKindOfClass:[NSString class]] || ![type isKindOfClass:[NSNumber class]]) {
+            continue;
+        }
+
+        if ([self setColumnarAttribute:attributes key:[self internKey:key] type:(ColumnarAttributeType)type.integerValue value:value]) {
+            setCount++;
+        }
+    }
+}
+
++ (BOOL)setColumnarAttribute:(NSMutableDictionary *)attributes key:(NSString *)key type:(ColumnarAttributeType)type value:(id)value {
+    switch (type) {
+        case ColumnarAttributeTypeString:
+            if ([value isKindOfClass:[NSString class]]) {
+                attributes[key] = [self internValue:[self truncateString:value]];
+                return YES;
+            }
+            return NO;
+        case ColumnarAttributeTypeBoolean:
+            if ([value isKindOfClass:[NSNumber class]]) {
+                attributes[key] = @([value boolValue]);
+                return YES;
+            }
+            return NO;
+        case ColumnarAttributeTypeInteger:
+            if ([value isKindOfClass:[NSNumber class]]) {
+                attributes[key] = @((long)[value doubleValue]);
+                return YES;
+            }
+            return NO;
+        case ColumnarAttributeTypeDouble:
+            if ([value isKindOfClass:[NSNumber class]]) {
+                attributes[key] = @([value doubleValue]);
+                return YES;
+            }
+            return NO;
+        case ColumnarAttributeTypeStringArray:
+            if ([value isKindOfClass:[NSArray class]]) {
+                attributes[key] = [self truncateArray:value];
+                return YES;
+            }
+            return NO;
+        case ColumnarAttributeTypeIntegerArray:
+        case ColumnarAttributeTypeDoubleArray:
+            if ([value isKindOfClass:[NSArray class]]) {
+                BOOL isInteger = type == ColumnarAttributeTypeIntegerArray;
+                NSArray *array = value;
+                NSUInteger size = [self arrayLength:array.count];
+                NSMutableArray *numbers = [NSMutableArray arrayWithCapacity:size];
+                for (NSUInteger i = 0; i < size; i++) {
+                    double doubleValue = [array[i] doubleValue];
+                    [numbers addObject:isInteger ? @((long)doubleValue) : @(doubleValue)];
+                }
+                attributes[key] = numbers;
+                return YES;
+            }
+            return NO;
+        case ColumnarAttributeTypeArray:
+            if ([value isKindOfClass:[NSArray class]]) {
+                attributes[key] = [self decodeArray:value];
+                return YES;
+            }
+            return NO;
+    }
+
+    return NO;
+}
+
+/**
+ * Truncate a string to the string value limit, marking it the same way as the JS SDK does
+ */
++ (NSString *)truncateString:(NSString *)value {
+    NSUInteger limit = attributeStringValueLimit.load();
+    NSUInteger length = value.length;
+    if (length <= limit) {
+        return value;
+    }
+
+    truncatedStringCount++;
+    return [NSString stringWithFormat:@"%@ *** %lu CHARS TRUNCATED",
+            [value substringToIndex:limit], (unsigned long)(length - limit)];
+}
+
++ (NSUInteger)arrayLength:(NSUInteger)length {
+    NSUInteger limit = attributeArrayLengthLimit.load();
+    if (length <= limit) {
+        return length;
+    }
+
+    truncatedArrayCount++;
+    return limit;
+}
+
++ (NSArray *)truncateArray:(NSArray *)value {
+    NSUInteger size = [self arrayLength:value.count];
+    return size == value.count ? value : [value subarrayWithRange:NSMakeRange(0, size)];
+}
+
 + (void)setNSNumberAttribute:(NSMutableDictionary *)attributes key:(NSString *)key value:(NSNumber *)value {
     if ([self isBoolean:value]) {
         attributes[key] = value;
@@ -30,58 +248,43 @@
     }
 }
 
-+ (void)setArrayAttribute:(NSMutableDictionary *)attributes key:(NSString *)key value:(NSArray *)value {
-    NSUInteger size = value.count;
-    if (size == 0) {
-        attributes[key] = @[];
-        return;
-    }
-    
-    if ([self isNumberArray:value]) {
-        [self setNumberArrayAttribute:attributes key:key value:value];
-    } else {
-        attributes[key] = value;
-    }
-}
+/**
+ * Decode a JS array up to the array length limit. Integers are stored
+ * as longs, unless the array is all numbers and some are fractional, in which case every number is
+ * stored as a double. Booleans and strings are kept as they are, so boolean and mixed type arrays
+ * are supported. Elements that cannot be attribute values (nulls, objects and arrays) are skipped.
+ */
++ (NSArray *)decodeArray:(NSArray *)value {
+    NSUInteger size = [self arrayLength:value.count];
+    NSMutableArray *decoded = [NSMutableArray arrayWithCapacity:size];
+    BOOL isNumberArray = YES;
+    BOOL hasFraction = NO;
 
-+ (void)setNumberArrayAttribute:(NSMutableDictionary *)attributes key:(NSString *)key value:(NSArray *)value {
-    NSUInteger size = value.count;
-    if (size == 0) {
-        attributes[key] = @[];
-        return;
-    }
-    
-    BOOL allIntegers = YES;
-    NSMutableArray *longValues = [NSMutableArray arrayWithCapacity:size];
-    for (NSNumber *number in value) {
-        double doubleValue = [number doubleValue];
-        long longValue = (long)doubleValue;
-        if (doubleValue != longValue) {
-            allIntegers = NO;
-            break;
+    for (NSUInteger i = 0; i < size; i++) {
+        id element = value[i];
+        if ([element isKindOfClass:[NSNumber class]] && ![self isBoolean:element]) {
+            double doubleValue = [element doubleValue];
+            long longValue = (long)doubleValue;
+            if (doubleValue == longValue) {
+                [decoded addObject:@(longValue)];
+            } else {
+                hasFraction = YES;
+                [decoded addObject:@(doubleValue)];
+            }
+        } else if ([element isKindOfClass:[NSNumber class]] || [element isKindOfClass:[NSString class]]) {
+            isNumberArray = NO;
+            [decoded addObject:element];
         }
-        
-        [longValues addObject:@(longValue)];
     }
 
-    if (allIntegers) {
-        attributes[key] = longValues;
-    } else {
-        NSMutableArray *doubleValues = [NSMutableArray arrayWithCapacity:size];
-        for (NSNumber *number in value) {
-            [doubleValues addObject:@([number doubleValue])];
+    if (isNumberArray && hasFraction) {
+        // an array with any fractional number is stored as doubles, including the integers so far
+        for (NSUInteger i = 0; i < decoded.count; i++) {
+            decoded[i] = @([decoded[i] doubleValue]);
         }
-        attributes[key] = doubleValues;
     }
-}
 
-+ (BOOL)isNumberArray:(NSArray *)array {
-    id firstValue = array[0];
-    if ([firstValue isKindOfClass:[NSNumber class]]) {
-        return ![self isBoolean:firstValue];
-    }
-    
-    return NO;
+    return decoded;
 }
 
 + (BOOL) isBoolean:(NSNumber *)value {
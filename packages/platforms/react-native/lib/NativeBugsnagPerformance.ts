@@ -16,6 +16,18 @@ export type NativeDirs = {
   DocumentDir: string // Persistent data. Generally user created content.
 }
 
+export type FileInfo = {
+  name: string
+  size: number // in bytes
+  mtime: number // milliseconds since the unix epoch
+  isDir: boolean
+}
+
+export type RetryQueueInfo = {
+  count: number
+  totalBytes: number
+}
+
 export type NativeConfiguration = {
   apiKey: string
   endpoint: string
@@ -37,31 +49,47 @@ export type ParentContext = {
 
 export type NativeSpan = {
   name: string
-  id: string
-  traceId: string
+  id: string | undefined // omitted when packed IDs are requested
+  traceId: string | undefined // omitted when packed IDs are requested
   startTime: number
   parentSpanId: string | undefined
+  ids: number[] | undefined // only present when packed IDs are requested (Android only)
+  // false when sampling was requested and the native sampler decided not to
+  // record the span, in which case no native span exists and only the name is set
+  isRecorded?: boolean
 }
 
 export interface Spec extends TurboModule {
   getDeviceInfo: () => DeviceInfo | undefined
   requestEntropy: () => string
   requestEntropyAsync: () => Promise<string>
+  generateIds?: (count: number, bits: number) => string[]
   getNativeConstants: () => NativeDirs
   exists: (path: string) => Promise<boolean>
   isDir: (path: string) => Promise<boolean>
   ls: (path: string) => Promise<string[]>
+  listFiles?: (path: string) => Promise<FileInfo[]>
   mkdir: (path: string) => Promise<string>
   readFile: (path: string, encoding: string) => Promise<string>
   unlink: (path: string) => Promise<void>
   writeFile: (path: string, data: string, encoding: string) => Promise<void>
+  isFileEncodingSupported?: (encoding: string) => boolean
+  writePayloadFile?: (path: string, headers: UnsafeObject, body: string) => Promise<void>
+  deliverPayloadFile?: (path: string, endpoint: string, headers: UnsafeObject) => Promise<number>
+  openRetryQueue?: (path: string, maxBytes: number, maxCount: number) => Promise<RetryQueueInfo>
+  nextRetryQueueFile?: (path: string, previous: string | null) => Promise<string | null>
+  getPersistedValues?: (path: string) => UnsafeObject
+  setPersistedValue?: (path: string, key: string, value: string) => Promise<boolean>
   isNativePerformanceAvailable: () => boolean
   attachToNativeSDK: () => NativeConfiguration | null
   startNativeSpan: (name: string, options: UnsafeObject) => NativeSpan
   endNativeSpan: (spanId: string, traceId: string, endTime: number, attributes: UnsafeObject) => Promise<void>
   markNativeSpanEndTime: (spanId: string, traceId: string, endTime: number) => void
   discardNativeSpan: (spanId: string, traceId: string) => Promise<void>
+  applyNativeSpanOperations?: (operations: UnsafeObject[]) => Promise<void>
+  isAttributeEncodingSupported?: (encoding: string) => boolean
   endNativeAppStart: (endTime: number) => Promise<void>
+  getNativeMetrics?: () => UnsafeObject
 }
 
 export default TurboModuleRegistry.get<Spec>(
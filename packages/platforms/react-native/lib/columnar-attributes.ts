@@ -0,0 +1,90 @@
+// span attributes can be sent across the bridge as parallel arrays of keys,
+// type tags and values rather than as an object. The native module can then
+// decode every attribute in a single pass over three arrays, rather than
+// looking up the type and value of each key in the object individually
+export const COLUMNAR_ATTRIBUTE_ENCODING = 'columnar'
+
+// these must match the type tags in ReactNativeSpanAttributes on each platform
+export const ATTRIBUTE_TYPE_STRING = 0
+export const ATTRIBUTE_TYPE_BOOLEAN = 1
+export const ATTRIBUTE_TYPE_INTEGER = 2
+export const ATTRIBUTE_TYPE_DOUBLE = 3
+export const ATTRIBUTE_TYPE_STRING_ARRAY = 4
+export const ATTRIBUTE_TYPE_INTEGER_ARRAY = 5
+export const ATTRIBUTE_TYPE_DOUBLE_ARRAY = 6
+// boolean and mixed type arrays, which the native module decodes element by element
+export const ATTRIBUTE_TYPE_ARRAY = 7
+
+export interface ColumnarAttributes {
+  keys: string[]
+  types: number[]
+  values: unknown[]
+}
+
+function isInteger (value: number): boolean {
+  return isFinite(value) && Math.floor(value) === value
+}
+
+// arrays of strings or numbers are tagged with their element type so that the
+// native module can decode them without checking each element. Anything else
+// (boolean and mixed type arrays) is decoded element by element
+function arrayType (value: unknown[]): number {
+  let hasStrings = false
+  let hasNumbers = false
+  let hasDoubles = false
+
+  for (let i = 0; i < value.length; i++) {
+    const element = value[i]
+    if (typeof element === 'string') {
+      hasStrings = true
+    } else if (typeof element === 'number') {
+      hasNumbers = true
+      hasDoubles = hasDoubles || !isInteger(element)
+    } else {
+      return ATTRIBUTE_TYPE_ARRAY
+    }
+  }
+
+  if (hasStrings) {
+    return hasNumbers ? ATTRIBUTE_TYPE_ARRAY : ATTRIBUTE_TYPE_STRING_ARRAY
+  }
+
+  // empty arrays are sent as integer arrays, matching the empty array the
+  // native decoders have always used
+  return hasDoubles ? ATTRIBUTE_TYPE_DOUBLE_ARRAY : ATTRIBUTE_TYPE_INTEGER_ARRAY
+}
+
+function attributeType (value: unknown): number | undefined {
+  switch (typeof value) {
+    case 'string':
+      return ATTRIBUTE_TYPE_STRING
+    case 'boolean':
+      return ATTRIBUTE_TYPE_BOOLEAN
+    case 'number':
+      return isInteger(value) ? ATTRIBUTE_TYPE_INTEGER : ATTRIBUTE_TYPE_DOUBLE
+    default:
+      return Array.isArray(value) ? arrayType(value) : undefined
+  }
+}
+
+/**
+ * Encode span attributes as parallel arrays of keys, type tags and values,
+ * skipping any values that the native SDKs cannot store as attributes
+ */
+export function encodeColumnarAttributes (attributes: Record<string, unknown>): ColumnarAttributes {
+  const keys: string[] = []
+  const types: number[] = []
+  const values: unknown[] = []
+
+  for (const key in attributes) {
+    const value = attributes[key]
+    const type = attributeType(value)
+    if (type !== undefined) {
+      keys.push(key)
+      types.push(type)
+      values.push(value)
+    }
+  }
+
+  return { keys, types, values }
+}
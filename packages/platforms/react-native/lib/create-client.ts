@@ -15,6 +15,7 @@ import { createDefaultPlatformExtensions } from './platform-extensions'
 import type { PlatformExtensions } from './platform-extensions'
 import resourceAttributesSourceFactory from './resource-attributes-source'
 import createRetryQueueFactory from './retry-queue'
+import createPayloadFileDeliveryFactory from './retry-queue/payload-file-delivery'
 import { createSpanAttributesSource } from './span-attributes-source'
 import createBrowserBackgroundingListener from './backgrounding-listener'
 import { ReactNativeSpanFactory } from './span-factory'
@@ -40,10 +41,14 @@ export function createReactNativeClient<S extends ReactNativeSchema = ReactNativ
   const isDevelopment = options?.isDevelopment || __DEV__
   const schema = options?.schema || createSchema(isDevelopment) as S
 
-  const deliveryFactory = options?.deliveryFactory || createFetchDeliveryFactory(fetch, clock)
+  const deliveryFactory = options?.deliveryFactory || createPayloadFileDeliveryFactory(
+    createFetchDeliveryFactory(fetch, clock),
+    clock,
+    !isDebuggingRemotely ? FileSystem.deliverPayloadFile : undefined
+  )
   const spanAttributesSource = options?.spanAttributesSource || createSpanAttributesSource()
   const deviceInfo = !isDebuggingRemotely ? NativeBugsnagPerformance.getDeviceInfo() : undefined
-  const persistence = options?.persistence || persistenceFactory(FileSystem, deviceInfo)
+  const persistence = options?.persistence || persistenceFactory(FileSystem, deviceInfo, isDebuggingRemotely)
   const resourceAttributesSource = options?.resourceAttributesSource || resourceAttributesSourceFactory(persistence, deviceInfo)
   const backgroundingListener = options?.backgroundingListener || createBrowserBackgroundingListener(AppState)
   const createPlatformExtensions = options?.createPlatformExtensions || createDefaultPlatformExtensions
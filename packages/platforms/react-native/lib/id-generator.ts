@@ -5,6 +5,9 @@ const POOL_SIZE = 1024
 
 const CALLS_BEFORE_POOL_REFRESH = 1000
 
+// the number of IDs to request from the native module at once
+const ID_BATCH_SIZE = 256
+
 export function toHex (value: number): string {
   const hex = value.toString(16)
 
@@ -26,7 +29,7 @@ export function createRandomString (): string {
   return random
 }
 
-function createIdGenerator (isDebuggingRemotely = false): IdGenerator {
+function createEntropyIdGenerator (isDebuggingRemotely: boolean): IdGenerator {
   // If the native module is not available or remote debugging is enabled, fall back to a JS implementation
   const requestEntropy = !isDebuggingRemotely
     ? NativeBugsnagPerformance.requestEntropy
@@ -66,4 +69,52 @@ function createIdGenerator (isDebuggingRemotely = false): IdGenerator {
   return idGenerator
 }
 
+function requestIdBatch (generateIds: (count: number, bits: number) => string[], bits: BitLength): string[] {
+  try {
+    return generateIds(ID_BATCH_SIZE, bits)
+  } catch {
+    return []
+  }
+}
+
+// generates IDs in batches using the native module, which draws them from a
+// pre-filled pool of secure random values
+function createNativeIdGenerator (generateIds: (count: number, bits: number) => string[]): IdGenerator {
+  const ids: Record<BitLength, string[]> = { 64: [], 128: [] }
+
+  // created only if the native module fails to generate IDs, after which it is
+  // used for every ID so that each ID doesn't cost another failed bridge call
+  let fallbackGenerator: IdGenerator | undefined
+
+  return {
+    generate (bits: BitLength): string {
+      if (fallbackGenerator) {
+        return fallbackGenerator.generate(bits)
+      }
+
+      let batch = ids[bits]
+
+      if (batch.length === 0) {
+        batch = ids[bits] = requestIdBatch(generateIds, bits)
+      }
+
+      const id = batch.pop()
+      if (id) return id
+
+      fallbackGenerator = createEntropyIdGenerator(false)
+      return fallbackGenerator.generate(bits)
+    }
+  }
+}
+
+function createIdGenerator (isDebuggingRemotely = false): IdGenerator {
+  const generateIds = NativeBugsnagPerformance.generateIds
+
+  if (!isDebuggingRemotely && typeof generateIds === 'function') {
+    return createNativeIdGenerator(generateIds)
+  }
+
+  return createEntropyIdGenerator(isDebuggingRemotely)
+}
+
 export default createIdGenerator
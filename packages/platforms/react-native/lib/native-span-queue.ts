@@ -0,0 +1,118 @@
+import NativeBugsnagPerformance from './native'
+import { COLUMNAR_ATTRIBUTE_ENCODING, encodeColumnarAttributes } from './columnar-attributes'
+import type { ColumnarAttributes } from './columnar-attributes'
+import type { PackedSpanIds } from './packed-span-ids'
+
+// the number of queued operations that will trigger an immediate flush rather
+// than waiting for the next frame
+const MAX_QUEUED_OPERATIONS = 100
+
+export interface NativeSpanReference {
+  id: string
+  traceId: string
+  packedIds?: PackedSpanIds
+}
+
+// operations target a span either by its packed IDs (if the native module
+// returned them when the span was started) or by its hex encoded IDs
+type NativeSpanTarget
+  = { spanId: string, traceId: string }
+  | { ids: PackedSpanIds }
+
+export type NativeSpanOperation = NativeSpanTarget & (
+  | { type: 'end', endTime: number, attributes: Record<string, unknown> }
+  | { type: 'end', endTime: number, columnarAttributes: ColumnarAttributes }
+  | { type: 'discard' }
+)
+
+function scheduleFrame (callback: () => void): void {
+  if (typeof requestAnimationFrame === 'function') {
+    requestAnimationFrame(callback)
+  } else {
+    setTimeout(callback, 0)
+  }
+}
+
+function toTarget (span: NativeSpanReference): NativeSpanTarget {
+  return span.packedIds
+    ? { ids: span.packedIds }
+    : { spanId: span.id, traceId: span.traceId }
+}
+
+/**
+ * Batches span lifecycle calls to the native module so that ending or
+ * discarding many native spans costs a single bridge call per frame
+ *
+ * If the native module doesn't support batching (e.g. the JS bundle has been
+ * updated over-the-air without updating the native module) each operation is
+ * sent to the native module immediately instead
+ *
+ * Attributes of batched 'end' operations are sent in columnar form if the
+ * native module can decode it
+ */
+export default class NativeSpanOperationQueue {
+  private operations: NativeSpanOperation[] = []
+  private isFlushScheduled = false
+  private isColumnarEncodingSupported: boolean | undefined
+
+  end (span: NativeSpanReference, endTime: number, attributes: Record<string, unknown>): void {
+    if (!this.isBatchingSupported()) {
+      NativeBugsnagPerformance.endNativeSpan(span.id, span.traceId, endTime, attributes)
+      return
+    }
+
+    if (this.isColumnarAttributeEncodingSupported()) {
+      this.enqueue({ type: 'end', ...toTarget(span), endTime, columnarAttributes: encodeColumnarAttributes(attributes) })
+    } else {
+      this.enqueue({ type: 'end', ...toTarget(span), endTime, attributes })
+    }
+  }
+
+  discard (span: NativeSpanReference): void {
+    if (!this.isBatchingSupported()) {
+      NativeBugsnagPerformance.discardNativeSpan(span.id, span.traceId)
+      return
+    }
+
+    this.enqueue({ type: 'discard', ...toTarget(span) })
+  }
+
+  async flush (): Promise<void> {
+    this.isFlushScheduled = false
+
+    if (this.operations.length === 0 || !NativeBugsnagPerformance.applyNativeSpanOperations) {
+      return
+    }
+
+    const operations = this.operations
+    this.operations = []
+
+    try {
+      await NativeBugsnagPerformance.applyNativeSpanOperations(operations)
+    } catch {}
+  }
+
+  isBatchingSupported (): boolean {
+    return typeof NativeBugsnagPerformance.applyNativeSpanOperations === 'function'
+  }
+
+  private isColumnarAttributeEncodingSupported (): boolean {
+    if (this.isColumnarEncodingSupported === undefined) {
+      this.isColumnarEncodingSupported = typeof NativeBugsnagPerformance.isAttributeEncodingSupported === 'function' &&
+        NativeBugsnagPerformance.isAttributeEncodingSupported(COLUMNAR_ATTRIBUTE_ENCODING)
+    }
+
+    return this.isColumnarEncodingSupported
+  }
+
+  private enqueue (operation: NativeSpanOperation): void {
+    this.operations.push(operation)
+
+    if (this.operations.length >= MAX_QUEUED_OPERATIONS) {
+      this.flush()
+    } else if (!this.isFlushScheduled) {
+      this.isFlushScheduled = true
+      scheduleFrame(() => { this.flush() })
+    }
+  }
+}
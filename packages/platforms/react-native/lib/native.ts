@@ -16,20 +16,25 @@ const NativeBugsnagPerformance = NativeBsgModule || {
   getDeviceInfo: () => undefined,
   requestEntropy: () => '',
   requestEntropyAsync: async () => '',
+  generateIds: (count: number, bits: number) => [],
   getNativeConstants: () => ({ CacheDir: '', DocumentDir: '' }),
   exists: async (path: string) => false,
   isDir: async (path: string) => false,
   ls: async (path: string) => [],
+  listFiles: async (path: string) => [],
   mkdir: async (path: string) => '',
   readFile: async (path: string, encoding: string) => '',
   unlink: async (path: string) => { },
   writeFile: async (path: string, data: string, encoding: string) => { },
+  isFileEncodingSupported: (encoding: string) => false,
   isNativePerformanceAvailable: () => false,
   attachToNativeSDK: () => null,
   startNativeSpan: (name: string, options: object) => ({ name, id: '', traceId: '', startTime: 0, parentSpanId: '' }),
   endNativeSpan: async (spanId: string, traceId: string, endTime: number, attributes: object) => { },
   markNativeSpanEndTime: (spanId: string, traceId: string, endTime: number) => { },
-  discardNativeSpan: async (spanId: string, traceId: string) => { }
+  discardNativeSpan: async (spanId: string, traceId: string) => { },
+  applyNativeSpanOperations: async (operations: object[]) => { },
+  getNativeMetrics: () => ({})
 }
 
 export default NativeBugsnagPerformance as Spec
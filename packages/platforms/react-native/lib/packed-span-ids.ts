@@ -0,0 +1,34 @@
+// native span IDs can be sent across the bridge as arrays of unsigned 32 bit
+// numbers rather than hex strings, which saves the native module from hex
+// encoding and decoding IDs for every span operation. Each 64 bit ID is split
+// into two numbers, high word first:
+// [spanIdHi, spanIdLo, traceId0, traceId1, traceId2, traceId3, (parentSpanIdHi, parentSpanIdLo)]
+export type PackedSpanIds = number[]
+
+const PACKED_PARENT_SPAN_ID_LENGTH = 8
+
+interface UnpackedSpanIds {
+  id: string
+  traceId: string
+  parentSpanId?: string
+}
+
+function toHex32 (value: number): string {
+  const hex = value.toString(16)
+
+  // pad hex with leading 0s to 8 characters
+  return hex.length === 8 ? hex : '00000000'.substring(hex.length) + hex
+}
+
+export function unpackSpanIds (ids: PackedSpanIds): UnpackedSpanIds {
+  const unpacked: UnpackedSpanIds = {
+    id: toHex32(ids[0]) + toHex32(ids[1]),
+    traceId: toHex32(ids[2]) + toHex32(ids[3]) + toHex32(ids[4]) + toHex32(ids[5])
+  }
+
+  if (ids.length >= PACKED_PARENT_SPAN_ID_LENGTH) {
+    unpacked.parentSpanId = toHex32(ids[6]) + toHex32(ids[7])
+  }
+
+  return unpacked
+}
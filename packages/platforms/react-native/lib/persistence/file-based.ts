@@ -6,8 +6,8 @@ import type {
 } from '@bugsnag/core-performance'
 import { isPersistedProbability } from '@bugsnag/core-performance'
 import cuid from '@bugsnag/cuid'
-import { Platform } from 'react-native'
 import type { ReadWriteFile, ReadableFile } from './file'
+import readNativeDeviceId, { nativeDeviceIdJsonKey } from './native-device-id'
 
 const { isCuid } = cuid
 
@@ -28,10 +28,7 @@ export default class FileBasedPersistence implements Persistence {
   constructor (file: ReadWriteFile, nativeDeviceIdFile: ReadableFile) {
     this.file = file
     this.nativeDeviceIdFile = nativeDeviceIdFile
-
-    // https://github.com/bugsnag/bugsnag-cocoa-performance/blob/8d91b55652fededb15ef302daacf993e5917fed4/Sources/BugsnagPerformance/Private/PersistentDeviceID.mm#L181C41-L181C52
-    // https://github.com/bugsnag/bugsnag-android-performance/blob/a02d6f2f7417c6d53976ebda9ed8c90b58cb1db1/bugsnag-android-performance/src/main/kotlin/com/bugsnag/android/performance/internal/DeviceIdFilePersistence.kt#L125
-    this.nativeDeviceIdJsonKey = Platform.OS === 'ios' ? 'deviceID' : 'id'
+    this.nativeDeviceIdJsonKey = nativeDeviceIdJsonKey()
   }
 
   async load<K extends PersistenceKey> (key: K): Promise<PersistencePayloadMap[K] | undefined> {
@@ -39,7 +36,7 @@ export default class FileBasedPersistence implements Persistence {
     // this may not exist as the native SDK isn't necessarily installed or it
     // could have yet to write device ID to disk
     if (key === 'bugsnag-anonymous-id') {
-      const nativeDeviceId = await this.readDeviceIdFromNativeSdk()
+      const nativeDeviceId = await readNativeDeviceId(this.nativeDeviceIdFile, this.nativeDeviceIdJsonKey)
 
       if (nativeDeviceId) {
         return nativeDeviceId as PersistencePayloadMap[K]
@@ -108,13 +105,4 @@ export default class FileBasedPersistence implements Persistence {
       return {}
     }
   }
-
-  private async readDeviceIdFromNativeSdk (): Promise<string | undefined> {
-    try {
-      const contents = await this.nativeDeviceIdFile.read()
-
-      return JSON.parse(contents)[this.nativeDeviceIdJsonKey]
-    } catch {
-    }
-  }
 }
@@ -5,6 +5,13 @@ export const Dirs: {
   DocumentDir: string
 } = NativeBugsnagPerformance.getNativeConstants()
 
+// not available if the JS has been updated without updating the native module
+const listFiles = NativeBugsnagPerformance.listFiles
+const writePayloadFile = NativeBugsnagPerformance.writePayloadFile
+const deliverPayloadFile = NativeBugsnagPerformance.deliverPayloadFile
+const openRetryQueue = NativeBugsnagPerformance.openRetryQueue
+const nextRetryQueueFile = NativeBugsnagPerformance.nextRetryQueueFile
+
 export const FileSystem = {
   exists (path: string) {
     return NativeBugsnagPerformance.exists(path)
@@ -15,6 +22,9 @@ export const FileSystem = {
   ls (path: string) {
     return NativeBugsnagPerformance.ls(path)
   },
+  listFiles: listFiles
+    ? (path: string) => listFiles(path)
+    : undefined,
   mkdir (path: string) {
     return NativeBugsnagPerformance.mkdir(path)
   },
@@ -26,5 +36,25 @@ export const FileSystem = {
   },
   writeFile (path: string, data: string, encoding: string = 'utf8') {
     return NativeBugsnagPerformance.writeFile(path, data, encoding)
+  },
+  writePayloadFile: writePayloadFile
+    ? (path: string, headers: Record<string, string>, body: string) => writePayloadFile(path, headers, body)
+    : undefined,
+  deliverPayloadFile: deliverPayloadFile
+    ? (path: string, endpoint: string, headers: Record<string, string>) => deliverPayloadFile(path, endpoint, headers)
+    : undefined,
+  openRetryQueue: openRetryQueue
+    ? (path: string, maxBytes: number, maxCount: number) => openRetryQueue(path, maxBytes, maxCount)
+    : undefined,
+  nextRetryQueueFile: nextRetryQueueFile
+    ? (path: string, previous: string | null) => nextRetryQueueFile(path, previous)
+    : undefined,
+  isEncodingSupported (encoding: string): boolean {
+    if (typeof NativeBugsnagPerformance.isFileEncodingSupported === 'function') {
+      return NativeBugsnagPerformance.isFileEncodingSupported(encoding)
+    }
+
+    // older native modules only support these encodings
+    return encoding === 'utf8' || encoding === 'base64'
   }
 }
@@ -1,9 +1,11 @@
+import type { Persistence } from '@bugsnag/core-performance'
 import { Platform } from 'react-native'
 import type { DeviceInfo } from '../NativeBugsnagPerformance'
 import { File, NullFile, ReadOnlyFile } from './file'
 import { Dirs } from './file-native'
 import type { FileSystem } from './file-native'
 import FileBasedPersistence from './file-based'
+import KeyValuePersistence, { createNativeKeyValueStore } from './key-value'
 
 export { Util } from './file-utils'
 
@@ -12,7 +14,11 @@ export const PERSISTENCE_DIRECTORY = `${Dirs.CacheDir}/bugsnag-performance-react
 
 const PERSISTED_STATE_PATH = `${PERSISTENCE_DIRECTORY}/persisted-state.json`
 
-export default function persistenceFactory (fileSystem: typeof FileSystem, deviceInfo?: DeviceInfo): FileBasedPersistence {
+export default function persistenceFactory (
+  fileSystem: typeof FileSystem,
+  deviceInfo?: DeviceInfo,
+  isDebuggingRemotely: boolean = false
+): Persistence {
   const nativeDeviceIdFilePath = Platform.select({
     get ios () {
       if (deviceInfo && deviceInfo.bundleIdentifier) {
@@ -27,6 +33,16 @@ export default function persistenceFactory (fileSystem: typeof FileSystem, devic
     ? new ReadOnlyFile(nativeDeviceIdFilePath, fileSystem)
     : new NullFile()
 
+  // the native key-value store is read with a synchronous native method, which
+  // isn't available when debugging remotely
+  const nativeKeyValueStore = !isDebuggingRemotely
+    ? createNativeKeyValueStore(PERSISTED_STATE_PATH)
+    : undefined
+
+  if (nativeKeyValueStore) {
+    return new KeyValuePersistence(nativeKeyValueStore, nativeDeviceIdFile)
+  }
+
   return new FileBasedPersistence(
     new File(PERSISTED_STATE_PATH, fileSystem),
     nativeDeviceIdFile
@@ -0,0 +1,120 @@
+import type {
+  Persistence,
+  PersistenceKey,
+  PersistencePayloadMap
+} from '@bugsnag/core-performance'
+import { isPersistedProbability } from '@bugsnag/core-performance'
+import cuid from '@bugsnag/cuid'
+import NativeBugsnagPerformance from '../native'
+import type { ReadableFile } from './file'
+import readNativeDeviceId, { nativeDeviceIdJsonKey } from './native-device-id'
+
+const { isCuid } = cuid
+
+/**
+ * A key-value store holding JSON encoded values
+ */
+export interface KeyValueStore {
+  getValues: () => Record<string, unknown>
+  // resolves with false if the value could not be written
+  setValue: (key: string, json: string) => Promise<boolean>
+}
+
+/**
+ * A key-value store kept in memory by the native module and written to the
+ * file at 'path' with a deferred flush, so that repeated saves are coalesced
+ * into a single write
+ *
+ * returns undefined if the native module doesn't support this, e.g. if the JS
+ * has been updated without updating the native module
+ */
+export function createNativeKeyValueStore (path: string): KeyValueStore | undefined {
+  const getPersistedValues = NativeBugsnagPerformance.getPersistedValues
+  const setPersistedValue = NativeBugsnagPerformance.setPersistedValue
+
+  if (!getPersistedValues || !setPersistedValue) {
+    return undefined
+  }
+
+  return {
+    getValues: () => getPersistedValues(path),
+    setValue: (key: string, json: string) => setPersistedValue(path, key, json)
+  }
+}
+
+// the keys used in the store, which match the keys used in the file written
+// by 'FileBasedPersistence' so either can read the data written by the other
+const storeKeys: Record<PersistenceKey, string> = {
+  'bugsnag-anonymous-id': 'device-id',
+  'bugsnag-sampling-probability': 'sampling-probability'
+}
+
+export default class KeyValuePersistence implements Persistence {
+  private readonly store: KeyValueStore
+  private readonly nativeDeviceIdFile: ReadableFile
+  private readonly nativeDeviceIdJsonKey: string
+
+  // the decoded values, read from the store once and then kept up to date by
+  // 'save' so that loads don't need to cross the bridge
+  private values: Record<string, unknown> | undefined
+
+  constructor (store: KeyValueStore, nativeDeviceIdFile: ReadableFile) {
+    this.store = store
+    this.nativeDeviceIdFile = nativeDeviceIdFile
+    this.nativeDeviceIdJsonKey = nativeDeviceIdJsonKey()
+  }
+
+  async load<K extends PersistenceKey> (key: K): Promise<PersistencePayloadMap[K] | undefined> {
+    if (key === 'bugsnag-anonymous-id') {
+      const nativeDeviceId = await readNativeDeviceId(this.nativeDeviceIdFile, this.nativeDeviceIdJsonKey)
+
+      if (nativeDeviceId) {
+        return nativeDeviceId as PersistencePayloadMap[K]
+      }
+    }
+
+    const value = this.getValues()[storeKeys[key]]
+
+    switch (key) {
+      case 'bugsnag-anonymous-id':
+        return isCuid(value) ? value as PersistencePayloadMap[K] : undefined
+
+      case 'bugsnag-sampling-probability':
+        return isPersistedProbability(value) ? value as PersistencePayloadMap[K] : undefined
+    }
+
+    key satisfies never
+  }
+
+  async save<K extends PersistenceKey> (key: K, value: PersistencePayloadMap[K]): Promise<void> {
+    const storeKey = storeKeys[key]
+
+    // the value is used from memory straight away, and if it can't be written
+    // it's still used until the app restarts, as with 'FileBasedPersistence'
+    this.getValues()[storeKey] = value
+
+    try {
+      await this.store.setValue(storeKey, JSON.stringify(value))
+    } catch {}
+  }
+
+  private getValues (): Record<string, unknown> {
+    if (this.values) {
+      return this.values
+    }
+
+    const values: Record<string, unknown> = {}
+
+    try {
+      for (const [key, json] of Object.entries(this.store.getValues())) {
+        try {
+          values[key] = JSON.parse(json as string)
+        } catch {}
+      }
+    } catch {}
+
+    this.values = values
+
+    return values
+  }
+}
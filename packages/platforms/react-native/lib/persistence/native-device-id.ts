@@ -0,0 +1,20 @@
+import { Platform } from 'react-native'
+import type { ReadableFile } from './file'
+
+// https://github.com/bugsnag/bugsnag-cocoa-performance/blob/8d91b55652fededb15ef302daacf993e5917fed4/Sources/BugsnagPerformance/Private/PersistentDeviceID.mm#L181C41-L181C52
+// https://github.com/bugsnag/bugsnag-android-performance/blob/a02d6f2f7417c6d53976ebda9ed8c90b58cb1db1/bugsnag-android-performance/src/main/kotlin/com/bugsnag/android/performance/internal/DeviceIdFilePersistence.kt#L125
+export function nativeDeviceIdJsonKey (): string {
+  return Platform.OS === 'ios' ? 'deviceID' : 'id'
+}
+
+// attempt to read the native SDK's device ID file
+// this may not exist as the native SDK isn't necessarily installed or it
+// could have yet to write device ID to disk
+export default async function readNativeDeviceId (file: ReadableFile, jsonKey: string): Promise<string | undefined> {
+  try {
+    const contents = await file.read()
+
+    return JSON.parse(contents)[jsonKey]
+  } catch {
+  }
+}
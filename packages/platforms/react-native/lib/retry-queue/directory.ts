@@ -1,9 +1,25 @@
 import { isObject } from '@bugsnag/core-performance'
+import type { FileInfo, RetryQueueInfo } from '../NativeBugsnagPerformance'
 import type { FileSystem } from '../persistence/file-native'
 import { Util } from '../persistence'
 import timestampFromFilename from './timestamp-from-filename'
 
 export type MinimalFileSystem = Pick<typeof FileSystem, 'ls' | 'exists' | 'isDir' | 'readFile' | 'writeFile' | 'mkdir' | 'unlink'>
+  & Partial<Pick<typeof FileSystem, 'isEncodingSupported'>>
+  & {
+    listFiles?: (path: string) => Promise<FileInfo[]>
+    writePayloadFile?: (path: string, headers: Record<string, string>, body: string) => Promise<void>
+    openRetryQueue?: (path: string, maxBytes: number, maxCount: number) => Promise<RetryQueueInfo>
+    nextRetryQueueFile?: (path: string, previous: string | null) => Promise<string | null>
+  }
+
+export interface RetryQueueLimits {
+  // the total size of all files in the queue
+  maxBytes: number
+
+  // the total number of files in the queue
+  maxCount: number
+}
 
 // sort filenames by newest -> oldest, i.e. the largest timestamps come first
 // any invalid filenames (where we can't parse a timestamp) are put at the end
@@ -42,12 +58,65 @@ export default class RetryQueueDirectory {
   private readonly fileSystem: MinimalFileSystem
   private readonly path: string
 
-  constructor (fileSystem: MinimalFileSystem, path: string) {
+  // payloads are stored gzip compressed if the native module supports it, so
+  // they take less space on disk; reading with 'gzip' also returns payloads
+  // that were stored uncompressed, so older files can still be read
+  private readonly encoding: string
+
+  private readonly limits: RetryQueueLimits | undefined
+  private isIndexedPromise: Promise<boolean> | undefined
+
+  constructor (fileSystem: MinimalFileSystem, path: string, limits?: RetryQueueLimits) {
     this.fileSystem = fileSystem
     this.path = path
+    this.encoding = fileSystem.isEncodingSupported?.('gzip') ? 'gzip' : 'utf8'
+    this.limits = limits
+  }
+
+  // if the native module supports it, it keeps an index of the files in this
+  // directory so that 'next' can be used instead of listing the directory
+  // the index also enforces 'limits' by deleting the oldest files on write
+  async isIndexed (): Promise<boolean> {
+    if (!this.isIndexedPromise) {
+      this.isIndexedPromise = this.openIndex()
+    }
+
+    return await this.isIndexedPromise
+  }
+
+  // get the next file to flush after 'previous', or the first file if
+  // 'previous' is not given; only valid if 'isIndexed' resolves true
+  async next (previous?: string): Promise<string | undefined> {
+    if (!this.fileSystem.nextRetryQueueFile) {
+      return undefined
+    }
+
+    const next = await this.fileSystem.nextRetryQueueFile(this.path, previous || null)
+
+    return next || undefined
+  }
+
+  // payload files store a payload's headers alongside its gzip compressed body
+  // so that the native module can deliver them without involving JS
+  get canWritePayloadFiles (): boolean {
+    return typeof this.fileSystem.writePayloadFile === 'function'
+  }
+
+  pathOf (name: string): string {
+    return `${this.path}/${Util.basename(name)}`
   }
 
   async files (): Promise<string[]> {
+    // list the directory in a single native call if possible; the native
+    // module returns entries already sorted with 'filenameSorter' ordering
+    if (this.fileSystem.listFiles) {
+      const entries = await this.fileSystem.listFiles(this.path)
+
+      return entries
+        .filter(entry => !entry.isDir)
+        .map(entry => entry.name)
+    }
+
     if (!await this.fileSystem.exists(this.path)) {
       return []
     }
@@ -66,10 +135,10 @@ export default class RetryQueueDirectory {
   }
 
   async read (name: string): Promise<string> {
-    const path = `${this.path}/${Util.basename(name)}`
+    const path = this.pathOf(name)
 
     if (await this.fileSystem.exists(path)) {
-      return await this.fileSystem.readFile(path)
+      return await this.fileSystem.readFile(path, this.encoding)
     }
 
     return ''
@@ -77,20 +146,46 @@ export default class RetryQueueDirectory {
 
   async write (name: string, contents: string): Promise<void> {
     await this.ensureExists()
+    await this.isIndexed()
 
-    const path = `${this.path}/${Util.basename(name)}`
+    const path = this.pathOf(name)
+
+    await this.fileSystem.writeFile(path, contents, this.encoding)
+  }
+
+  async writePayloadFile (name: string, headers: Record<string, string>, body: string): Promise<void> {
+    if (!this.fileSystem.writePayloadFile) {
+      throw new Error('Payload files are not supported')
+    }
 
-    await this.fileSystem.writeFile(path, contents)
+    await this.ensureExists()
+    await this.isIndexed()
+    await this.fileSystem.writePayloadFile(this.pathOf(name), headers, body)
   }
 
   async delete (name: string): Promise<void> {
-    const path = `${this.path}/${Util.basename(name)}`
+    const path = this.pathOf(name)
 
     if (await this.fileSystem.exists(path)) {
       await this.fileSystem.unlink(path)
     }
   }
 
+  private async openIndex (): Promise<boolean> {
+    if (!this.limits || !this.fileSystem.openRetryQueue || !this.fileSystem.nextRetryQueueFile) {
+      return false
+    }
+
+    try {
+      await this.ensureExists()
+      await this.fileSystem.openRetryQueue(this.path, this.limits.maxBytes, this.limits.maxCount)
+
+      return true
+    } catch {
+      return false
+    }
+  }
+
   private async ensureExists (): Promise<void> {
     try {
       await this.fileSystem.mkdir(this.path)
@@ -2,10 +2,12 @@ import type {
   Delivery,
   DeliveryPayload,
   DeliverySpan,
+  ResponseState,
   RetryQueue,
   TracePayload
 } from '@bugsnag/core-performance'
 import type Directory from './directory'
+import { isPayloadFileDelivery } from './payload-file-delivery'
 import timestampFromFilename from './timestamp-from-filename'
 
 function getLastSpan (body: DeliveryPayload): DeliverySpan | undefined {
@@ -20,6 +22,18 @@ function getLastSpan (body: DeliveryPayload): DeliverySpan | undefined {
   }
 }
 
+function definedHeaders (headers: TracePayload['headers']): Record<string, string> {
+  const result: Record<string, string> = {}
+
+  for (const [name, value] of Object.entries(headers)) {
+    if (typeof value === 'string') {
+      result[name] = value
+    }
+  }
+
+  return result
+}
+
 function isValidFilename (filename: string): boolean {
   // if the filename is too short then it can't be valid
   if (filename.length < MININUM_FILENAME_LENGTH) {
@@ -60,6 +74,20 @@ const MILLISECONDS_IN_DAY = 24 * 60 * 60_000
 // permanent failure) or leave it alone for the next flush (retryable failure)
 const enum FlushOutcome { DeleteFile, LeaveFile }
 
+function outcomeFromResponseState (state: ResponseState): FlushOutcome {
+  switch (state) {
+    case 'success':
+    case 'failure-discard':
+      return FlushOutcome.DeleteFile
+
+    case 'failure-retryable':
+      // this file will be retried by the next flush so we can leave it alone
+      return FlushOutcome.LeaveFile
+  }
+
+  state satisfies never
+}
+
 export default class FileBasedRetryQueue implements RetryQueue {
   private readonly delivery: Delivery
   private readonly directory: Directory
@@ -83,6 +111,18 @@ export default class FileBasedRetryQueue implements RetryQueue {
     const filename = `retry-${time}-${span.spanId}.json`
 
     try {
+      // if the native module can deliver the payload itself, store it as a
+      // payload file so it never needs to be read back into JS
+      if (this.directory.canWritePayloadFiles && isPayloadFileDelivery(this.delivery)) {
+        await this.directory.writePayloadFile(
+          filename,
+          definedHeaders(payload.headers),
+          JSON.stringify(payload.body)
+        )
+
+        return
+      }
+
       const json = JSON.stringify(payload)
 
       await this.directory.write(filename, json)
@@ -92,28 +132,58 @@ export default class FileBasedRetryQueue implements RetryQueue {
 
   async flush (): Promise<void> {
     this.requestQueue = this.requestQueue.then(async () => {
-      const files = await this.directory.files()
+      try {
+        if (await this.directory.isIndexed()) {
+          // the native index gives us each file in turn without listing the
+          // directory; 'next' only returns files older than the previous one
+          // so this always terminates, even if files are added while flushing
+          let filename = await this.directory.next()
+
+          while (filename) {
+            await this.flushAndDeleteFile(filename)
+            filename = await this.directory.next(filename)
+          }
+
+          return
+        }
 
-      for (const filename of files) {
-        try {
-          const outcome = await this.flushFile(filename)
+        const files = await this.directory.files()
 
-          if (outcome === FlushOutcome.DeleteFile) {
-            await this.directory.delete(filename)
-          }
-        } catch {
+        for (const filename of files) {
+          await this.flushAndDeleteFile(filename)
         }
+      } catch {
       }
     })
 
     await this.requestQueue
   }
 
+  private async flushAndDeleteFile (filename: string): Promise<void> {
+    try {
+      const outcome = await this.flushFile(filename)
+
+      if (outcome === FlushOutcome.DeleteFile) {
+        await this.directory.delete(filename)
+      }
+    } catch {
+    }
+  }
+
   private async flushFile (filename: string): Promise<FlushOutcome> {
     if (!isValidFilename(filename)) {
       return FlushOutcome.DeleteFile
     }
 
+    if (isPayloadFileDelivery(this.delivery)) {
+      const state = await this.delivery.sendPayloadFile(this.directory.pathOf(filename))
+
+      // files that aren't payload files are sent by reading the payload below
+      if (state) {
+        return outcomeFromResponseState(state)
+      }
+    }
+
     const payload = await this.getPayloadFromFile(filename)
 
     if (!payload) {
@@ -122,17 +192,7 @@ export default class FileBasedRetryQueue implements RetryQueue {
 
     const response = await this.delivery.send(payload)
 
-    switch (response.state) {
-      case 'success':
-      case 'failure-discard':
-        return FlushOutcome.DeleteFile
-
-      case 'failure-retryable':
-        // this file will be retried by the next flush so we can leave it alone
-        return FlushOutcome.LeaveFile
-    }
-
-    response.state satisfies never
+    return outcomeFromResponseState(response.state)
   }
 
   private async getPayloadFromFile (name: string): Promise<TracePayload | undefined> {
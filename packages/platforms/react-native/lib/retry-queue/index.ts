@@ -9,9 +9,19 @@ import type { MinimalFileSystem } from './directory'
 import RetryQueueDirectory from './directory'
 import FileBasedRetryQueue from './file-based'
 
+// the maximum total size of the files in the retry queue, beyond which the
+// oldest files are deleted
+const RETRY_QUEUE_MAX_BYTES = 5 * 1024 * 1024
+
 export default function createRetryQueueFactory (fileSystem: MinimalFileSystem): RetryQueueFactory {
-  return function fileBasedQueueFactory (delivery: Delivery, _retryQueueMaxSize: number): RetryQueue {
-    const directory = new RetryQueueDirectory(fileSystem, `${PERSISTENCE_DIRECTORY}/retry-queue`)
+  return function fileBasedQueueFactory (delivery: Delivery, retryQueueMaxSize: number): RetryQueue {
+    // 'retryQueueMaxSize' is a number of spans and every file contains at least
+    // one span, so it's also an upper bound on the number of files
+    const directory = new RetryQueueDirectory(
+      fileSystem,
+      `${PERSISTENCE_DIRECTORY}/retry-queue`,
+      { maxBytes: RETRY_QUEUE_MAX_BYTES, maxCount: retryQueueMaxSize }
+    )
     const retryQueue = new FileBasedRetryQueue(delivery, directory)
 
     // send any currently stored payloads from previous launches
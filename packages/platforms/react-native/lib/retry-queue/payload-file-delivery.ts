@@ -0,0 +1,56 @@
+import { isObject, responseStateFromStatusCode } from '@bugsnag/core-performance'
+import type { Clock, Delivery, DeliveryFactory, ResponseState } from '@bugsnag/core-performance'
+
+export type DeliverPayloadFile = (path: string, endpoint: string, headers: Record<string, string>) => Promise<number>
+
+export interface PayloadFileDelivery extends Delivery {
+  // deliver a payload file written by 'writePayloadFile' straight from disk
+  // resolves with 'undefined' if the file isn't a payload file, e.g. it was
+  // written as JSON by an older version of the retry queue
+  sendPayloadFile: (path: string) => Promise<ResponseState | undefined>
+}
+
+export function isPayloadFileDelivery (delivery: Delivery): delivery is PayloadFileDelivery {
+  return typeof (delivery as Partial<PayloadFileDelivery>).sendPayloadFile === 'function'
+}
+
+// the error code used by the native module for files that aren't payload files
+const INVALID_PAYLOAD_FILE = 'EFORMAT'
+
+// wraps 'deliveryFactory' so that queued payloads can be sent by the native
+// module without being read into JS, decompressed and parsed first
+function createPayloadFileDeliveryFactory (
+  deliveryFactory: DeliveryFactory,
+  clock: Clock,
+  deliverPayloadFile: DeliverPayloadFile | undefined
+): DeliveryFactory {
+  // not available if the JS has been updated without updating the native module
+  if (!deliverPayloadFile) {
+    return deliveryFactory
+  }
+
+  return function payloadFileDeliveryFactory (endpoint: string): PayloadFileDelivery {
+    const delivery = deliveryFactory(endpoint)
+
+    return {
+      send: payload => delivery.send(payload),
+      async sendPayloadFile (path: string) {
+        const headers = { 'Bugsnag-Sent-At': clock.date().toISOString() }
+
+        try {
+          // the native module resolves with a status of 0 if the request
+          // couldn't be made, which is treated as a retryable failure
+          return responseStateFromStatusCode(await deliverPayloadFile(path, endpoint, headers))
+        } catch (err) {
+          if (isObject(err) && err.code === INVALID_PAYLOAD_FILE) {
+            return undefined
+          }
+
+          throw err
+        }
+      }
+    }
+  }
+}
+
+export default createPayloadFileDeliveryFactory
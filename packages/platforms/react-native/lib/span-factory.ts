@@ -1,10 +1,25 @@
 import { RemoteParentContext, runSpanEndCallbacks, SpanFactory, SpanInternal, timeToNumber } from '@bugsnag/core-performance'
-import type { SpanAttributes, SpanOptions } from '@bugsnag/core-performance'
+import type { ParentContext, Span, SpanAttributes, SpanOptions } from '@bugsnag/core-performance'
 import type { ReactNativeConfiguration } from './config'
 import NativeBugsnagPerformance from './native'
+import NativeSpanOperationQueue from './native-span-queue'
+import type { PackedSpanIds } from './packed-span-ids'
+import { unpackSpanIds } from './packed-span-ids'
 
 class NativeSpanInternal extends SpanInternal {
   public readonly isNativeSpan: boolean = true
+  public packedIds?: PackedSpanIds
+}
+
+// a span that the native sampler decided not to record, which is never sent to
+// the native SDK. The decision is kept on the span (and its public API) so that
+// spans started with it as their parent, at any time, are not recorded either
+class UnrecordedSpanInternal extends SpanInternal {
+  public readonly isRecorded: boolean = false
+}
+
+function isUnrecordedContext (context: ParentContext | null | undefined): boolean {
+  return !!context && (context as { isRecorded?: boolean }).isRecorded === false
 }
 
 interface ReactNativeSpanOptions extends SpanOptions {
@@ -14,11 +29,19 @@ interface ReactNativeSpanOptions extends SpanOptions {
 export const APP_START_BASE_NAME = '[AppStart/ReactNativeInit]'
 const NAVIGATION_BASE_NAME = '[Navigation]'
 
+// bridged spans are custom spans unless they are started as network spans
+const CUSTOM_SPAN_CATEGORY = 'custom'
+const NETWORK_SPAN_CATEGORY = 'network'
+
 export class ReactNativeSpanFactory<C extends ReactNativeConfiguration = ReactNativeConfiguration> extends SpanFactory<C> {
   private attachedToNative = false
   appStartSpan?: SpanInternal
   private appStartSpanCreated = false
   private nativeParentContext?: RemoteParentContext
+  private readonly nativeSpanQueue = new NativeSpanOperationQueue()
+  // the category attribute is only set once a span has started, but native
+  // sampling rules need it before the native span is created
+  private nextSpanCategory?: string
 
   onAttach (nativeParentContext?: string) {
     this.attachedToNative = true
@@ -31,7 +54,26 @@ export class ReactNativeSpanFactory<C extends ReactNativeConfiguration = ReactNa
     return super.startSpan(name, options)
   }
 
+  startNetworkSpan (options: Parameters<SpanFactory<C>['startNetworkSpan']>[0]) {
+    this.nextSpanCategory = NETWORK_SPAN_CATEGORY
+    try {
+      return super.startNetworkSpan(options)
+    } finally {
+      this.nextSpanCategory = undefined
+    }
+  }
+
   protected createSpanInternal (name: string, options: ReactNativeSpanOptions, attributes: SpanAttributes) {
+    // only the span being started has this category, not any started by its callbacks
+    const category = this.nextSpanCategory || CUSTOM_SPAN_CATEGORY
+    this.nextSpanCategory = undefined
+
+    // children of an unrecorded span are not recorded either, so that a trace
+    // is never sent with some of its spans missing
+    if (isUnrecordedContext(options.parentContext)) {
+      return this.createUnrecordedSpan(name, options, attributes)
+    }
+
     if (!this.attachedToNative || options.isFirstClass !== true || options.doNotDelegateToNativeSDK === true) {
       return super.createSpanInternal(name, options, attributes)
     }
@@ -39,19 +81,59 @@ export class ReactNativeSpanFactory<C extends ReactNativeConfiguration = ReactNa
     const safeStartTime = timeToNumber(this.clock, options.startTime)
     const unixStartTimeNanos = this.clock.toUnixNanoseconds(safeStartTime)
     const nativeParentContext = options.parentContext ? { id: options.parentContext.id, traceId: options.parentContext.traceId } : undefined
-    const nativeSpan = NativeBugsnagPerformance.startNativeSpan(name, { startTime: unixStartTimeNanos, parentContext: nativeParentContext })
-    return new NativeSpanInternal(nativeSpan.id, nativeSpan.traceId, name, safeStartTime, attributes, this.clock, this.sampler.probability, nativeSpan.parentSpanId)
+    // packed IDs are only useful if span operations are batched, as the
+    // individual end and discard methods take hex encoded IDs
+    const packedIds = this.nativeSpanQueue.isBatchingSupported()
+    const nativeSpan = NativeBugsnagPerformance.startNativeSpan(name, { startTime: unixStartTimeNanos, parentContext: nativeParentContext, packedIds, sample: true, category })
+
+    if (nativeSpan.isRecorded === false) {
+      return this.createUnrecordedSpan(name, options, attributes)
+    }
+
+    if (nativeSpan.ids) {
+      const { id, traceId, parentSpanId } = unpackSpanIds(nativeSpan.ids)
+      const span = new NativeSpanInternal(id, traceId, name, safeStartTime, attributes, this.clock, this.sampler.probability, parentSpanId)
+      span.packedIds = nativeSpan.ids
+      return span
+    }
+
+    return new NativeSpanInternal(nativeSpan.id || '', nativeSpan.traceId || '', name, safeStartTime, attributes, this.clock, this.sampler.probability, nativeSpan.parentSpanId)
+  }
+
+  private createUnrecordedSpan (name: string, options: ReactNativeSpanOptions, attributes: SpanAttributes) {
+    const safeStartTime = timeToNumber(this.clock, options.startTime)
+    const spanId = this.idGenerator.generate(64)
+    const parentSpanId = options.parentContext ? options.parentContext.id : undefined
+    const traceId = options.parentContext ? options.parentContext.traceId : this.idGenerator.generate(128)
+
+    return new UnrecordedSpanInternal(spanId, traceId, name, safeStartTime, attributes, this.clock, this.sampler.probability, parentSpanId)
+  }
+
+  toPublicApi (span: SpanInternal): Span {
+    const publicSpan = super.toPublicApi(span)
+
+    if (span instanceof UnrecordedSpanInternal) {
+      return Object.assign(publicSpan, { isRecorded: false })
+    }
+
+    return publicSpan
   }
 
   protected discardSpan (span: NativeSpanInternal) {
     if (span.isNativeSpan) {
-      NativeBugsnagPerformance.discardNativeSpan(span.id, span.traceId)
+      this.nativeSpanQueue.discard(span)
     }
 
     super.discardSpan(span)
   }
 
   protected sendForProcessing (span: NativeSpanInternal, endTime: number) {
+    if (span instanceof UnrecordedSpanInternal) {
+      // the span still needs to be ended so that it is no longer valid
+      span.end(endTime, this.sampler.spanProbability)
+      return
+    }
+
     span.isNativeSpan ? this.processNativeSpan(span, endTime) : super.sendForProcessing(span, endTime)
   }
 
@@ -63,9 +145,9 @@ export class ReactNativeSpanFactory<C extends ReactNativeConfiguration = ReactNa
       const unixEndTimeNanos = this.clock.toUnixNanoseconds(endTime)
       const attributes = spanEnded.attributes.toObject()
       delete attributes['bugsnag.sampling.p']
-      NativeBugsnagPerformance.endNativeSpan(spanEnded.id, spanEnded.traceId, unixEndTimeNanos, attributes)
+      this.nativeSpanQueue.end(span, unixEndTimeNanos, attributes)
     } else {
-      NativeBugsnagPerformance.discardNativeSpan(spanEnded.id, spanEnded.traceId)
+      this.nativeSpanQueue.discard(span)
     }
   }
 
@@ -0,0 +1,92 @@
+import {
+  ATTRIBUTE_TYPE_ARRAY,
+  ATTRIBUTE_TYPE_BOOLEAN,
+  ATTRIBUTE_TYPE_DOUBLE,
+  ATTRIBUTE_TYPE_DOUBLE_ARRAY,
+  ATTRIBUTE_TYPE_INTEGER,
+  ATTRIBUTE_TYPE_INTEGER_ARRAY,
+  ATTRIBUTE_TYPE_STRING,
+  ATTRIBUTE_TYPE_STRING_ARRAY,
+  encodeColumnarAttributes
+} from '../lib/columnar-attributes'
+
+describe('encodeColumnarAttributes', () => {
+  it('encodes attributes as parallel arrays of keys, types and values', () => {
+    const encoded = encodeColumnarAttributes({
+      'string.attribute': 'value',
+      'boolean.attribute': false,
+      'integer.attribute': 42,
+      'double.attribute': 1.5,
+      'string.array.attribute': ['a', 'b'],
+      'integer.array.attribute': [1, 2, 3],
+      'double.array.attribute': [1, 2.5]
+    })
+
+    expect(encoded).toStrictEqual({
+      keys: [
+        'string.attribute',
+        'boolean.attribute',
+        'integer.attribute',
+        'double.attribute',
+        'string.array.attribute',
+        'integer.array.attribute',
+        'double.array.attribute'
+      ],
+      types: [
+        ATTRIBUTE_TYPE_STRING,
+        ATTRIBUTE_TYPE_BOOLEAN,
+        ATTRIBUTE_TYPE_INTEGER,
+        ATTRIBUTE_TYPE_DOUBLE,
+        ATTRIBUTE_TYPE_STRING_ARRAY,
+        ATTRIBUTE_TYPE_INTEGER_ARRAY,
+        ATTRIBUTE_TYPE_DOUBLE_ARRAY
+      ],
+      values: ['value', false, 42, 1.5, ['a', 'b'], [1, 2, 3], [1, 2.5]]
+    })
+  })
+
+  it('encodes non-finite numbers as doubles', () => {
+    const encoded = encodeColumnarAttributes({ nan: NaN, infinity: Infinity })
+
+    expect(encoded.types).toStrictEqual([ATTRIBUTE_TYPE_DOUBLE, ATTRIBUTE_TYPE_DOUBLE])
+  })
+
+  it('encodes empty arrays as integer arrays', () => {
+    expect(encodeColumnarAttributes({ empty: [] })).toStrictEqual({
+      keys: ['empty'],
+      types: [ATTRIBUTE_TYPE_INTEGER_ARRAY],
+      values: [[]]
+    })
+  })
+
+  it('encodes boolean and mixed type arrays as generic arrays', () => {
+    const encoded = encodeColumnarAttributes({
+      'boolean.array': [true, false],
+      'mixed.array': ['a', 1, true],
+      'string.and.number.array': ['a', 1],
+      'number.array': [1, 2.5, 3]
+    })
+
+    expect(encoded.types).toStrictEqual([
+      ATTRIBUTE_TYPE_ARRAY,
+      ATTRIBUTE_TYPE_ARRAY,
+      ATTRIBUTE_TYPE_ARRAY,
+      ATTRIBUTE_TYPE_DOUBLE_ARRAY
+    ])
+  })
+
+  it('skips values that cannot be stored as attributes', () => {
+    const encoded = encodeColumnarAttributes({
+      missing: undefined,
+      null: null,
+      object: { a: 1 },
+      valid: 'value'
+    })
+
+    expect(encoded).toStrictEqual({
+      keys: ['valid'],
+      types: [ATTRIBUTE_TYPE_STRING],
+      values: ['value']
+    })
+  })
+})
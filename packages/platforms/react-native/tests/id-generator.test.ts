@@ -103,6 +103,96 @@ describe('React Native ID generator', () => {
     })
   })
 
+  describe('idGenerator with native bulk ID generation', () => {
+    const requestEntropy = NativeBugsnagPerformance.requestEntropy as jest.MockedFunction<typeof NativeBugsnagPerformance.requestEntropy>
+    let generateIds: jest.Mock
+
+    beforeEach(() => {
+      requestEntropy.mockClear()
+
+      let counter = 0
+      generateIds = jest.fn((count: number, bits: number) => {
+        const ids: string[] = []
+        for (let i = 0; i < count; i++) {
+          ids.push((++counter).toString(16).padStart(bits / 4, '0'))
+        }
+        return ids
+      })
+
+      NativeBugsnagPerformance.generateIds = generateIds
+    })
+
+    afterEach(() => {
+      delete NativeBugsnagPerformance.generateIds
+    })
+
+    it('generates IDs in batches from the native module', () => {
+      const idGenerator = createIdGenerator()
+      expect(requestEntropy).not.toHaveBeenCalled()
+
+      const ids = new Set<string>()
+      for (let i = 0; i < 256; i++) {
+        const id = idGenerator.generate(64)
+        expect(id).toMatch(/^[a-f0-9]{16}$/)
+        ids.add(id)
+      }
+
+      expect(ids.size).toBe(256)
+      expect(generateIds).toHaveBeenCalledTimes(1)
+      expect(generateIds).toHaveBeenCalledWith(256, 64)
+
+      idGenerator.generate(64)
+      expect(generateIds).toHaveBeenCalledTimes(2)
+    })
+
+    it('keeps separate batches for 64 and 128 bit IDs', () => {
+      const idGenerator = createIdGenerator()
+
+      expect(idGenerator.generate(64)).toMatch(/^[a-f0-9]{16}$/)
+      expect(idGenerator.generate(128)).toMatch(/^[a-f0-9]{32}$/)
+
+      expect(generateIds).toHaveBeenCalledWith(256, 64)
+      expect(generateIds).toHaveBeenCalledWith(256, 128)
+    })
+
+    it('falls back to the entropy pool if the native module returns no IDs', () => {
+      generateIds.mockReturnValue([])
+
+      const idGenerator = createIdGenerator()
+      expect(idGenerator.generate(64)).toMatch(/^[a-f0-9]{16}$/)
+      expect(requestEntropy).toHaveBeenCalled()
+    })
+
+    it('stops calling the native module once it returns no IDs', () => {
+      generateIds.mockReturnValue([])
+
+      const idGenerator = createIdGenerator()
+      for (let i = 0; i < 10; i++) {
+        expect(idGenerator.generate(64)).toMatch(/^[a-f0-9]{16}$/)
+        expect(idGenerator.generate(128)).toMatch(/^[a-f0-9]{32}$/)
+      }
+
+      expect(generateIds).toHaveBeenCalledTimes(1)
+    })
+
+    it('falls back to the entropy pool if the native module throws', () => {
+      generateIds.mockImplementation(() => { throw new Error('generateIds failed') })
+
+      const idGenerator = createIdGenerator()
+      expect(idGenerator.generate(64)).toMatch(/^[a-f0-9]{16}$/)
+      expect(idGenerator.generate(64)).toMatch(/^[a-f0-9]{16}$/)
+
+      expect(generateIds).toHaveBeenCalledTimes(1)
+      expect(requestEntropy).toHaveBeenCalled()
+    })
+
+    it('does not use the native module if remote debugging is enabled', () => {
+      const idGenerator = createIdGenerator(true)
+      expect(idGenerator.generate(64)).toMatch(/^[a-f0-9]{16}$/)
+      expect(generateIds).not.toHaveBeenCalled()
+    })
+  })
+
   // Test written here so it does not clash with native module jest override
   describe('React Native turbomodule is not null so implementation uses turbomodule', () => {
     it('getDeviceInfo returns expected values', () => {
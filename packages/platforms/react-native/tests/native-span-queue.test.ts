@@ -0,0 +1,157 @@
+import NativeSpanOperationQueue from '../lib/native-span-queue'
+import NativeBugsnagPerformance from '../lib/native'
+
+describe('NativeSpanOperationQueue', () => {
+  beforeEach(() => {
+    jest.useFakeTimers()
+    jest.clearAllMocks()
+  })
+
+  afterEach(() => {
+    delete NativeBugsnagPerformance.applyNativeSpanOperations
+  })
+
+  describe('when the native module supports batching', () => {
+    let applyNativeSpanOperations: jest.Mock
+
+    beforeEach(() => {
+      applyNativeSpanOperations = jest.fn(() => Promise.resolve())
+      NativeBugsnagPerformance.applyNativeSpanOperations = applyNativeSpanOperations
+    })
+
+    it('sends queued operations to the native module in a single call on the next frame', async () => {
+      const queue = new NativeSpanOperationQueue()
+
+      queue.end({ id: 'span-1', traceId: 'trace-1' }, 12345, { 'custom.attribute': 'value' })
+      queue.discard({ id: 'span-2', traceId: 'trace-1' })
+
+      expect(applyNativeSpanOperations).not.toHaveBeenCalled()
+
+      await jest.runOnlyPendingTimersAsync()
+
+      expect(applyNativeSpanOperations).toHaveBeenCalledTimes(1)
+      expect(applyNativeSpanOperations).toHaveBeenCalledWith([
+        { type: 'end', spanId: 'span-1', traceId: 'trace-1', endTime: 12345, attributes: { 'custom.attribute': 'value' } },
+        { type: 'discard', spanId: 'span-2', traceId: 'trace-1' }
+      ])
+
+      expect(NativeBugsnagPerformance.endNativeSpan).not.toHaveBeenCalled()
+      expect(NativeBugsnagPerformance.discardNativeSpan).not.toHaveBeenCalled()
+    })
+
+    it('targets spans by their packed IDs when available', async () => {
+      const queue = new NativeSpanOperationQueue()
+      const packedIds = [1, 2, 3, 4, 5, 6]
+
+      queue.end({ id: 'span-1', traceId: 'trace-1', packedIds }, 12345, {})
+      queue.discard({ id: 'span-2', traceId: 'trace-1', packedIds })
+
+      await jest.runOnlyPendingTimersAsync()
+
+      expect(applyNativeSpanOperations).toHaveBeenCalledWith([
+        { type: 'end', ids: packedIds, endTime: 12345, attributes: {} },
+        { type: 'discard', ids: packedIds }
+      ])
+    })
+
+    it('flushes immediately when the queue is full', () => {
+      const queue = new NativeSpanOperationQueue()
+
+      for (let i = 0; i < 99; i++) {
+        queue.discard({ id: `span-${i}`, traceId: 'trace' })
+      }
+
+      expect(applyNativeSpanOperations).not.toHaveBeenCalled()
+
+      queue.discard({ id: 'span-99', traceId: 'trace' })
+
+      expect(applyNativeSpanOperations).toHaveBeenCalledTimes(1)
+      expect(applyNativeSpanOperations.mock.calls[0][0]).toHaveLength(100)
+    })
+
+    it('does not call the native module when there is nothing to flush', async () => {
+      const queue = new NativeSpanOperationQueue()
+
+      await queue.flush()
+      await jest.runOnlyPendingTimersAsync()
+
+      expect(applyNativeSpanOperations).not.toHaveBeenCalled()
+    })
+
+    it('schedules a new flush for operations queued after a flush', async () => {
+      const queue = new NativeSpanOperationQueue()
+
+      queue.discard({ id: 'span-1', traceId: 'trace' })
+      await jest.runOnlyPendingTimersAsync()
+
+      queue.discard({ id: 'span-2', traceId: 'trace' })
+      await jest.runOnlyPendingTimersAsync()
+
+      expect(applyNativeSpanOperations).toHaveBeenCalledTimes(2)
+      expect(applyNativeSpanOperations).toHaveBeenNthCalledWith(1, [{ type: 'discard', spanId: 'span-1', traceId: 'trace' }])
+      expect(applyNativeSpanOperations).toHaveBeenNthCalledWith(2, [{ type: 'discard', spanId: 'span-2', traceId: 'trace' }])
+    })
+  })
+
+  describe('when the native module supports columnar attributes', () => {
+    let applyNativeSpanOperations: jest.Mock
+
+    beforeEach(() => {
+      applyNativeSpanOperations = jest.fn(() => Promise.resolve())
+      NativeBugsnagPerformance.applyNativeSpanOperations = applyNativeSpanOperations
+      NativeBugsnagPerformance.isAttributeEncodingSupported = jest.fn((encoding: string) => encoding === 'columnar')
+    })
+
+    afterEach(() => {
+      delete NativeBugsnagPerformance.isAttributeEncodingSupported
+    })
+
+    it('sends attributes of ended spans in columnar form', async () => {
+      const queue = new NativeSpanOperationQueue()
+
+      queue.end({ id: 'span-1', traceId: 'trace-1' }, 12345, { 'custom.attribute': 'value', 'custom.count': 2 })
+      queue.end({ id: 'span-2', traceId: 'trace-1' }, 12346, {})
+
+      await jest.runOnlyPendingTimersAsync()
+
+      expect(applyNativeSpanOperations).toHaveBeenCalledWith([
+        {
+          type: 'end',
+          spanId: 'span-1',
+          traceId: 'trace-1',
+          endTime: 12345,
+          columnarAttributes: { keys: ['custom.attribute', 'custom.count'], types: [0, 2], values: ['value', 2] }
+        },
+        {
+          type: 'end',
+          spanId: 'span-2',
+          traceId: 'trace-1',
+          endTime: 12346,
+          columnarAttributes: { keys: [], types: [], values: [] }
+        }
+      ])
+    })
+
+    it('only checks for columnar support once', () => {
+      const queue = new NativeSpanOperationQueue()
+
+      queue.end({ id: 'span-1', traceId: 'trace-1' }, 12345, {})
+      queue.end({ id: 'span-2', traceId: 'trace-1' }, 12346, {})
+
+      expect(NativeBugsnagPerformance.isAttributeEncodingSupported).toHaveBeenCalledTimes(1)
+      expect(NativeBugsnagPerformance.isAttributeEncodingSupported).toHaveBeenCalledWith('columnar')
+    })
+  })
+
+  describe('when the native module does not support batching', () => {
+    it('sends each operation to the native module immediately', () => {
+      const queue = new NativeSpanOperationQueue()
+
+      queue.end({ id: 'span-1', traceId: 'trace-1' }, 12345, { 'custom.attribute': 'value' })
+      queue.discard({ id: 'span-2', traceId: 'trace-1' })
+
+      expect(NativeBugsnagPerformance.endNativeSpan).toHaveBeenCalledWith('span-1', 'trace-1', 12345, { 'custom.attribute': 'value' })
+      expect(NativeBugsnagPerformance.discardNativeSpan).toHaveBeenCalledWith('span-2', 'trace-1')
+    })
+  })
+})
@@ -20,19 +20,24 @@ describe('NativeBugsnagPerformance', () => {
     expect(NativeBugsnagPerformance.getDeviceInfo()).toBeUndefined()
     expect(NativeBugsnagPerformance.requestEntropy()).toBe('')
     expect(await NativeBugsnagPerformance.requestEntropyAsync()).toBe('')
+    expect(NativeBugsnagPerformance.generateIds?.(1, 64)).toStrictEqual([])
     expect(NativeBugsnagPerformance.getNativeConstants()).toStrictEqual({ CacheDir: '', DocumentDir: '' })
     expect(await NativeBugsnagPerformance.exists('')).toBe(false)
     expect(await NativeBugsnagPerformance.isDir('')).toBe(false)
     expect(await NativeBugsnagPerformance.ls('')).toStrictEqual([])
+    expect(await NativeBugsnagPerformance.listFiles?.('')).toStrictEqual([])
     expect(await NativeBugsnagPerformance.mkdir('')).toBe('')
     expect(await NativeBugsnagPerformance.readFile('', '')).toBe('')
     await expect(NativeBugsnagPerformance.unlink('')).resolves.toBeUndefined()
     await expect(NativeBugsnagPerformance.writeFile('', '', '')).resolves.toBeUndefined()
+    expect(NativeBugsnagPerformance.isFileEncodingSupported?.('gzip')).toBe(false)
     expect(NativeBugsnagPerformance.isNativePerformanceAvailable()).toBe(false)
     expect(NativeBugsnagPerformance.attachToNativeSDK()).toBeNull()
     expect(NativeBugsnagPerformance.startNativeSpan('', {})).toStrictEqual({ name: '', id: '', traceId: '', startTime: 0, parentSpanId: '' })
     await expect(NativeBugsnagPerformance.endNativeSpan('', '', 0, {})).resolves.toBeUndefined()
     await expect(NativeBugsnagPerformance.discardNativeSpan('', '')).resolves.toBeUndefined()
+    await expect(NativeBugsnagPerformance.applyNativeSpanOperations?.([])).resolves.toBeUndefined()
     expect(() => { NativeBugsnagPerformance.markNativeSpanEndTime('', '', 0) }).not.toThrow()
+    expect(NativeBugsnagPerformance.getNativeMetrics?.()).toStrictEqual({})
   })
 })
@@ -0,0 +1,31 @@
+import { unpackSpanIds } from '../lib/packed-span-ids'
+
+describe('unpackSpanIds', () => {
+  it('converts packed span and trace IDs to hex strings', () => {
+    const ids = [0xfedcba98, 0x76543210, 0x01234567, 0x89abcdef, 0xffffffff, 0x00000000]
+
+    expect(unpackSpanIds(ids)).toStrictEqual({
+      id: 'fedcba9876543210',
+      traceId: '0123456789abcdefffffffff00000000'
+    })
+  })
+
+  it('pads each word to 8 characters', () => {
+    const ids = [0, 1, 0, 0x10, 0, 0x100]
+
+    expect(unpackSpanIds(ids)).toStrictEqual({
+      id: '0000000000000001',
+      traceId: '0000000000000010' + '0000000000000100'
+    })
+  })
+
+  it('includes the parent span ID when present', () => {
+    const ids = [1, 2, 3, 4, 5, 6, 0xabcdef01, 0x23456789]
+
+    expect(unpackSpanIds(ids)).toStrictEqual({
+      id: '0000000100000002',
+      traceId: '00000003000000040000000500000006',
+      parentSpanId: 'abcdef0123456789'
+    })
+  })
+})
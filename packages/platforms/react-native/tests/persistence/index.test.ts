@@ -1,5 +1,7 @@
 import persistenceFactory from '../../lib/persistence'
 import FileBasedPersistence from '../../lib/persistence/file-based'
+import KeyValuePersistence from '../../lib/persistence/key-value'
+import NativeBugsnagPerformance from '../../lib/native'
 // eslint-disable-next-line jest/no-mocks-import
 import { FileSystem } from '../../__mocks__/file-native'
 
@@ -29,4 +31,36 @@ describe('persistenceFactory', () => {
       'device-id': 'cuidabcabcabcabcabcabcabcabc'
     })
   })
+
+  describe('when the native module supports persisted values', () => {
+    beforeEach(() => {
+      NativeBugsnagPerformance.getPersistedValues = jest.fn(() => ({}))
+      NativeBugsnagPerformance.setPersistedValue = jest.fn(() => Promise.resolve(true))
+    })
+
+    afterEach(() => {
+      delete NativeBugsnagPerformance.getPersistedValues
+      delete NativeBugsnagPerformance.setPersistedValue
+    })
+
+    it('returns a KeyValuePersistence', () => {
+      expect(persistenceFactory(FileSystem)).toBeInstanceOf(KeyValuePersistence)
+    })
+
+    it('uses the correct path to persisted-state.json', async () => {
+      const persistence = persistenceFactory(FileSystem)
+
+      await persistence.save('bugsnag-anonymous-id', 'cuidabcabcabcabcabcabcabcabc')
+
+      expect(NativeBugsnagPerformance.setPersistedValue).toHaveBeenCalledWith(
+        EXPECTED_PATH,
+        'device-id',
+        '"cuidabcabcabcabcabcabcabcabc"'
+      )
+    })
+
+    it('returns a FileBasedPersistence when debugging remotely', () => {
+      expect(persistenceFactory(FileSystem, undefined, true)).toBeInstanceOf(FileBasedPersistence)
+    })
+  })
 })
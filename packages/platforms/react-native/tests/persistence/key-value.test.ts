@@ -0,0 +1,130 @@
+import { ReadOnlyFile } from '../../lib/persistence/file'
+import KeyValuePersistence, { createNativeKeyValueStore } from '../../lib/persistence/key-value'
+import type { KeyValueStore } from '../../lib/persistence/key-value'
+import NativeBugsnagPerformance from '../../lib/native'
+// eslint-disable-next-line jest/no-mocks-import
+import { FileSystem } from '../../__mocks__/file-native'
+
+const NATIVE_DEVICE_ID_PATH_IOS = '/mock/CacheDir/bugsnag-shared-my.cool.app/device-id.json'
+
+class InMemoryKeyValueStore implements KeyValueStore {
+  readonly values: Record<string, string>
+
+  constructor (values: Record<string, string> = {}) {
+    this.values = values
+  }
+
+  getValues = jest.fn(() => ({ ...this.values }))
+
+  setValue = jest.fn(async (key: string, json: string) => {
+    this.values[key] = json
+    return true
+  })
+}
+
+const getNativeDeviceIdFile = () => new ReadOnlyFile(NATIVE_DEVICE_ID_PATH_IOS, FileSystem)
+
+describe('KeyValuePersistence', () => {
+  beforeEach(() => {
+    FileSystem.filesystem = new Map<string, string>()
+  })
+
+  it('returns undefined for a key with no persisted value', async () => {
+    const persistence = new KeyValuePersistence(new InMemoryKeyValueStore(), getNativeDeviceIdFile())
+
+    expect(await persistence.load('bugsnag-anonymous-id')).toBeUndefined()
+    expect(await persistence.load('bugsnag-sampling-probability')).toBeUndefined()
+  })
+
+  it('saves values as JSON using the same keys as the persisted state file', async () => {
+    const store = new InMemoryKeyValueStore()
+    const persistence = new KeyValuePersistence(store, getNativeDeviceIdFile())
+    const samplingProbability = { value: 0.5, time: 12345678 }
+
+    await persistence.save('bugsnag-anonymous-id', 'cuidcuidcuidcuidcuidcuidcuidcuid')
+    await persistence.save('bugsnag-sampling-probability', samplingProbability)
+
+    expect(store.values).toStrictEqual({
+      'device-id': '"cuidcuidcuidcuidcuidcuidcuidcuid"',
+      'sampling-probability': JSON.stringify(samplingProbability)
+    })
+
+    expect(await persistence.load('bugsnag-anonymous-id')).toBe('cuidcuidcuidcuidcuidcuidcuidcuid')
+    expect(await persistence.load('bugsnag-sampling-probability')).toStrictEqual(samplingProbability)
+  })
+
+  it('only reads from the store once', async () => {
+    const samplingProbability = { value: 0.25, time: 1234 }
+    const store = new InMemoryKeyValueStore({
+      'device-id': '"cuidcuidcuidcuidcuidcuidcuidcuid"',
+      'sampling-probability': JSON.stringify(samplingProbability)
+    })
+    const persistence = new KeyValuePersistence(store, getNativeDeviceIdFile())
+
+    expect(await persistence.load('bugsnag-anonymous-id')).toBe('cuidcuidcuidcuidcuidcuidcuidcuid')
+    expect(await persistence.load('bugsnag-sampling-probability')).toStrictEqual(samplingProbability)
+
+    await persistence.save('bugsnag-sampling-probability', { value: 0.5, time: 5678 })
+
+    expect(await persistence.load('bugsnag-sampling-probability')).toStrictEqual({ value: 0.5, time: 5678 })
+    expect(store.getValues).toHaveBeenCalledTimes(1)
+  })
+
+  it('ignores invalid values', async () => {
+    const store = new InMemoryKeyValueStore({
+      'device-id': '"not a cuid"',
+      'sampling-probability': '{ "value": 0.5, "time": '
+    })
+    const persistence = new KeyValuePersistence(store, getNativeDeviceIdFile())
+
+    expect(await persistence.load('bugsnag-anonymous-id')).toBeUndefined()
+    expect(await persistence.load('bugsnag-sampling-probability')).toBeUndefined()
+  })
+
+  it('prefers the native device ID', async () => {
+    const store = new InMemoryKeyValueStore({ 'device-id': '"cuidcuidcuidcuidcuidcuidcuidcuid"' })
+    const persistence = new KeyValuePersistence(store, getNativeDeviceIdFile())
+
+    await FileSystem.writeFile(NATIVE_DEVICE_ID_PATH_IOS, '{ "deviceID": "ios-device-id" }')
+
+    expect(await persistence.load('bugsnag-anonymous-id')).toBe('ios-device-id')
+  })
+
+  it.each([
+    ['resolves false', () => Promise.resolve(false)],
+    ['rejects', () => Promise.reject(new Error('oh no'))]
+  ])('resolves when the store %s', async (_, setValue) => {
+    const store = new InMemoryKeyValueStore()
+    store.setValue.mockImplementationOnce(setValue)
+    const persistence = new KeyValuePersistence(store, getNativeDeviceIdFile())
+
+    await expect(persistence.save('bugsnag-anonymous-id', 'cuidcuidcuidcuidcuidcuidcuidcuid')).resolves.toBeUndefined()
+
+    // the value is still available until the app restarts
+    expect(await persistence.load('bugsnag-anonymous-id')).toBe('cuidcuidcuidcuidcuidcuidcuidcuid')
+  })
+})
+
+describe('createNativeKeyValueStore', () => {
+  afterEach(() => {
+    delete NativeBugsnagPerformance.getPersistedValues
+    delete NativeBugsnagPerformance.setPersistedValue
+  })
+
+  it('returns undefined when the native module does not support persisted values', () => {
+    expect(createNativeKeyValueStore('/a/b/c.json')).toBeUndefined()
+  })
+
+  it('reads and writes values with the given path', async () => {
+    NativeBugsnagPerformance.getPersistedValues = jest.fn(() => ({ a: '1' }))
+    NativeBugsnagPerformance.setPersistedValue = jest.fn(() => Promise.resolve(true))
+
+    const store = createNativeKeyValueStore('/a/b/c.json')
+
+    expect(store?.getValues()).toStrictEqual({ a: '1' })
+    expect(NativeBugsnagPerformance.getPersistedValues).toHaveBeenCalledWith('/a/b/c.json')
+
+    await expect(store?.setValue('b', '"two"')).resolves.toBe(true)
+    expect(NativeBugsnagPerformance.setPersistedValue).toHaveBeenCalledWith('/a/b/c.json', 'b', '"two"')
+  })
+})
@@ -125,6 +125,34 @@ describe('RetryQueueDirectory', () => {
 
       expect(await directory.files()).toStrictEqual([])
     })
+
+    it('lists files in a single call when the file system supports listFiles', async () => {
+      const fileSystem = new FileSystemFake()
+      const listFiles = jest.fn(async (path: string) => [
+        { name: 'retry-4-z.json', size: 10, mtime: 4, isDir: false },
+        { name: 'retry-2-x.json', size: 20, mtime: 2, isDir: false },
+        { name: 'sub-directory', size: 0, mtime: 1, isDir: true },
+        { name: ':).json', size: 30, mtime: 3, isDir: false }
+      ])
+
+      const exists = jest.spyOn(fileSystem, 'exists')
+      const ls = jest.spyOn(fileSystem, 'ls')
+      const isDir = jest.spyOn(fileSystem, 'isDir')
+
+      const directory = new RetryQueueDirectory(Object.assign(fileSystem, { listFiles }), '/a/b/c')
+
+      // entries are returned in the order provided by the native module
+      expect(await directory.files()).toStrictEqual([
+        'retry-4-z.json',
+        'retry-2-x.json',
+        ':).json'
+      ])
+
+      expect(listFiles).toHaveBeenCalledWith('/a/b/c')
+      expect(exists).not.toHaveBeenCalled()
+      expect(ls).not.toHaveBeenCalled()
+      expect(isDir).not.toHaveBeenCalled()
+    })
   })
 
   describe('read', () => {
@@ -186,5 +214,93 @@ describe('RetryQueueDirectory', () => {
       expect(await directory.read('b.c')).toStrictEqual('hi')
       expect(await fileSystem.exists('/a/b.c')).toBe(true)
     })
+
+    it('uses gzip encoding when the file system supports it', async () => {
+      const fileSystem = new FileSystemFake()
+      const isEncodingSupported = jest.fn((encoding: string) => encoding === 'gzip')
+      const directory = new RetryQueueDirectory(Object.assign(fileSystem, { isEncodingSupported }), '/a')
+
+      const writeFile = jest.spyOn(fileSystem, 'writeFile')
+      const readFile = jest.spyOn(fileSystem, 'readFile')
+
+      await directory.write('b.json', '{}')
+      expect(await directory.read('b.json')).toStrictEqual('{}')
+
+      expect(isEncodingSupported).toHaveBeenCalledWith('gzip')
+      expect(writeFile).toHaveBeenCalledWith('/a/b.json', '{}', 'gzip')
+      expect(readFile).toHaveBeenCalledWith('/a/b.json', 'gzip')
+    })
+
+    it('uses utf8 encoding when the file system does not support gzip', async () => {
+      const fileSystem = new FileSystemFake()
+      const isEncodingSupported = jest.fn(() => false)
+      const directory = new RetryQueueDirectory(Object.assign(fileSystem, { isEncodingSupported }), '/a')
+
+      const writeFile = jest.spyOn(fileSystem, 'writeFile')
+
+      await directory.write('b.json', '{}')
+
+      expect(writeFile).toHaveBeenCalledWith('/a/b.json', '{}', 'utf8')
+    })
+  })
+
+  describe('native index', () => {
+    it('is not indexed without limits', async () => {
+      const fileSystem = Object.assign(new FileSystemFake(), {
+        openRetryQueue: jest.fn().mockResolvedValue({ count: 0, totalBytes: 0 }),
+        nextRetryQueueFile: jest.fn()
+      })
+      const directory = new RetryQueueDirectory(fileSystem, '/a/b/c')
+
+      expect(await directory.isIndexed()).toBe(false)
+      expect(fileSystem.openRetryQueue).not.toHaveBeenCalled()
+    })
+
+    it('is not indexed when the native module does not support it', async () => {
+      const directory = new RetryQueueDirectory(new FileSystemFake(), '/a/b/c', { maxBytes: 1024, maxCount: 10 })
+
+      expect(await directory.isIndexed()).toBe(false)
+      expect(await directory.next()).toBeUndefined()
+    })
+
+    it('opens the native index once with the given limits', async () => {
+      const fileSystem = Object.assign(new FileSystemFake(), {
+        openRetryQueue: jest.fn().mockResolvedValue({ count: 0, totalBytes: 0 }),
+        nextRetryQueueFile: jest.fn().mockResolvedValue(null)
+      })
+      const directory = new RetryQueueDirectory(fileSystem, '/a/b/c', { maxBytes: 1024, maxCount: 10 })
+
+      expect(await directory.isIndexed()).toBe(true)
+      await directory.write('retry-1-a.json', 'abc')
+
+      expect(await fileSystem.isDir('/a/b/c')).toBe(true)
+      expect(fileSystem.openRetryQueue).toHaveBeenCalledTimes(1)
+      expect(fileSystem.openRetryQueue).toHaveBeenCalledWith('/a/b/c', 1024, 10)
+    })
+
+    it('is not indexed if opening the index fails', async () => {
+      const fileSystem = Object.assign(new FileSystemFake(), {
+        openRetryQueue: jest.fn().mockRejectedValue(new Error('oh no')),
+        nextRetryQueueFile: jest.fn()
+      })
+      const directory = new RetryQueueDirectory(fileSystem, '/a/b/c', { maxBytes: 1024, maxCount: 10 })
+
+      expect(await directory.isIndexed()).toBe(false)
+    })
+
+    it('gets the next file from the native index', async () => {
+      const fileSystem = Object.assign(new FileSystemFake(), {
+        openRetryQueue: jest.fn().mockResolvedValue({ count: 2, totalBytes: 20 }),
+        nextRetryQueueFile: jest.fn(async (_path: string, previous: string | null) =>
+          previous === null ? 'retry-2-b.json' : previous === 'retry-2-b.json' ? 'retry-1-a.json' : null
+        )
+      })
+      const directory = new RetryQueueDirectory(fileSystem, '/a/b/c', { maxBytes: 1024, maxCount: 10 })
+
+      expect(await directory.next()).toBe('retry-2-b.json')
+      expect(await directory.next('retry-2-b.json')).toBe('retry-1-a.json')
+      expect(await directory.next('retry-1-a.json')).toBeUndefined()
+      expect(fileSystem.nextRetryQueueFile).toHaveBeenCalledWith('/a/b/c', null)
+    })
   })
 })
@@ -2,6 +2,8 @@ import FileBasedRetryQueue from '../../lib/retry-queue/file-based'
 import RetryQueueDirectory from '../../lib/retry-queue/directory'
 import FileSystemFake from '../utilities/file-system-fake'
 import { InMemoryDelivery, makePayloadCreator } from '@bugsnag/js-performance-test-utilities'
+import type { ResponseState } from '@bugsnag/core-performance'
+import timestampFromFilename from '../../lib/retry-queue/timestamp-from-filename'
 
 const createPayload = makePayloadCreator()
 
@@ -335,4 +337,160 @@ describe('RetryQueueDirectory', () => {
       expect(await directory.files()).toStrictEqual([])
     })
   })
+
+  describe('payload files', () => {
+    class PayloadFileSystemFake extends FileSystemFake {
+      async writePayloadFile (path: string, headers: Record<string, string>, body: string): Promise<void> {
+        await this.writeFile(path, JSON.stringify({ payloadFile: { headers, body } }))
+      }
+    }
+
+    function createPayloadFileDelivery (fileSystem: FileSystemFake, status: ResponseState = 'success') {
+      const delivery = new InMemoryDelivery()
+      const sendPayloadFile = jest.fn(async (path: string): Promise<ResponseState | undefined> => {
+        const contents = JSON.parse(await fileSystem.readFile(path))
+
+        return contents.payloadFile ? status : undefined
+      })
+
+      return Object.assign(delivery, { sendPayloadFile })
+    }
+
+    it('writes payload files when they can be delivered natively', async () => {
+      const fileSystem = new PayloadFileSystemFake()
+      const delivery = createPayloadFileDelivery(fileSystem)
+      const directory = new RetryQueueDirectory(fileSystem, '/a/b/c')
+      const queue = new FileBasedRetryQueue(delivery, directory)
+
+      const payload = createPayload({ spanId: 'abcd', endTimeUnixNano: '1234' })
+      await queue.add(payload, 1234)
+
+      const contents = JSON.parse(await directory.read('retry-1234-abcd.json'))
+
+      expect(contents).toStrictEqual({
+        payloadFile: {
+          headers: payload.headers,
+          body: JSON.stringify(payload.body)
+        }
+      })
+    })
+
+    it('writes JSON files when the delivery cannot send payload files', async () => {
+      const fileSystem = new PayloadFileSystemFake()
+      const delivery = new InMemoryDelivery()
+      const directory = new RetryQueueDirectory(fileSystem, '/a/b/c')
+      const queue = new FileBasedRetryQueue(delivery, directory)
+
+      const payload = createPayload({ spanId: 'abcd', endTimeUnixNano: '1234' })
+      await queue.add(payload, 1234)
+
+      expect(JSON.parse(await directory.read('retry-1234-abcd.json'))).toStrictEqual(payload)
+    })
+
+    it('delivers payload files natively without reading them', async () => {
+      const fileSystem = new PayloadFileSystemFake()
+      const delivery = createPayloadFileDelivery(fileSystem)
+      const directory = new RetryQueueDirectory(fileSystem, '/a/b/c')
+      const queue = new FileBasedRetryQueue(delivery, directory)
+
+      const batchTime = Date.now()
+      await queue.add(createPayload({ spanId: 'abcd', endTimeUnixNano: '1234' }), batchTime)
+      await queue.flush()
+
+      expect(delivery.sendPayloadFile).toHaveBeenCalledWith(`/a/b/c/retry-${batchTime}-abcd.json`)
+      expect(delivery.requests).toStrictEqual([])
+      expect(await directory.files()).toStrictEqual([])
+    })
+
+    it('leaves payload files in place after a retryable failure', async () => {
+      const fileSystem = new PayloadFileSystemFake()
+      const delivery = createPayloadFileDelivery(fileSystem, 'failure-retryable')
+      const directory = new RetryQueueDirectory(fileSystem, '/a/b/c')
+      const queue = new FileBasedRetryQueue(delivery, directory)
+
+      const batchTime = Date.now()
+      await queue.add(createPayload({ spanId: 'abcd', endTimeUnixNano: '1234' }), batchTime)
+      await queue.flush()
+
+      expect(delivery.sendPayloadFile).toHaveBeenCalledTimes(1)
+      expect(await directory.files()).toStrictEqual([`retry-${batchTime}-abcd.json`])
+    })
+
+    it('falls back to sending the payload for files that are not payload files', async () => {
+      const fileSystem = new PayloadFileSystemFake()
+      const delivery = createPayloadFileDelivery(fileSystem)
+      const directory = new RetryQueueDirectory(fileSystem, '/a/b/c')
+      const queue = new FileBasedRetryQueue(delivery, directory)
+
+      // a JSON file written by an older version of the retry queue
+      const payload = createPayload({ spanId: 'abcd', endTimeUnixNano: '1234' })
+      const batchTime = Date.now()
+      await directory.write(`retry-${batchTime}-abcd.json`, JSON.stringify(payload))
+
+      await queue.flush()
+
+      expect(delivery.sendPayloadFile).toHaveBeenCalledTimes(1)
+      expect(delivery.requests).toStrictEqual([payload.body])
+      expect(await directory.files()).toStrictEqual([])
+    })
+  })
+
+  describe('with a native index', () => {
+    // a fake native index, which only supports filenames with distinct timestamps
+    class IndexedFileSystemFake extends FileSystemFake {
+      openRetryQueue = jest.fn(async () => ({ count: 0, totalBytes: 0 }))
+
+      nextRetryQueueFile = jest.fn(async (path: string, previous: string | null) => {
+        const previousTimestamp = previous ? timestampFromFilename(previous) as number : Infinity
+        const files = (await this.ls(path))
+          .map(file => file.split('/').pop() as string)
+          .filter(name => (timestampFromFilename(name) as number) < previousTimestamp)
+          .sort((a, b) => (timestampFromFilename(b) as number) - (timestampFromFilename(a) as number))
+
+        return files[0] || null
+      })
+    }
+
+    it('flushes files newest first without listing the directory', async () => {
+      const fileSystem = new IndexedFileSystemFake()
+      const delivery = new InMemoryDelivery()
+      const directory = new RetryQueueDirectory(fileSystem, '/a/b/c', { maxBytes: 1024 * 1024, maxCount: 100 })
+      const queue = new FileBasedRetryQueue(delivery, directory)
+
+      const now = Date.now()
+      const payload1 = createPayload({ spanId: 'a', endTimeUnixNano: '1234' })
+      const payload2 = createPayload({ spanId: 'b', endTimeUnixNano: '1234' })
+      await queue.add(payload1, now - 10)
+      await queue.add(payload2, now - 5)
+
+      const lsSpy = jest.spyOn(directory, 'files')
+
+      await queue.flush()
+
+      expect(lsSpy).not.toHaveBeenCalled()
+      expect(delivery.requests).toStrictEqual([payload2.body, payload1.body])
+      expect(fileSystem.nextRetryQueueFile).toHaveBeenCalledTimes(3)
+      expect(await fileSystem.ls('/a/b/c')).toStrictEqual([])
+    })
+
+    it('continues past files that are left for the next flush', async () => {
+      const fileSystem = new IndexedFileSystemFake()
+      const delivery = new InMemoryDelivery()
+      const directory = new RetryQueueDirectory(fileSystem, '/a/b/c', { maxBytes: 1024 * 1024, maxCount: 100 })
+      const queue = new FileBasedRetryQueue(delivery, directory)
+
+      const now = Date.now()
+      const payload1 = createPayload({ spanId: 'a', endTimeUnixNano: '1234' })
+      const payload2 = createPayload({ spanId: 'b', endTimeUnixNano: '1234' })
+      await queue.add(payload1, now - 10)
+      await queue.add(payload2, now - 5)
+
+      delivery.setNextResponseState('failure-retryable')
+
+      await queue.flush()
+
+      expect(delivery.requests).toStrictEqual([payload2.body, payload1.body])
+      expect(await directory.files()).toStrictEqual([`retry-${now - 5}-b.json`])
+    })
+  })
 })
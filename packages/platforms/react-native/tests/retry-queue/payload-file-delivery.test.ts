@@ -0,0 +1,64 @@
+import { IncrementingClock, InMemoryDelivery, makePayloadCreator } from '@bugsnag/js-performance-test-utilities'
+import createPayloadFileDeliveryFactory, { isPayloadFileDelivery } from '../../lib/retry-queue/payload-file-delivery'
+
+describe('createPayloadFileDeliveryFactory', () => {
+  it('returns the given delivery factory when payload files cannot be delivered', () => {
+    const deliveryFactory = () => new InMemoryDelivery()
+
+    expect(createPayloadFileDeliveryFactory(deliveryFactory, new IncrementingClock(), undefined)).toBe(deliveryFactory)
+  })
+
+  it('delivers payload files natively', async () => {
+    const clock = new IncrementingClock('2024-01-01T00:00:00.000Z')
+    const deliverPayloadFile = jest.fn().mockResolvedValue(202)
+    const factory = createPayloadFileDeliveryFactory(() => new InMemoryDelivery(), clock, deliverPayloadFile)
+    const delivery = factory('/traces')
+
+    if (!isPayloadFileDelivery(delivery)) {
+      throw new Error('expected a payload file delivery')
+    }
+
+    expect(await delivery.sendPayloadFile('/a/retry-1-a.json')).toBe('success')
+    expect(deliverPayloadFile).toHaveBeenCalledWith('/a/retry-1-a.json', '/traces', {
+      'Bugsnag-Sent-At': expect.stringMatching(/^2024-01-01T/)
+    })
+  })
+
+  it.each([
+    [400, 'failure-discard'],
+    [429, 'failure-retryable'],
+    [500, 'failure-retryable'],
+    [0, 'failure-retryable']
+  ])('maps a status of %d to %s', async (status, state) => {
+    const factory = createPayloadFileDeliveryFactory(() => new InMemoryDelivery(), new IncrementingClock(), jest.fn().mockResolvedValue(status))
+    const delivery = factory('/traces')
+
+    expect(isPayloadFileDelivery(delivery) && await delivery.sendPayloadFile('/a/retry-1-a.json')).toBe(state)
+  })
+
+  it('resolves undefined for files that are not payload files', async () => {
+    const error = Object.assign(new Error('Not a payload file'), { code: 'EFORMAT' })
+    const factory = createPayloadFileDeliveryFactory(() => new InMemoryDelivery(), new IncrementingClock(), jest.fn().mockRejectedValue(error))
+    const delivery = factory('/traces')
+
+    expect(isPayloadFileDelivery(delivery) && await delivery.sendPayloadFile('/a/retry-1-a.json')).toBeUndefined()
+  })
+
+  it('rethrows other errors', async () => {
+    const error = Object.assign(new Error('No such file'), { code: 'ENOENT' })
+    const factory = createPayloadFileDeliveryFactory(() => new InMemoryDelivery(), new IncrementingClock(), jest.fn().mockRejectedValue(error))
+    const delivery = factory('/traces')
+
+    await expect(isPayloadFileDelivery(delivery) && delivery.sendPayloadFile('/a/retry-1-a.json')).rejects.toBe(error)
+  })
+
+  it('passes payloads to the wrapped delivery', async () => {
+    const inner = new InMemoryDelivery()
+    const factory = createPayloadFileDeliveryFactory(() => inner, new IncrementingClock(), jest.fn())
+    const payload = makePayloadCreator()({ spanId: 'abcd', endTimeUnixNano: '1234' })
+
+    await factory('/traces').send(payload)
+
+    expect(inner.requests).toStrictEqual([payload.body])
+  })
+})
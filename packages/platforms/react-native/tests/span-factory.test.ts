@@ -99,6 +99,159 @@ describe('ReactNativeSpanFactory', () => {
       expect(nativeSpan.traceId).toBe('native-trace-id')
       expect(contextStorage.current).toBe(nativeSpan)
     })
+
+    it('uses packed native span IDs when span operations can be batched', async () => {
+      const applyNativeSpanOperations = jest.fn(() => Promise.resolve())
+      NativeBugsnagPerformance.applyNativeSpanOperations = applyNativeSpanOperations
+
+      const startNativeSpan = NativeBugsnagPerformance.startNativeSpan as jest.MockedFunction<typeof NativeBugsnagPerformance.startNativeSpan>
+      startNativeSpan.mockReturnValueOnce({
+        name: 'native span',
+        id: undefined,
+        traceId: undefined,
+        startTime: 0,
+        parentSpanId: undefined,
+        ids: [0xaaaaaaaa, 0xbbbbbbbb, 1, 2, 3, 4, 0xcccccccc, 0xdddddddd]
+      })
+
+      try {
+        spanFactory.onAttach()
+
+        const startTime = clock.now()
+        const nativeSpan = spanFactory.startSpan('native span', { startTime, isFirstClass: true })
+        expect(startNativeSpan).toHaveBeenCalledWith('native span', expect.objectContaining({ packedIds: true }))
+        expect(nativeSpan.id).toBe('aaaaaaaabbbbbbbb')
+        expect(nativeSpan.traceId).toBe('00000001000000020000000300000004')
+        expect(nativeSpan.parentSpanId).toBe('ccccccccdddddddd')
+
+        spanFactory.endSpan(nativeSpan, clock.now())
+        await jest.runOnlyPendingTimersAsync()
+
+        expect(NativeBugsnagPerformance.endNativeSpan).not.toHaveBeenCalled()
+        expect(applyNativeSpanOperations).toHaveBeenCalledWith([
+          expect.objectContaining({ type: 'end', ids: [0xaaaaaaaa, 0xbbbbbbbb, 1, 2, 3, 4, 0xcccccccc, 0xdddddddd] })
+        ])
+      } finally {
+        delete NativeBugsnagPerformance.applyNativeSpanOperations
+      }
+    })
+
+    it('passes the custom category to the native sampler', () => {
+      spanFactory.onAttach()
+
+      spanFactory.startSpan('native span', { startTime: clock.now(), isFirstClass: true })
+      expect(NativeBugsnagPerformance.startNativeSpan).toHaveBeenCalledWith('native span', expect.objectContaining({ category: 'custom' }))
+    })
+
+    it('passes the network category to the native sampler for network spans', () => {
+      spanFactory.onAttach()
+
+      spanFactory.startNetworkSpan({ method: 'get', url: 'https://example.com', startTime: clock.now(), isFirstClass: true })
+      spanFactory.startSpan('native span', { startTime: clock.now(), isFirstClass: true })
+
+      expect(NativeBugsnagPerformance.startNativeSpan).toHaveBeenNthCalledWith(1, '[HTTP/GET]', expect.objectContaining({ category: 'network' }))
+      expect(NativeBugsnagPerformance.startNativeSpan).toHaveBeenNthCalledWith(2, 'native span', expect.objectContaining({ category: 'custom' }))
+    })
+
+    describe('when the native sampler does not record a span', () => {
+      beforeEach(() => {
+        const startNativeSpan = NativeBugsnagPerformance.startNativeSpan as jest.MockedFunction<typeof NativeBugsnagPerformance.startNativeSpan>
+        startNativeSpan.mockReturnValueOnce({
+          name: 'unrecorded span',
+          id: undefined,
+          traceId: undefined,
+          startTime: 0,
+          parentSpanId: undefined,
+          ids: undefined,
+          isRecorded: false
+        })
+      })
+
+      it('asks the native module to sample spans', () => {
+        spanFactory.onAttach()
+
+        spanFactory.startSpan('unrecorded span', { startTime: clock.now(), isFirstClass: true })
+        expect(NativeBugsnagPerformance.startNativeSpan).toHaveBeenCalledWith('unrecorded span', expect.objectContaining({ sample: true }))
+      })
+
+      it('creates a JS span that is never sent to the native module or the processor', async () => {
+        spanFactory.onAttach()
+
+        const span = spanFactory.startSpan('unrecorded span', { startTime: clock.now(), isFirstClass: true })
+        expect(span.id).toBeTruthy()
+        expect(span.traceId).toBeTruthy()
+        expect(contextStorage.current).toBe(span)
+
+        spanFactory.endSpan(span, clock.now())
+        await jest.runOnlyPendingTimersAsync()
+
+        expect(span.isValid()).toBe(false)
+        expect(contextStorage.current).toBeUndefined()
+        expect(processor.spans.length).toBe(0)
+        expect(NativeBugsnagPerformance.endNativeSpan).not.toHaveBeenCalled()
+      })
+
+      it('does not record children of the unrecorded span', async () => {
+        spanFactory.onAttach()
+
+        const parent = spanFactory.startSpan('unrecorded span', { startTime: clock.now(), isFirstClass: true })
+        const nativeChild = spanFactory.startSpan('native child', { startTime: clock.now(), isFirstClass: true })
+        const jsChild = spanFactory.startSpan('js child', { startTime: clock.now(), isFirstClass: false })
+
+        expect(NativeBugsnagPerformance.startNativeSpan).toHaveBeenCalledTimes(1)
+        expect(nativeChild.traceId).toBe(parent.traceId)
+        expect(jsChild.traceId).toBe(parent.traceId)
+
+        spanFactory.endSpan(jsChild, clock.now())
+        spanFactory.endSpan(nativeChild, clock.now())
+        spanFactory.endSpan(parent, clock.now())
+        await jest.runOnlyPendingTimersAsync()
+
+        expect(processor.spans.length).toBe(0)
+        expect(NativeBugsnagPerformance.endNativeSpan).not.toHaveBeenCalled()
+      })
+
+      it('does not record children started after the unrecorded span has ended', async () => {
+        spanFactory.onAttach()
+
+        const parent = spanFactory.startSpan('unrecorded span', { startTime: clock.now(), isFirstClass: true })
+        spanFactory.endSpan(parent, clock.now())
+        await jest.runOnlyPendingTimersAsync()
+
+        const child = spanFactory.startSpan('native child', { startTime: clock.now(), isFirstClass: true, parentContext: parent })
+        spanFactory.endSpan(child, clock.now())
+        await jest.runOnlyPendingTimersAsync()
+
+        expect(NativeBugsnagPerformance.startNativeSpan).toHaveBeenCalledTimes(1)
+        expect(child.traceId).toBe(parent.traceId)
+        expect(processor.spans.length).toBe(0)
+        expect(NativeBugsnagPerformance.endNativeSpan).not.toHaveBeenCalled()
+      })
+
+      it('does not record children of the public API of the unrecorded span', () => {
+        spanFactory.onAttach()
+
+        const parent = spanFactory.toPublicApi(
+          spanFactory.startSpan('unrecorded span', { startTime: clock.now(), isFirstClass: true, makeCurrentContext: false })
+        )
+        const child = spanFactory.startSpan('native child', { startTime: clock.now(), isFirstClass: true, parentContext: parent })
+
+        expect(NativeBugsnagPerformance.startNativeSpan).toHaveBeenCalledTimes(1)
+        expect(child.traceId).toBe(parent.traceId)
+        expect(child.parentSpanId).toBe(parent.id)
+      })
+
+      it('does not discard the unrecorded span in the native module', async () => {
+        spanFactory.onAttach()
+
+        const span = spanFactory.startSpan('unrecorded span', { startTime: clock.now(), isFirstClass: true })
+        spanFactory.endSpan(span, DISCARD_END_TIME)
+        await jest.runOnlyPendingTimersAsync()
+
+        expect(span.isValid()).toBe(false)
+        expect(NativeBugsnagPerformance.discardNativeSpan).not.toHaveBeenCalled()
+      })
+    })
   })
 
   describe('endSpan', () => {
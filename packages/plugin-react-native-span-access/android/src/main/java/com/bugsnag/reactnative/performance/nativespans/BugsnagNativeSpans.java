@@ -8,6 +8,8 @@ import com.bugsnag.android.performance.Span;
 import com.bugsnag.android.performance.RemoteSpanContext;
 import com.bugsnag.android.performance.internal.BugsnagClock;
 import com.bugsnag.android.performance.internal.EncodingUtils;
+import com.bugsnag.reactnative.performance.AttributeInterner;
+import com.bugsnag.reactnative.performance.AttributeLimits;
 import com.bugsnag.reactnative.performance.ReactNativeSpanAttributes;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
@@ -15,9 +17,13 @@ import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule.RCTDeviceEventEmitter;
 
+import java.util.ArrayList;
+import java.util.List;
+
 class BugsnagNativeSpans {
 
   // Attribute keys
@@ -28,6 +34,7 @@ class BugsnagNativeSpans {
   // Span properties
   private static final String END_TIME = "endTime";
   private static final String IS_ENDED = "isEnded";
+  private static final String SPAN_NAME = "name";
   private static final String SPAN_ID = "spanId";
   private static final String TRACE_ID = "traceId";
 
@@ -73,6 +80,75 @@ class BugsnagNativeSpans {
     return map;
   }
 
+  /**
+   * Find the open spans with any of the given names in a single call, returning the name and ID
+   * of each span that is found
+   */
+  public WritableArray getSpanIdsByNames(ReadableArray spanNames) {
+    BugsnagNativeSpansPlugin nativeSpanAccessPlugin = BugsnagNativeSpansPlugin.getInstance();
+
+    if (nativeSpanAccessPlugin == null || spanNames == null) {
+      return Arguments.createArray();
+    }
+
+    int size = spanNames.size();
+    List<String> names = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      if (spanNames.getType(i) == ReadableType.String) {
+        names.add(spanNames.getString(i));
+      }
+    }
+
+    return toNamedSpanIds(nativeSpanAccessPlugin.getSpansByNames(names));
+  }
+
+  /**
+   * Find the open spans with names that start with {@code namePrefix}, returning the name and ID
+   * of each span in name order
+   */
+  public WritableArray getSpanIdsByNamePrefix(String namePrefix) {
+    BugsnagNativeSpansPlugin nativeSpanAccessPlugin = BugsnagNativeSpansPlugin.getInstance();
+
+    if (nativeSpanAccessPlugin == null || namePrefix == null) {
+      return Arguments.createArray();
+    }
+
+    return toNamedSpanIds(nativeSpanAccessPlugin.getSpansByNamePrefix(namePrefix));
+  }
+
+  private static WritableArray toNamedSpanIds(List<Span> spans) {
+    WritableArray spanIds = Arguments.createArray();
+    for (Span span : spans) {
+      WritableMap map = Arguments.createMap();
+      map.putString(SPAN_NAME, span.getName());
+      map.putString(SPAN_ID, EncodingUtils.toHexString(span.getSpanId()));
+      map.putString(TRACE_ID, EncodingUtils.toHexString(span.getTraceId()));
+      spanIds.pushMap(map);
+    }
+
+    return spanIds;
+  }
+
+  public WritableMap getMetrics() {
+    WritableMap metrics = Arguments.createMap();
+    BugsnagNativeSpansPlugin nativeSpanAccessPlugin = BugsnagNativeSpansPlugin.getInstance();
+
+    if (nativeSpanAccessPlugin != null) {
+      metrics.putDouble("indexedSpanCount", (double) nativeSpanAccessPlugin.getIndexedSpanCount());
+      metrics.putDouble("skippedSpanCount", (double) nativeSpanAccessPlugin.getSkippedSpanCount());
+      metrics.putDouble("expiredSpanCount", (double) nativeSpanAccessPlugin.getExpiredSpanCount());
+
+      long lookupCount = nativeSpanAccessPlugin.getSpanNameLookupCount();
+      long hitCount = nativeSpanAccessPlugin.getSpanNameHitCount();
+      metrics.putDouble("spanNameCount", (double) nativeSpanAccessPlugin.getSpanNameCount());
+      metrics.putDouble("evictedSpanNameCount", (double) nativeSpanAccessPlugin.getEvictedSpanNameCount());
+      metrics.putDouble("spanNameLookupCount", (double) lookupCount);
+      metrics.putDouble("spanNameHitRate", lookupCount > 0 ? (double) hitCount / lookupCount : 0.0);
+    }
+
+    return metrics;
+  }
+
   public void updateSpan(ReadableMap spanId, ReadableMap updates, Promise promise) {
     BugsnagNativeSpansPlugin nativeSpanAccessPlugin = BugsnagNativeSpansPlugin.getInstance();
 
@@ -186,32 +262,48 @@ class BugsnagNativeSpans {
   }
 
   private static void updateSpanAttributes(ReadableArray attributeUpdates, Span span) {
-    for (int i = 0; i < attributeUpdates.size(); i++) {
+    AttributeLimits limits = AttributeLimits.get();
+    int size = attributeUpdates.size();
+    int setCount = 0;
+
+    for (int i = 0; i < size; i++) {
       ReadableMap attribute = attributeUpdates.getMap(i);
-      String name = attribute.getString(ATTR_NAME);
+      String name = AttributeInterner.internKey(attribute.getString(ATTR_NAME));
       ReadableType type = attribute.getType(ATTR_VALUE);
 
+      // removing an attribute is always allowed, but no more than the count limit can be set
+      if (type != ReadableType.Null && setCount >= limits.countLimit) {
+        limits.recordDroppedAttributes(1);
+        continue;
+      }
+
       switch (type) {
         case Null:
           span.setAttribute(name, (String) null);
           break;
         case Boolean:
           span.setAttribute(name, attribute.getBoolean(ATTR_VALUE));
+          setCount++;
           break;
         case Number:
           setNumberAttribute(span, attribute, name);
+          setCount++;
           break;
         case String:
-          span.setAttribute(name, attribute.getString(ATTR_VALUE));
+          span.setAttribute(name, AttributeInterner.internValue(limits.truncateString(attribute.getString(ATTR_VALUE))));
+          setCount++;
           break;
         case Array:
-          setArrayAttribute(span, attribute, name);
+          if (setArrayAttribute(span, attribute, name)) {
+            setCount++;
+          }
           break;
       }
     }
   }
 
-  private static void setArrayAttribute(Span span, ReadableMap attribute, String name) {
+  private static boolean setArrayAttribute(Span span, ReadableMap attribute, String name) {
+    // transformArray only reads as many elements as the array length limit allows
     Object array = ReactNativeSpanAttributes.transformArray(attribute.getArray(ATTR_VALUE));
     if (array instanceof String[]) {
       span.setAttribute(name, (String[]) array);
@@ -219,7 +311,14 @@ class BugsnagNativeSpans {
       span.setAttribute(name, (long[]) array);
     } else if (array instanceof double[]) {
       span.setAttribute(name, (double[]) array);
+    } else if (array instanceof List) {
+      // boolean and mixed type arrays
+      span.setAttribute(name, (List<?>) array);
+    } else {
+      return false;
     }
+
+    return true;
   }
 
   private static void setNumberAttribute(Span span, ReadableMap attribute, String name) {
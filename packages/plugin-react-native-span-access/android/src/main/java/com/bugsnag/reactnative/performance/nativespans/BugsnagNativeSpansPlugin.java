@@ -5,18 +5,14 @@ import com.bugsnag.android.performance.OnSpanEndCallback;
 import com.bugsnag.android.performance.OnSpanStartCallback;
 import com.bugsnag.android.performance.Plugin;
 import com.bugsnag.android.performance.PluginContext;
-import com.bugsnag.android.performance.internal.EncodingUtils;
-import com.bugsnag.android.performance.internal.SpanImpl;
-import com.bugsnag.android.performance.internal.processing.Timeout;
-import com.bugsnag.android.performance.internal.processing.TimeoutExecutor;
+import com.bugsnag.reactnative.performance.OpenSpanTable;
 
 import android.os.SystemClock;
 
-import java.util.UUID;
-import java.util.concurrent.Delayed;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ConcurrentHashMap;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class BugsnagNativeSpansPlugin implements Plugin {
   /**
@@ -24,10 +20,62 @@ public class BugsnagNativeSpansPlugin implements Plugin {
    */
   private static final long DEFAULT_VALIDITY_TIME = 10 * 60 * 1000;
 
+  /**
+   * Spans are expired in one minute buckets over the validity time
+   */
+  private static final int EXPIRY_BUCKET_COUNT = 10;
+
+  /**
+   * The default number of distinct span names that can be looked up at once
+   */
+  public static final int DEFAULT_MAX_SPAN_NAMES = 1000;
+
   private static BugsnagNativeSpansPlugin INSTANCE;
 
-  private final ConcurrentMap<String, Span> spansByName = new ConcurrentHashMap<>();
-  private final ConcurrentMap<String, Span> spansById = new ConcurrentHashMap<>();
+  private final SpanNameIndex spansByName;
+  private final OpenSpanTable<Span> spansById = new OpenSpanTable<>();
+
+  private final SpanExpiryBuckets lostSpans = new SpanExpiryBuckets(
+    DEFAULT_VALIDITY_TIME,
+    EXPIRY_BUCKET_COUNT,
+    new SpanExpiryBuckets.ExpiryListener() {
+      @Override
+      public void onSpanExpired(long spanId, long traceIdHi, long traceIdLo) {
+        // spans that have already ended are no longer indexed, and are not counted
+        Span span = spansById.remove(spanId, traceIdHi, traceIdLo);
+        if (span != null) {
+          spansByName.remove(span);
+          expiredSpanCount.incrementAndGet();
+        }
+      }
+    }
+  );
+
+  private final NativeSpanFilter filter;
+
+  private final AtomicLong indexedSpanCount = new AtomicLong();
+  private final AtomicLong skippedSpanCount = new AtomicLong();
+  private final AtomicLong expiredSpanCount = new AtomicLong();
+
+  public BugsnagNativeSpansPlugin() {
+    this(NativeSpanFilter.ALL_SPANS);
+  }
+
+  /**
+   * Only index the spans matched by {@code filter}, other spans cannot be looked up from JS
+   */
+  public BugsnagNativeSpansPlugin(NativeSpanFilter filter) {
+    this(filter, DEFAULT_MAX_SPAN_NAMES);
+  }
+
+  /**
+   * Only index the spans matched by {@code filter}, and keep at most {@code maxSpanNames} distinct
+   * span names. When there are more, the least recently used name can no longer be looked up.
+   */
+  public BugsnagNativeSpansPlugin(NativeSpanFilter filter, int maxSpanNames) {
+    this.filter = filter;
+    this.spansByName = new SpanNameIndex(Math.max(maxSpanNames, 1));
+  }
 
   @Override
   public void install(PluginContext ctx) {
@@ -38,7 +86,7 @@ public class BugsnagNativeSpansPlugin implements Plugin {
     ctx.addOnSpanStartCallback(PluginContext.NORM_PRIORITY + 1, new OnSpanStartCallback() {
       @Override
       public void onSpanStart(Span span) {
-        BugsnagNativeSpansPlugin.this.onSpanStart(span);
+        BugsnagNativeSpansPlugin.this.onSpanStart(span, SystemClock.elapsedRealtime());
       }
     });
 
@@ -50,32 +98,26 @@ public class BugsnagNativeSpansPlugin implements Plugin {
     });
   }
 
-  private void onSpanStart(Span span) {
-    spansByName.put(span.getName(), span);
-    spansById.put(createSpanId(span), span);
-
-    TimeoutExecutor timeoutExecutor = ((SpanImpl) span).getTimeoutExecutor$internal();
-    if (timeoutExecutor != null) {
-      timeoutExecutor.scheduleTimeout(new SpanLostTimeout(DEFAULT_VALIDITY_TIME, span));
+  void onSpanStart(Span span, long nowMs) {
+    if (!filter.matches(span)) {
+      skippedSpanCount.incrementAndGet();
+      return;
     }
-  }
 
-  private boolean onSpanEnd(Span span) {
-    spansByName.remove(span.getName(), span);
-    spansById.remove(createSpanId(span));
-    return true;
+    indexedSpanCount.incrementAndGet();
+    spansByName.put(span);
+    spansById.put(span);
+    lostSpans.add(span, nowMs);
   }
 
-  private void removeSpan(Span span) {
-    onSpanEnd(span);
+  boolean onSpanEnd(Span span) {
+    removeSpan(span);
+    return true;
   }
 
-  private String createSpanId(Span span) {
-    StringBuilder id = new StringBuilder(193);
-    EncodingUtils.appendHexUUID(id, span.getTraceId());
-    id.append(':');
-    EncodingUtils.appendHexLong(id, span.getSpanId());
-    return id.toString();
+  private boolean removeSpan(Span span) {
+    spansByName.remove(span);
+    return spansById.remove(span);
   }
 
   @Override
@@ -83,49 +125,83 @@ public class BugsnagNativeSpansPlugin implements Plugin {
   }
 
   Span getSpanByName(String spanName) {
+    lostSpans.expire(SystemClock.elapsedRealtime());
     return spansByName.get(spanName);
   }
 
+  List<Span> getSpansByNames(List<String> spanNames) {
+    lostSpans.expire(SystemClock.elapsedRealtime());
+    return spansByName.getAll(spanNames);
+  }
+
+  List<Span> getSpansByNamePrefix(String namePrefix) {
+    lostSpans.expire(SystemClock.elapsedRealtime());
+    return spansByName.getWithPrefix(namePrefix);
+  }
+
+  @Nullable
   Span getSpanById(String traceIdHex, String spanIdHex) {
-    return spansById.get(traceIdHex + ':' + spanIdHex);
+    return getSpanById(traceIdHex, spanIdHex, SystemClock.elapsedRealtime());
   }
 
-  static BugsnagNativeSpansPlugin getInstance() {
-    return INSTANCE;
+  @Nullable
+  Span getSpanById(String traceIdHex, String spanIdHex, long nowMs) {
+    lostSpans.expire(nowMs);
+    return spansById.get(spanIdHex, traceIdHex);
   }
 
-  private class SpanLostTimeout implements Timeout {
-    private final long timeoutMs;
-    private final Span span;
+  /**
+   * The number of spans that have been indexed, so that they could be looked up from JS
+   */
+  public long getIndexedSpanCount() {
+    return indexedSpanCount.get();
+  }
 
-    public SpanLostTimeout(long timeoutMs, Span span) {
-      this.timeoutMs = SystemClock.elapsedRealtime() + timeoutMs;
-      this.span = span;
-    }
+  /**
+   * The number of spans that were not indexed because they did not match the filter
+   */
+  public long getSkippedSpanCount() {
+    return skippedSpanCount.get();
+  }
 
-    @Override
-    public long getTarget() {
-      return timeoutMs;
-    }
+  /**
+   * The number of indexed spans that were removed because they were not ended within the
+   * validity time
+   */
+  public long getExpiredSpanCount() {
+    return expiredSpanCount.get();
+  }
 
-    @Override
-    public void run() {
-      removeSpan(span);
-    }
+  /**
+   * The number of distinct span names that can currently be looked up
+   */
+  public int getSpanNameCount() {
+    return spansByName.size();
+  }
 
-    @Override
-    public long getRelativeMs() {
-      return Timeout.DefaultImpls.getRelativeMs(this);
-    }
+  /**
+   * The number of span names that were evicted because there were more than the maximum number
+   * of distinct span names
+   */
+  public long getEvictedSpanNameCount() {
+    return spansByName.getEvictionCount();
+  }
 
-    @Override
-    public long getDelay(TimeUnit unit) {
-      return Timeout.DefaultImpls.getDelay(this, unit);
-    }
+  /**
+   * The number of times a span has been looked up by name
+   */
+  public long getSpanNameLookupCount() {
+    return spansByName.getLookupCount();
+  }
 
-    @Override
-    public int compareTo(Delayed other) {
-      return Timeout.DefaultImpls.compareTo(this, other);
-    }
+  /**
+   * The number of times a span was found when looked up by name
+   */
+  public long getSpanNameHitCount() {
+    return spansByName.getHitCount();
+  }
+
+  static BugsnagNativeSpansPlugin getInstance() {
+    return INSTANCE;
   }
 }
@@ -0,0 +1,120 @@
+package com.bugsnag.reactnative.performance.nativespans;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bugsnag.android.performance.Span;
+import com.bugsnag.android.performance.internal.SpanImpl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Chooses which native spans {@link BugsnagNativeSpansPlugin} indexes, and so which spans can be
+ * looked up from JS. Spans that don't match are ignored by the plugin entirely, which avoids
+ * indexing high volume spans (such as network requests) that JS never looks up.
+ *
+ * A filter matches spans by exact name, name prefix or span category (such as
+ * {@code "view_load"} or {@code "custom"}), and filters can be combined with {@link #or}.
+ */
+public final class NativeSpanFilter {
+  private static final String CATEGORY_ATTRIBUTE = "bugsnag.span.category";
+
+  /**
+   * Index every span, which is the default
+   */
+  public static final NativeSpanFilter ALL_SPANS = new NativeSpanFilter(null, null, null);
+
+  // null means every span matches
+  @Nullable
+  private final Set<String> names;
+  @Nullable
+  private final String[] namePrefixes;
+  @Nullable
+  private final Set<String> categories;
+
+  private NativeSpanFilter(
+    @Nullable Set<String> names,
+    @Nullable String[] namePrefixes,
+    @Nullable Set<String> categories
+  ) {
+    this.names = names;
+    this.namePrefixes = namePrefixes;
+    this.categories = categories;
+  }
+
+  /**
+   * Match spans with any of the given names
+   */
+  @NonNull
+  public static NativeSpanFilter names(@NonNull String... names) {
+    return new NativeSpanFilter(new HashSet<>(Arrays.asList(names)), new String[0], Collections.<String>emptySet());
+  }
+
+  /**
+   * Match spans with names that start with any of the given prefixes
+   */
+  @NonNull
+  public static NativeSpanFilter namePrefixes(@NonNull String... prefixes) {
+    return new NativeSpanFilter(Collections.<String>emptySet(), prefixes.clone(), Collections.<String>emptySet());
+  }
+
+  /**
+   * Match spans in any of the given categories
+   */
+  @NonNull
+  public static NativeSpanFilter categories(@NonNull String... categories) {
+    return new NativeSpanFilter(Collections.<String>emptySet(), new String[0], new HashSet<>(Arrays.asList(categories)));
+  }
+
+  /**
+   * Returns a filter that matches spans matched by this filter or by {@code other}
+   */
+  @NonNull
+  public NativeSpanFilter or(@NonNull NativeSpanFilter other) {
+    if (isAllSpans() || other.isAllSpans()) {
+      return ALL_SPANS;
+    }
+
+    Set<String> combinedNames = new HashSet<>(names);
+    combinedNames.addAll(other.names);
+
+    String[] combinedPrefixes = Arrays.copyOf(namePrefixes, namePrefixes.length + other.namePrefixes.length);
+    System.arraycopy(other.namePrefixes, 0, combinedPrefixes, namePrefixes.length, other.namePrefixes.length);
+
+    Set<String> combinedCategories = new HashSet<>(categories);
+    combinedCategories.addAll(other.categories);
+
+    return new NativeSpanFilter(combinedNames, combinedPrefixes, combinedCategories);
+  }
+
+  private boolean isAllSpans() {
+    return names == null;
+  }
+
+  boolean matches(Span span) {
+    if (isAllSpans()) {
+      return true;
+    }
+
+    String name = span.getName();
+    if (names.contains(name)) {
+      return true;
+    }
+
+    for (String prefix : namePrefixes) {
+      if (name.startsWith(prefix)) {
+        return true;
+      }
+    }
+
+    if (!categories.isEmpty() && span instanceof SpanImpl) {
+      Object category = ((SpanImpl) span).getAttributes().get(CATEGORY_ATTRIBUTE);
+      return category != null && categories.contains(category);
+    }
+
+    return false;
+  }
+}
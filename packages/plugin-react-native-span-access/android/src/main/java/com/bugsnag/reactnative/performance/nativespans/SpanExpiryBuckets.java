@@ -0,0 +1,108 @@
+package com.bugsnag.reactnative.performance.nativespans;
+
+import com.bugsnag.android.performance.Span;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Tracks when indexed spans should be considered lost, grouping them into coarse time buckets so
+ * that tracking a span costs a single append rather than a timeout object of its own.
+ *
+ * A span is added to the bucket for the current time, and the whole bucket expires once it is
+ * older than the validity time, so spans are expired between the validity time and one bucket
+ * duration after it. Buckets are swept whenever {@link #expire} is called, so no timer is needed:
+ * spans only need to be expired before they could be looked up again.
+ *
+ * The buckets hold the span and trace IDs of each span rather than the span itself, so that a span
+ * which has ended is not kept alive until its bucket expires. Spans are not removed from their
+ * bucket when they end, instead the listener should ignore IDs that are no longer indexed. The
+ * bucket arrays are reused, so they only allocate when they grow.
+ */
+final class SpanExpiryBuckets {
+  interface ExpiryListener {
+    void onSpanExpired(long spanId, long traceIdHi, long traceIdLo);
+  }
+
+  private static final int INITIAL_BUCKET_CAPACITY = 16;
+
+  /**
+   * Each span is stored as three consecutive longs: spanId, traceIdHi, traceIdLo
+   */
+  private static final int KEY_STRIDE = 3;
+
+  private final long[][] buckets;
+  private final int[] bucketSizes;
+  private final long bucketDurationMs;
+  private final ExpiryListener listener;
+
+  // the epoch (time divided by the bucket duration) of the newest bucket, or -1 before any spans
+  private long newestEpoch = -1;
+
+  SpanExpiryBuckets(long validityTimeMs, int bucketCount, ExpiryListener listener) {
+    this.bucketDurationMs = Math.max(validityTimeMs / bucketCount, 1);
+    this.listener = listener;
+
+    // one extra bucket holds the spans added since the oldest bucket started
+    buckets = new long[bucketCount + 1][];
+    bucketSizes = new int[bucketCount + 1];
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = new long[INITIAL_BUCKET_CAPACITY * KEY_STRIDE];
+    }
+  }
+
+  synchronized void add(Span span, long nowMs) {
+    advance(nowMs);
+
+    int index = bucketIndex(newestEpoch);
+    long[] bucket = buckets[index];
+    int offset = bucketSizes[index] * KEY_STRIDE;
+    if (offset == bucket.length) {
+      bucket = Arrays.copyOf(bucket, bucket.length * 2);
+      buckets[index] = bucket;
+    }
+
+    UUID traceId = span.getTraceId();
+    bucket[offset] = span.getSpanId();
+    bucket[offset + 1] = traceId.getMostSignificantBits();
+    bucket[offset + 2] = traceId.getLeastSignificantBits();
+    bucketSizes[index]++;
+  }
+
+  /**
+   * Expire every bucket that is older than the validity time
+   */
+  synchronized void expire(long nowMs) {
+    advance(nowMs);
+  }
+
+  private void advance(long nowMs) {
+    long epoch = nowMs / bucketDurationMs;
+    if (newestEpoch < 0) {
+      newestEpoch = epoch;
+      return;
+    }
+
+    // after a long gap every bucket has expired, so there is no need to step through each epoch
+    if (epoch - newestEpoch > buckets.length) {
+      newestEpoch = epoch - buckets.length;
+    }
+
+    while (newestEpoch < epoch) {
+      newestEpoch++;
+
+      // the bucket being reused for the new epoch holds the oldest spans
+      int index = bucketIndex(newestEpoch);
+      long[] bucket = buckets[index];
+      int end = bucketSizes[index] * KEY_STRIDE;
+      for (int offset = 0; offset < end; offset += KEY_STRIDE) {
+        listener.onSpanExpired(bucket[offset], bucket[offset + 1], bucket[offset + 2]);
+      }
+      bucketSizes[index] = 0;
+    }
+  }
+
+  private int bucketIndex(long epoch) {
+    return (int) (epoch % buckets.length);
+  }
+}
@@ -0,0 +1,124 @@
+package com.bugsnag.reactnative.performance.nativespans;
+
+import androidx.annotation.Nullable;
+
+import com.bugsnag.android.performance.Span;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The latest open span for each span name, holding at most {@code maxNames} names so that apps
+ * which put IDs or URLs into span names can't grow the index without limit.
+ *
+ * When the limit is reached the least recently started or looked up name is evicted. An evicted
+ * span can no longer be found by name, but is still indexed by its ID until it ends.
+ *
+ * The names are also kept sorted, so that the spans with names that start with a prefix can be
+ * found without checking every name.
+ */
+final class SpanNameIndex {
+  private final Map<String, Span> spans;
+  private final TreeMap<String, Span> sortedSpans = new TreeMap<>();
+
+  // guarded by this
+  private long evictionCount;
+  private long lookupCount;
+  private long hitCount;
+
+  SpanNameIndex(final int maxNames) {
+    // access ordered, so that the eldest entry is the least recently used
+    this.spans = new LinkedHashMap<String, Span>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Span> eldest) {
+        if (size() > maxNames) {
+          sortedSpans.remove(eldest.getKey());
+          evictionCount++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  synchronized void put(Span span) {
+    sortedSpans.put(span.getName(), span);
+    spans.put(span.getName(), span);
+  }
+
+  /**
+   * Remove {@code span}, if it is still the span indexed under its name
+   */
+  synchronized void remove(Span span) {
+    String name = span.getName();
+    if (spans.get(name) == span) {
+      spans.remove(name);
+      sortedSpans.remove(name);
+    }
+  }
+
+  @Nullable
+  synchronized Span get(String name) {
+    lookupCount++;
+    Span span = spans.get(name);
+    if (span != null) {
+      hitCount++;
+    }
+    return span;
+  }
+
+  /**
+   * Returns the spans with any of the given names, each distinct name counts as one lookup and a
+   * name that is repeated does not return its span twice
+   */
+  synchronized List<Span> getAll(List<String> names) {
+    List<Span> found = new ArrayList<>(names.size());
+    for (String name : new LinkedHashSet<>(names)) {
+      Span span = get(name);
+      if (span != null) {
+        found.add(span);
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Returns the spans with names that start with {@code prefix}, in name order
+   */
+  synchronized List<Span> getWithPrefix(String prefix) {
+    List<Span> found = new ArrayList<>();
+    for (Map.Entry<String, Span> entry : sortedSpans.tailMap(prefix, true).entrySet()) {
+      if (!entry.getKey().startsWith(prefix)) {
+        break;
+      }
+
+      // the spans found become the most recently used
+      spans.get(entry.getKey());
+      found.add(entry.getValue());
+    }
+    return found;
+  }
+
+  /**
+   * The number of distinct span names currently indexed
+   */
+  synchronized int size() {
+    return spans.size();
+  }
+
+  synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  synchronized long getLookupCount() {
+    return lookupCount;
+  }
+
+  synchronized long getHitCount() {
+    return hitCount;
+  }
+}
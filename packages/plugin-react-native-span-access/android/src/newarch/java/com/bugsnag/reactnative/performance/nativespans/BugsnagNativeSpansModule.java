@@ -4,7 +4,9 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.module.annotations.ReactModule;
@@ -29,6 +31,21 @@ public class BugsnagNativeSpansModule extends NativeBugsnagNativeSpansSpec {
         return delegate.getSpanIdByName(spanName);
     }
 
+    @Override
+    public WritableArray getSpanIdsByNames(ReadableArray spanNames) {
+        return delegate.getSpanIdsByNames(spanNames);
+    }
+
+    @Override
+    public WritableArray getSpanIdsByNamePrefix(String namePrefix) {
+        return delegate.getSpanIdsByNamePrefix(namePrefix);
+    }
+
+    @Override
+    public WritableMap getMetrics() {
+        return delegate.getMetrics();
+    }
+
     @Override
     public void updateSpan(ReadableMap spanId, ReadableMap updates, Promise promise) {
         delegate.updateSpan(spanId, updates, promise);
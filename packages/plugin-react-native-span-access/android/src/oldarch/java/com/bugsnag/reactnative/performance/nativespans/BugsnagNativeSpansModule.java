@@ -3,7 +3,9 @@ package com.bugsnag.reactnative.performance.nativespans;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.module.annotations.ReactModule;
@@ -29,6 +31,21 @@ public class BugsnagNativeSpansModule extends ReactContextBaseJavaModule {
         return delegate.getSpanIdByName(spanName);
     }
 
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public WritableArray getSpanIdsByNames(ReadableArray spanNames) {
+        return delegate.getSpanIdsByNames(spanNames);
+    }
+
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public WritableArray getSpanIdsByNamePrefix(String namePrefix) {
+        return delegate.getSpanIdsByNamePrefix(namePrefix);
+    }
+
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public WritableMap getMetrics() {
+        return delegate.getMetrics();
+    }
+
     @ReactMethod
     public void updateSpan(ReadableMap spanId, ReadableMap updates, Promise promise) {
         delegate.updateSpan(spanId, updates, promise);
@@ -0,0 +1,95 @@
+package com.bugsnag.reactnative.performance.nativespans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.bugsnag.android.performance.Span;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+public class BugsnagNativeSpansPluginTest {
+  private static final long ONE_MINUTE = 60 * 1000;
+
+  private static final UUID TRACE_ID = UUID.fromString("0123abcd-4567-89ef-0123-456789abcdef");
+  private static final String TRACE_ID_HEX = "0123abcd456789ef0123456789abcdef";
+
+  @Test
+  public void startedSpansCanBeFoundById() {
+    BugsnagNativeSpansPlugin plugin = new BugsnagNativeSpansPlugin();
+    Span first = span("first", 0x1234567890abcdefL);
+    Span second = span("second", 0xfedcba0987654321L);
+
+    plugin.onSpanStart(first, 0L);
+    plugin.onSpanStart(second, 0L);
+
+    assertSame(first, plugin.getSpanById(TRACE_ID_HEX, "1234567890abcdef", 0L));
+    assertSame(second, plugin.getSpanById(TRACE_ID_HEX, "fedcba0987654321", 0L));
+    assertEquals(2L, plugin.getIndexedSpanCount());
+  }
+
+  @Test
+  public void endedSpansAreRemoved() {
+    BugsnagNativeSpansPlugin plugin = new BugsnagNativeSpansPlugin();
+    Span span = span("LoadFeed", 0x1234567890abcdefL);
+
+    plugin.onSpanStart(span, 0L);
+    assertTrue(plugin.onSpanEnd(span));
+
+    assertNull(plugin.getSpanById(TRACE_ID_HEX, "1234567890abcdef", 0L));
+    assertEquals(0, plugin.getSpanNameCount());
+  }
+
+  @Test
+  public void lostSpansExpireAfterTheValidityTime() {
+    BugsnagNativeSpansPlugin plugin = new BugsnagNativeSpansPlugin();
+    Span span = span("LoadFeed", 0x1234567890abcdefL);
+
+    plugin.onSpanStart(span, 0L);
+
+    // spans are expired in one minute buckets after the ten minute validity time
+    assertSame(span, plugin.getSpanById(TRACE_ID_HEX, "1234567890abcdef", 10 * ONE_MINUTE));
+    assertNull(plugin.getSpanById(TRACE_ID_HEX, "1234567890abcdef", 11 * ONE_MINUTE));
+    assertEquals(1L, plugin.getExpiredSpanCount());
+    assertEquals(0, plugin.getSpanNameCount());
+
+    // ending a span after it expired is not counted again
+    plugin.onSpanEnd(span);
+    assertEquals(1L, plugin.getExpiredSpanCount());
+  }
+
+  @Test
+  public void spansThatDoNotMatchTheFilterAreNotIndexed() {
+    BugsnagNativeSpansPlugin plugin = new BugsnagNativeSpansPlugin(NativeSpanFilter.names("LoadFeed"));
+    Span span = span("[HTTP/GET]", 0x1234567890abcdefL);
+
+    plugin.onSpanStart(span, 0L);
+
+    assertNull(plugin.getSpanById(TRACE_ID_HEX, "1234567890abcdef", 0L));
+    assertEquals(0L, plugin.getIndexedSpanCount());
+    assertEquals(1L, plugin.getSkippedSpanCount());
+  }
+
+  @Test
+  public void invalidIdsAreNotFound() {
+    BugsnagNativeSpansPlugin plugin = new BugsnagNativeSpansPlugin();
+    plugin.onSpanStart(span("LoadFeed", 0x1234567890abcdefL), 0L);
+
+    assertNull(plugin.getSpanById(TRACE_ID_HEX, "1234567890abcde", 0L));
+    assertNull(plugin.getSpanById("0123abcd", "1234567890abcdef", 0L));
+    assertNull(plugin.getSpanById(TRACE_ID_HEX, "1234567890abcdeg", 0L));
+  }
+
+  private static Span span(String name, long spanId) {
+    Span span = mock(Span.class);
+    when(span.getName()).thenReturn(name);
+    when(span.getTraceId()).thenReturn(TRACE_ID);
+    when(span.getSpanId()).thenReturn(spanId);
+    return span;
+  }
+}
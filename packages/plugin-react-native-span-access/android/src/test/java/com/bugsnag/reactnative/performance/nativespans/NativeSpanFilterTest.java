@@ -0,0 +1,89 @@
+package com.bugsnag.reactnative.performance.nativespans;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.bugsnag.android.performance.Span;
+import com.bugsnag.android.performance.internal.Attributes;
+import com.bugsnag.android.performance.internal.SpanImpl;
+
+import org.junit.Test;
+
+public class NativeSpanFilterTest {
+  @Test
+  public void allSpansMatchesEverySpan() {
+    assertTrue(NativeSpanFilter.ALL_SPANS.matches(span("anything")));
+  }
+
+  @Test
+  public void namesMatchExactly() {
+    NativeSpanFilter filter = NativeSpanFilter.names("LoadFeed", "Checkout");
+
+    assertTrue(filter.matches(span("LoadFeed")));
+    assertTrue(filter.matches(span("Checkout")));
+    assertFalse(filter.matches(span("LoadFeedItem")));
+  }
+
+  @Test
+  public void namePrefixesMatchTheStartOfTheName() {
+    NativeSpanFilter filter = NativeSpanFilter.namePrefixes("[ViewLoad/", "Feed");
+
+    assertTrue(filter.matches(span("[ViewLoad/Activity]MainActivity")));
+    assertTrue(filter.matches(span("FeedRefresh")));
+    assertFalse(filter.matches(span("LoadFeed")));
+  }
+
+  @Test
+  public void categoriesMatchTheCategoryAttribute() {
+    NativeSpanFilter filter = NativeSpanFilter.categories("view_load", "custom");
+
+    assertTrue(filter.matches(span("[ViewLoad/Activity]MainActivity", "view_load")));
+    assertTrue(filter.matches(span("LoadFeed", "custom")));
+    assertFalse(filter.matches(span("[HTTP/GET]", "network")));
+    assertFalse(filter.matches(span("NoCategory", null)));
+  }
+
+  @Test
+  public void categoriesDoNotMatchSpansWithoutAttributes() {
+    assertFalse(NativeSpanFilter.categories("custom").matches(span("LoadFeed")));
+  }
+
+  @Test
+  public void combinedFiltersMatchEitherFilter() {
+    NativeSpanFilter filter = NativeSpanFilter.names("LoadFeed")
+      .or(NativeSpanFilter.namePrefixes("[ViewLoad/"))
+      .or(NativeSpanFilter.categories("custom"));
+
+    assertTrue(filter.matches(span("LoadFeed")));
+    assertTrue(filter.matches(span("[ViewLoad/Activity]MainActivity")));
+    assertTrue(filter.matches(span("Checkout", "custom")));
+    assertFalse(filter.matches(span("[HTTP/GET]", "network")));
+  }
+
+  @Test
+  public void combiningWithAllSpansMatchesEverySpan() {
+    assertSame(NativeSpanFilter.ALL_SPANS, NativeSpanFilter.names("LoadFeed").or(NativeSpanFilter.ALL_SPANS));
+    assertSame(NativeSpanFilter.ALL_SPANS, NativeSpanFilter.ALL_SPANS.or(NativeSpanFilter.names("LoadFeed")));
+  }
+
+  private static Span span(String name) {
+    Span span = mock(Span.class);
+    when(span.getName()).thenReturn(name);
+    return span;
+  }
+
+  private static SpanImpl span(String name, String category) {
+    Attributes attributes = new Attributes();
+    if (category != null) {
+      attributes.set("bugsnag.span.category", category);
+    }
+
+    SpanImpl span = mock(SpanImpl.class);
+    when(span.getName()).thenReturn(name);
+    when(span.getAttributes()).thenReturn(attributes);
+    return span;
+  }
+}
@@ -0,0 +1,133 @@
+package com.bugsnag.reactnative.performance.nativespans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.bugsnag.android.performance.Span;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Times the plugin's onSpanStart and onSpanEnd callbacks directly, without the JS bridge or the
+ * native SDK. Spans are mocks, so the time taken to read their properties is measured separately
+ * and reported alongside the callback time.
+ *
+ * The benchmark is skipped unless the {@code benchmark} project property is set:
+ * {@code ./gradlew :bugsnag_plugin-react-native-span-access:testDebugUnitTest -Pbenchmark}
+ */
+public class NativeSpansPluginBenchmarkTest {
+  private static final int OPEN_SPAN_COUNT = 1000;
+  private static final int WARMUP_ROUNDS = 200;
+  private static final int MEASURED_ROUNDS = 500;
+
+  // keeps the property reads from being optimised away
+  private static int sink;
+
+  @Before
+  public void onlyWhenBenchmarking() {
+    assumeTrue(Boolean.getBoolean("bugsnag.benchmark"));
+  }
+
+  @Test
+  public void startAndEndSpans() {
+    Span[] spans = createSpans(OPEN_SPAN_COUNT);
+    BugsnagNativeSpansPlugin plugin = new BugsnagNativeSpansPlugin();
+
+    long nowMs = 0;
+    for (int round = 0; round < WARMUP_ROUNDS; round++) {
+      startAndEnd(plugin, spans, nowMs += 1000);
+      sink += readProperties(spans);
+    }
+
+    long callbackNanos = 0;
+    long propertyNanos = 0;
+    for (int round = 0; round < MEASURED_ROUNDS; round++) {
+      long start = System.nanoTime();
+      startAndEnd(plugin, spans, nowMs += 1000);
+      callbackNanos += System.nanoTime() - start;
+
+      start = System.nanoTime();
+      sink += readProperties(spans);
+      propertyNanos += System.nanoTime() - start;
+    }
+
+    double spanCount = (double) OPEN_SPAN_COUNT * MEASURED_ROUNDS;
+    System.out.printf(
+      "onSpanStart + onSpanEnd with %d open spans: %.1f ns per span (reading the span properties: %.1f ns)%n",
+      OPEN_SPAN_COUNT,
+      callbackNanos / spanCount,
+      propertyNanos / spanCount
+    );
+
+    // the open spans can be found by ID, and are no longer indexed once they end
+    for (Span span : spans) {
+      plugin.onSpanStart(span, nowMs);
+    }
+    for (Span span : spans) {
+      assertSame(span, plugin.getSpanById(traceIdHex(span), spanIdHex(span), nowMs));
+      plugin.onSpanEnd(span);
+      assertNull(plugin.getSpanById(traceIdHex(span), spanIdHex(span), nowMs));
+    }
+
+    assertEquals((long) OPEN_SPAN_COUNT * (WARMUP_ROUNDS + MEASURED_ROUNDS + 1), plugin.getIndexedSpanCount());
+    assertEquals(0, plugin.getSpanNameCount());
+  }
+
+  private static void startAndEnd(BugsnagNativeSpansPlugin plugin, Span[] spans, long nowMs) {
+    // every span is open at once, so the indexes hold OPEN_SPAN_COUNT spans at their peak
+    for (Span span : spans) {
+      plugin.onSpanStart(span, nowMs);
+    }
+
+    for (Span span : spans) {
+      plugin.onSpanEnd(span);
+    }
+  }
+
+  private static String traceIdHex(Span span) {
+    UUID traceId = span.getTraceId();
+    return String.format("%016x%016x", traceId.getMostSignificantBits(), traceId.getLeastSignificantBits());
+  }
+
+  private static String spanIdHex(Span span) {
+    return String.format("%016x", span.getSpanId());
+  }
+
+  /**
+   * Read the same span properties as the plugin does, to show how much of the callback time is
+   * spent in the mocks rather than the plugin
+   */
+  private static int readProperties(Span[] spans) {
+    int hash = 0;
+    for (int i = 0; i < 2; i++) {
+      for (Span span : spans) {
+        hash += span.getName().hashCode();
+        hash += span.getTraceId().hashCode();
+        hash += (int) span.getSpanId();
+      }
+    }
+    return hash;
+  }
+
+  private static Span[] createSpans(int count) {
+    Random random = new Random(1234);
+    Span[] spans = new Span[count];
+    for (int i = 0; i < count; i++) {
+      Span span = mock(Span.class, withSettings().stubOnly());
+      when(span.getName()).thenReturn("span " + i);
+      when(span.getTraceId()).thenReturn(new UUID(random.nextLong(), random.nextLong()));
+      when(span.getSpanId()).thenReturn(random.nextLong());
+      spans[i] = span;
+    }
+    return spans;
+  }
+}
@@ -0,0 +1,125 @@
+package com.bugsnag.reactnative.performance.nativespans;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.bugsnag.android.performance.Span;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+public class SpanExpiryBucketsTest {
+  // 4 buckets of 250ms each
+  private static final long VALIDITY_TIME_MS = 1000L;
+  private static final int BUCKET_COUNT = 4;
+
+  private final List<Long> expiredSpanIds = new ArrayList<>();
+  private final SpanExpiryBuckets buckets = new SpanExpiryBuckets(
+    VALIDITY_TIME_MS,
+    BUCKET_COUNT,
+    new SpanExpiryBuckets.ExpiryListener() {
+      @Override
+      public void onSpanExpired(long spanId, long traceIdHi, long traceIdLo) {
+        expiredSpanIds.add(spanId);
+      }
+    }
+  );
+
+  @Test
+  public void spansExpireOnceTheirBucketIsOlderThanTheValidityTime() {
+    buckets.add(span(1L), 0L);
+    buckets.add(span(2L), 249L);
+    buckets.add(span(3L), 250L);
+
+    buckets.expire(VALIDITY_TIME_MS);
+    assertEquals(Collections.<Long>emptyList(), expiredSpanIds);
+
+    // the first bucket holds spans added in [0, 250)
+    buckets.expire(1249L);
+    assertEquals(Collections.<Long>emptyList(), expiredSpanIds);
+
+    buckets.expire(1250L);
+    assertEquals(Arrays.asList(1L, 2L), expiredSpanIds);
+
+    buckets.expire(1500L);
+    assertEquals(Arrays.asList(1L, 2L, 3L), expiredSpanIds);
+  }
+
+  @Test
+  public void addingSpansSweepsExpiredBuckets() {
+    buckets.add(span(1L), 0L);
+    buckets.add(span(2L), 1250L);
+
+    assertEquals(Collections.singletonList(1L), expiredSpanIds);
+  }
+
+  @Test
+  public void everySpanExpiresOnceAfterALongGap() {
+    buckets.add(span(1L), 0L);
+    buckets.add(span(2L), 300L);
+    buckets.add(span(3L), 600L);
+    buckets.add(span(4L), 900L);
+
+    // the buckets are swept in the order they are reused, which is not necessarily oldest first
+    buckets.expire(100000L);
+    Collections.sort(expiredSpanIds);
+    assertEquals(Arrays.asList(1L, 2L, 3L, 4L), expiredSpanIds);
+
+    buckets.expire(200000L);
+    assertEquals(Arrays.asList(1L, 2L, 3L, 4L), expiredSpanIds);
+  }
+
+  @Test
+  public void bucketsGrowToHoldManySpans() {
+    List<Long> spanIds = new ArrayList<>();
+    for (long spanId = 1L; spanId <= 100L; spanId++) {
+      buckets.add(span(spanId), 10L);
+      spanIds.add(spanId);
+    }
+
+    buckets.expire(1250L);
+    assertEquals(spanIds, expiredSpanIds);
+  }
+
+  @Test
+  public void listenerIsGivenTheSpanAndTraceIds() {
+    final long[] expired = new long[3];
+    SpanExpiryBuckets buckets = new SpanExpiryBuckets(
+      VALIDITY_TIME_MS,
+      BUCKET_COUNT,
+      new SpanExpiryBuckets.ExpiryListener() {
+        @Override
+        public void onSpanExpired(long spanId, long traceIdHi, long traceIdLo) {
+          expired[0] = spanId;
+          expired[1] = traceIdHi;
+          expired[2] = traceIdLo;
+        }
+      }
+    );
+
+    UUID traceId = UUID.fromString("0123abcd-4567-89ef-0123-456789abcdef");
+    Span span = mock(Span.class);
+    when(span.getSpanId()).thenReturn(0x1234567890abcdefL);
+    when(span.getTraceId()).thenReturn(traceId);
+
+    buckets.add(span, 0L);
+    buckets.expire(1250L);
+
+    assertEquals(0x1234567890abcdefL, expired[0]);
+    assertEquals(traceId.getMostSignificantBits(), expired[1]);
+    assertEquals(traceId.getLeastSignificantBits(), expired[2]);
+  }
+
+  private static Span span(long spanId) {
+    Span span = mock(Span.class);
+    when(span.getSpanId()).thenReturn(spanId);
+    when(span.getTraceId()).thenReturn(UUID.randomUUID());
+    return span;
+  }
+}
@@ -0,0 +1,116 @@
+package com.bugsnag.reactnative.performance.nativespans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.bugsnag.android.performance.Span;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class SpanNameIndexTest {
+  @Test
+  public void evictsTheLeastRecentlyUsedName() {
+    SpanNameIndex index = new SpanNameIndex(2);
+    Span first = span("first");
+    Span second = span("second");
+    Span third = span("third");
+
+    index.put(first);
+    index.put(second);
+    // looking up first makes second the least recently used
+    index.get("first");
+    index.put(third);
+
+    assertEquals(2, index.size());
+    assertEquals(1L, index.getEvictionCount());
+    assertSame(first, index.get("first"));
+    assertNull(index.get("second"));
+    assertSame(third, index.get("third"));
+  }
+
+  @Test
+  public void evictedNamesAreNotFoundByPrefix() {
+    SpanNameIndex index = new SpanNameIndex(2);
+    Span feed = span("[ViewLoad]Feed");
+    Span profile = span("[ViewLoad]Profile");
+    Span settings = span("[ViewLoad]Settings");
+
+    index.put(feed);
+    index.put(profile);
+    index.put(settings);
+
+    assertEquals(Arrays.asList(profile, settings), index.getWithPrefix("[ViewLoad]"));
+  }
+
+  @Test
+  public void prefixLookupsMarkSpansAsRecentlyUsed() {
+    SpanNameIndex index = new SpanNameIndex(2);
+    Span feed = span("Feed");
+    Span profile = span("Profile");
+
+    index.put(feed);
+    index.put(profile);
+    index.getWithPrefix("Fe");
+    index.put(span("Settings"));
+
+    assertSame(feed, index.get("Feed"));
+    assertNull(index.get("Profile"));
+  }
+
+  @Test
+  public void getWithPrefixReturnsSpansInNameOrder() {
+    SpanNameIndex index = new SpanNameIndex(10);
+    Span b = span("LoadB");
+    Span a = span("LoadA");
+    Span other = span("Other");
+
+    index.put(b);
+    index.put(other);
+    index.put(a);
+
+    assertEquals(Arrays.asList(a, b), index.getWithPrefix("Load"));
+    assertEquals(Collections.<Span>emptyList(), index.getWithPrefix("Missing"));
+  }
+
+  @Test
+  public void removeOnlyRemovesTheIndexedSpan() {
+    SpanNameIndex index = new SpanNameIndex(10);
+    Span older = span("LoadFeed");
+    Span newer = span("LoadFeed");
+
+    index.put(older);
+    index.put(newer);
+
+    index.remove(older);
+    assertSame(newer, index.get("LoadFeed"));
+    assertEquals(Collections.singletonList(newer), index.getWithPrefix("Load"));
+
+    index.remove(newer);
+    assertNull(index.get("LoadFeed"));
+    assertEquals(Collections.<Span>emptyList(), index.getWithPrefix("Load"));
+    assertEquals(0, index.size());
+  }
+
+  @Test
+  public void getAllLooksUpEachDistinctNameOnce() {
+    SpanNameIndex index = new SpanNameIndex(10);
+    Span feed = span("Feed");
+    index.put(feed);
+
+    assertEquals(Collections.singletonList(feed), index.getAll(Arrays.asList("Feed", "Missing", "Feed")));
+    assertEquals(2L, index.getLookupCount());
+    assertEquals(1L, index.getHitCount());
+  }
+
+  private static Span span(String name) {
+    Span span = mock(Span.class);
+    when(span.getName()).thenReturn(name);
+    return span;
+  }
+}
@@ -0,0 +1,36 @@
+#import <Foundation/Foundation.h>
+
+NS_ASSUME_NONNULL_BEGIN
+
+@class BugsnagPerformanceSpan;
+
+/**
+ * Chooses which native spans BugsnagNativeSpansPlugin indexes, and so which spans can be looked up
+ * from JS. Spans that don't match are ignored by the plugin entirely.
+ *
+ * A filter matches spans by exact name, name prefix or span category (such as "view_load" or
+ * "custom"), and filters can be combined with filterByAddingFilter:
+ */
+@interface BugsnagNativeSpanFilter : NSObject
+
+/**
+ * Match every span, which is the default
+ */
++ (instancetype)allSpans;
+
++ (instancetype)filterWithNames:(NSArray<NSString *> *)names;
+
++ (instancetype)filterWithNamePrefixes:(NSArray<NSString *> *)prefixes;
+
++ (instancetype)filterWithCategories:(NSArray<NSString *> *)categories;
+
+/**
+ * Returns a filter that matches spans matched by this filter or by other
+ */
+- (instancetype)filterByAddingFilter:(BugsnagNativeSpanFilter *)other;
+
+- (BOOL)matchesSpan:(BugsnagPerformanceSpan *)span;
+
+@end
+
+NS_ASSUME_NONNULL_END
@@ -0,0 +1,93 @@
+#import "BugsnagNativeSpanFilter.h"
+#import <BugsnagPerformance/BugsnagPerformanceSpan.h>
+
+static NSString * const kCategoryAttribute = @"bugsnag.span.category";
+
+// Attributes are in the private header for BugsnagPerformanceSpan,
+// but are needed to check span category, so we declare them here
+@interface BugsnagPerformanceSpan ()
+@property (nonatomic,readonly) NSMutableDictionary *attributes;
+@end
+
+@interface BugsnagNativeSpanFilter ()
+
+// nil means every span matches
+@property (nonatomic, readonly, nullable) NSSet<NSString *> *names;
+@property (nonatomic, readonly, nullable) NSArray<NSString *> *namePrefixes;
+@property (nonatomic, readonly, nullable) NSSet<NSString *> *categories;
+
+@end
+
+@implementation BugsnagNativeSpanFilter
+
+- (instancetype)initWithNames:(NSSet<NSString *> *)names
+                 namePrefixes:(NSArray<NSString *> *)namePrefixes
+                   categories:(NSSet<NSString *> *)categories {
+    if (self = [super init]) {
+        _names = names;
+        _namePrefixes = namePrefixes;
+        _categories = categories;
+    }
+    return self;
+}
+
++ (instancetype)allSpans {
+    static BugsnagNativeSpanFilter *allSpans;
+    static dispatch_once_t onceToken;
+    dispatch_once(&onceToken, ^{
+        allSpans = [[self alloc] initWithNames:nil namePrefixes:nil categories:nil];
+    });
+    return allSpans;
+}
+
++ (instancetype)filterWithNames:(NSArray<NSString *> *)names {
+    return [[self alloc] initWithNames:[NSSet setWithArray:names] namePrefixes:@[] categories:[NSSet set]];
+}
+
++ (instancetype)filterWithNamePrefixes:(NSArray<NSString *> *)prefixes {
+    return [[self alloc] initWithNames:[NSSet set] namePrefixes:[prefixes copy] categories:[NSSet set]];
+}
+
++ (instancetype)filterWithCategories:(NSArray<NSString *> *)categories {
+    return [[self alloc] initWithNames:[NSSet set] namePrefixes:@[] categories:[NSSet setWithArray:categories]];
+}
+
+- (BOOL)isAllSpans {
+    return self.names == nil;
+}
+
+- (instancetype)filterByAddingFilter:(BugsnagNativeSpanFilter *)other {
+    if (self.isAllSpans || other.isAllSpans) {
+        return [BugsnagNativeSpanFilter allSpans];
+    }
+
+    return [[BugsnagNativeSpanFilter alloc] initWithNames:[self.names setByAddingObjectsFromSet:other.names]
+                                             namePrefixes:[self.namePrefixes arrayByAddingObjectsFromArray:other.namePrefixes]
+                                               categories:[self.categories setByAddingObjectsFromSet:other.categories]];
+}
+
+- (BOOL)matchesSpan:(BugsnagPerformanceSpan *)span {
+    if (self.isAllSpans) {
+        return YES;
+    }
+
+    NSString *name = span.name;
+    if ([self.names containsObject:name]) {
+        return YES;
+    }
+
+    for (NSString *prefix in self.namePrefixes) {
+        if ([name hasPrefix:prefix]) {
+            return YES;
+        }
+    }
+
+    if (self.categories.count > 0) {
+        id category = span.attributes[kCategoryAttribute];
+        return [category isKindOfClass:[NSString class]] && [self.categories containsObject:category];
+    }
+
+    return NO;
+}
+
+@end
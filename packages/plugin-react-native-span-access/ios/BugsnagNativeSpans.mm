@@ -7,6 +7,42 @@
 #import "BugsnagNativeSpansSpec.h"
 #endif
 
+static const NSUInteger kSpanIdLength = 16;
+static const NSUInteger kTraceIdLength = 32;
+
+// parse 16 hex digits without creating a substring, returning NO if any are invalid
+static BOOL parseHexUInt64(NSString *hex, NSUInteger start, uint64_t *result) {
+    uint64_t value = 0;
+    for (NSUInteger i = start; i < start + kSpanIdLength; i++) {
+        unichar c = [hex characterAtIndex:i];
+        int digit;
+        if (c >= '0' && c <= '9') {
+            digit = c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            digit = c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            digit = c - 'A' + 10;
+        } else {
+            return NO;
+        }
+        value = (value << 4) | (uint64_t)digit;
+    }
+    *result = value;
+    return YES;
+}
+
+static NSArray<NSDictionary *> *namedSpanIds(NSArray<BugsnagPerformanceSpan *> *spans) {
+    NSMutableArray<NSDictionary *> *spanIds = [NSMutableArray arrayWithCapacity:spans.count];
+    for (BugsnagPerformanceSpan *span in spans) {
+        [spanIds addObject:@{
+            @"name": span.name,
+            @"spanId": [NSString stringWithFormat:@"%016llx", span.spanId],
+            @"traceId": [NSString stringWithFormat:@"%016llx%016llx", span.traceIdHi, span.traceIdLo]
+        }];
+    }
+    return spanIds;
+}
+
 @implementation BugsnagNativeSpans
 
 RCT_EXPORT_MODULE()
@@ -40,11 +76,7 @@ RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(getSpanIdByName:(NSString *)spanName) {
         return nil;
     }
 
-    BugsnagPerformanceSpan *span = nil;
-    @synchronized (plugin) {
-        span = plugin.spansByName[spanName];
-    }
-
+    BugsnagPerformanceSpan *span = [plugin spanWithName:spanName];
     if (!span) {
         return nil;
     }
@@ -57,6 +89,48 @@ RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(getSpanIdByName:(NSString *)spanName) {
     return returnedId;
 }
 
+RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(getSpanIdsByNames:(NSArray *)spanNames) {
+    BugsnagNativeSpansPlugin *plugin = [BugsnagNativeSpansPlugin singleton];
+    if (!plugin) {
+        return @[];
+    }
+
+    NSMutableArray<NSString *> *names = [NSMutableArray arrayWithCapacity:spanNames.count];
+    for (id spanName in spanNames) {
+        if ([spanName isKindOfClass:[NSString class]]) {
+            [names addObject:spanName];
+        }
+    }
+
+    return namedSpanIds([plugin spansWithNames:names]);
+}
+
+RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(getSpanIdsByNamePrefix:(NSString *)namePrefix) {
+    BugsnagNativeSpansPlugin *plugin = [BugsnagNativeSpansPlugin singleton];
+    if (!plugin || !namePrefix) {
+        return @[];
+    }
+
+    return namedSpanIds([plugin spansWithNamePrefix:namePrefix]);
+}
+
+RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(getMetrics) {
+    NSMutableDictionary *metrics = [NSMutableDictionary new];
+    BugsnagNativeSpansPlugin *plugin = [BugsnagNativeSpansPlugin singleton];
+    if (plugin) {
+        metrics[@"indexedSpanCount"] = @(plugin.indexedSpanCount);
+        metrics[@"skippedSpanCount"] = @(plugin.skippedSpanCount);
+        metrics[@"expiredSpanCount"] = @(plugin.expiredSpanCount);
+
+        NSUInteger lookupCount = plugin.spanNameLookupCount;
+        metrics[@"spanNameCount"] = @(plugin.spanNameCount);
+        metrics[@"evictedSpanNameCount"] = @(plugin.evictedSpanNameCount);
+        metrics[@"spanNameLookupCount"] = @(lookupCount);
+        metrics[@"spanNameHitRate"] = @(lookupCount > 0 ? (double)plugin.spanNameHitCount / lookupCount : 0.0);
+    }
+    return metrics;
+}
+
 RCT_EXPORT_METHOD(updateSpan:(NSDictionary *)spanId
                      updates:(NSDictionary *)updates
                      resolve:(RCTPromiseResolveBlock)resolve
@@ -71,17 +145,21 @@ RCT_EXPORT_METHOD(updateSpan:(NSDictionary *)spanId
     NSString *id = spanId[@"spanId"];
     NSString *traceId = spanId[@"traceId"];
 
-    if (!id || !traceId) {
+    if (id.length != kSpanIdLength || traceId.length != kTraceIdLength) {
         resolve(@NO);
         return;
     }
 
-    NSString *spanIdKey = [NSString stringWithFormat:@"%@:%@", id, traceId];
-    BugsnagPerformanceSpan *span = nil;
-    @synchronized (plugin) {
-        span = plugin.spansById[spanIdKey];
+    uint64_t spanIdValue, traceIdHi, traceIdLo;
+    if (!parseHexUInt64(id, 0, &spanIdValue)
+        || !parseHexUInt64(traceId, 0, &traceIdHi)
+        || !parseHexUInt64(traceId, kSpanIdLength, &traceIdLo)) {
+        resolve(@NO);
+        return;
     }
 
+    BugsnagPerformanceSpan *span = [plugin spanWithTraceIdHi:traceIdHi traceIdLo:traceIdLo spanId:spanIdValue];
+
     if (!span) {
         resolve(@NO);
         return;
@@ -1,10 +1,20 @@
 #import "BugsnagNativeSpansPlugin.h"
 
+@class BugsnagPerformanceSpan;
+
 @interface BugsnagNativeSpansPlugin ()
 
 + (id)singleton;
 
-@property(nonatomic, readonly) NSMutableDictionary *spansByName;
-@property(nonatomic, readonly) NSMutableDictionary *spansById;
+- (BugsnagPerformanceSpan *)spanWithName:(NSString *)name;
+
+- (NSArray<BugsnagPerformanceSpan *> *)spansWithNames:(NSArray<NSString *> *)names;
+
+// the spans with names that start with prefix, in name order
+- (NSArray<BugsnagPerformanceSpan *> *)spansWithNamePrefix:(NSString *)prefix;
+
+- (BugsnagPerformanceSpan *)spanWithTraceIdHi:(uint64_t)traceIdHi
+                                    traceIdLo:(uint64_t)traceIdLo
+                                       spanId:(uint64_t)spanId;
 
 @end
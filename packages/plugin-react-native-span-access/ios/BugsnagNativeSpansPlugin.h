@@ -1,10 +1,58 @@
 #import <Foundation/Foundation.h>
 #import <BugsnagPerformance/BugsnagPerformancePlugin.h>
+#import "BugsnagNativeSpanFilter.h"
 
 NS_ASSUME_NONNULL_BEGIN
 
 @interface BugsnagNativeSpansPlugin: NSObject <BugsnagPerformancePlugin>
 
+/**
+ * Only index the spans matched by filter, other spans cannot be looked up from JS
+ */
+- (instancetype)initWithSpanFilter:(BugsnagNativeSpanFilter *)filter;
+
+/**
+ * Only index the spans matched by filter, and keep at most maxSpanNames distinct span names
+ * (1000 by default). When there are more, the least recently used name can no longer be looked up.
+ */
+- (instancetype)initWithSpanFilter:(BugsnagNativeSpanFilter *)filter maxSpanNames:(NSUInteger)maxSpanNames;
+
+/**
+ * The number of spans that have been indexed, so that they could be looked up from JS
+ */
+@property (nonatomic, readonly) NSUInteger indexedSpanCount;
+
+/**
+ * The number of spans that were not indexed because they did not match the filter
+ */
+@property (nonatomic, readonly) NSUInteger skippedSpanCount;
+
+/**
+ * The number of spans that were removed from the index because they did not end within 10 minutes
+ */
+@property (nonatomic, readonly) NSUInteger expiredSpanCount;
+
+/**
+ * The number of distinct span names that can currently be looked up
+ */
+@property (nonatomic, readonly) NSUInteger spanNameCount;
+
+/**
+ * The number of span names that were evicted because there were more than the maximum number of
+ * distinct span names
+ */
+@property (nonatomic, readonly) NSUInteger evictedSpanNameCount;
+
+/**
+ * The number of times a span has been looked up by name
+ */
+@property (nonatomic, readonly) NSUInteger spanNameLookupCount;
+
+/**
+ * The number of times a span was found when looked up by name
+ */
+@property (nonatomic, readonly) NSUInteger spanNameHitCount;
+
 @end
 
 NS_ASSUME_NONNULL_END
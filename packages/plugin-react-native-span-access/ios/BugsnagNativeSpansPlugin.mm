@@ -1,16 +1,78 @@
 #import "BugsnagNativeSpansPlugin+Private.h"
 #import <BugsnagPerformance/BugsnagPerformanceSpan.h>
 #import <BugsnagPerformance/BugsnagPerformancePluginContext.h>
+#import <array>
+#import <atomic>
+#import <list>
 #import <map>
+#import <unordered_map>
+#import <vector>
 
 static const NSTimeInterval kSpanTimeoutInterval = 600; // 10 minutes
 
-// Forward declaration for utility function
-static NSString *createNativeSpanId(BugsnagPerformanceSpan *span);
+// lost spans are expired in buckets of one minute, rather than each having a timer of their own
+static const size_t kExpiryBucketCount = 10;
+static const NSTimeInterval kExpiryBucketDuration = kSpanTimeoutInterval / kExpiryBucketCount;
+
+static const size_t kInitialSpanIndexCapacity = 256;
+
+static const NSUInteger kDefaultMaxSpanNames = 1000;
+
+// spans are indexed by their trace ID and span ID as integers, so that indexing
+// a span doesn't need a key string to be formatted
+struct NativeSpanKey {
+    uint64_t traceIdHi;
+    uint64_t traceIdLo;
+    uint64_t spanId;
+
+    bool operator==(const NativeSpanKey &other) const noexcept {
+        return spanId == other.spanId && traceIdLo == other.traceIdLo && traceIdHi == other.traceIdHi;
+    }
+};
+
+struct NativeSpanKeyHash {
+    size_t operator()(const NativeSpanKey &key) const noexcept {
+        uint64_t hash = key.spanId ^ (key.traceIdLo * 0x9e3779b97f4a7c15ULL) ^ (key.traceIdHi * 0xc2b2ae3d27d4eb4fULL);
+        hash ^= hash >> 33;
+        hash *= 0xff51afd7ed558ccdULL;
+        hash ^= hash >> 33;
+        return (size_t)hash;
+    }
+};
+
+static NativeSpanKey nativeSpanKey(BugsnagPerformanceSpan *span) noexcept {
+    return NativeSpanKey{span.traceIdHi, span.traceIdLo, span.spanId};
+}
+
+// span names are sorted by UTF-16 code unit, so that the names with a prefix are next to each other
+struct SpanNameLess {
+    bool operator()(NSString *a, NSString *b) const noexcept {
+        return [a compare:b options:NSLiteralSearch] == NSOrderedAscending;
+    }
+};
+
+// the latest span for each name, most recently started or looked up first
+typedef std::list<BugsnagPerformanceSpan *> SpanNameList;
 
 @implementation BugsnagNativeSpansPlugin {
-    // Private instance variable for span timeout timers
-    std::map<void *, dispatch_source_t> _spanTimeoutTimers;
+    // one extra bucket holds the spans started since the oldest bucket started. The buckets hold
+    // span IDs rather than spans, so that spans which have ended are not kept alive by them
+    std::array<std::vector<NativeSpanKey>, kExpiryBucketCount + 1> _expiryBuckets;
+    // the epoch (uptime divided by the bucket duration) of the newest bucket, or -1 before any spans
+    int64_t _newestExpiryEpoch;
+    std::unordered_map<NativeSpanKey, BugsnagPerformanceSpan *, NativeSpanKeyHash> _spansById;
+    // the names are capped at _maxSpanNames, evicting the least recently used name
+    SpanNameList _spanNameOrder;
+    std::map<NSString *, SpanNameList::iterator, SpanNameLess> _spansByName;
+    NSUInteger _maxSpanNames;
+    BugsnagNativeSpanFilter *_filter;
+    std::atomic<NSUInteger> _indexedSpanCount;
+    std::atomic<NSUInteger> _skippedSpanCount;
+    std::atomic<NSUInteger> _expiredSpanCount;
+    std::atomic<NSUInteger> _spanNameCount;
+    std::atomic<NSUInteger> _evictedSpanNameCount;
+    std::atomic<NSUInteger> _spanNameLookupCount;
+    std::atomic<NSUInteger> _spanNameHitCount;
 }
 
 static BugsnagNativeSpansPlugin *_sharedInstance = nil;
@@ -19,73 +81,176 @@ static BugsnagNativeSpansPlugin *_sharedInstance = nil;
     return _sharedInstance;
 }
 
-// Create a timeout timer for a span
-- (dispatch_source_t)createSpanTimeoutTimer:(BugsnagPerformanceSpan *)span {
-    __weak BugsnagNativeSpansPlugin *weakSelf = self;
+- (instancetype)init {
+    return [self initWithSpanFilter:[BugsnagNativeSpanFilter allSpans]];
+}
 
-    dispatch_source_t timer = dispatch_source_create(DISPATCH_SOURCE_TYPE_TIMER, 0, 0,
-                                                     dispatch_get_global_queue(DISPATCH_QUEUE_PRIORITY_LOW, 0));
-    
-    dispatch_source_set_timer(timer,
-                             dispatch_time(DISPATCH_TIME_NOW, (int64_t)(kSpanTimeoutInterval * NSEC_PER_SEC)),
-                             DISPATCH_TIME_FOREVER,
-                             0);
-    
-    dispatch_source_set_event_handler(timer, ^{
-        [weakSelf endNativeSpan:span];
-    });
-    
-    dispatch_resume(timer);
-    return timer;
+- (instancetype)initWithSpanFilter:(BugsnagNativeSpanFilter *)filter {
+    return [self initWithSpanFilter:filter maxSpanNames:kDefaultMaxSpanNames];
 }
 
-// remove the spans from the caches and clean up timer
-- (BOOL)endNativeSpan:(BugsnagPerformanceSpan *)span {
-    NSString *spanId = createNativeSpanId(span);
-    void *key = (__bridge void *)span;
+- (instancetype)initWithSpanFilter:(BugsnagNativeSpanFilter *)filter maxSpanNames:(NSUInteger)maxSpanNames {
+    if (self = [super init]) {
+        _filter = filter;
+        _maxSpanNames = MAX(maxSpanNames, (NSUInteger)1);
+        _indexedSpanCount = 0;
+        _skippedSpanCount = 0;
+        _expiredSpanCount = 0;
+        _newestExpiryEpoch = -1;
+        _spanNameCount = 0;
+        _evictedSpanNameCount = 0;
+        _spanNameLookupCount = 0;
+        _spanNameHitCount = 0;
+    }
+    return self;
+}
 
-    @synchronized (self) {
-        // Remove span from caches
-        if ([self.spansByName objectForKey:span.name] == span) {
-            [self.spansByName removeObjectForKey:span.name];
-        }
-        [self.spansById removeObjectForKey:spanId];
-
-        // Clean up timer for this span using the instance member
-        auto& timerMap = _spanTimeoutTimers;
-        auto it = timerMap.find(key);
-        if (it != timerMap.end()) {
-            dispatch_source_cancel(it->second);
-            timerMap.erase(it);
+- (NSUInteger)indexedSpanCount {
+    return _indexedSpanCount.load();
+}
+
+- (NSUInteger)skippedSpanCount {
+    return _skippedSpanCount.load();
+}
+
+- (NSUInteger)expiredSpanCount {
+    return _expiredSpanCount.load();
+}
+
+- (NSUInteger)spanNameCount {
+    return _spanNameCount.load();
+}
+
+- (NSUInteger)evictedSpanNameCount {
+    return _evictedSpanNameCount.load();
+}
+
+- (NSUInteger)spanNameLookupCount {
+    return _spanNameLookupCount.load();
+}
+
+- (NSUInteger)spanNameHitCount {
+    return _spanNameHitCount.load();
+}
+
+// Expire the buckets that are older than the timeout. Spans are added to the bucket for the time
+// they started and only need to be expired before they could be looked up again, so this is called
+// when spans are started and looked up, rather than from a timer. Must be called with self locked.
+- (void)expireLostSpans {
+    int64_t epoch = (int64_t)([NSProcessInfo processInfo].systemUptime / kExpiryBucketDuration);
+    if (_newestExpiryEpoch < 0) {
+        _newestExpiryEpoch = epoch;
+        return;
+    }
+
+    // after a long gap every bucket has expired, so there is no need to step through each epoch
+    const int64_t bucketCount = (int64_t)_expiryBuckets.size();
+    if (epoch - _newestExpiryEpoch > bucketCount) {
+        _newestExpiryEpoch = epoch - bucketCount;
+    }
+
+    while (_newestExpiryEpoch < epoch) {
+        _newestExpiryEpoch++;
+
+        // the bucket being reused for the new epoch holds the oldest spans, any that have already
+        // ended are no longer indexed and are ignored
+        auto &bucket = _expiryBuckets[(size_t)(_newestExpiryEpoch % bucketCount)];
+        for (const NativeSpanKey &key : bucket) {
+            auto indexed = _spansById.find(key);
+            if (indexed != _spansById.end() && [self removeSpan:indexed->second]) {
+                _expiredSpanCount++;
+            }
         }
+        bucket.clear();
+    }
+}
+
+// Must be called with self locked, after expireLostSpans so that the newest bucket is current
+- (void)addSpanToExpiryBucket:(BugsnagPerformanceSpan *)span {
+    _expiryBuckets[(size_t)(_newestExpiryEpoch % (int64_t)_expiryBuckets.size())].push_back(nativeSpanKey(span));
+}
+
+// index the span as the latest span with its name, evicting the least recently used name if there
+// are too many. Must be called with self locked.
+- (void)indexSpanName:(BugsnagPerformanceSpan *)span {
+    auto indexed = _spansByName.find(span.name);
+    if (indexed != _spansByName.end()) {
+        *indexed->second = span;
+        _spanNameOrder.splice(_spanNameOrder.begin(), _spanNameOrder, indexed->second);
+        return;
+    }
+
+    _spanNameOrder.push_front(span);
+    _spansByName.emplace([span.name copy], _spanNameOrder.begin());
+
+    if (_spansByName.size() > _maxSpanNames) {
+        // the evicted span can still be found by its ID until it ends
+        _spansByName.erase(_spanNameOrder.back().name);
+        _spanNameOrder.pop_back();
+        _evictedSpanNameCount++;
+    }
+    _spanNameCount = _spansByName.size();
+}
+
+// Must be called with self locked
+- (BugsnagPerformanceSpan *)indexedSpanWithName:(NSString *)name {
+    auto indexed = _spansByName.find(name);
+    return indexed != _spansByName.end() ? *indexed->second : nil;
+}
+
+// remove the span from the caches, returning YES if it was still indexed.
+// Must be called with self locked.
+- (BOOL)removeSpan:(BugsnagPerformanceSpan *)span {
+    auto named = _spansByName.find(span.name);
+    if (named != _spansByName.end() && *named->second == span) {
+        _spanNameOrder.erase(named->second);
+        _spansByName.erase(named);
+        _spanNameCount = _spansByName.size();
+    }
+    auto indexed = _spansById.find(nativeSpanKey(span));
+    if (indexed != _spansById.end() && indexed->second == span) {
+        _spansById.erase(indexed);
+        return YES;
+    }
+    return NO;
+}
+
+// remove the spans from the caches
+- (BOOL)endNativeSpan:(BugsnagPerformanceSpan *)span {
+    @synchronized (self) {
+        [self removeSpan:span];
     }
     return YES;
 }
 
 - (void)installWithContext:(BugsnagPerformancePluginContext *)context {
     _sharedInstance = self;
-    _spansByName = [NSMutableDictionary new];
-    _spansById = [NSMutableDictionary new];
+    _spansById.reserve(kInitialSpanIndexCapacity);
 
     // add the spans to the caches when they are started
     __block BugsnagNativeSpansPlugin *blockSelf = self;
     BugsnagPerformanceSpanStartCallback spanStartCallback = ^(BugsnagPerformanceSpan *span) {
-        NSString *spanId = createNativeSpanId(span);
+        if (![blockSelf->_filter matchesSpan:span]) {
+            blockSelf->_skippedSpanCount++;
+            return;
+        }
+
+        blockSelf->_indexedSpanCount++;
 
         @synchronized (blockSelf) {
-            BugsnagPerformanceSpan *existingSpan = blockSelf.spansByName[span.name];
+            [blockSelf expireLostSpans];
+
+            BugsnagPerformanceSpan *existingSpan = [blockSelf indexedSpanWithName:span.name];
             if (existingSpan) {
-                // If a span with the same name already exists, remove it from the cache and clean up its timer
-                [blockSelf endNativeSpan:existingSpan];
+                // If a span with the same name already exists, remove it from the cache
+                [blockSelf removeSpan:existingSpan];
             }
 
-            blockSelf.spansByName[span.name] = span;
-            blockSelf.spansById[spanId] = span;
+            [blockSelf indexSpanName:span];
+            blockSelf->_spansById[nativeSpanKey(span)] = span;
 
-            // Add a 10 minute timeout to remove the span from caches if not ended
-            void *key = (__bridge void *)span;
-            dispatch_source_t timer = [blockSelf createSpanTimeoutTimer:span];
-            blockSelf->_spanTimeoutTimers[key] = timer;
+            // remove the span from the caches after 10 minutes if it has not ended
+            [blockSelf addSpanToExpiryBucket:span];
         }
     };
 
@@ -101,9 +266,64 @@ static BugsnagNativeSpansPlugin *_sharedInstance = nil;
 - (void)start {
 }
 
-@end
+- (BugsnagPerformanceSpan *)spanWithName:(NSString *)name {
+    @synchronized (self) {
+        [self expireLostSpans];
+        return [self lookUpSpanWithName:name];
+    }
+}
 
-// generate a unique ID for the span based on its traceId and spanId
-static NSString *createNativeSpanId(BugsnagPerformanceSpan *span) {
-    return [NSString stringWithFormat:@"%016llx:%016llx%016llx", span.spanId, span.traceIdHi, span.traceIdLo];
+- (NSArray<BugsnagPerformanceSpan *> *)spansWithNames:(NSArray<NSString *> *)names {
+    NSMutableArray<BugsnagPerformanceSpan *> *spans = [NSMutableArray arrayWithCapacity:names.count];
+    @synchronized (self) {
+        [self expireLostSpans];
+        // each distinct name is looked up once, so a repeated name doesn't return its span twice
+        for (NSString *name in [NSOrderedSet orderedSetWithArray:names]) {
+            BugsnagPerformanceSpan *span = [self lookUpSpanWithName:name];
+            if (span) {
+                [spans addObject:span];
+            }
+        }
+    }
+    return spans;
 }
+
+- (NSArray<BugsnagPerformanceSpan *> *)spansWithNamePrefix:(NSString *)prefix {
+    NSMutableArray<BugsnagPerformanceSpan *> *spans = [NSMutableArray array];
+    @synchronized (self) {
+        [self expireLostSpans];
+        for (auto it = _spansByName.lower_bound(prefix); it != _spansByName.end() && [it->first hasPrefix:prefix]; ++it) {
+            // the spans found become the most recently used
+            _spanNameOrder.splice(_spanNameOrder.begin(), _spanNameOrder, it->second);
+            [spans addObject:*it->second];
+        }
+    }
+    return spans;
+}
+
+// Must be called with self locked
+- (BugsnagPerformanceSpan *)lookUpSpanWithName:(NSString *)name {
+    _spanNameLookupCount++;
+
+    auto indexed = _spansByName.find(name);
+    if (indexed == _spansByName.end()) {
+        return nil;
+    }
+
+    // looking a span up makes its name the most recently used
+    _spanNameOrder.splice(_spanNameOrder.begin(), _spanNameOrder, indexed->second);
+    _spanNameHitCount++;
+    return *indexed->second;
+}
+
+- (BugsnagPerformanceSpan *)spanWithTraceIdHi:(uint64_t)traceIdHi
+                                    traceIdLo:(uint64_t)traceIdLo
+                                       spanId:(uint64_t)spanId {
+    @synchronized (self) {
+        [self expireLostSpans];
+        auto indexed = _spansById.find(NativeSpanKey{traceIdHi, traceIdLo, spanId});
+        return indexed != _spansById.end() ? indexed->second : nil;
+    }
+}
+
+@end
@@ -5,8 +5,14 @@ import { TurboModuleRegistry } from 'react-native'
 export interface Spec extends TurboModule {
   getSpanIdByName: (spanName: string) => UnsafeObject | undefined
 
+  getSpanIdsByNames?: (spanNames: string[]) => UnsafeObject[]
+
+  getSpanIdsByNamePrefix?: (namePrefix: string) => UnsafeObject[]
+
   updateSpan: (spanId: UnsafeObject, updates: UnsafeObject) => Promise<boolean>
 
+  getMetrics?: () => UnsafeObject
+
   addListener: (eventType: string) => void
 
   removeListeners: (count: number) => void
@@ -10,6 +10,20 @@ export class NativeSpanQuery extends SpanQuery<NativeSpanControl> {
   }
 }
 
+// finds every open native span with one of the given names
+export class NativeSpanNamesQuery extends SpanQuery<NamedNativeSpanControl[]> {
+  constructor (public readonly names: string[]) {
+    super()
+  }
+}
+
+// finds every open native span with a name that starts with the given prefix
+export class NativeSpanNamePrefixQuery extends SpanQuery<NamedNativeSpanControl[]> {
+  constructor (public readonly namePrefix: string) {
+    super()
+  }
+}
+
 export interface NativeSpanMutator {
   end: (endTime?: Time) => void
   setAttribute: (name: string, value?: SpanAttribute) => void
@@ -19,6 +33,10 @@ export interface NativeSpanControl extends ParentContext {
   updateSpan: (update: (mutator: NativeSpanMutator) => void) => Promise<boolean>
 }
 
+export interface NamedNativeSpanControl extends NativeSpanControl {
+  readonly name: string
+}
+
 const NativeNativeSpansModule = TurboModuleRegistry.get<Spec>('BugsnagNativeSpans')
 
 interface SpanTransaction {
@@ -32,6 +50,10 @@ interface SpanId {
   traceId: string
 }
 
+interface NamedSpanId extends SpanId {
+  name: string
+}
+
 class NativeSpanControlImpl implements NativeSpanControl {
   constructor (
     public readonly id: string,
@@ -61,11 +83,28 @@ class NativeSpanControlImpl implements NativeSpanControl {
   }
 }
 
-export class NativeSpanControlProvider implements SpanControlProvider<NativeSpanControl> {
+class NamedNativeSpanControlImpl extends NativeSpanControlImpl implements NamedNativeSpanControl {
+  constructor (
+    public readonly name: string,
+    id: string,
+    traceId: string,
+    clock: Clock
+  ) {
+    super(id, traceId, clock)
+  }
+}
+
+export class NativeSpanControlProvider implements SpanControlProvider<NativeSpanControl | NamedNativeSpanControl[]> {
   constructor (private readonly clock: Clock) {}
 
-  getSpanControls<Q> (query: Q): NativeSpanControl | null {
-    if (query instanceof NativeSpanQuery && NativeNativeSpansModule) {
+  getSpanControls (query: NativeSpanNamesQuery | NativeSpanNamePrefixQuery): NamedNativeSpanControl[] | null
+  getSpanControls<Q> (query: Q): NativeSpanControl | null
+  getSpanControls<Q> (query: Q): NativeSpanControl | NamedNativeSpanControl[] | null {
+    if (!NativeNativeSpansModule) {
+      return null
+    }
+
+    if (query instanceof NativeSpanQuery) {
       const spanId: SpanId | undefined =
           NativeNativeSpansModule.getSpanIdByName(query.name) as
               unknown as SpanId | undefined
@@ -74,8 +113,42 @@ export class NativeSpanControlProvider implements SpanControlProvider<NativeSpan
       }
     }
 
+    if (query instanceof NativeSpanNamesQuery) {
+      return this.createNamedSpanControls(this.getSpanIdsByNames(query.names))
+    }
+
+    // prefix queries need the native name index, so can't be answered by an older native module
+    if (query instanceof NativeSpanNamePrefixQuery && typeof NativeNativeSpansModule.getSpanIdsByNamePrefix === 'function') {
+      return this.createNamedSpanControls(
+        NativeNativeSpansModule.getSpanIdsByNamePrefix(query.namePrefix) as unknown as NamedSpanId[]
+      )
+    }
+
     return null
   }
+
+  private getSpanIdsByNames (names: string[]): NamedSpanId[] {
+    // eslint-disable-next-line @typescript-eslint/no-non-null-assertion
+    const nativeModule = NativeNativeSpansModule!
+    if (typeof nativeModule.getSpanIdsByNames === 'function') {
+      return nativeModule.getSpanIdsByNames(names) as unknown as NamedSpanId[]
+    }
+
+    // older native modules can only look up one span per call
+    const spanIds: NamedSpanId[] = []
+    for (const name of names) {
+      const spanId = nativeModule.getSpanIdByName(name) as unknown as SpanId | undefined
+      if (spanId) {
+        spanIds.push({ name, spanId: spanId.spanId, traceId: spanId.traceId })
+      }
+    }
+
+    return spanIds
+  }
+
+  private createNamedSpanControls (spanIds: NamedSpanId[]): NamedNativeSpanControl[] {
+    return spanIds.map(spanId => new NamedNativeSpanControlImpl(spanId.name, spanId.spanId, spanId.traceId, this.clock))
+  }
 }
 
 export class BugsnagNativeSpansPlugin implements Plugin<ReactNativeConfiguration> {
@@ -1,7 +1,7 @@
 import { PluginContext } from '@bugsnag/core-performance'
 import { createConfiguration, IncrementingClock } from '@bugsnag/js-performance-test-utilities'
 import type { ReactNativeConfiguration } from '@bugsnag/react-native-performance'
-import { BugsnagNativeSpansPlugin, NativeSpanQuery, NativeSpanControlProvider } from '../lib/native-spans-plugin'
+import { BugsnagNativeSpansPlugin, NativeSpanQuery, NativeSpanControlProvider, NativeSpanNamesQuery, NativeSpanNamePrefixQuery } from '../lib/native-spans-plugin'
 import { TurboModuleRegistry } from 'react-native'
 
 describe('BugsnagNativeSpansPlugin', () => {
@@ -138,6 +138,115 @@ describe('BugsnagNativeSpansPlugin', () => {
     })
   })
 
+  describe('NativeSpanNamesQuery', () => {
+    let provider: NativeSpanControlProvider
+
+    beforeEach(() => {
+      provider = new NativeSpanControlProvider(new IncrementingClock())
+    })
+
+    it('should look up every name in a single native call', () => {
+      mockNativeModule.getSpanIdsByNames.mockReturnValue([
+        { name: 'span1', spanId: 'span-id-1', traceId: 'trace-id-1' },
+        { name: 'span3', spanId: 'span-id-3', traceId: 'trace-id-3' }
+      ])
+
+      const result = provider.getSpanControls(new NativeSpanNamesQuery(['span1', 'span2', 'span3']))
+
+      expect(mockNativeModule.getSpanIdsByNames).toHaveBeenCalledTimes(1)
+      expect(mockNativeModule.getSpanIdsByNames).toHaveBeenCalledWith(['span1', 'span2', 'span3'])
+      expect(mockNativeModule.getSpanIdByName).not.toHaveBeenCalled()
+
+      expect(result).toHaveLength(2)
+      expect(result?.[0]).toMatchObject({ name: 'span1', id: 'span-id-1', traceId: 'trace-id-1' })
+      expect(result?.[1]).toMatchObject({ name: 'span3', id: 'span-id-3', traceId: 'trace-id-3' })
+    })
+
+    it('should return an empty array when no spans are found', () => {
+      mockNativeModule.getSpanIdsByNames.mockReturnValue([])
+
+      const result = provider.getSpanControls(new NativeSpanNamesQuery(['nonExistentSpan']))
+
+      expect(result).toEqual([])
+    })
+
+    it('should look up each name when the native module cannot query several names', () => {
+      const getSpanIdsByNames = mockNativeModule.getSpanIdsByNames
+      delete mockNativeModule.getSpanIdsByNames
+
+      try {
+        mockNativeModule.getSpanIdByName.mockImplementation((name: string) => {
+          return name === 'span2' ? { spanId: 'span-id-2', traceId: 'trace-id-2' } : undefined
+        })
+
+        const result = provider.getSpanControls(new NativeSpanNamesQuery(['span1', 'span2']))
+
+        expect(mockNativeModule.getSpanIdByName).toHaveBeenCalledTimes(2)
+        expect(result).toHaveLength(1)
+        expect(result?.[0]).toMatchObject({ name: 'span2', id: 'span-id-2', traceId: 'trace-id-2' })
+      } finally {
+        mockNativeModule.getSpanIdByName.mockReset()
+        mockNativeModule.getSpanIdsByNames = getSpanIdsByNames
+      }
+    })
+
+    it('should return span controls that update the native span', async () => {
+      mockNativeModule.getSpanIdsByNames.mockReturnValue([
+        { name: 'span1', spanId: 'span-id-1', traceId: 'trace-id-1' }
+      ])
+      mockNativeModule.updateSpan.mockResolvedValue(true)
+
+      const result = provider.getSpanControls(new NativeSpanNamesQuery(['span1']))
+      const updated = await result?.[0].updateSpan(mutator => {
+        mutator.setAttribute('testAttribute', 'testValue')
+      })
+
+      expect(updated).toBe(true)
+      expect(mockNativeModule.updateSpan).toHaveBeenCalledWith(
+        { spanId: 'span-id-1', traceId: 'trace-id-1' },
+        {
+          attributes: [{ name: 'testAttribute', value: 'testValue' }],
+          isEnded: false
+        }
+      )
+    })
+  })
+
+  describe('NativeSpanNamePrefixQuery', () => {
+    let provider: NativeSpanControlProvider
+
+    beforeEach(() => {
+      provider = new NativeSpanControlProvider(new IncrementingClock())
+    })
+
+    it('should return every span with a name that starts with the prefix', () => {
+      mockNativeModule.getSpanIdsByNamePrefix.mockReturnValue([
+        { name: '[ViewLoad]Home', spanId: 'span-id-1', traceId: 'trace-id-1' },
+        { name: '[ViewLoad]Settings', spanId: 'span-id-2', traceId: 'trace-id-2' }
+      ])
+
+      const result = provider.getSpanControls(new NativeSpanNamePrefixQuery('[ViewLoad]'))
+
+      expect(mockNativeModule.getSpanIdsByNamePrefix).toHaveBeenCalledWith('[ViewLoad]')
+      expect(result).toHaveLength(2)
+      expect(result?.[0]).toMatchObject({ name: '[ViewLoad]Home', id: 'span-id-1', traceId: 'trace-id-1' })
+      expect(result?.[1]).toMatchObject({ name: '[ViewLoad]Settings', id: 'span-id-2', traceId: 'trace-id-2' })
+    })
+
+    it('should return null when the native module cannot query by prefix', () => {
+      const getSpanIdsByNamePrefix = mockNativeModule.getSpanIdsByNamePrefix
+      delete mockNativeModule.getSpanIdsByNamePrefix
+
+      try {
+        const result = provider.getSpanControls(new NativeSpanNamePrefixQuery('[ViewLoad]'))
+
+        expect(result).toBeNull()
+      } finally {
+        mockNativeModule.getSpanIdsByNamePrefix = getSpanIdsByNamePrefix
+      }
+    })
+  })
+
   describe('NativeSpanControl', () => {
     let spanControl: any
     let clock: IncrementingClock
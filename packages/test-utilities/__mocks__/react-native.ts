@@ -192,6 +192,12 @@ const BugsnagNativeSpans = {
   getSpanIdByName: jest.fn((spanName: string) => {
     return undefined
   }),
+  getSpanIdsByNames: jest.fn((spanNames: string[]) => {
+    return []
+  }),
+  getSpanIdsByNamePrefix: jest.fn((namePrefix: string) => {
+    return []
+  }),
   updateSpan: jest.fn((spanId, updates) => {
     return Promise.resolve(false)
   }),